@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package jpcsp.media.codec.util;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+
+/**
+ * {@link SimdKernels} by the vector api.
+ * <p>
+ * needs {@code --add-modules jdk.incubator.vector} both for compiling and running,
+ * instantiated by reflection only, see {@link SimdKernelsLoader}.
+ * the loop remainders are done by the same scalar expressions.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+final class VectorKernels implements SimdKernels {
+
+    private static final VectorSpecies<Float> FS = FloatVector.SPECIES_PREFERRED;
+    /** same lanes as {@link #FS} */
+    private static final VectorSpecies<Integer> FIS = FS.withLanes(int.class);
+    private static final VectorShuffle<Float> FREVERSE = VectorShuffle.fromOp(FS, i -> FS.length() - 1 - i);
+
+    private static final VectorSpecies<Double> DS = DoubleVector.SPECIES_PREFERRED;
+    /** same lanes as {@link #DS} */
+    private static final VectorSpecies<Integer> DIS = VectorSpecies.of(int.class, VectorShape.forBitSize(DS.vectorBitSize() / 2));
+    private static final VectorShuffle<Double> DSWAP = VectorShuffle.fromOp(DS, i -> i ^ 1);
+
+    @Override
+    public void vectorFmul(float[] dst, int dstOffset, float[] src0, int src0Offset, float[] src1, int src1Offset, int len) {
+        int bound = FS.loopBound(len);
+        int i = 0;
+        for (; i < bound; i += FS.length()) {
+            FloatVector a = FloatVector.fromArray(FS, src0, src0Offset + i);
+            FloatVector b = FloatVector.fromArray(FS, src1, src1Offset + i);
+            a.mul(b).intoArray(dst, dstOffset + i);
+        }
+        for (; i < len; i++) {
+            dst[dstOffset + i] = src0[src0Offset + i] * src1[src1Offset + i];
+        }
+    }
+
+    @Override
+    public void vectorFmulReverse(float[] dst, int dstOffset, float[] src0, int src0Offset, float[] src1, int src1Offset, int len) {
+        int bound = FS.loopBound(len);
+        int i = 0;
+        for (; i < bound; i += FS.length()) {
+            FloatVector a = FloatVector.fromArray(FS, src0, src0Offset + i);
+            FloatVector b = FloatVector.fromArray(FS, src1, src1Offset + len - i - FS.length()).rearrange(FREVERSE);
+            a.mul(b).intoArray(dst, dstOffset + i);
+        }
+        for (; i < len; i++) {
+            dst[dstOffset + i] = src0[src0Offset + i] * src1[src1Offset + len - 1 - i];
+        }
+    }
+
+    @Override
+    public void vectorFmulAdd(float[] dst, int dstOffset, float[] src0, int src0Offset, float[] src1, int src1Offset, float[] src2, int src2Offset, int len) {
+        int bound = FS.loopBound(len);
+        int i = 0;
+        for (; i < bound; i += FS.length()) {
+            FloatVector a = FloatVector.fromArray(FS, src0, src0Offset + i);
+            FloatVector b = FloatVector.fromArray(FS, src1, src1Offset + i);
+            FloatVector c = FloatVector.fromArray(FS, src2, src2Offset + i);
+            a.mul(b).add(c).intoArray(dst, dstOffset + i);
+        }
+        for (; i < len; i++) {
+            dst[dstOffset + i] = src0[src0Offset + i] * src1[src1Offset + i] + src2[src2Offset + i];
+        }
+    }
+
+    @Override
+    public void vectorFmulWindow(float[] dst, int dstOffset, float[] src0, int src0Offset, float[] src1, int src1Offset, float[] win, int winOffset, int len) {
+        dstOffset += len;
+        winOffset += len;
+        src0Offset += len;
+        int n = FS.length();
+        int i = -len;
+        for (; i + n <= -i - n; i += n) {
+            int j = -i - n; // lowest j of this block, j runs backward
+            FloatVector s0 = FloatVector.fromArray(FS, src0, src0Offset + i);
+            FloatVector wi = FloatVector.fromArray(FS, win, winOffset + i);
+            FloatVector s1 = FloatVector.fromArray(FS, src1, src1Offset + j).rearrange(FREVERSE);
+            FloatVector wj = FloatVector.fromArray(FS, win, winOffset + j).rearrange(FREVERSE);
+            s0.mul(wj).sub(s1.mul(wi)).intoArray(dst, dstOffset + i);
+            s0.mul(wi).add(s1.mul(wj)).rearrange(FREVERSE).intoArray(dst, dstOffset + j);
+        }
+        for (int j = -i - 1; i < 0; i++, j--) {
+            float s0 = src0[src0Offset + i];
+            float s1 = src1[src1Offset + j];
+            float wi = win[winOffset + i];
+            float wj = win[winOffset + j];
+            dst[dstOffset + i] = s0 * wj - s1 * wi;
+            dst[dstOffset + j] = s0 * wi + s1 * wj;
+        }
+    }
+
+    @Override
+    public void butterflies(float[] v1, int v1Offset, float[] v2, int v2Offset, int len) {
+        int bound = FS.loopBound(len);
+        int i = 0;
+        for (; i < bound; i += FS.length()) {
+            FloatVector a = FloatVector.fromArray(FS, v1, v1Offset + i);
+            FloatVector b = FloatVector.fromArray(FS, v2, v2Offset + i);
+            a.add(b).intoArray(v1, v1Offset + i);
+            a.sub(b).intoArray(v2, v2Offset + i);
+        }
+        for (; i < len; i++) {
+            float t = v1[v1Offset + i] - v2[v2Offset + i];
+            v1[v1Offset + i] += v2[v2Offset + i];
+            v2[v2Offset + i] = t;
+        }
+    }
+
+    @Override
+    public float scalarproduct(float[] v1, int v1Offset, float[] v2, int v2Offset, int len) {
+        int bound = FS.loopBound(len);
+        int i = 0;
+        FloatVector sum = FloatVector.zero(FS);
+        for (; i < bound; i += FS.length()) {
+            FloatVector a = FloatVector.fromArray(FS, v1, v1Offset + i);
+            FloatVector b = FloatVector.fromArray(FS, v2, v2Offset + i);
+            sum = a.mul(b).add(sum);
+        }
+        float p = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < len; i++) {
+            p += v1[v1Offset + i] * v2[v2Offset + i];
+        }
+        return p;
+    }
+
+    @Override
+    public void int32ToFloatFmulScalar(float[] dst, int dstOffset, int[] src, int srcOffset, float mul, int len) {
+        int bound = FS.loopBound(len);
+        int i = 0;
+        for (; i < bound; i += FS.length()) {
+            IntVector a = IntVector.fromArray(FIS, src, srcOffset + i);
+            ((FloatVector) a.convert(VectorOperators.I2F, 0)).mul(mul).intoArray(dst, dstOffset + i);
+        }
+        for (; i < len; i++) {
+            dst[dstOffset + i] = src[srcOffset + i] * mul;
+        }
+    }
+
+    @Override
+    public void vectorDmulScalar(double[] dst, int dstOffset, double[] src, int srcOffset, double mul, int len) {
+        int bound = DS.loopBound(len);
+        int i = 0;
+        for (; i < bound; i += DS.length()) {
+            DoubleVector.fromArray(DS, src, srcOffset + i).mul(mul).intoArray(dst, dstOffset + i);
+        }
+        for (; i < len; i++) {
+            dst[dstOffset + i] = src[srcOffset + i] * mul;
+        }
+    }
+
+    @Override
+    public void int32ToDoubleDmulScalarAddScale(double[] dst, int dstOffset, int[] src0, double mul0, int[] src1, double mul1, int srcOffset, double scale, int len) {
+        int bound = DS.loopBound(len);
+        int i = 0;
+        for (; i < bound; i += DS.length()) {
+            DoubleVector a = (DoubleVector) IntVector.fromArray(DIS, src0, srcOffset + i).convertShape(VectorOperators.I2D, DS, 0);
+            DoubleVector b = (DoubleVector) IntVector.fromArray(DIS, src1, srcOffset + i).convertShape(VectorOperators.I2D, DS, 0);
+            a.mul(mul0).add(b.mul(mul1)).mul(scale).intoArray(dst, dstOffset + i);
+        }
+        for (; i < len; i++) {
+            dst[dstOffset + i] = (src0[srcOffset + i] * mul0 + src1[srcOffset + i] * mul1) * scale;
+        }
+    }
+
+    @Override
+    public void complexButterflies(double[] data, int frontOffset, int backOffset, double[] rotCos, double[] rotSin, int len) {
+        int bound = DS.loopBound(len);
+        int i = 0;
+        for (; i < bound; i += DS.length()) {
+            DoubleVector front = DoubleVector.fromArray(DS, data, frontOffset + i);
+            DoubleVector back = DoubleVector.fromArray(DS, data, backOffset + i);
+            DoubleVector a = front.sub(back);
+            front.add(back).intoArray(data, frontOffset + i);
+            DoubleVector c = DoubleVector.fromArray(DS, rotCos, i);
+            DoubleVector s = DoubleVector.fromArray(DS, rotSin, i);
+            a.mul(c).add(a.rearrange(DSWAP).mul(s)).intoArray(data, backOffset + i);
+        }
+        for (; i < len; i += 2) {
+            int f = frontOffset + i;
+            int b = backOffset + i;
+            double re = data[f] - data[b];
+            double im = data[f + 1] - data[b + 1];
+            double sin = rotSin[i];
+            double cos = rotCos[i];
+            data[f] += data[b];
+            data[f + 1] += data[b + 1];
+            data[b] = re * cos + im * sin;
+            data[b + 1] = re * sin - im * cos;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "VectorKernels[" + FS + ", " + DS + "]";
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package jpcsp.media.codec;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+/**
+ * JFR event for one decoded frame.
+ * <p>
+ * disabled by default, enable it in a recording setting like
+ * {@code jfr configure +vavi.sound.atrac.Decode#enabled=true}.
+ * the duration is the one of the event itself.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+@Name("vavi.sound.atrac.Decode")
+@Label("ATRAC Frame Decode")
+@Category({"ATRAC", "Decode"})
+@Description("decoding of one (super) frame")
+@Enabled(false)
+@StackTrace(false)
+public class DecodeEvent extends Event {
+
+    public static final String ATRAC3 = "ATRAC3";
+    public static final String ATRAC3PLUS = "ATRAC3plus";
+    public static final String ATRAC9 = "ATRAC9";
+
+    @Label("Codec")
+    public String codec;
+
+    @Label("Bytes Consumed")
+    @DataAmount
+    public int bytes;
+
+    @Label("Samples")
+    @Description("samples per channel")
+    public int samples;
+
+    /**
+     * Commits the event if it passes the recording settings.
+     * fields are set only in that case.
+     */
+    public void commit(String codec, int bytes, int samples) {
+        if (shouldCommit()) {
+            this.codec = codec;
+            this.bytes = bytes;
+            this.samples = samples;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package jpcsp.media.codec;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+/**
+ * JFR event for a stage in a frame decoding.
+ * <p>
+ * disabled by default, this is finer than {@link DecodeEvent}
+ * so enable it only when profiling.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+@Name("vavi.sound.atrac.DecodeStage")
+@Label("ATRAC Decode Stage")
+@Category({"ATRAC", "Decode"})
+@Description("one stage of a frame decoding")
+@Enabled(false)
+@StackTrace(false)
+public class DecodeStageEvent extends Event {
+
+    @Label("Codec")
+    public String codec;
+
+    @Label("Stage")
+    public String stage;
+
+    @Label("Channel")
+    @Description("channel or block index, -1 for all")
+    public int channel;
+
+    /**
+     * Commits the event if it passes the recording settings.
+     * fields are set only in that case.
+     */
+    public void commit(String codec, String stage, int channel) {
+        if (shouldCommit()) {
+            this.codec = codec;
+            this.stage = stage;
+            this.channel = channel;
+            commit();
+        }
+    }
+}
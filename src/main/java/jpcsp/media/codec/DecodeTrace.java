@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package jpcsp.media.codec;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+/**
+ * Binary decode trace recorder.
+ * <p>
+ * preallocated rings of fixed size records, striped by the decoder id so that
+ * the decoders running at the same time write to different rings.
+ * writers claim a slot with one atomic increment on the cursor of the ring of the decoder,
+ * that is not shared with the other decoders but the ones of the same stripe,
+ * and publish it by the sequence written last, so recording is lock free and costs no formatting.
+ * a ring is allocated when a decoder of the stripe records first.
+ * the records are formatted only by {@link #dump(int)}, on an error or on demand.
+ * <p>
+ * the capacity of a ring in records is given by the system property {@code jpcsp.media.codec.trace.size}
+ * (default 256, rounded up to a power of two), 0 disables recording.
+ * there are as many rings as the processors (rounded up to a power of two, 16 at most).
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public final class DecodeTrace {
+
+    /** a decoded frame: offset, bits read, unit types, output address */
+    public static final int FRAME = 1;
+    /** a failed frame: offset, bits read, error code, unit types */
+    public static final int ERROR = 2;
+
+    public static final int CODEC_ATRAC3 = 1;
+    public static final int CODEC_ATRAC3PLUS = 2;
+
+    private static final String[] kindNames = {"?", "FRAME", "ERROR"};
+    private static final String[] codecNames = {"?", DecodeEvent.ATRAC3, DecodeEvent.ATRAC3PLUS};
+
+    /** longs per record: sequence, source|codec|kind, offset|bits, value1|value2 */
+    private static final int RECORD_LONGS = 4;
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private static final DecodeTrace instance = new DecodeTrace(Integer.getInteger("jpcsp.media.codec.trace.size", 256),
+            Math.min(Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1), 16));
+
+    /** @return the vm wide recorder */
+    public static DecodeTrace getInstance() {
+        return instance;
+    }
+
+    /** a ring of the records of the sources of a stripe */
+    private static final class Ring {
+
+        final long[] records;
+        final AtomicLong cursor = new AtomicLong();
+
+        Ring(int size) {
+            records = new long[size * RECORD_LONGS];
+        }
+    }
+
+    /** records of a ring, 0 when disabled */
+    private final int size;
+    private final int mask;
+    /** made when used first, null when disabled */
+    private final AtomicReferenceArray<Ring> rings;
+    private final AtomicInteger sources = new AtomicInteger();
+
+    /** @param capacity number of records, 0 disables */
+    DecodeTrace(int capacity) {
+        this(capacity, 1);
+    }
+
+    /**
+     * @param capacity number of records of a ring, 0 disables
+     * @param stripes  number of rings, a power of two
+     */
+    DecodeTrace(int capacity, int stripes) {
+        if (capacity > 0) {
+            size = Integer.highestOneBit(Math.min(capacity, 1 << 24) * 2 - 1);
+            mask = size - 1;
+            rings = new AtomicReferenceArray<>(stripes);
+        } else {
+            size = 0;
+            mask = 0;
+            rings = null;
+        }
+    }
+
+    /** @return an id to tell a decoder instance in the records */
+    public int newSource() {
+        return sources.incrementAndGet();
+    }
+
+    public boolean isEnabled() {
+        return rings != null;
+    }
+
+    /** @return the ring of the source, made when absent */
+    private Ring ring(int source) {
+        int stripe = source & (rings.length() - 1);
+        Ring ring = rings.get(stripe);
+        if (ring == null) {
+            rings.compareAndSet(stripe, null, new Ring(size));
+            ring = rings.get(stripe);
+        }
+        return ring;
+    }
+
+    /**
+     * Records one event.
+     *
+     * @param source   decoder id by {@link #newSource()}
+     * @param codec    {@link #CODEC_ATRAC3} etc.
+     * @param kind     {@link #FRAME} or {@link #ERROR}
+     * @param offset   input address of the frame
+     * @param bitsRead bits read in the frame
+     */
+    public void record(int source, int codec, int kind, int offset, int bitsRead, int value1, int value2) {
+        if (rings == null) {
+            return;
+        }
+        Ring ring = ring(source);
+        long[] records = ring.records;
+        long sequence = ring.cursor.getAndIncrement();
+        int base = (int) (sequence & mask) * RECORD_LONGS;
+        LONGS.setOpaque(records, base, 0L);
+        // the data below are not seen before the invalidation
+        VarHandle.releaseFence();
+        records[base + 1] = ((long) source << 32) | ((codec & 0xff) << 8) | (kind & 0xff);
+        records[base + 2] = ((long) offset << 32) | (bitsRead & 0xffffffffL);
+        records[base + 3] = ((long) value1 << 32) | (value2 & 0xffffffffL);
+        LONGS.setRelease(records, base, sequence + 1);
+    }
+
+    /**
+     * Copies the published records, ring by ring, oldest first in a ring.
+     * a record being overwritten while copying is skipped.
+     *
+     * @param dst {@code long[4 * n]}, sequence, source|codec|kind, offset|bits, value1|value2 per record
+     * @return number of records copied
+     */
+    public int snapshot(long[] dst) {
+        if (rings == null) {
+            return 0;
+        }
+        int n = 0;
+        for (int i = 0; i < rings.length(); i++) {
+            n = copy(rings.get(i), 0, dst, n);
+        }
+        return n;
+    }
+
+    /**
+     * Copies the published records of the source, oldest first.
+     *
+     * @param source decoder id by {@link #newSource()}
+     * @see #snapshot(long[])
+     */
+    public int snapshot(int source, long[] dst) {
+        if (rings == null) {
+            return 0;
+        }
+        return copy(rings.get(source & (rings.length() - 1)), source, dst, 0);
+    }
+
+    /**
+     * @param ring   nullable
+     * @param source 0 for all
+     * @param n      records in dst already
+     * @return records in dst
+     */
+    private int copy(Ring ring, int source, long[] dst, int n) {
+        if (ring == null) {
+            return n;
+        }
+        long[] records = ring.records;
+        long end = ring.cursor.get();
+        long start = Math.max(0, end - size);
+        for (long sequence = start; sequence < end && (n + 1) * RECORD_LONGS <= dst.length; sequence++) {
+            int base = (int) (sequence & mask) * RECORD_LONGS;
+            long published = (long) LONGS.getAcquire(records, base);
+            if (published != sequence + 1) {
+                continue;
+            }
+            long r1 = records[base + 1];
+            long r2 = records[base + 2];
+            long r3 = records[base + 3];
+            VarHandle.acquireFence();
+            if ((long) LONGS.getVolatile(records, base) != published) {
+                continue;
+            }
+            if (source != 0 && (int) (r1 >>> 32) != source) {
+                continue;
+            }
+            int d = n++ * RECORD_LONGS;
+            dst[d] = sequence;
+            dst[d + 1] = r1;
+            dst[d + 2] = r2;
+            dst[d + 3] = r3;
+        }
+        return n;
+    }
+
+    /** @return the published records of all the sources as text, ring by ring */
+    public String dump() {
+        long[] copy = new long[rings == null ? 0 : size * rings.length() * RECORD_LONGS];
+        return format(copy, snapshot(copy));
+    }
+
+    /**
+     * @param source decoder id by {@link #newSource()}
+     * @return the published records of the source as text, oldest first
+     */
+    public String dump(int source) {
+        long[] copy = new long[size * RECORD_LONGS];
+        return format(copy, snapshot(source, copy));
+    }
+
+    private static String format(long[] copy, int n) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("decode trace: ").append(n).append(" records");
+        for (int i = 0; i < n; i++) {
+            int d = i * RECORD_LONGS;
+            int source = (int) (copy[d + 1] >>> 32);
+            int codec = (int) (copy[d + 1] >>> 8) & 0xff;
+            int kind = (int) copy[d + 1] & 0xff;
+            int offset = (int) (copy[d + 2] >>> 32);
+            int bitsRead = (int) copy[d + 2];
+            int value1 = (int) (copy[d + 3] >>> 32);
+            int value2 = (int) copy[d + 3];
+            sb.append(String.format("%n#%d %s[%d] %s offset=0x%X, bits=%d, ",
+                    copy[d], codecNames[codec < codecNames.length ? codec : 0], source, kindNames[kind < kindNames.length ? kind : 0], offset, bitsRead));
+            if (kind == ERROR) {
+                sb.append(String.format("error=0x%X, units=0x%X", value1, value2));
+            } else {
+                sb.append(String.format("units=0x%X, output=0x%X", value1, value2));
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -59,4 +59,40 @@ public interface ICodec {
      * @return the number of samples generated by one decode() call.
      */
     int getNumberOfSamples();
+
+    /**
+     * @return true when the last decode() call output digital silence,
+     * detected from the bitstream and the decayed overlap without running the synthesis.
+     */
+    default boolean isSilent() {
+        return false;
+    }
+
+    /**
+     * @return the state carried over between frames (overlap, filter histories and so on),
+     * to be given to {@link #restore(byte[])} of a codec initialized with the same parameters.
+     * @throws UnsupportedOperationException not supported by the codec
+     */
+    default byte[] snapshot() {
+        throw new UnsupportedOperationException("snapshot");
+    }
+
+    /**
+     * Restores the state, the next decode() call outputs the same as after the snapshot.
+     *
+     * @param state from {@link #snapshot()}
+     * @throws IllegalArgumentException not a state of the codec, its version or parameters,
+     * the codec is left unchanged
+     * @throws UnsupportedOperationException not supported by the codec
+     */
+    default void restore(byte[] state) {
+        throw new UnsupportedOperationException("restore");
+    }
+
+    /**
+     * @return the id of this codec in the {@link DecodeTrace} records, 0 when it records none
+     */
+    default int getTraceSource() {
+        return 0;
+    }
 }
@@ -18,15 +18,20 @@
 package jpcsp.media.codec.atrac3;
 
 import java.lang.System.Logger.Level;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
 import java.util.Arrays;
 import java.lang.System.Logger;
 
+import jpcsp.media.codec.DecodeEvent;
+import jpcsp.media.codec.DecodeTrace;
 import jpcsp.media.codec.ICodec;
 import jpcsp.media.codec.atrac3plus.Atrac;
+import jpcsp.media.codec.transform.MdctPlan;
 import jpcsp.media.codec.util.BitReader;
+import jpcsp.media.codec.util.CodecState;
 import jpcsp.media.codec.util.CodecUtils;
-import jpcsp.media.codec.util.FFT;
 import jpcsp.media.codec.util.VLC;
 
 import static java.lang.Math.max;
@@ -41,8 +46,6 @@ import static jpcsp.media.codec.atrac3.Atrac3Data.mantissa_vlc_tab;
 import static jpcsp.media.codec.atrac3.Atrac3Data.matrix_coeffs;
 import static jpcsp.media.codec.atrac3.Atrac3Data.subband_tab;
 import static jpcsp.media.codec.atrac3plus.Atrac.ff_atrac_sf_table;
-import static jpcsp.media.codec.util.CodecUtils.writeOutput;
-import static jpcsp.media.codec.util.FloatDSP.vectorFmul;
 
 
 /*
@@ -58,12 +61,23 @@ public class Atrac3Decoder implements ICodec {
     public static final int STEREO = 0x2;
     public static final int SAMPLES_PER_FRAME = 1024;
     private static final int MDCT_SIZE = 512;
+    /** "AT3S" */
+    private static final int STATE_MAGIC = 0x53335441;
+    private static final int STATE_VERSION = 1;
     private static final float[] mdct_window = new float[MDCT_SIZE];
     private static final VLC[] spectral_coeff_tab = new VLC[7];
     private Context ctx;
     private BitReader br;
+    /** the last frame output digital silence */
+    private boolean silent;
+    private final DecodeTrace trace = DecodeTrace.getInstance();
+    private final int traceSource = trace.newSource();
     private static boolean staticInitDone = false;
 
+    // decodeSpectrum scratch
+    private final int[] subbandVlcIndex = new int[32];
+    private final int[] sfIndex = new int[32];
+
     private static void initStaticData() {
         if (staticInitDone) {
             return;
@@ -76,6 +90,7 @@ public class Atrac3Decoder implements ICodec {
         for (int i = 0; i < 7; i++) {
             spectral_coeff_tab[i] = new VLC();
             spectral_coeff_tab[i].initVLCSparse(9, Atrac3Data.huff_tab_sizes[i], Atrac3Data.huff_bits[i], Atrac3Data.huff_codes[i], null);
+            spectral_coeff_tab[i].initMultiSymbol();
         }
 
         staticInitDone = true;
@@ -94,10 +109,9 @@ public class Atrac3Decoder implements ICodec {
         ctx.blockAlign = blockAlign;
 
         // initialize th MDCT transform
-        ctx.mdctCtx = new FFT();
-        ret = ctx.mdctCtx.mdctInit(9, true, 1.0 / 32768.0);
-        if (ret < 0) {
-            return ret;
+        ctx.mdctCtx = MdctPlan.get(9, true, 1.0 / 32768.0);
+        if (ctx.mdctCtx == null) {
+            return -1;
         }
 
         // init the joint-stereo decoding data
@@ -114,8 +128,7 @@ public class Atrac3Decoder implements ICodec {
             ctx.matrixCoeffIndexNext[i] = 3;
         }
 
-        ctx.gaincCtx = new Atrac();
-        ctx.gaincCtx.initGainCompensation(4, 3);
+        ctx.gaincCtx = Atrac.get(4, 3);
 
         for (int i = 0; i < ctx.units.length; i++) {
             ctx.units[i] = new ChannelUnit();
@@ -141,10 +154,8 @@ public class Atrac3Decoder implements ICodec {
             }
         }
 
+        // the windowing is done with the gain compensation
         ctx.mdctCtx.imdctCalc(output, outputOffset, input, inputOffset);
-
-        // Perform windowing on the output
-        vectorFmul(output, outputOffset, output, outputOffset, mdct_window, 0, MDCT_SIZE);
     }
 
     private static void initImdctWindow() {
@@ -305,9 +316,11 @@ public class Atrac3Decoder implements ICodec {
             }
         } else {
             // variable length coding (VLC)
+            // the symbols are read into mantissas first, two per lookup for short codes
+            spectral_coeff_tab[selector - 1].getVLC2(br, 3, mantissas, 0, numCodes);
             if (selector != 1) {
                 for (int i = 0; i < numCodes; i++) {
-                    int huffSymb = spectral_coeff_tab[selector - 1].getVLC2(br, 3);
+                    int huffSymb = mantissas[i];
                     huffSymb += 1;
                     int code = huffSymb >> 1;
                     if ((huffSymb & 1) != 0) {
@@ -316,8 +329,9 @@ public class Atrac3Decoder implements ICodec {
                     mantissas[i] = code;
                 }
             } else {
-                for (int i = 0; i < numCodes; i++) {
-                    int huffSymb = spectral_coeff_tab[selector - 1].getVLC2(br, 3);
+                // backward, a symbol is not overwritten before it is expanded
+                for (int i = numCodes - 1; i >= 0; i--) {
+                    int huffSymb = mantissas[i];
                     mantissas[i * 2] = mantissa_vlc_tab[huffSymb * 2];
                     mantissas[i * 2 + 1] = mantissa_vlc_tab[huffSymb * 2 + 1];
                 }
@@ -330,11 +344,7 @@ public class Atrac3Decoder implements ICodec {
      *
      * @return subband count, fix for broken specification/files
      */
-    private int decodeSpectrum(float[] output) {
-        int[] subbandVlcIndex = new int[32];
-        int[] sfIndex = new int[32];
-        int[] mantissas = new int[128];
-
+    private int decodeSpectrum(float[] output, int[] symbols) {
         int numSubbands = br.read(5); // number of coded subbands;
         int codingMode = br.read(1);  // coding Mode: 0 - VLC/ 1-CLC
 
@@ -350,30 +360,27 @@ public class Atrac3Decoder implements ICodec {
             }
         }
 
-        int i;
-        for (i = 0; i <= numSubbands; i++) {
-            int first = subband_tab[i];
-            int last = subband_tab[i + 1];
-
-            int subbandSize = last - first;
-
-            if (subbandVlcIndex[i] != 0) {
-                // decode spectral coefficients for this subband
-                // TODO: This can be done faster is several blocks share the
-                // same VLC selector (subband_vlc_index)
-                readQuantSpectralCoeffs(subbandVlcIndex[i], codingMode, mantissas, subbandSize);
-
-                // decode the scale factor for this subband
-                float scaleFactor = ff_atrac_sf_table[sfIndex[i]] * inv_max_quant[subbandVlcIndex[i]];
+        // the coefficients of consecutive subbands with the same selector
+        // are decoded and inverse quantized in one go
+        int i = 0;
+        while (i <= numSubbands) {
+            int selector = subbandVlcIndex[i];
+            int end = i + 1;
+            while (end <= numSubbands && subbandVlcIndex[end] == selector) {
+                end++;
+            }
 
-                // inverse quantize the coefficients
-                for (int j = 0; first < last; first++, j++) {
-                    output[first] = mantissas[j] * scaleFactor;
+            if (selector != 0) {
+                if (codingMode != 0) {
+                    decodeSubbandsClc(output, selector, i, end);
+                } else {
+                    decodeSubbandsVlc(output, symbols, selector, i, end);
                 }
             } else {
-                // this subband was not coded, so zero the entire subband
-                Arrays.fill(output, first, first + subbandSize, 0f);
+                // these subbands were not coded, so zero them
+                Arrays.fill(output, subband_tab[i], subband_tab[end], 0f);
             }
+            i = end;
         }
 
         // clear the subbands that were not coded
@@ -382,6 +389,82 @@ public class Atrac3Decoder implements ICodec {
         return numSubbands;
     }
 
+    /**
+     * Constant length coded subbands [from, to), as many mantissas per read as fit in 32 bits.
+     */
+    private void decodeSubbandsClc(float[] output, int selector, int from, int to) {
+        int numBits = clc_length_tab[selector];
+
+        for (int sb = from; sb < to; sb++) {
+            float scaleFactor = ff_atrac_sf_table[sfIndex[sb]] * inv_max_quant[selector];
+            int pos = subband_tab[sb];
+            int last = subband_tab[sb + 1];
+
+            if (selector > 1) {
+                int perRead = 32 / numBits;
+                int readBits = perRead * numBits;
+                for (; pos + perRead <= last; pos += perRead) {
+                    int codes = br.read(readBits) << (32 - readBits);
+                    for (int k = 0; k < perRead; k++, codes <<= numBits) {
+                        output[pos + k] = (codes >> (32 - numBits)) * scaleFactor; // sign extended by the shift
+                    }
+                }
+                for (; pos < last; pos++) {
+                    output[pos] = CodecUtils.signExtend(br.read(numBits), numBits) * scaleFactor;
+                }
+            } else {
+                // 8 codes of 4 bits, 2 mantissas each
+                for (; pos + 16 <= last; pos += 16) {
+                    int codes = br.read(32);
+                    for (int k = 0; k < 16; k += 2, codes <<= 4) {
+                        output[pos + k] = mantissa_clc_tab[(codes >>> 30)] * scaleFactor;
+                        output[pos + k + 1] = mantissa_clc_tab[(codes >>> 28) & 3] * scaleFactor;
+                    }
+                }
+                for (; pos < last; pos += 2) {
+                    int code = br.read(numBits);
+                    output[pos] = mantissa_clc_tab[code >> 2] * scaleFactor;
+                    output[pos + 1] = mantissa_clc_tab[code & 3] * scaleFactor;
+                }
+            }
+        }
+    }
+
+    /**
+     * Variable length coded subbands [from, to), the codes of all of them are read at once.
+     */
+    private void decodeSubbandsVlc(float[] output, int[] symbols, int selector, int from, int to) {
+        int first = subband_tab[from];
+        int numCodes = subband_tab[to] - first;
+        if (selector == 1) {
+            numCodes /= 2;
+        }
+        spectral_coeff_tab[selector - 1].getVLC2(br, 3, symbols, 0, numCodes);
+
+        int s = 0;
+        for (int sb = from; sb < to; sb++) {
+            float scaleFactor = ff_atrac_sf_table[sfIndex[sb]] * inv_max_quant[selector];
+            int last = subband_tab[sb + 1];
+
+            if (selector != 1) {
+                for (int pos = subband_tab[sb]; pos < last; pos++) {
+                    int huffSymb = symbols[s++] + 1;
+                    int code = huffSymb >> 1;
+                    if ((huffSymb & 1) != 0) {
+                        code = -code;
+                    }
+                    output[pos] = code * scaleFactor;
+                }
+            } else {
+                for (int pos = subband_tab[sb]; pos < last; pos += 2) {
+                    int huffSymb = symbols[s++];
+                    output[pos] = mantissa_vlc_tab[huffSymb * 2] * scaleFactor;
+                    output[pos + 1] = mantissa_vlc_tab[huffSymb * 2 + 1] * scaleFactor;
+                }
+            }
+        }
+    }
+
     /**
      * Combine the tonal band spectrum and regular band spectrum
      *
@@ -510,8 +593,10 @@ public class Atrac3Decoder implements ICodec {
      * @param channelNum channel number
      * @param codingMode the coding mode (JOINT_STEREO or regular stereo/mono)
      */
-    private int decodeChannelSoundUnit(ChannelUnit snd, float[] output, int channelNum, int codingMode) {
+    private int decodeChannelSoundUnit(Workspace work, ChannelUnit snd, float[] output, int channelNum, int codingMode) {
         int ret;
+        TonalComponent[] components = work.components[channelNum];
+        float[] spectrum = work.spectrum[channelNum];
         GainBlock gain1 = snd.gainBlock[snd.gcBlkSwitch];
         GainBlock gain2 = snd.gainBlock[1 - snd.gcBlkSwitch];
 
@@ -536,17 +621,17 @@ public class Atrac3Decoder implements ICodec {
             return ret;
         }
 
-        snd.numComponents = decodeTonalComponents(snd.components, snd.bandsCoded);
+        snd.numComponents = decodeTonalComponents(components, snd.bandsCoded);
 
         if (snd.numComponents < 0) {
             logger.log(Level.TRACE, "snd.numComponents: " + snd.numComponents);
             return snd.numComponents;
         }
 
-        int numSubbands = decodeSpectrum(snd.spectrum);
+        int numSubbands = decodeSpectrum(spectrum, work.spectrumSymbols);
 
         // Merge the decoded spectrum and tonal components
-        int lastTonal = addTonalComponents(snd.spectrum, snd.numComponents, snd.components);
+        int lastTonal = addTonalComponents(spectrum, snd.numComponents, components);
 
         // calculate number of used MLT/QMF bands according to the amount of coded
         // spectral lines
@@ -555,17 +640,29 @@ public class Atrac3Decoder implements ICodec {
             numBands = max((lastTonal + 256) >> 8, numBands);
         }
 
+        if (numBands < 0 && snd.prevFrameZero) {
+            // neither a spectrum nor an overlap, the time domain samples are silent
+            Arrays.fill(output, 0, SAMPLES_PER_FRAME, 0f);
+            snd.samplesZero = true;
+
+            snd.gcBlkSwitch ^= 1;
+            return 0;
+        }
+        snd.samplesZero = false;
+        snd.prevFrameZero = numBands < 0;
+
         // Reconstruct time domain samples
         for (int band = 0; band < 4; band++) {
             // Perform the IMDCT step without overlapping
             if (band <= numBands) {
-                imlt(snd.spectrum, band * 256, snd.imdctBuf, 0, (band & 1) != 0);
+                imlt(spectrum, band * 256, work.imdctBuf, 0, (band & 1) != 0);
+
+                // windowing, gain compensation and overlapping
+                ctx.gaincCtx.gainCompensation(work.imdctBuf, 0, mdct_window, 0, snd.prevFrame, band * 256, gain1.gBlock[band], gain2.gBlock[band], 256, output, band * 256);
             } else {
-                Arrays.fill(snd.imdctBuf, 0, 512, 0f);
+                // a silent band, only the overlap of the previous frame remains
+                ctx.gaincCtx.gainCompensationSilent(snd.prevFrame, band * 256, gain1.gBlock[band], 256, output, band * 256);
             }
-
-            // gain compensation and overlapping
-            ctx.gaincCtx.gainCompensation(snd.imdctBuf, 0, snd.prevFrame, band * 256, gain1.gBlock[band], gain2.gBlock[band], 256, output, band * 256);
         }
 
         // Swap the gain control buffers for the next frame
@@ -574,13 +671,13 @@ public class Atrac3Decoder implements ICodec {
         return 0;
     }
 
-    private int decodeFrame() {
+    private int decodeFrame(Workspace work) {
         int ret;
 
         if (ctx.codingMode == JOINT_STEREO) {
             // channel coupling mode
             // decode Sound Unit 1
-            ret = decodeChannelSoundUnit(ctx.units[0], ctx.samples[0], 0, JOINT_STEREO);
+            ret = decodeChannelSoundUnit(work, ctx.units[0], work.samples[0], 0, JOINT_STEREO);
             if (ret != 0) {
                 logger.log(Level.TRACE, "decodeChannelSoundUnit: " + ret);
                 return ret;
@@ -610,7 +707,7 @@ public class Atrac3Decoder implements ICodec {
             }
 
             // Decode sound Unit 2.
-            ret = decodeChannelSoundUnit(ctx.units[1], ctx.samples[1], 1, JOINT_STEREO);
+            ret = decodeChannelSoundUnit(work, ctx.units[1], work.samples[1], 1, JOINT_STEREO);
             br.setDirection(1);
             br.seek(ctx.blockAlign);
 
@@ -620,9 +717,15 @@ public class Atrac3Decoder implements ICodec {
             }
 
             // Reconstruct the channel coefficients
-            reverseMatrixing(ctx.samples[0], ctx.samples[1], ctx.matrixCoeffIndexPrev, ctx.matrixCoeffIndexNow);
+            reverseMatrixing(work.samples[0], work.samples[1], ctx.matrixCoeffIndexPrev, ctx.matrixCoeffIndexNow);
+
+            channelWeighting(work.samples[0], work.samples[1], ctx.weightingDelay);
 
-            channelWeighting(ctx.samples[0], ctx.samples[1], ctx.weightingDelay);
+            // the matrixing mixes the channels, they are silent together
+            if (!ctx.units[0].samplesZero || !ctx.units[1].samplesZero) {
+                ctx.units[0].samplesZero = false;
+                ctx.units[1].samplesZero = false;
+            }
         } else {
             // normal stereo mode or mono
             // Decode the channel sound units
@@ -630,7 +733,7 @@ public class Atrac3Decoder implements ICodec {
                 // Set the bitstream reader at the start of a channel sound unit
                 br.seek(i * ctx.blockAlign / ctx.channels);
 
-                ret = decodeChannelSoundUnit(ctx.units[i], ctx.samples[i], i, ctx.codingMode);
+                ret = decodeChannelSoundUnit(work, ctx.units[i], work.samples[i], i, ctx.codingMode);
                 if (ret != 0) {
                     logger.log(Level.TRACE, "decodeChannelSoundUnit: " + ret);
                     return ret;
@@ -638,35 +741,145 @@ public class Atrac3Decoder implements ICodec {
             }
         }
 
-        // Apply the iQMF synthesis filter
-        for (int i = 0; i < ctx.channels; i++) {
-            Atrac.iqmf(ctx.samples[i], 0, ctx.samples[i], 256, 256, ctx.samples[i], 0, ctx.units[i].delayBuf1, ctx.tempBuf);
-            Atrac.iqmf(ctx.samples[i], 768, ctx.samples[i], 512, 256, ctx.samples[i], 512, ctx.units[i].delayBuf2, ctx.tempBuf);
-            Atrac.iqmf(ctx.samples[i], 0, ctx.samples[i], 512, 512, ctx.samples[i], 0, ctx.units[i].delayBuf3, ctx.tempBuf);
+        return 0;
+    }
+
+    /**
+     * Apply the iQMF synthesis filter, the 4 bands of a channel to its output samples.
+     * a channel not in the output is not synthesized, neither is a silent one with silent delay buffers.
+     */
+    private void writeOutput(Workspace work, ByteBuffer outputMemory, int outputAddr) {
+        short[] pcm = work.pcm;
+        int outputChannels = ctx.outputChannels;
+        silent = true;
+        for (int i = 0; i < min(ctx.channels, outputChannels); i++) {
+            ChannelUnit unit = ctx.units[i];
+            if (unit.samplesZero && unit.delayZero) {
+                for (int j = i; j < SAMPLES_PER_FRAME * outputChannels; j += outputChannels) {
+                    pcm[j] = 0;
+                }
+                continue;
+            }
+            Atrac.iqmf(work.samples[i], 0, 256, unit.delayBuf1, unit.delayBuf2, unit.delayBuf3, pcm, i, outputChannels);
+            // a frame of zeros flushes the delay buffers
+            unit.delayZero = unit.samplesZero;
+            silent = false;
+        }
+        if (ctx.channels < outputChannels) {
+            // Convert decoded mono into output stereo
+            for (int i = 0; i < SAMPLES_PER_FRAME * 2; i += 2) {
+                pcm[i + 1] = pcm[i];
+            }
         }
 
-        return 0;
+        ShortBuffer writer = outputMemory.asShortBuffer();
+        writer.position(outputAddr);
+        writer.put(pcm, 0, SAMPLES_PER_FRAME * outputChannels);
     }
 
     @Override
     public int decode(ByteBuffer inputMemory, int inputAddr, int inputLength, ByteBuffer outputMemory, int outputAddr) {
+        DecodeEvent event = new DecodeEvent();
+        event.begin();
+
+        silent = false;
         br = new BitReader(inputMemory, inputAddr, inputLength);
         ctx.br = br;
 
-        int ret = decodeFrame();
+        Workspace work = Workspace.get();
+        int ret = decodeFrame(work);
         if (ret < 0) {
+            trace.record(traceSource, DecodeTrace.CODEC_ATRAC3, DecodeTrace.ERROR, inputAddr, br.getBitsRead(), ret, ctx.codingMode);
             return ret;
         }
 
-        writeOutput(ctx.samples, outputMemory, outputAddr, SAMPLES_PER_FRAME, ctx.channels, ctx.outputChannels);
+        writeOutput(work, outputMemory, outputAddr);
+
+        trace.record(traceSource, DecodeTrace.CODEC_ATRAC3, DecodeTrace.FRAME, inputAddr, br.getBitsRead(), ctx.codingMode, outputAddr);
 
-        logger.log(Level.TRACE, String.format("Bytes read 0x%X", ctx.br.getBytesRead()));
+        event.commit(DecodeEvent.ATRAC3, ctx.br.getBytesRead(), SAMPLES_PER_FRAME);
 
         return ctx.br.getBytesRead();
     }
 
+    /**
+     * the joint-stereo history and the channel units (the both for joint-stereo),
+     * see {@link ChannelUnit#write(CodecState.Writer)}.
+     */
+    @Override
+    public byte[] snapshot() {
+        if (ctx == null) {
+            throw new IllegalStateException("not initialized");
+        }
+        CodecState.Writer writer = new CodecState.Writer(STATE_MAGIC, STATE_VERSION);
+        writer.writeByte(ctx.channels);
+        writer.writeByte(ctx.codingMode);
+        writer.writeBytes(ctx.matrixCoeffIndexPrev, 0, 4);
+        writer.writeBytes(ctx.matrixCoeffIndexNow, 0, 4);
+        writer.writeBytes(ctx.matrixCoeffIndexNext, 0, 4);
+        writer.writeBytes(ctx.weightingDelay, 0, 6);
+        for (ChannelUnit unit : ctx.units) {
+            unit.write(writer);
+        }
+        writer.writeBoolean(silent);
+        return writer.toByteArray();
+    }
+
+    @Override
+    public void restore(byte[] state) {
+        if (ctx == null) {
+            throw new IllegalStateException("not initialized");
+        }
+        CodecState.Reader reader = new CodecState.Reader(state, STATE_MAGIC, STATE_VERSION);
+        int[] matrixCoeffIndex = new int[12];
+        int[] weightingDelay = new int[6];
+        ChannelUnit[] units = new ChannelUnit[ctx.units.length];
+        boolean silent;
+        try {
+            if (reader.readByte() != ctx.channels || reader.readByte() != ctx.codingMode) {
+                throw new IllegalArgumentException("parameters differ");
+            }
+            reader.readBytes(matrixCoeffIndex, 0, 12);
+            reader.readBytes(weightingDelay, 0, 6);
+            for (int i = 0; i < units.length; i++) {
+                units[i] = new ChannelUnit();
+                units[i].read(reader);
+            }
+            silent = reader.readBoolean();
+            reader.end();
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("truncated", e);
+        }
+        for (int v : matrixCoeffIndex) {
+            if (v > 3) {
+                throw new IllegalArgumentException("matrixCoeffIndex: " + v);
+            }
+        }
+        for (int v : weightingDelay) {
+            if (v > 7) {
+                throw new IllegalArgumentException("weightingDelay: " + v);
+            }
+        }
+        System.arraycopy(matrixCoeffIndex, 0, ctx.matrixCoeffIndexPrev, 0, 4);
+        System.arraycopy(matrixCoeffIndex, 4, ctx.matrixCoeffIndexNow, 0, 4);
+        System.arraycopy(matrixCoeffIndex, 8, ctx.matrixCoeffIndexNext, 0, 4);
+        System.arraycopy(weightingDelay, 0, ctx.weightingDelay, 0, 6);
+        System.arraycopy(units, 0, ctx.units, 0, units.length);
+        this.silent = silent;
+    }
+
     @Override
     public int getNumberOfSamples() {
         return SAMPLES_PER_FRAME;
     }
+
+    @Override
+    public int getTraceSource() {
+        return traceSource;
+    }
+
+    @Override
+    public boolean isSilent() {
+        return silent;
+    }
 }
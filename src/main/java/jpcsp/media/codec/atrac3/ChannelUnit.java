@@ -17,6 +17,10 @@
 
 package jpcsp.media.codec.atrac3;
 
+import jpcsp.media.codec.atrac3plus.Atrac.IqmfDelay;
+import jpcsp.media.codec.atrac3plus.AtracGainInfo;
+import jpcsp.media.codec.util.CodecState;
+
 
 public class ChannelUnit {
 
@@ -24,23 +28,64 @@ public class ChannelUnit {
     public int numComponents;
     public final float[] prevFrame = new float[Atrac3Decoder.SAMPLES_PER_FRAME];
     public int gcBlkSwitch;
-    public final TonalComponent[] components = new TonalComponent[64];
     public final GainBlock[] gainBlock = new GainBlock[2];
 
-    public final float[] spectrum = new float[Atrac3Decoder.SAMPLES_PER_FRAME];
-    public final float[] imdctBuf = new float[Atrac3Decoder.SAMPLES_PER_FRAME];
-
     // qmf delay buffers
-    public final float[] delayBuf1 = new float[46];
-    public final float[] delayBuf2 = new float[46];
-    public final float[] delayBuf3 = new float[46];
+    public final IqmfDelay delayBuf1 = new IqmfDelay();
+    public final IqmfDelay delayBuf2 = new IqmfDelay();
+    public final IqmfDelay delayBuf3 = new IqmfDelay();
+
+    // silence tracking
+    /** prevFrame is all zero */
+    public boolean prevFrameZero = true;
+    /** the samples of the last frame before the iqmf are all zero */
+    public boolean samplesZero;
+    /** the qmf delay buffers are all zero */
+    public boolean delayZero = true;
 
     public ChannelUnit() {
-        for (int i = 0; i < components.length; i++) {
-            components[i] = new TonalComponent();
-        }
         for (int i = 0; i < gainBlock.length; i++) {
             gainBlock[i] = new GainBlock();
         }
     }
+
+    /**
+     * The state carried over to the next frame, the gain control of the both frames,
+     * the overlap unless {@link #prevFrameZero} and the qmf delays unless {@link #delayZero}.
+     */
+    void write(CodecState.Writer writer) {
+        writer.writeByte(gcBlkSwitch);
+        writer.writeBooleans(new boolean[] {prevFrameZero, samplesZero, delayZero});
+        for (GainBlock block : gainBlock) {
+            for (AtracGainInfo info : block.gBlock) {
+                info.write(writer);
+            }
+        }
+        if (!prevFrameZero) {
+            writer.writeFloats(prevFrame, 0, prevFrame.length);
+        }
+        delayBuf1.write(writer, delayZero);
+        delayBuf2.write(writer, delayZero);
+        delayBuf3.write(writer, delayZero);
+    }
+
+    /** into a new unit */
+    void read(CodecState.Reader reader) {
+        gcBlkSwitch = reader.readByte() & 1;
+        int flags = reader.readByte();
+        prevFrameZero = (flags & 1) != 0;
+        samplesZero = (flags & 2) != 0;
+        delayZero = (flags & 4) != 0;
+        for (GainBlock block : gainBlock) {
+            for (AtracGainInfo info : block.gBlock) {
+                info.read(reader);
+            }
+        }
+        if (!prevFrameZero) {
+            reader.readFloats(prevFrame, 0, prevFrame.length);
+        }
+        delayBuf1.read(reader, delayZero);
+        delayBuf2.read(reader, delayZero);
+        delayBuf3.read(reader, delayZero);
+    }
 }
@@ -18,8 +18,8 @@
 package jpcsp.media.codec.atrac3;
 
 import jpcsp.media.codec.atrac3plus.Atrac;
+import jpcsp.media.codec.transform.MdctPlan;
 import jpcsp.media.codec.util.BitReader;
-import jpcsp.media.codec.util.FFT;
 
 
 public class Context {
@@ -35,11 +35,8 @@ public class Context {
     final int[] matrixCoeffIndexNow = new int[4];
     final int[] matrixCoeffIndexNext = new int[4];
     final int[] weightingDelay = new int[6];
-    // data buffers
-    public final float[] tempBuf = new float[1070];
+    // the data buffers are in Workspace
 
     public Atrac gaincCtx;
-    public FFT mdctCtx;
-
-    public final float[][] samples = new float[2][Atrac3Decoder.SAMPLES_PER_FRAME];
+    public MdctPlan mdctCtx;
 }
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package jpcsp.media.codec.atrac3;
+
+import static jpcsp.media.codec.atrac3.Atrac3Decoder.SAMPLES_PER_FRAME;
+
+
+/**
+ * Per thread work buffers of the decoder.
+ * <p>
+ * they are filled and consumed in a {@link Atrac3Decoder#decode}, so the decoders
+ * on a thread share them and a {@link Context} keeps only the state carried over
+ * to the next frame. see {@link jpcsp.media.codec.transform.Scratch}.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+public final class Workspace {
+
+    private static final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(Workspace::new);
+
+    /** @return the buffers of the current thread */
+    public static Workspace get() {
+        return workspaces.get();
+    }
+
+    /** tonal components of the channels */
+    public final TonalComponent[][] components = new TonalComponent[2][64];
+    /** spectrum of the channels */
+    public final float[][] spectrum = new float[2][SAMPLES_PER_FRAME];
+    /** output of the IMDCT of a band */
+    public final float[] imdctBuf = new float[512];
+    /** the mantissas of the subbands decoded at once */
+    final int[] spectrumSymbols = new int[SAMPLES_PER_FRAME];
+    /** time domain samples of the channels before the iqmf */
+    public final float[][] samples = new float[2][SAMPLES_PER_FRAME];
+    /** the interleaved pcm of a frame */
+    public final short[] pcm = new short[SAMPLES_PER_FRAME * 2];
+
+    private Workspace() {
+        for (TonalComponent[] channel : components) {
+            for (int i = 0; i < channel.length; i++) {
+                channel[i] = new TonalComponent();
+            }
+        }
+    }
+}
@@ -17,13 +17,25 @@
 
 package jpcsp.media.codec.atrac3plus;
 
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jpcsp.media.codec.transform.Scratch;
+import jpcsp.media.codec.util.CodecState;
+
 import static java.lang.Math.pow;
+import static jpcsp.media.codec.util.CodecUtils.convertSampleFloatToInt16;
+import static jpcsp.media.codec.util.FloatDSP.vectorFmul;
+import static jpcsp.media.codec.util.FloatDSP.vectorFmulAdd;
 
 
 public class Atrac {
 
     public static final float[] ff_atrac_sf_table = new float[64];
     private static final float[] qmf_window = new float[48];
+    /** the even taps of {@link #qmf_window} */
+    private static final float[] qmf_taps = new float[24];
     private static final float[] qmf_48tap_half = new float[] {
             -0.00001461907f, -0.00009205479f, -0.000056157569f, 0.00030117269f,
             0.0002422519f, -0.00085293897f, -0.0005205574f, 0.0020340169f,
@@ -42,6 +54,28 @@ public class Atrac {
     private int locScale;
     /** size of location code in samples */
     private int locSize;
+    /**
+     * the gain levels of an interpolation, locSize of them for each level
+     * gainTab1[lev] and step gainTab2[inc] at (lev * 31 + inc) * locSize
+     */
+    private float[] gainRamps;
+
+    /** initialized ones by the parameters */
+    private static final Map<Integer, Atrac> gainCompensations = new ConcurrentHashMap<>();
+
+    /**
+     * the tables depend on the parameters only, the decoders share them.
+     *
+     * @return an initialized one, shared
+     * @see #initGainCompensation(int, int)
+     */
+    public static Atrac get(int id2expOffset, int locScale) {
+        return gainCompensations.computeIfAbsent(id2expOffset << 8 | locScale, k -> {
+            Atrac atrac = new Atrac();
+            atrac.initGainCompensation(id2expOffset, locScale);
+            return atrac;
+        });
+    }
 
     public static void generateTables() {
         // Generate scale factors
@@ -58,6 +92,9 @@ public class Atrac {
                 qmf_window[i] = s;
                 qmf_window[47 - i] = s;
             }
+            for (int i = 0; i < 24; i++) {
+                qmf_taps[i] = qmf_window[i * 2];
+            }
         }
     }
 
@@ -75,75 +112,202 @@ public class Atrac {
         for (int i = -15; i < 16; i++) {
             gainTab2[i + 15] = (float) Math.pow(2, -1.0 / locSize * i);
         }
+
+        // Generate the interpolations from every level by every step
+        gainRamps = new float[gainTab1.length * gainTab2.length * locSize];
+        for (int lev = 0; lev < gainTab1.length; lev++) {
+            for (int inc = 0; inc < gainTab2.length; inc++) {
+                float gain = gainTab1[lev];
+                for (int k = 0; k < locSize; k++) {
+                    gainRamps[(lev * gainTab2.length + inc) * locSize + k] = gain;
+                    gain *= gainTab2[inc];
+                }
+            }
+        }
     }
 
     public void gainCompensation(float[] in, int inOffset, float[] prev, int prevOffset, AtracGainInfo gcNow, AtracGainInfo gcNext, int numSamples, float[] out, int outOffset) {
+        gainCompensation(in, inOffset, null, 0, prev, prevOffset, gcNow, gcNext, numSamples, out, outOffset);
+    }
+
+    /**
+     * Gain compensation and overlapping, of in windowed by window when it is not null.
+     *
+     * @param in     2 * numSamples
+     * @param window 2 * numSamples, null for none
+     */
+    public void gainCompensation(float[] in, int inOffset, float[] window, int windowOffset, float[] prev, int prevOffset, AtracGainInfo gcNow, AtracGainInfo gcNext, int numSamples, float[] out, int outOffset) {
         float gcScale = (gcNext.numPoints != 0 ? gainTab1[gcNext.levCode[0]] : 1f);
 
         if (gcNow.numPoints == 0) {
-            for (int pos = 0; pos < numSamples; pos++) {
-                out[outOffset + pos] = in[inOffset + pos] * gcScale + prev[prevOffset + pos];
-            }
+            overlap(in, inOffset, window, windowOffset, prev, prevOffset, gcScale, out, outOffset, numSamples);
         } else {
             int pos = 0;
 
             for (int i = 0; i < gcNow.numPoints; i++) {
                 int lastpos = gcNow.locCode[i] << locScale;
 
-                float lev = gainTab1[gcNow.levCode[i]];
-                float gainInc = gainTab2[(i + 1 < gcNow.numPoints ? gcNow.levCode[i + 1] : id2expOffset) - gcNow.levCode[i] + 15];
+                int lev = gcNow.levCode[i];
+                int gainInc = (i + 1 < gcNow.numPoints ? gcNow.levCode[i + 1] : id2expOffset) - lev + 15;
 
                 // apply constant gain level and overlap
+                float gain = gainTab1[lev];
                 for (; pos < lastpos; pos++) {
-                    out[outOffset + pos] = (in[inOffset + pos] * gcScale + prev[prevOffset + pos]) * lev;
+                    float x = window == null ? in[inOffset + pos] : in[inOffset + pos] * window[windowOffset + pos];
+                    out[outOffset + pos] = (x * gcScale + prev[prevOffset + pos]) * gain;
                 }
 
                 // interpolate between two different gain levels
+                int ramp = (lev * gainTab2.length + gainInc) * locSize - pos;
                 for (; pos < lastpos + locSize; pos++) {
-                    out[outOffset + pos] = (in[inOffset + pos] * gcScale + prev[prevOffset + pos]) * lev;
-                    lev *= gainInc;
+                    float x = window == null ? in[inOffset + pos] : in[inOffset + pos] * window[windowOffset + pos];
+                    out[outOffset + pos] = (x * gcScale + prev[prevOffset + pos]) * gainRamps[ramp + pos];
                 }
             }
 
-            for (; pos < numSamples; pos++) {
-                out[outOffset + pos] = in[inOffset + pos] * gcScale + prev[prevOffset + pos];
-            }
+            overlap(in, inOffset + pos, window, windowOffset + pos, prev, prevOffset + pos, gcScale, out, outOffset + pos, numSamples - pos);
         }
 
         // copy the overlapping part into the delay buffer
-        System.arraycopy(in, inOffset + numSamples, prev, prevOffset, numSamples);
+        if (window == null) {
+            System.arraycopy(in, inOffset + numSamples, prev, prevOffset, numSamples);
+        } else {
+            vectorFmul(prev, prevOffset, in, inOffset + numSamples, window, windowOffset + numSamples, numSamples);
+        }
     }
 
-    public static void iqmf(float[] inlo, int inloOffset, float[] inhi, int inhiOffset, int nIn, float[] out, int outOffset, float[] delayBuf, float[] temp) {
-        System.arraycopy(delayBuf, 0, temp, 0, 46);
+    /**
+     * Gain compensation and overlapping of a block whose input is all zero,
+     * out is prev with the gain of gcNow applied and prev is cleared.
+     */
+    public void gainCompensationSilent(float[] prev, int prevOffset, AtracGainInfo gcNow, int numSamples, float[] out, int outOffset) {
+        int pos = 0;
+
+        for (int i = 0; i < gcNow.numPoints; i++) {
+            int lastpos = gcNow.locCode[i] << locScale;
+
+            int lev = gcNow.levCode[i];
+            int gainInc = (i + 1 < gcNow.numPoints ? gcNow.levCode[i + 1] : id2expOffset) - lev + 15;
+
+            float gain = gainTab1[lev];
+            for (; pos < lastpos; pos++) {
+                out[outOffset + pos] = prev[prevOffset + pos] * gain;
+            }
+
+            int ramp = (lev * gainTab2.length + gainInc) * locSize - pos;
+            for (; pos < lastpos + locSize; pos++) {
+                out[outOffset + pos] = prev[prevOffset + pos] * gainRamps[ramp + pos];
+            }
+        }
+
+        System.arraycopy(prev, prevOffset + pos, out, outOffset + pos, numSamples - pos);
+        Arrays.fill(prev, prevOffset, prevOffset + numSamples, 0f);
+    }
 
-        // loop1
-        for (int i = 0; i < nIn; i += 2) {
-            temp[46 + 2 * i + 0] = inlo[inloOffset + i] + inhi[inhiOffset + i];
-            temp[46 + 2 * i + 1] = inlo[inloOffset + i] - inhi[inhiOffset + i];
-            temp[46 + 2 * i + 2] = inlo[inloOffset + i + 1] + inhi[inhiOffset + i + 1];
-            temp[46 + 2 * i + 3] = inlo[inloOffset + i + 1] - inhi[inhiOffset + i + 1];
+    /** out = in * window * gcScale + prev, without the multiplications by 1 */
+    private static void overlap(float[] in, int inOffset, float[] window, int windowOffset, float[] prev, int prevOffset, float gcScale, float[] out, int outOffset, int len) {
+        if (gcScale == 1f) {
+            if (window == null) {
+                for (int i = 0; i < len; i++) {
+                    out[outOffset + i] = in[inOffset + i] + prev[prevOffset + i];
+                }
+            } else {
+                vectorFmulAdd(out, outOffset, in, inOffset, window, windowOffset, prev, prevOffset, len);
+            }
+        } else {
+            if (window == null) {
+                for (int i = 0; i < len; i++) {
+                    out[outOffset + i] = in[inOffset + i] * gcScale + prev[prevOffset + i];
+                }
+            } else {
+                for (int i = 0; i < len; i++) {
+                    out[outOffset + i] = in[inOffset + i] * window[windowOffset + i] * gcScale + prev[prevOffset + i];
+                }
+            }
         }
+    }
 
-        // loop2
-        int p1 = 0;
-        for (int j = nIn; j != 0; j--) {
-            float s1 = 0f;
-            float s2 = 0f;
+    /** delay line of a 2 band iqmf, a ring of the last 48 values stored twice */
+    public static class IqmfDelay {
 
-            for (int i = 0; i < 48; i += 2) {
-                s1 += temp[p1 + i] * qmf_window[i];
-                s2 += temp[p1 + i + 1] * qmf_window[i + 1];
+        public final float[] ring = new float[96];
+        public int pos;
+
+        /** appends the interleaved pair, and returns where the 48 taps window starts */
+        int push(float lo, float hi) {
+            int p = pos;
+            ring[p] = ring[p + 48] = lo + hi;
+            ring[p + 1] = ring[p + 49] = lo - hi;
+            pos = p + 2 == 48 ? 0 : p + 2;
+            return p + 2;
+        }
+
+        /** @param zero the ring is all zero, it is not written */
+        public void write(CodecState.Writer writer, boolean zero) {
+            writer.writeByte(pos);
+            if (!zero) {
+                writer.writeFloats(ring, 0, 48);
             }
+        }
 
-            out[outOffset + 0] = s2;
-            out[outOffset + 1] = s1;
+        public void read(CodecState.Reader reader, boolean zero) {
+            pos = reader.readByte();
+            if (pos >= 48 || (pos & 1) != 0) {
+                throw new IllegalArgumentException("pos: " + pos);
+            }
+            if (zero) {
+                Arrays.fill(ring, 0f);
+            } else {
+                reader.readFloats(ring, 0, 48);
+                System.arraycopy(ring, 0, ring, 48, 48);
+            }
+        }
+    }
 
-            p1 += 2;
-            outOffset += 2;
+    /**
+     * one output pair of a 2 band iqmf, v[o] and v[o + 1].
+     * every other tap of the symmetric window is qmf_window[i] = qmf_window[47 - i],
+     * so both sums use the 24 even taps, s2 from the end.
+     */
+    private static void iqmf(IqmfDelay delay, float lo, float hi, float[] v, int o) {
+        float[] r = delay.ring;
+        int w = delay.push(lo, hi);
+        float s1 = 0f;
+        float s2 = 0f;
+        for (int k = 0; k < 24; k += 4, w += 8) {
+            s1 += r[w + 0] * qmf_taps[k + 0];
+            s2 += r[w + 1] * qmf_taps[23 - k];
+            s1 += r[w + 2] * qmf_taps[k + 1];
+            s2 += r[w + 3] * qmf_taps[22 - k];
+            s1 += r[w + 4] * qmf_taps[k + 2];
+            s2 += r[w + 5] * qmf_taps[21 - k];
+            s1 += r[w + 6] * qmf_taps[k + 3];
+            s2 += r[w + 7] * qmf_taps[20 - k];
         }
+        v[o + 0] = s2;
+        v[o + 1] = s1;
+    }
 
-        // Update the delay buffer.
-        System.arraycopy(temp, nIn * 2, delayBuf, 0, 46);
+    /**
+     * The 4 band iqmf tree of atrac3 in one pass, the bands 0 + 1 and 3 + 2
+     * then the two halves, and writes the pcm.
+     *
+     * @param in 4 bands of nIn samples
+     * @param out pcm at outOffset, outStride apart
+     */
+    public static void iqmf(float[] in, int inOffset, int nIn, IqmfDelay delay1, IqmfDelay delay2, IqmfDelay delay3, short[] out, int outOffset, int outStride) {
+        float[] v = Scratch.floats(8);
+        int band1 = inOffset + nIn;
+        int band2 = band1 + nIn;
+        int band3 = band2 + nIn;
+        for (int i = 0; i < nIn; i++) {
+            iqmf(delay1, in[inOffset + i], in[band1 + i], v, 0);
+            iqmf(delay2, in[band3 + i], in[band2 + i], v, 2);
+            iqmf(delay3, v[0], v[2], v, 4);
+            iqmf(delay3, v[1], v[3], v, 6);
+            for (int k = 4; k < 8; k++, outOffset += outStride) {
+                out[outOffset] = convertSampleFloatToInt16(v[k]);
+            }
+        }
     }
 }
@@ -19,11 +19,16 @@ package jpcsp.media.codec.atrac3plus;
 
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 
+import jpcsp.media.codec.DecodeEvent;
+import jpcsp.media.codec.DecodeStageEvent;
+import jpcsp.media.codec.DecodeTrace;
 import jpcsp.media.codec.ICodec;
+import jpcsp.media.codec.transform.MdctPlan;
 import jpcsp.media.codec.util.BitReader;
-import jpcsp.media.codec.util.FFT;
+import jpcsp.media.codec.util.CodecState;
 
 import static java.lang.System.getLogger;
 import static jpcsp.media.codec.util.CodecUtils.writeOutput;
@@ -55,7 +60,14 @@ public class Atrac3plusDecoder implements ICodec {
     public static final int ATRAC3P_FRAME_SAMPLES = ATRAC3P_SUBBANDS * ATRAC3P_SUBBAND_SAMPLES;
     /** length of the prototype FIR of the PQF */
     public static final int ATRAC3P_PQF_FIR_LEN = 12;
+    /** "A3PS" */
+    private static final int STATE_MAGIC = 0x53503341;
+    private static final int STATE_VERSION = 2;
     private Context ctx;
+    /** the last frame output digital silence */
+    private boolean silent;
+    private final DecodeTrace trace = DecodeTrace.getInstance();
+    private final int traceSource = trace.newSource();
 
     @Override
     public int init(int bytesPerFrame, int channels, int outputChannels, int codingMode) {
@@ -64,22 +76,15 @@ public class Atrac3plusDecoder implements ICodec {
         ctx = new Context();
         ctx.outputChannels = outputChannels;
         ctx.dsp = new Atrac3plusDsp();
-        for (int i = 0; i < ctx.numChannelBlocks; i++) {
-            ctx.channelUnits[i] = new ChannelUnit();
-            ctx.channelUnits[i].setDsp(ctx.dsp);
-        }
 
         // initialize IPQF
-        ctx.ipqfDctCtx = new FFT();
-        ctx.ipqfDctCtx.mdctInit(5, true, 31.0 / 32768.9);
+        ctx.ipqfDctCtx = MdctPlan.get(5, true, 31.0 / 32768.9);
 
-        ctx.mdctCtx = new FFT();
-        ctx.dsp.initImdct(ctx.mdctCtx);
+        ctx.mdctCtx = ctx.dsp.initImdct();
 
         Atrac3plusDsp.initWaveSynth();
 
-        ctx.gaincCtx = new Atrac();
-        ctx.gaincCtx.initGainCompensation(6, 2);
+        ctx.gaincCtx = Atrac.get(6, 2);
 
         return 0;
     }
@@ -99,28 +104,45 @@ public class Atrac3plusDecoder implements ICodec {
             return 0;
         }
 
+        DecodeEvent event = new DecodeEvent();
+        event.begin();
+
+        Workspace work = Workspace.get();
+        silent = false;
+        boolean silentUnits = true;
         ctx.br = new BitReader(inputMemory, inputAddr, inputLength);
         if (ctx.br.readBool()) {
             logger.log(Level.ERROR, "Invalid start bit");
+            trace.record(traceSource, DecodeTrace.CODEC_ATRAC3PLUS, DecodeTrace.ERROR, inputAddr, ctx.br.getBitsRead(), AT3P_ERROR, 0);
             return AT3P_ERROR;
         }
 
         int chBlock = 0;
         int channelsToProcess;
+        // 2 bits per channel unit
+        int unitTypes = 0;
         while (ctx.br.getBitsLeft() >= 2) {
             int chUnitId = ctx.br.read(2);
             if (chUnitId == CH_UNIT_TERMINATOR) {
                 break;
             }
+            unitTypes |= chUnitId << (chBlock * 2);
             if (chUnitId == CH_UNIT_EXTENSION) {
                 logger.log(Level.WARNING, "Non implemented channel unit extension");
+                trace.record(traceSource, DecodeTrace.CODEC_ATRAC3PLUS, DecodeTrace.ERROR, inputAddr, ctx.br.getBitsRead(), AT3P_ERROR, unitTypes);
                 return AT3P_ERROR;
             }
 
-            if (chBlock >= ctx.channelUnits.length || ctx.channelUnits[chBlock] == null) {
+            if (chBlock >= ctx.numChannelBlocks) {
                 logger.log(Level.ERROR, "Too many channel blocks");
+                trace.record(traceSource, DecodeTrace.CODEC_ATRAC3PLUS, DecodeTrace.ERROR, inputAddr, ctx.br.getBitsRead(), AT3P_ERROR, unitTypes);
                 return AT3P_ERROR;
             }
+            if (ctx.channelUnits[chBlock] == null) {
+                // a stereo stream uses one unit only
+                ctx.channelUnits[chBlock] = new ChannelUnit();
+                ctx.channelUnits[chBlock].setDsp(ctx.dsp);
+            }
 
             ctx.channelUnits[chBlock].setBitReader(ctx.br);
 
@@ -128,27 +150,105 @@ public class Atrac3plusDecoder implements ICodec {
             channelsToProcess = chUnitId + 1;
             ctx.channelUnits[chBlock].setNumChannels(channelsToProcess);
 
-            ret = ctx.channelUnits[chBlock].decode();
+            DecodeStageEvent stage = new DecodeStageEvent();
+            stage.begin();
+            ret = ctx.channelUnits[chBlock].decode(work);
             if (ret < 0) {
                 logger.log(Level.INFO, "ctx.channelUnits[chBlock].decode(): " + ret);
+                trace.record(traceSource, DecodeTrace.CODEC_ATRAC3PLUS, DecodeTrace.ERROR, inputAddr, ctx.br.getBitsRead(), ret, unitTypes);
                 return ret;
             }
+            stage.commit(DecodeEvent.ATRAC3PLUS, "ChannelUnit.decode", chBlock);
 
-            ctx.channelUnits[chBlock].decodeResidualSpectrum(ctx.samples);
-            ctx.channelUnits[chBlock].reconstructFrame(ctx);
+            stage = new DecodeStageEvent();
+            stage.begin();
+            ctx.channelUnits[chBlock].decodeResidualSpectrum(work);
+            stage.commit(DecodeEvent.ATRAC3PLUS, "decodeResidualSpectrum", chBlock);
 
-            writeOutput(ctx.outpBuf, outputMemory, outputAddr, ATRAC3P_FRAME_SAMPLES, channelsToProcess, ctx.outputChannels);
+            ctx.channelUnits[chBlock].reconstructFrame(ctx, work);
+            silentUnits &= ctx.channelUnits[chBlock].isSilent();
+
+            writeOutput(work.outpBuf, outputMemory, outputAddr, ATRAC3P_FRAME_SAMPLES, channelsToProcess, ctx.outputChannels);
 
             chBlock++;
         }
 
-        logger.log(Level.TRACE, String.format("Bytes read 0x%X", ctx.br.getBytesRead()));
+        silent = chBlock > 0 && silentUnits;
+
+        trace.record(traceSource, DecodeTrace.CODEC_ATRAC3PLUS, DecodeTrace.FRAME, inputAddr, ctx.br.getBitsRead(), unitTypes, outputAddr);
+
+        event.commit(DecodeEvent.ATRAC3PLUS, ctx.br.getBytesRead(), ATRAC3P_FRAME_SAMPLES);
 
         return ctx.br.getBytesRead();
     }
 
+    /**
+     * the channel units' contexts, see {@link ChannelUnitContext#write(CodecState.Writer)}.
+     * the units not used yet are not written.
+     * the work buffers are cleared at the next frame, they are not a state.
+     */
+    @Override
+    public byte[] snapshot() {
+        if (ctx == null) {
+            throw new IllegalStateException("not initialized");
+        }
+        CodecState.Writer writer = new CodecState.Writer(STATE_MAGIC, STATE_VERSION);
+        writer.writeByte(ctx.outputChannels);
+        writer.writeByte(ctx.numChannelBlocks);
+        for (int i = 0; i < ctx.numChannelBlocks; i++) {
+            writer.writeBoolean(ctx.channelUnits[i] != null);
+            if (ctx.channelUnits[i] != null) {
+                ctx.channelUnits[i].ctx.write(writer);
+            }
+        }
+        writer.writeBoolean(silent);
+        return writer.toByteArray();
+    }
+
+    @Override
+    public void restore(byte[] state) {
+        if (ctx == null) {
+            throw new IllegalStateException("not initialized");
+        }
+        CodecState.Reader reader = new CodecState.Reader(state, STATE_MAGIC, STATE_VERSION);
+        ChannelUnit[] units = new ChannelUnit[ctx.numChannelBlocks];
+        boolean silent;
+        try {
+            if (reader.readByte() != ctx.outputChannels || reader.readByte() != ctx.numChannelBlocks) {
+                throw new IllegalArgumentException("parameters differ");
+            }
+            for (int i = 0; i < units.length; i++) {
+                if (reader.readBoolean()) {
+                    units[i] = new ChannelUnit();
+                    units[i].ctx.read(reader);
+                }
+            }
+            silent = reader.readBoolean();
+            reader.end();
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("truncated", e);
+        }
+        for (int i = 0; i < units.length; i++) {
+            if (units[i] != null) {
+                units[i].setDsp(ctx.dsp);
+            }
+            ctx.channelUnits[i] = units[i];
+        }
+        this.silent = silent;
+    }
+
     @Override
     public int getNumberOfSamples() {
         return ATRAC3P_FRAME_SAMPLES;
     }
+
+    @Override
+    public int getTraceSource() {
+        return traceSource;
+    }
+
+    @Override
+    public boolean isSilent() {
+        return silent;
+    }
 }
@@ -20,7 +20,8 @@ package jpcsp.media.codec.atrac3plus;
 import java.util.Arrays;
 
 import jpcsp.media.codec.atrac3plus.ChannelUnitContext.IPQFChannelContext;
-import jpcsp.media.codec.util.FFT;
+import jpcsp.media.codec.transform.MdctPlan;
+import jpcsp.media.codec.transform.Scratch;
 import jpcsp.media.codec.util.SineWin;
 
 import static java.lang.Math.cos;
@@ -52,6 +53,8 @@ public class Atrac3plusDsp {
     private static final float[] hann_window = new float[256];
     /** scalefactors for quantized amplitudes */
     private static final float[] amp_sf_tab = new float[64];
+    /** window of a region without Hann windowing */
+    private static final float[] unit_window = new float[128];
     private static final double TWOPI = 2 * Math.PI;
 
     /**
@@ -268,12 +271,6 @@ public class Atrac3plusDsp {
             0, 8, 12, 16, 18, 20, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32
     };
 
-    /** lookup table for fast modulo 23 op required for cyclic buffers of the IPQF */
-    static final int[] mod23_lut = new int[] {
-            23, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11,
-            12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23, 0
-    };
-
     /** First half of the 384-tap IPQF filtering coefficients. */
     static final float[][] ipqf_coeffs1 = new float[][] {
             {-5.8336207e-7f, -8.0604229e-7f, -4.2005411e-7f, -4.4400572e-8f,
@@ -382,11 +379,11 @@ public class Atrac3plusDsp {
         return (ph & 0x1F) << 6;
     }
 
-    public void initImdct(FFT mdctCtx) {
+    public MdctPlan initImdct() {
         SineWin.initFfSineWindows();
 
         // Initialize the MDCT transform
-        mdctCtx.mdctInit(8, true, -1.0);
+        return MdctPlan.get(8, true, -1.0);
     }
 
     public static void initWaveSynth() {
@@ -400,6 +397,8 @@ public class Atrac3plusDsp {
             hann_window[i] = (float) ((1.0 - cos(TWOPI * i / 256)) * 0.5);
         }
 
+        Arrays.fill(unit_window, 1f);
+
         // generate amplitude scalefactors table
         for (int i = 0; i < 64; i++) {
             amp_sf_tab[i] = (float) pow(2.0, ((double) (i - 3)) / 4.0);
@@ -453,7 +452,7 @@ public class Atrac3plusDsp {
         }
     }
 
-    public void imdct(FFT mdctCtx, float[] in, int inOffset, float[] out, int outOffset, int windId, int sb) {
+    public void imdct(MdctPlan mdctCtx, float[] in, int inOffset, float[] out, int outOffset, int windId, int sb) {
         if ((sb & 1) != 0) {
             for (int i = 0; i < ATRAC3P_SUBBAND_SAMPLES / 2; i++) {
                 float tmp = in[inOffset + i];
@@ -496,34 +495,49 @@ public class Atrac3plusDsp {
      * @param out         [out]         receives synthesized data
      */
     private void wavesSynth(WaveSynthParams synthParams, WavesData wavesInfo, WaveEnvelope envelope, boolean phaseShift, int regOffset, float[] out) {
+        Arrays.fill(out, 0, 128, 0f);
+
+        // the part of the region inside the envelope, zero out of it
+        int start = 0;
+        int stop = 128;
+        if (envelope.hasStartPoint) {
+            int pos = (envelope.startPos << 2) - regOffset;
+            if (pos > 0 && pos <= 128) {
+                start = pos;
+            }
+        }
+        if (envelope.hasStopPoint) {
+            int pos = (envelope.stopPos + 1 << 2) - regOffset;
+            if (pos > 0 && pos <= 128) {
+                stop = pos;
+            }
+        }
+
         int waveParam = wavesInfo.startIndex;
 
         for (int wn = 0; wn < wavesInfo.numWavs; wn++, waveParam++) {
             // amplitude dequantization
             double amp = amp_sf_tab[synthParams.waves[waveParam].ampSf] * (synthParams.amplitudeMode == 0 ? (synthParams.waves[waveParam].ampIndex + 1) / 15.13f : 1.0f);
+            if (phaseShift) {
+                // 180 degrees phase shift
+                amp = -amp;
+            }
 
+            // the phases are exact table positions, so the table is the oscillator
             int inc = synthParams.waves[waveParam].freqIndex;
-            int pos = DEQUANT_PHASE(synthParams.waves[waveParam].phaseIndex) - (regOffset ^ 128) * inc & 2047;
+            int pos = DEQUANT_PHASE(synthParams.waves[waveParam].phaseIndex) - ((regOffset ^ 128) - start) * inc & 2047;
 
             // waveform generation
-            for (int i = 0; i < 128; i++) {
+            for (int i = start; i < stop; i++) {
                 out[i] += (float) (sine_table[pos] * amp);
                 pos = (pos + inc) & 2047;
             }
         }
 
-        if (phaseShift) {
-            // 180 degrees phase shift
-            for (int i = 0; i < 128; i++) {
-                out[i] = -out[i];
-            }
-        }
-
         // fade in with steep Hann window if requested
         if (envelope.hasStartPoint) {
             int pos = (envelope.startPos << 2) - regOffset;
             if (pos > 0 && pos <= 128) {
-                Arrays.fill(out, 0, pos, 0f);
                 if (!envelope.hasStopPoint || envelope.startPos != envelope.stopPos) {
                     out[pos + 0] *= hann_window[0];
                     out[pos + 1] *= hann_window[32];
@@ -541,14 +555,15 @@ public class Atrac3plusDsp {
                 out[pos - 3] *= hann_window[64];
                 out[pos - 2] *= hann_window[32];
                 out[pos - 1] *= hann_window[0];
-                Arrays.fill(out, pos, 128, 0f);
             }
         }
     }
 
     public void generateTones(ChannelUnitContext ctx, int chNum, int sb, float[] out, int outOffset) {
-        float[] wavreg1 = new float[128];
-        float[] wavreg2 = new float[128];
+        // synthesized waves of the two overlapping regions
+        Workspace work = Workspace.get();
+        float[] wavreg1 = work.wavreg1;
+        float[] wavreg2 = work.wavreg2;
         WavesData tonesNow = ctx.channels[chNum].tonesInfoPrev[sb];
         WavesData tonesNext = ctx.channels[chNum].tonesInfo[sb];
 
@@ -581,68 +596,98 @@ public class Atrac3plusDsp {
         boolean reg2EnvNonzero = tonesNext.currEnv.startPos < 32;
 
         // synthesize waves for both overlapping regions
-        if (tonesNow.numWavs > 0 && reg1EnvNonzero) {
+        boolean reg1 = tonesNow.numWavs > 0 && reg1EnvNonzero;
+        if (reg1) {
             wavesSynth(ctx.wavesInfoPrev, tonesNow, tonesNow.currEnv, ctx.wavesInfoPrev.phaseShift[sb] && (chNum > 0), 128, wavreg1);
         }
 
-        if (tonesNext.numWavs > 0 && reg2EnvNonzero) {
+        boolean reg2 = tonesNext.numWavs > 0 && reg2EnvNonzero;
+        if (reg2) {
             wavesSynth(ctx.wavesInfo, tonesNext, tonesNext.currEnv, ctx.wavesInfo.phaseShift[sb] && (chNum > 0), 0, wavreg2);
         }
 
         // Hann windowing for non-faded wave signals
-        if (tonesNow.numWavs > 0 && tonesNext.numWavs > 0 && reg1EnvNonzero && reg2EnvNonzero) {
-            vectorFmul(wavreg1, 0, wavreg1, 0, hann_window, 128, 128);
-            vectorFmul(wavreg2, 0, wavreg2, 0, hann_window, 0, 128);
-        } else {
-            if (tonesNow.numWavs > 0 && !tonesNow.currEnv.hasStopPoint) {
-                vectorFmul(wavreg1, 0, wavreg1, 0, hann_window, 128, 128);
+        float[] window1 = unit_window;
+        int window1Offset = 0;
+        float[] window2 = unit_window;
+        int window2Offset = 0;
+        if ((reg1 && reg2) || !tonesNow.currEnv.hasStopPoint) {
+            window1 = hann_window;
+            window1Offset = 128;
+        }
+        if ((reg1 && reg2) || !tonesNext.currEnv.hasStartPoint) {
+            window2 = hann_window;
+        }
+
+        // Overlap and add to residual, with the windowing
+        if (reg1 && reg2) {
+            for (int i = 0; i < 128; i++) {
+                out[outOffset + i] += wavreg1[i] * window1[window1Offset + i] + wavreg2[i] * window2[window2Offset + i];
             }
-            if (tonesNext.numWavs > 0 && !tonesNext.currEnv.hasStartPoint) {
-                vectorFmul(wavreg2, 0, wavreg2, 0, hann_window, 0, 128);
+        } else if (reg1) {
+            for (int i = 0; i < 128; i++) {
+                out[outOffset + i] += wavreg1[i] * window1[window1Offset + i];
+            }
+        } else if (reg2) {
+            for (int i = 0; i < 128; i++) {
+                out[outOffset + i] += wavreg2[i] * window2[window2Offset + i];
             }
         }
+    }
 
-        // Overlap and add to residual
-        for (int i = 0; i < 128; i++) {
-            out[outOffset + i] += wavreg1[i] + wavreg2[i];
+    /** {@link #ipqf_coeffs1} by tap, 16 coefficients each */
+    private static final float[] ipqfCoeffs1 = flatten(ipqf_coeffs1);
+    /** {@link #ipqf_coeffs2} by tap, 16 coefficients each */
+    private static final float[] ipqfCoeffs2 = flatten(ipqf_coeffs2);
+
+    private static float[] flatten(float[][] coeffs) {
+        float[] flat = new float[coeffs.length * ATRAC3P_SUBBANDS];
+        for (int t = 0; t < coeffs.length; t++) {
+            System.arraycopy(coeffs[t], 0, flat, t * ATRAC3P_SUBBANDS, ATRAC3P_SUBBANDS);
         }
+        return flat;
     }
 
-    public void ipqf(FFT dctCtx, IPQFChannelContext hist, float[] in, float[] out) {
-        float[] idctIn = new float[ATRAC3P_SUBBANDS];
-        float[] idctOut = new float[ATRAC3P_SUBBANDS];
+    /**
+     * the IDCT-IV of all the sample slots comes first, then the polyphase filter.
+     * the input is subband by subband, that is the slots interleaved value by value,
+     * so one IDCT-IV runs over the 128 slots as lanes.
+     * a history row keeps buf1 and buf2 also reversed, so every tap is
+     * a contiguous 16 wide multiply-add. the history ring is the only copy,
+     * the taps step back to its start when they pass the end.
+     */
+    public void ipqf(MdctPlan dctCtx, IPQFChannelContext hist, float[] in, float[] out) {
+        final int row = IPQFChannelContext.ROW;
+        final int end = IPQFChannelContext.ROWS * row;
+        float[] work = Scratch.floats(ATRAC3P_FRAME_SAMPLES);
+
+        // Calculate the sine and cosine part of the PQF using IDCT-IV, value i of slot s at i * 128 + s
+        dctCtx.imdctHalf(work, 0, in, 0, ATRAC3P_SUBBAND_SAMPLES);
 
         Arrays.fill(out, 0, ATRAC3P_FRAME_SAMPLES, 0f);
 
+        float[] h = hist.hist;
         for (int s = 0; s < ATRAC3P_SUBBAND_SAMPLES; s++) {
-            // pack up one sample from each subband
-            for (int sb = 0; sb < ATRAC3P_SUBBANDS; sb++) {
-                idctIn[sb] = in[sb * ATRAC3P_SUBBAND_SAMPLES + s];
-            }
-
-            // Calculate the sine and cosine part of the PQF using IDCT-IV
-            dctCtx.imdctHalf(idctOut, 0, idctIn, 0);
-
             // append the result to the history
+            int r = hist.pos * row;
             for (int i = 0; i < 8; i++) {
-                hist.buf1[hist.pos][i] = idctOut[i + 8];
-                hist.buf2[hist.pos][i] = idctOut[7 - i];
+                h[r + i] = work[(i + 8) * ATRAC3P_SUBBAND_SAMPLES + s]; // buf1
+                h[r + i + 8] = work[(15 - i) * ATRAC3P_SUBBAND_SAMPLES + s];
+                h[r + i + 16] = work[(7 - i) * ATRAC3P_SUBBAND_SAMPLES + s]; // buf2
+                h[r + i + 24] = work[i * ATRAC3P_SUBBAND_SAMPLES + s];
             }
 
-            int posNow = hist.pos;
-            int posNext = mod23_lut[posNow + 2]; // posNext = (posNow + 1) % 23
-
-            for (int t = 0; t < ATRAC3P_PQF_FIR_LEN; t++) {
-                for (int i = 0; i < 8; i++) {
-                    out[s * 16 + i + 0] += hist.buf1[posNow][i] * ipqf_coeffs1[t][i] + hist.buf2[posNext][i] * ipqf_coeffs2[t][i];
-                    out[s * 16 + i + 8] += hist.buf1[posNow][7 - i] * ipqf_coeffs1[t][i + 8] + hist.buf2[posNext][7 - i] * ipqf_coeffs2[t][i + 8];
+            // buf1 of the even rows and buf2 of the odd rows from the newest one
+            int o = s * ATRAC3P_SUBBANDS;
+            for (int t = 0, c = 0, e = r; t < ATRAC3P_PQF_FIR_LEN; t++, c += ATRAC3P_SUBBANDS) {
+                int odd = e + row == end ? 0 : e + row;
+                for (int i = 0; i < ATRAC3P_SUBBANDS; i++) {
+                    out[o + i] += h[e + i] * ipqfCoeffs1[c + i] + h[odd + 16 + i] * ipqfCoeffs2[c + i];
                 }
-
-                posNow = mod23_lut[posNext + 2]; // posNow = (posNow + 2) % 23;
-                posNext = mod23_lut[posNow + 2]; // posNext = (posNext + 2) % 23;
+                e = odd + row == end ? 0 : odd + row;
             }
 
-            hist.pos = mod23_lut[hist.pos]; // hist.pos = (hist.pos - 1) % 23;
+            hist.pos = (hist.pos == 0 ? IPQFChannelContext.ROWS : hist.pos) - 1;
         }
     }
 }
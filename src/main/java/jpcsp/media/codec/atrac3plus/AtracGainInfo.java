@@ -17,12 +17,19 @@
 
 package jpcsp.media.codec.atrac3plus;
 
+import jpcsp.media.codec.util.CodecState;
+
 
 /**
  * Gain control parameters for one subband.
  */
 public class AtracGainInfo {
 
+    /** levels are 4 bit codes, the index of the gain table */
+    static final int LEVELS = 16;
+    /** locations are 5 bit codes, a band has LOCATIONS << locScale samples */
+    static final int LOCATIONS = 32;
+
     /** number of gain control points */
     public int numPoints;
     /** level at corresponding control point */
@@ -43,4 +50,30 @@ public class AtracGainInfo {
         System.arraycopy(from.levCode, 0, this.levCode, 0, levCode.length);
         System.arraycopy(from.locCode, 0, this.locCode, 0, locCode.length);
     }
+
+    /** the codes of the points only */
+    public void write(CodecState.Writer writer) {
+        writer.writeByte(numPoints);
+        writer.writeBytes(levCode, 0, numPoints);
+        writer.writeBytes(locCode, 0, numPoints);
+    }
+
+    /** @throws IllegalArgumentException a code is out of range, the gain compensation would read out of the tables or the band */
+    public void read(CodecState.Reader reader) {
+        clear();
+        numPoints = reader.readByte();
+        if (numPoints > levCode.length) {
+            throw new IllegalArgumentException("numPoints: " + numPoints);
+        }
+        reader.readBytes(levCode, 0, numPoints);
+        reader.readBytes(locCode, 0, numPoints);
+        for (int i = 0; i < numPoints; i++) {
+            if (levCode[i] >= LEVELS) {
+                throw new IllegalArgumentException("levCode[" + i + "]: " + levCode[i]);
+            }
+            if (locCode[i] >= LOCATIONS) {
+                throw new IllegalArgumentException("locCode[" + i + "]: " + locCode[i]);
+            }
+        }
+    }
 }
@@ -17,6 +17,8 @@
 
 package jpcsp.media.codec.atrac3plus;
 
+import jpcsp.media.codec.util.CodecState;
+
 import static jpcsp.media.codec.atrac3plus.Atrac3plusDecoder.ATRAC3P_SUBBANDS;
 
 
@@ -36,8 +38,6 @@ public class Channel {
     public final int[] quSfIdx = new int[32];
     /** array of code table indexes for each quant unit */
     public final int[] quTabIdx = new int[32];
-    /** decoded IMDCT spectrum */
-    public final int[] spectrum = new int[2048];
     /** power compensation levels */
     public final int[] powerLevs = new int[5];
 
@@ -84,4 +84,29 @@ public class Channel {
         tonesInfo = tonesInfoHist[0];
         tonesInfoPrev = tonesInfoHist[1];
     }
+
+    /** the histories of the window shape, the gain control and the tones */
+    void write(CodecState.Writer writer) {
+        writer.writeBooleans(wndShape);
+        writer.writeBooleans(wndShapePrev);
+        for (int sb = 0; sb < ATRAC3P_SUBBANDS; sb++) {
+            gainData[sb].write(writer);
+            gainDataPrev[sb].write(writer);
+            tonesInfo[sb].write(writer);
+            tonesInfoPrev[sb].write(writer);
+        }
+        writer.writeByte(numGainSubbands);
+    }
+
+    void read(CodecState.Reader reader) {
+        reader.readBooleans(wndShape);
+        reader.readBooleans(wndShapePrev);
+        for (int sb = 0; sb < ATRAC3P_SUBBANDS; sb++) {
+            gainData[sb].read(reader);
+            gainDataPrev[sb].read(reader);
+            tonesInfo[sb].read(reader);
+            tonesInfoPrev[sb].read(reader);
+        }
+        numGainSubbands = reader.readByte();
+    }
 }
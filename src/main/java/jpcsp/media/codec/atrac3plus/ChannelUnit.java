@@ -21,6 +21,8 @@ import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
 import java.util.Arrays;
 
+import jpcsp.media.codec.DecodeEvent;
+import jpcsp.media.codec.DecodeStageEvent;
 import jpcsp.media.codec.util.BitReader;
 import jpcsp.media.codec.util.VLC;
 
@@ -28,6 +30,7 @@ import static java.lang.Math.abs;
 import static java.lang.System.getLogger;
 import static jpcsp.media.codec.util.CodecUtils.avLog2;
 import static jpcsp.media.codec.util.CodecUtils.signExtend;
+import static jpcsp.media.codec.util.FloatDSP.int32ToFloatFmulScalar;
 
 
 /*
@@ -42,6 +45,8 @@ public class ChannelUnit {
     private BitReader br;
     private Atrac3plusDsp dsp;
     private int numChannels;
+    /** the last reconstructed frame is digital silence */
+    private boolean silent;
 
     private static final VLC[] wl_vlc_tabs = new VLC[4];
     private static final VLC[] sf_vlc_tabs = new VLC[8];
@@ -189,7 +194,13 @@ public class ChannelUnit {
         this.numChannels = numChannels;
     }
 
-    public int decode() {
+    /** @return true when the last {@link #reconstructFrame(Context, Workspace)} output silence without the synthesis */
+    public boolean isSilent() {
+        return silent;
+    }
+
+    /** the spectrum into {@link Workspace#spectrum} */
+    public int decode(Workspace work) {
         int ret;
 
         ctx.numQuantUnits = br.read(5) + 1;
@@ -221,7 +232,7 @@ public class ChannelUnit {
             return ret;
         }
 
-        decodeSpectrum();
+        decodeSpectrum(work.spectrum);
 
         if (numChannels == 2) {
             getSubbandFlags(ctx.swapChannels, ctx.numCodedSubbands);
@@ -833,11 +844,11 @@ public class ChannelUnit {
         }
     }
 
-    private void decodeSpectrum() {
+    private void decodeSpectrum(int[][] spectrum) {
         for (int chNum = 0; chNum < numChannels; chNum++) {
             Channel chan = ctx.channels[chNum];
 
-            Arrays.fill(chan.spectrum, 0);
+            Arrays.fill(spectrum[chNum], 0);
 
             Arrays.fill(chan.powerLevs, Atrac3plusDecoder.ATRAC3P_POWER_COMP_OFF);
 
@@ -857,10 +868,10 @@ public class ChannelUnit {
                         tabIndex = tab.redirect;
                     }
 
-                    decodeQuSpectra(tab, spec_vlc_tabs[tabIndex], chan.spectrum, Atrac3plusDsp.ff_atrac3p_qu_to_spec_pos[qu], numSpecs);
+                    decodeQuSpectra(tab, spec_vlc_tabs[tabIndex], spectrum[chNum], Atrac3plusDsp.ff_atrac3p_qu_to_spec_pos[qu], numSpecs);
                 } else if (chNum > 0 && ctx.channels[0].quWordlen[qu] != 0 && codetab == 0) {
                     // Copy coefficients from master
-                    System.arraycopy(ctx.channels[0].spectrum, Atrac3plusDsp.ff_atrac3p_qu_to_spec_pos[qu], chan.spectrum, Atrac3plusDsp.ff_atrac3p_qu_to_spec_pos[qu], numSpecs);
+                    System.arraycopy(spectrum[0], Atrac3plusDsp.ff_atrac3p_qu_to_spec_pos[qu], spectrum[chNum], Atrac3plusDsp.ff_atrac3p_qu_to_spec_pos[qu], numSpecs);
                     chan.quWordlen[qu] = ctx.channels[0].quWordlen[qu];
                 }
             }
@@ -1646,13 +1657,18 @@ public class ChannelUnit {
         return 0;
     }
 
-    public void decodeResidualSpectrum(float[][] out) {
+    public void decodeResidualSpectrum(Workspace work) {
+        float[][] out = work.samples;
         int[] sbRNGindex = new int[Atrac3plusDecoder.ATRAC3P_SUBBANDS];
 
+        // clear channel's residual spectrum, only what the previous frame may have written
+        for (int ch = 0; ch < numChannels; ch++) {
+            Arrays.fill(out[ch], 0, work.samplesDirty[ch], 0f);
+            work.samplesDirty[ch] = 0;
+            Arrays.fill(ctx.subbandActive[ch], false);
+        }
+
         if (ctx.muteFlag) {
-            for (int ch = 0; ch < numChannels; ch++) {
-                Arrays.fill(out[ch], 0f);
-            }
             return;
         }
 
@@ -1667,8 +1683,7 @@ public class ChannelUnit {
 
         // inverse quant and power compensation
         for (int ch = 0; ch < numChannels; ch++) {
-            // clear channel's residual spectrum
-            Arrays.fill(out[ch], 0, Atrac3plusDecoder.ATRAC3P_FRAME_SAMPLES, 0f);
+            work.samplesDirty[ch] = ctx.numCodedSubbands * Atrac3plusDecoder.ATRAC3P_SUBBAND_SAMPLES;
 
             for (int qu = 0; qu < ctx.usedQuantUnits; qu++) {
                 int src = Atrac3plusDsp.ff_atrac3p_qu_to_spec_pos[qu];
@@ -1677,9 +1692,7 @@ public class ChannelUnit {
 
                 if (ctx.channels[ch].quWordlen[qu] > 0) {
                     float q = Atrac3plusDsp.ff_atrac3p_sf_tab[ctx.channels[ch].quSfIdx[qu]] * Atrac3plusDsp.ff_atrac3p_mant_tab[ctx.channels[ch].quWordlen[qu]];
-                    for (int i = 0; i < nspeclines; i++) {
-                        out[ch][dst + i] = ctx.channels[ch].spectrum[src + i] * q;
-                    }
+                    int32ToFloatFmulScalar(out[ch], dst, work.spectrum[ch], src, q, nspeclines);
                 }
             }
 
@@ -1706,33 +1719,90 @@ public class ChannelUnit {
                 }
             }
         }
+
+        for (int ch = 0; ch < numChannels; ch++) {
+            for (int sb = 0; sb < ctx.numCodedSubbands; sb++) {
+                ctx.subbandActive[ch][sb] = !isZero(out[ch], sb * Atrac3plusDecoder.ATRAC3P_SUBBAND_SAMPLES, Atrac3plusDecoder.ATRAC3P_SUBBAND_SAMPLES);
+            }
+        }
+    }
+
+    private static boolean any(boolean[] a) {
+        for (boolean b : a) {
+            if (b) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isZero(float[] a, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (a[i] != 0f) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    public void reconstructFrame(Context at3pContext) {
+    public void reconstructFrame(Context at3pContext, Workspace work) {
+        boolean tones = ctx.wavesInfo.tonesPresent || ctx.wavesInfoPrev.tonesPresent;
+        silent = true;
         for (int ch = 0; ch < numChannels; ch++) {
-            for (int sb = 0; sb < ctx.numSubbands; sb++) {
-                // inverse transform and windowing
-                dsp.imdct(at3pContext.mdctCtx, at3pContext.samples[ch], sb * Atrac3plusDecoder.ATRAC3P_SUBBAND_SAMPLES, at3pContext.mdctBuf[ch], sb * Atrac3plusDecoder.ATRAC3P_SUBBAND_SAMPLES, (ctx.channels[ch].wndShapePrev[sb] ? 2 : 0) + (ctx.channels[ch].wndShape[sb] ? 1 : 0), sb);
+            // neither a spectrum, an overlap nor tones, the subbands are silent
+            boolean quiet = !tones && !any(ctx.subbandActive[ch]) && !any(ctx.overlapActive[ch]);
+            if (quiet && ctx.ipqfCtx[ch].histZero) {
+                Arrays.fill(work.outpBuf[ch], 0f);
+                continue;
+            }
+            silent = false;
 
-                // gain compensation and overlapping
-                at3pContext.gaincCtx.gainCompensation(at3pContext.mdctBuf[ch], sb * Atrac3plusDecoder.ATRAC3P_SUBBAND_SAMPLES, ctx.prevBuf[ch], sb * Atrac3plusDecoder.ATRAC3P_SUBBAND_SAMPLES, ctx.channels[ch].gainDataPrev[sb], ctx.channels[ch].gainData[sb], Atrac3plusDecoder.ATRAC3P_SUBBAND_SAMPLES, at3pContext.timeBuf[ch], sb * Atrac3plusDecoder.ATRAC3P_SUBBAND_SAMPLES);
+            DecodeStageEvent stage = new DecodeStageEvent();
+            stage.begin();
+            for (int sb = 0; sb < ctx.numSubbands; sb++) {
+                int offset = sb * Atrac3plusDecoder.ATRAC3P_SUBBAND_SAMPLES;
+                if (ctx.subbandActive[ch][sb]) {
+                    // inverse transform and windowing
+                    dsp.imdct(at3pContext.mdctCtx, work.samples[ch], offset, work.mdctBuf[ch], offset, (ctx.channels[ch].wndShapePrev[sb] ? 2 : 0) + (ctx.channels[ch].wndShape[sb] ? 1 : 0), sb);
+
+                    // gain compensation and overlapping
+                    at3pContext.gaincCtx.gainCompensation(work.mdctBuf[ch], offset, ctx.prevBuf[ch], offset, ctx.channels[ch].gainDataPrev[sb], ctx.channels[ch].gainData[sb], Atrac3plusDecoder.ATRAC3P_SUBBAND_SAMPLES, work.timeBuf[ch], offset);
+                    ctx.overlapActive[ch][sb] = true;
+                } else if (ctx.overlapActive[ch][sb]) {
+                    // a silent spectrum, only the overlap of the previous frame remains
+                    at3pContext.gaincCtx.gainCompensationSilent(ctx.prevBuf[ch], offset, ctx.channels[ch].gainDataPrev[sb], Atrac3plusDecoder.ATRAC3P_SUBBAND_SAMPLES, work.timeBuf[ch], offset);
+                    ctx.overlapActive[ch][sb] = false;
+                } else {
+                    Arrays.fill(work.timeBuf[ch], offset, offset + Atrac3plusDecoder.ATRAC3P_SUBBAND_SAMPLES, 0f);
+                }
             }
+            // imdct and gain compensation are interleaved per subband (the imdct output overlaps the next subband)
+            stage.commit(DecodeEvent.ATRAC3PLUS, "reconstructFrame.imdct+gain", ch);
 
             // zero unused subbands in both output and overlapping buffers
             Arrays.fill(ctx.prevBuf[ch], ctx.numSubbands * Atrac3plusDecoder.ATRAC3P_SUBBAND_SAMPLES, ctx.prevBuf[ch].length, 0f);
-            Arrays.fill(at3pContext.timeBuf[ch], ctx.numSubbands * Atrac3plusDecoder.ATRAC3P_SUBBAND_SAMPLES, at3pContext.timeBuf[ch].length, 0f);
+            Arrays.fill(ctx.overlapActive[ch], ctx.numSubbands, ctx.overlapActive[ch].length, false);
+            Arrays.fill(work.timeBuf[ch], ctx.numSubbands * Atrac3plusDecoder.ATRAC3P_SUBBAND_SAMPLES, work.timeBuf[ch].length, 0f);
 
             // resynthesize and add tonal signal
             if (ctx.wavesInfo.tonesPresent || ctx.wavesInfoPrev.tonesPresent) {
+                stage = new DecodeStageEvent();
+                stage.begin();
                 for (int sb = 0; sb < ctx.numSubbands; sb++) {
                     if (ctx.channels[ch].tonesInfo[sb].numWavs > 0 || ctx.channels[ch].tonesInfoPrev[sb].numWavs > 0) {
-                        dsp.generateTones(ctx, ch, sb, at3pContext.timeBuf[ch], sb * 128);
+                        dsp.generateTones(ctx, ch, sb, work.timeBuf[ch], sb * 128);
                     }
                 }
+                stage.commit(DecodeEvent.ATRAC3PLUS, "reconstructFrame.tones", ch);
             }
 
             // subband synthesis and acoustic signal output
-            dsp.ipqf(at3pContext.ipqfDctCtx, ctx.ipqfCtx[ch], at3pContext.timeBuf[ch], at3pContext.outpBuf[ch]);
+            stage = new DecodeStageEvent();
+            stage.begin();
+            dsp.ipqf(at3pContext.ipqfDctCtx, ctx.ipqfCtx[ch], work.timeBuf[ch], work.outpBuf[ch]);
+            // a frame of zeros flushes the history
+            ctx.ipqfCtx[ch].histZero = quiet;
+            stage.commit(DecodeEvent.ATRAC3PLUS, "reconstructFrame.ipqf", ch);
         }
 
         // swap window shape and gain control buffers
@@ -17,8 +17,13 @@
 
 package jpcsp.media.codec.atrac3plus;
 
+import java.util.Arrays;
+
+import jpcsp.media.codec.util.CodecState;
+
 import static jpcsp.media.codec.atrac3plus.Atrac3plusDecoder.ATRAC3P_PQF_FIR_LEN;
 import static jpcsp.media.codec.atrac3plus.Atrac3plusDecoder.ATRAC3P_SUBBANDS;
+import static jpcsp.media.codec.atrac3plus.Atrac3plusDecoder.ATRAC3P_SUBBAND_SAMPLES;
 
 
 /** Channel unit parameters */
@@ -58,12 +63,86 @@ public class ChannelUnitContext {
     public final IPQFChannelContext[] ipqfCtx = new IPQFChannelContext[2];
     /** overlapping buffer */
     public final float[][] prevBuf = new float[2][Atrac3plusDecoder.ATRAC3P_FRAME_SAMPLES];
+    /** subbands with a non zero residual spectrum in the current frame */
+    public final boolean[][] subbandActive = new boolean[2][ATRAC3P_SUBBANDS];
+    /** subbands whose overlapping buffer may hold non zero values */
+    public final boolean[][] overlapActive = new boolean[2][ATRAC3P_SUBBANDS];
 
     public static class IPQFChannelContext {
 
-        public final float[][] buf1 = new float[ATRAC3P_PQF_FIR_LEN * 2][8];
-        public final float[][] buf2 = new float[ATRAC3P_PQF_FIR_LEN * 2][8];
+        /**
+         * floats of a history row, the IDCT-IV output of one sample
+         * as buf1, buf1 reversed, buf2, buf2 reversed of 8 each
+         */
+        public static final int ROW = 32;
+        /** rows of the ring */
+        public static final int ROWS = ATRAC3P_PQF_FIR_LEN * 2;
+
+        /** ring of {@link #ROWS} rows, the newest at {@link #pos} */
+        public final float[] hist = new float[ROWS * ROW];
         public int pos;
+        /** hist is all zero */
+        public boolean histZero = true;
+
+        /** the rows, none when {@link #histZero} */
+        public void write(CodecState.Writer writer) {
+            writer.writeByte(pos);
+            writer.writeBoolean(histZero);
+            if (!histZero) {
+                writer.writeFloats(hist, 0, ROWS * ROW);
+            }
+        }
+
+        public void read(CodecState.Reader reader) {
+            pos = reader.readByte();
+            if (pos >= ROWS) {
+                throw new IllegalArgumentException("pos: " + pos);
+            }
+            histZero = reader.readBoolean();
+            if (histZero) {
+                Arrays.fill(hist, 0f);
+            } else {
+                reader.readFloats(hist, 0, ROWS * ROW);
+            }
+        }
+    }
+
+    /**
+     * The state carried over to the next frame, the histories of the channels and the tones,
+     * the overlapping buffer of the subbands with {@link #overlapActive} (the others are zero)
+     * and the IPQF history.
+     */
+    public void write(CodecState.Writer writer) {
+        wavesInfo.write(writer);
+        wavesInfoPrev.write(writer);
+        for (int ch = 0; ch < channels.length; ch++) {
+            channels[ch].write(writer);
+            ipqfCtx[ch].write(writer);
+            writer.writeBooleans(subbandActive[ch]);
+            writer.writeBooleans(overlapActive[ch]);
+            for (int sb = 0; sb < ATRAC3P_SUBBANDS; sb++) {
+                if (overlapActive[ch][sb]) {
+                    writer.writeFloats(prevBuf[ch], sb * ATRAC3P_SUBBAND_SAMPLES, ATRAC3P_SUBBAND_SAMPLES);
+                }
+            }
+        }
+    }
+
+    /** into a new context */
+    public void read(CodecState.Reader reader) {
+        wavesInfo.read(reader);
+        wavesInfoPrev.read(reader);
+        for (int ch = 0; ch < channels.length; ch++) {
+            channels[ch].read(reader);
+            ipqfCtx[ch].read(reader);
+            reader.readBooleans(subbandActive[ch]);
+            reader.readBooleans(overlapActive[ch]);
+            for (int sb = 0; sb < ATRAC3P_SUBBANDS; sb++) {
+                if (overlapActive[ch][sb]) {
+                    reader.readFloats(prevBuf[ch], sb * ATRAC3P_SUBBAND_SAMPLES, ATRAC3P_SUBBAND_SAMPLES);
+                }
+            }
+        }
     }
 
     public ChannelUnitContext() {
@@ -17,8 +17,8 @@
 
 package jpcsp.media.codec.atrac3plus;
 
+import jpcsp.media.codec.transform.MdctPlan;
 import jpcsp.media.codec.util.BitReader;
-import jpcsp.media.codec.util.FFT;
 
 
 public class Context {
@@ -26,7 +26,7 @@ public class Context {
     public BitReader br;
     public Atrac3plusDsp dsp;
 
-    /** global channel units */
+    /** global channel units, made at the first frame using them, the work buffers are in {@link Workspace} */
     public final ChannelUnit[] channelUnits = new ChannelUnit[16];
     /** number of channel blocks */
     public final int numChannelBlocks = 2;
@@ -34,15 +34,7 @@ public class Context {
 
     /** gain compensation context */
     public Atrac gaincCtx;
-    public FFT mdctCtx;
+    public MdctPlan mdctCtx;
     /** IDCT context used by IPQF */
-    public FFT ipqfDctCtx;
-
-    /** quantized MDCT sprectrum */
-    public final float[][] samples = new float[2][Atrac3plusDecoder.ATRAC3P_FRAME_SAMPLES];
-    /** output of the IMDCT */
-    public final float[][] mdctBuf = new float[2][Atrac3plusDecoder.ATRAC3P_FRAME_SAMPLES + Atrac3plusDecoder.ATRAC3P_SUBBAND_SAMPLES];
-    /** output of the gain compensation */
-    public final float[][] timeBuf = new float[2][Atrac3plusDecoder.ATRAC3P_FRAME_SAMPLES];
-    public final float[][] outpBuf = new float[2][Atrac3plusDecoder.ATRAC3P_FRAME_SAMPLES];
+    public MdctPlan ipqfDctCtx;
 }
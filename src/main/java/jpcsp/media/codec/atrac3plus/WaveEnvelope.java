@@ -17,9 +17,16 @@
 
 package jpcsp.media.codec.atrac3plus;
 
+import jpcsp.media.codec.util.CodecState;
+
 
 public class WaveEnvelope {
 
+    /** positions of a coded envelope are 5 bit codes in a region */
+    static final int POSITIONS = 32;
+    /** the envelope of the current frame spans the two regions, its stop position is 64 when it has no stop point */
+    static final int CURRENT_POSITIONS = 2 * POSITIONS + 1;
+
     /** indicates start point within the GHA window */
     boolean hasStartPoint;
     /** indicates stop point within the GHA window */
@@ -42,4 +49,26 @@ public class WaveEnvelope {
         this.startPos = from.startPos;
         this.stopPos = from.stopPos;
     }
+
+    void write(CodecState.Writer writer) {
+        writer.writeBooleans(new boolean[] {hasStartPoint, hasStopPoint});
+        writer.writeByte(startPos);
+        writer.writeByte(stopPos);
+    }
+
+    /**
+     * @param positions the positions are less than it, {@link #POSITIONS} for a coded envelope,
+     *                  {@link #CURRENT_POSITIONS} for the one of the current frame
+     * @throws IllegalArgumentException a position is out of range, the synthesis would write out of the window
+     */
+    void read(CodecState.Reader reader, int positions) {
+        int flags = reader.readByte();
+        hasStartPoint = (flags & 1) != 0;
+        hasStopPoint = (flags & 2) != 0;
+        startPos = reader.readByte();
+        stopPos = reader.readByte();
+        if (startPos >= positions || stopPos >= positions) {
+            throw new IllegalArgumentException("startPos: " + startPos + ", stopPos: " + stopPos);
+        }
+    }
 }
@@ -17,10 +17,15 @@
 
 package jpcsp.media.codec.atrac3plus;
 
+import jpcsp.media.codec.util.CodecState;
+
 
 /** Parameters of a single sine wave */
 public class WaveParam {
 
+    /** amplitude scale factors are 6 bit codes, the index of the scale table */
+    static final int AMP_SFS = 64;
+
     /** wave frequency index */
     int freqIndex;
     /** quantized amplitude scale factor */
@@ -36,4 +41,22 @@ public class WaveParam {
         ampIndex = 0;
         phaseIndex = 0;
     }
+
+    void write(CodecState.Writer writer) {
+        writer.writeShort(freqIndex);
+        writer.writeByte(ampSf);
+        writer.writeByte(ampIndex);
+        writer.writeByte(phaseIndex);
+    }
+
+    /** @throws IllegalArgumentException the scale factor is out of range, the synthesis would read out of the table */
+    void read(CodecState.Reader reader) {
+        freqIndex = reader.readShort();
+        ampSf = reader.readByte();
+        if (ampSf >= AMP_SFS) {
+            throw new IllegalArgumentException("ampSf: " + ampSf);
+        }
+        ampIndex = reader.readByte();
+        phaseIndex = reader.readByte();
+    }
 }
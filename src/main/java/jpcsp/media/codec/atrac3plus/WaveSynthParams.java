@@ -17,6 +17,8 @@
 
 package jpcsp.media.codec.atrac3plus;
 
+import jpcsp.media.codec.util.CodecState;
+
 import static jpcsp.media.codec.atrac3plus.Atrac3plusDecoder.ATRAC3P_SUBBANDS;
 
 
@@ -43,4 +45,38 @@ public class WaveSynthParams {
             waves[i] = new WaveParam();
         }
     }
+
+    /** the waves when the tones are present only */
+    void write(CodecState.Writer writer) {
+        writer.writeBoolean(tonesPresent);
+        writer.writeByte(amplitudeMode);
+        writer.writeByte(numToneBands);
+        writer.writeByte(tonesIndex);
+        writer.writeBooleans(toneSharing);
+        writer.writeBooleans(toneMaster);
+        writer.writeBooleans(phaseShift);
+        if (tonesPresent) {
+            for (int i = 0; i < tonesIndex; i++) {
+                waves[i].write(writer);
+            }
+        }
+    }
+
+    void read(CodecState.Reader reader) {
+        tonesPresent = reader.readBoolean();
+        amplitudeMode = reader.readByte();
+        numToneBands = reader.readByte();
+        tonesIndex = reader.readByte();
+        if (numToneBands > ATRAC3P_SUBBANDS || tonesIndex > waves.length) {
+            throw new IllegalArgumentException("tones: " + numToneBands + ", " + tonesIndex);
+        }
+        reader.readBooleans(toneSharing);
+        reader.readBooleans(toneMaster);
+        reader.readBooleans(phaseShift);
+        if (tonesPresent) {
+            for (int i = 0; i < tonesIndex; i++) {
+                waves[i].read(reader);
+            }
+        }
+    }
 }
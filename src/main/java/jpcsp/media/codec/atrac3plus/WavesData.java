@@ -17,6 +17,8 @@
 
 package jpcsp.media.codec.atrac3plus;
 
+import jpcsp.media.codec.util.CodecState;
+
 
 /** Parameters of a group of sine waves */
 public class WavesData {
@@ -48,4 +50,21 @@ public class WavesData {
         this.numWavs = from.numWavs;
         this.startIndex = from.startIndex;
     }
+
+    void write(CodecState.Writer writer) {
+        pendEnv.write(writer);
+        currEnv.write(writer);
+        writer.writeByte(numWavs);
+        writer.writeByte(startIndex);
+    }
+
+    void read(CodecState.Reader reader) {
+        pendEnv.read(reader, WaveEnvelope.POSITIONS);
+        currEnv.read(reader, WaveEnvelope.CURRENT_POSITIONS);
+        numWavs = reader.readByte();
+        startIndex = reader.readByte();
+        if (startIndex + numWavs > 48) {
+            throw new IllegalArgumentException("waves: " + startIndex + "+" + numWavs);
+        }
+    }
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package jpcsp.media.codec.atrac3plus;
+
+import static jpcsp.media.codec.atrac3plus.Atrac3plusDecoder.ATRAC3P_FRAME_SAMPLES;
+import static jpcsp.media.codec.atrac3plus.Atrac3plusDecoder.ATRAC3P_SUBBAND_SAMPLES;
+
+
+/**
+ * Per thread work buffers of the decoder.
+ * <p>
+ * they are filled and consumed in a {@link Atrac3plusDecoder#decode}, so the decoders
+ * on a thread share them and a {@link Context} keeps only the state carried over
+ * to the next frame. see {@link jpcsp.media.codec.transform.Scratch}.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+public final class Workspace {
+
+    private static final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(Workspace::new);
+
+    /** @return the buffers of the current thread */
+    public static Workspace get() {
+        return workspaces.get();
+    }
+
+    private Workspace() {
+    }
+
+    /** quantized spectrum of the channels of a unit */
+    public final int[][] spectrum = new int[2][ATRAC3P_FRAME_SAMPLES];
+    /** quantized MDCT sprectrum */
+    public final float[][] samples = new float[2][ATRAC3P_FRAME_SAMPLES];
+    /** number of leading samples which may be non zero, the rest is zero */
+    public final int[] samplesDirty = new int[2];
+    /** output of the IMDCT */
+    public final float[][] mdctBuf = new float[2][ATRAC3P_FRAME_SAMPLES + ATRAC3P_SUBBAND_SAMPLES];
+    /** output of the gain compensation */
+    public final float[][] timeBuf = new float[2][ATRAC3P_FRAME_SAMPLES];
+    public final float[][] outpBuf = new float[2][ATRAC3P_FRAME_SAMPLES];
+    /** synthesized waves of the two overlapping regions of {@link Atrac3plusDsp#generateTones} */
+    final float[] wavreg1 = new float[128];
+    final float[] wavreg2 = new float[128];
+}
@@ -0,0 +1,256 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Alex Barney
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package jpcsp.media.codec.transform;
+
+import java.util.Arrays;
+
+import jpcsp.media.codec.util.SimdKernels;
+
+
+/**
+ * Immutable double precision DCT-IV plan of size 2^bits.
+ * <p>
+ * the radix-2 kernel of the atrac9 reference decoder, kept as is for the bit exact path.
+ * a plan refers to the tables of the smaller plans for the butterfly stages,
+ * plans are published through a plain array, all the fields are final
+ * so a racing {@link #get(int)} at worst builds a duplicate.
+ */
+public final class Dct4Plan {
+
+    public static final int MAX_BITS = 16;
+
+    private static final Dct4Plan[] plans = new Dct4Plan[MAX_BITS + 1];
+
+    /** null when the vector api is not available */
+    private static final SimdKernels simd = SimdKernels.getInstance();
+
+    final int bits;
+    final int size;
+    /** indexed by size bits, up to {@link #bits} */
+    final double[][] sinTables;
+    final double[][] cosTables;
+    /** interleaved (cos, -cos) for {@link SimdKernels#complexButterflies} */
+    final double[][] rotCosTables;
+    /** interleaved (sin, sin) for {@link SimdKernels#complexButterflies} */
+    final double[][] rotSinTables;
+    final int[] shuffleTable;
+
+    private Dct4Plan(int bits, Dct4Plan smaller) {
+        this.bits = bits;
+        size = 1 << bits;
+
+        double[] sin = new double[size];
+        double[] cos = new double[size];
+        for (int i = 0; i < size; i++) {
+            double value = Math.PI * (4 * i + 1) / (4 * size);
+            sin[i] = Math.sin(value);
+            cos[i] = Math.cos(value);
+        }
+        sinTables = grow(smaller == null ? null : smaller.sinTables, sin);
+        cosTables = grow(smaller == null ? null : smaller.cosTables, cos);
+
+        if (simd != null) {
+            double[] rotCos = new double[2 << bits];
+            double[] rotSin = new double[2 << bits];
+            for (int j = 0; j < size; j++) {
+                rotCos[j * 2] = cos[j];
+                rotCos[j * 2 + 1] = -cos[j];
+                rotSin[j * 2] = sin[j];
+                rotSin[j * 2 + 1] = sin[j];
+            }
+            rotCosTables = grow(smaller == null ? null : smaller.rotCosTables, rotCos);
+            rotSinTables = grow(smaller == null ? null : smaller.rotSinTables, rotSin);
+        } else {
+            rotCosTables = null;
+            rotSinTables = null;
+        }
+
+        shuffleTable = new int[size];
+        for (int i = 0; i < size; i++) {
+            shuffleTable[i] = Integer.reverse(i ^ (i / 2)) >>> (32 - bits);
+        }
+    }
+
+    private static double[][] grow(double[][] tables, double[] table) {
+        double[][] grown = tables == null ? new double[1][] : Arrays.copyOf(tables, tables.length + 1);
+        grown[grown.length - 1] = table;
+        return grown;
+    }
+
+    /** @throws IllegalArgumentException bits is out of range */
+    public static Dct4Plan get(int bits) {
+        if (bits < 0 || bits > MAX_BITS) {
+            throw new IllegalArgumentException("bits: " + bits);
+        }
+        Dct4Plan plan = plans[bits];
+        if (plan == null) {
+            plan = new Dct4Plan(bits, bits > 0 ? get(bits - 1) : null);
+            plans[bits] = plan;
+        }
+        return plan;
+    }
+
+    public int getBits() {
+        return bits;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Does a Type-4 DCT.
+     *
+     * @param input  The input array containing the time or frequency-domain samples
+     * @param output The output array that will contain the transformed time or frequency-domain samples
+     * @param work   {@link #getSize()} values from 0, overwritten. it can be output when the output range does not overlap
+     */
+    public void transform(double[] input, double[] output, int outputOffset, double[] work, double scale) {
+        double[] sinTable = sinTables[bits];
+        double[] cosTable = cosTables[bits];
+        double[] dctTemp = work;
+
+        int lastIndex = size - 1;
+        int halfSize = size / 2;
+
+        for (int i = 0; i < halfSize; i++) {
+            int i2 = i * 2;
+            double a = input[i2];
+            double b = input[lastIndex - i2];
+            double sin = sinTable[i];
+            double cos = cosTable[i];
+            dctTemp[i2] = a * cos + b * sin;
+            dctTemp[i2 + 1] = a * sin - b * cos;
+        }
+        int stageCount = bits - 1;
+
+        for (int stage = 0; stage < stageCount; stage++) {
+            int blockCount = 1 << stage;
+            int blockSizeBits = stageCount - stage;
+            int blockHalfSizeBits = blockSizeBits - 1;
+            int blockSize = 1 << blockSizeBits;
+            int blockHalfSize = 1 << blockHalfSizeBits;
+            sinTable = sinTables[blockHalfSizeBits];
+            cosTable = cosTables[blockHalfSizeBits];
+
+            if (simd != null) {
+                double[] rotCos = rotCosTables[blockHalfSizeBits];
+                double[] rotSin = rotSinTables[blockHalfSizeBits];
+                for (int block = 0; block < blockCount; block++) {
+                    int frontPos = block * blockSize * 2;
+                    simd.complexButterflies(dctTemp, frontPos, frontPos + blockSize, rotCos, rotSin, blockHalfSize * 2);
+                }
+                continue;
+            }
+
+            for (int block = 0; block < blockCount; block++) {
+                for (int i = 0; i < blockHalfSize; i++) {
+                    int frontPos = (block * blockSize + i) * 2;
+                    int backPos = frontPos + blockSize;
+                    double a = dctTemp[frontPos] - dctTemp[backPos];
+                    double b = dctTemp[frontPos + 1] - dctTemp[backPos + 1];
+                    double sin = sinTable[i];
+                    double cos = cosTable[i];
+                    dctTemp[frontPos] += dctTemp[backPos];
+                    dctTemp[frontPos + 1] += dctTemp[backPos + 1];
+                    dctTemp[backPos] = a * cos + b * sin;
+                    dctTemp[backPos + 1] = a * sin - b * cos;
+                }
+            }
+        }
+
+        for (int i = 0; i < size; i++) {
+            output[outputOffset + i] = dctTemp[shuffleTable[i]] * scale;
+        }
+    }
+
+    /**
+     * Does {@link #transform} of lanes inputs at once, interleaved value by value (struct of arrays),
+     * value i of lane l is at i * lanes + l. the inner loops run across the lanes
+     * so they are vectorized, every lane is computed the same as {@link #transform}.
+     *
+     * @param input  size * lanes values
+     * @param output size * lanes values from outputOffset
+     * @param work   size * lanes values from 0, overwritten. it can be output when the output range does not overlap
+     */
+    public void transform(double[] input, double[] output, int outputOffset, double[] work, double scale, int lanes) {
+        double[] sinTable = sinTables[bits];
+        double[] cosTable = cosTables[bits];
+        double[] dctTemp = work;
+
+        int lastIndex = size - 1;
+        int halfSize = size / 2;
+
+        for (int i = 0; i < halfSize; i++) {
+            int a = i * 2 * lanes;
+            int b = (lastIndex - i * 2) * lanes;
+            int t = i * 2 * lanes;
+            double sin = sinTable[i];
+            double cos = cosTable[i];
+            for (int l = 0; l < lanes; l++) {
+                double x = input[a + l];
+                double y = input[b + l];
+                dctTemp[t + l] = x * cos + y * sin;
+                dctTemp[t + lanes + l] = x * sin - y * cos;
+            }
+        }
+        int stageCount = bits - 1;
+
+        for (int stage = 0; stage < stageCount; stage++) {
+            int blockCount = 1 << stage;
+            int blockSizeBits = stageCount - stage;
+            int blockHalfSizeBits = blockSizeBits - 1;
+            int blockSize = 1 << blockSizeBits;
+            int blockHalfSize = 1 << blockHalfSizeBits;
+            sinTable = sinTables[blockHalfSizeBits];
+            cosTable = cosTables[blockHalfSizeBits];
+
+            for (int block = 0; block < blockCount; block++) {
+                for (int i = 0; i < blockHalfSize; i++) {
+                    int front = (block * blockSize + i) * 2 * lanes;
+                    int back = front + blockSize * lanes;
+                    double sin = sinTable[i];
+                    double cos = cosTable[i];
+                    for (int l = 0; l < lanes; l++) {
+                        double a = dctTemp[front + l] - dctTemp[back + l];
+                        double b = dctTemp[front + lanes + l] - dctTemp[back + lanes + l];
+                        dctTemp[front + l] += dctTemp[back + l];
+                        dctTemp[front + lanes + l] += dctTemp[back + lanes + l];
+                        dctTemp[back + l] = a * cos + b * sin;
+                        dctTemp[back + lanes + l] = a * sin - b * cos;
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < size; i++) {
+            int o = outputOffset + i * lanes;
+            int t = shuffleTable[i] * lanes;
+            for (int l = 0; l < lanes; l++) {
+                output[o + l] = dctTemp[t + l] * scale;
+            }
+        }
+    }
+}
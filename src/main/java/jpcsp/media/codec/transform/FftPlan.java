@@ -0,0 +1,489 @@
+/*
+ * This file is part of jpcsp.
+ *
+ * Jpcsp is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jpcsp is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package jpcsp.media.codec.transform;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.lang.Math.cos;
+
+
+/**
+ * Immutable split-radix complex FFT plan of size 2^nbits.
+ * <p>
+ * plans are created once per (nbits, inverse) and shared by every decoder instance,
+ * the caller keeps the reference it got from {@link #get(int, boolean)}
+ * so the transform itself never looks up the cache.
+ * the transform is in place and does not allocate.
+ */
+public final class FftPlan {
+
+    public static final double M_SQRT1_2 = 0.70710678118654752440; // 1/sqrt(2)
+    private static final float sqrthalf = (float) M_SQRT1_2;
+    private static final float[] ff_cos_16 = initFfCosTabs(16);
+    private static final float[] ff_cos_32 = initFfCosTabs(32);
+    private static final float[] ff_cos_64 = initFfCosTabs(64);
+    private static final float[] ff_cos_128 = initFfCosTabs(128);
+    private static final float[] ff_cos_256 = initFfCosTabs(256);
+    private static final float[] ff_cos_512 = initFfCosTabs(512);
+    /** indexed by nbits */
+    private static final float[][] ff_cos = {null, null, null, null, ff_cos_16, ff_cos_32, ff_cos_64, ff_cos_128, ff_cos_256, ff_cos_512};
+
+    /** the largest implemented size */
+    public static final int MAX_BITS = 9;
+
+    private static final ConcurrentHashMap<Integer, FftPlan> plans = new ConcurrentHashMap<>();
+
+    final int nbits;
+    final boolean inverse;
+    final int[] revtab;
+
+    private FftPlan(int nbits, boolean inverse) {
+        this.nbits = nbits;
+        this.inverse = inverse;
+
+        int n = 1 << nbits;
+        revtab = new int[n];
+        for (int i = 0; i < n; i++) {
+            revtab[-splitRadixPermutation(i, n, inverse) & (n - 1)] = i;
+        }
+    }
+
+    /**
+     * @return the shared plan, null when the size is not implemented
+     */
+    public static FftPlan get(int nbits, boolean inverse) {
+        if (nbits < 2 || nbits > MAX_BITS) {
+            return null;
+        }
+        return plans.computeIfAbsent(nbits << 1 | (inverse ? 1 : 0), k -> new FftPlan(nbits, inverse));
+    }
+
+    public int getBits() {
+        return nbits;
+    }
+
+    public boolean isInverse() {
+        return inverse;
+    }
+
+    private static float[] initFfCosTabs(int m) {
+        float[] tab = new float[m / 2];
+        double freq = 2 * Math.PI / m;
+        for (int i = 0; i <= m / 4; i++) {
+            tab[i] = (float) cos(i * freq);
+        }
+        for (int i = 1; i < m / 4; i++) {
+            tab[m / 2 - i] = tab[i];
+        }
+        return tab;
+    }
+
+    private static int splitRadixPermutation(int i, int n, boolean inverse) {
+        if (n <= 2) {
+            return i & 1;
+        }
+        int m = n >> 1;
+        if ((i & m) == 0) {
+            return splitRadixPermutation(i, m, inverse) * 2;
+        }
+        m >>= 1;
+        return splitRadixPermutation(i, m, inverse) * 4 + (inverse == ((i & m) == 0) ? 1 : -1);
+    }
+
+    private static void fft4(float[] z, int o) {
+        //BF(t3, t1, z[0].re, z[1].re);
+        //BF(t8, t6, z[3].re, z[2].re);
+        //BF(z[2].re, z[0].re, t1, t6);
+        //BF(t4, t2, z[0].im, z[1].im);
+        //BF(t7, t5, z[2].im, z[3].im);
+        //BF(z[3].im, z[1].im, t4, t8);
+        //BF(z[3].re, z[1].re, t3, t7);
+        //BF(z[2].im, z[0].im, t2, t5);
+        double t3 = z[o + 0] - z[o + 2];
+        double t1 = z[o + 0] + z[o + 2];
+        double t8 = z[o + 6] - z[o + 4];
+        double t6 = z[o + 6] + z[o + 4];
+        z[o + 4] = (float) (t1 - t6);
+        z[o + 0] = (float) (t1 + t6);
+        double t4 = z[o + 1] - z[o + 3];
+        double t2 = z[o + 1] + z[o + 3];
+        double t7 = z[o + 5] - z[o + 7];
+        double t5 = z[o + 5] + z[o + 7];
+        z[o + 7] = (float) (t4 - t8);
+        z[o + 3] = (float) (t4 + t8);
+        z[o + 6] = (float) (t3 - t7);
+        z[o + 2] = (float) (t3 + t7);
+        z[o + 5] = (float) (t2 - t5);
+        z[o + 1] = (float) (t2 + t5);
+    }
+
+    private static void fft8(float[] z, int o) {
+        fft4(z, o);
+
+        //BF(t1, z[5].re, z[4].re, -z[5].re);
+        //BF(t2, z[5].im, z[4].im, -z[5].im);
+        //BF(t5, z[7].re, z[6].re, -z[7].re);
+        //BF(t6, z[7].im, z[6].im, -z[7].im);
+        double t1 = z[o + 8] + z[o + 10];
+        z[o + 10] = z[o + 8] - z[o + 10];
+        double t2 = z[o + 9] + z[o + 11];
+        z[o + 11] = z[o + 9] - z[o + 11];
+        double t5 = z[o + 12] + z[o + 14];
+        z[o + 14] = z[o + 12] - z[o + 14];
+        double t6 = z[o + 13] + z[o + 15];
+        z[o + 15] = z[o + 13] - z[o + 15];
+
+        //BUTTERFLIES(z[0],z[2],z[4],z[6]);
+        double t3 = t5 - t1;
+        t5 = t5 + t1;
+        z[o + 8] = (float) (z[o + 0] - t5);
+        z[o + 0] = (float) (z[o + 0] + t5);
+        z[o + 13] = (float) (z[o + 5] - t3);
+        z[o + 5] = (float) (z[o + 5] + t3);
+        double t4 = t2 - t6;
+        t6 = t2 + t6;
+        z[o + 12] = (float) (z[o + 4] - t4);
+        z[o + 4] = (float) (z[o + 4] + t4);
+        z[o + 9] = (float) (z[o + 1] - t6);
+        z[o + 1] = (float) (z[o + 1] + t6);
+
+        //TRANSFORM(z[1],z[3],z[5],z[7],sqrthalf,sqrthalf);
+        //  CMUL(t1, t2, a2.re, a2.im, wre, -wim);
+        t1 = z[o + 10] * sqrthalf + z[o + 11] * sqrthalf;
+        t2 = -z[o + 10] * sqrthalf + z[o + 11] * sqrthalf;
+        //  CMUL(t5, t6, a3.re, a3.im, wre,  wim);
+        t5 = z[o + 14] * sqrthalf - z[o + 15] * sqrthalf;
+        t6 = z[o + 14] * sqrthalf + z[o + 15] * sqrthalf;
+        //  BUTTERFLIES(a0,a1,a2,a3)
+        t3 = t5 - t1;
+        t5 = t5 + t1;
+        z[o + 10] = (float) (z[o + 2] - t5);
+        z[o + 2] = (float) (z[o + 2] + t5);
+        z[o + 15] = (float) (z[o + 7] - t3);
+        z[o + 7] = (float) (z[o + 7] + t3);
+        t4 = t2 - t6;
+        t6 = t2 + t6;
+        z[o + 14] = (float) (z[o + 6] - t4);
+        z[o + 6] = (float) (z[o + 6] + t4);
+        z[o + 11] = (float) (z[o + 3] - t6);
+        z[o + 3] = (float) (z[o + 3] + t6);
+    }
+
+    private static void pass(float[] z, int o, float[] cos, int n) {
+        int o0 = o;
+        int o1 = o + 2 * n * 2;
+        int o2 = o + 4 * n * 2;
+        int o3 = o + 6 * n * 2;
+        int wre = 0;
+        int wim = 2 * n;
+        n--;
+
+        //TRANSFORM_ZERO(z[0],z[o1],z[o2],z[o3]);
+        double t1 = z[o2 + 0];
+        double t2 = z[o2 + 1];
+        double t5 = z[o3 + 0];
+        double t6 = z[o3 + 1];
+        //  BUTTERFLIES(a0,a1,a2,a3)
+        double t3 = t5 - t1;
+        t5 = t5 + t1;
+        z[o2 + 0] = (float) (z[o0 + 0] - t5);
+        z[o0 + 0] = (float) (z[o0 + 0] + t5);
+        z[o3 + 1] = (float) (z[o1 + 1] - t3);
+        z[o1 + 1] = (float) (z[o1 + 1] + t3);
+        double t4 = t2 - t6;
+        t6 = t2 + t6;
+        z[o3 + 0] = (float) (z[o1 + 0] - t4);
+        z[o1 + 0] = (float) (z[o1 + 0] + t4);
+        z[o2 + 1] = (float) (z[o0 + 1] - t6);
+        z[o0 + 1] = (float) (z[o0 + 1] + t6);
+        //TRANSFORM(z[1],z[o1+1],z[o2+1],z[o3+1],wre[1],wim[-1]);
+        //  CMUL(t1, t2, a2.re, a2.im, wre, -wim);
+        t1 = z[o2 + 2] * cos[wre + 1] + z[o2 + 3] * cos[wim - 1];
+        t2 = -z[o2 + 2] * cos[wim - 1] + z[o2 + 3] * cos[wre + 1];
+        //  CMUL(t5, t6, a3.re, a3.im, wre,  wim);
+        t5 = z[o3 + 2] * cos[wre + 1] - z[o3 + 3] * cos[wim - 1];
+        t6 = z[o3 + 2] * cos[wim - 1] + z[o3 + 3] * cos[wre + 1];
+        //  BUTTERFLIES(a0,a1,a2,a3)
+        t3 = t5 - t1;
+        t5 = t5 + t1;
+        z[o2 + 2] = (float) (z[o0 + 2] - t5);
+        z[o0 + 2] = (float) (z[o0 + 2] + t5);
+        z[o3 + 3] = (float) (z[o1 + 3] - t3);
+        z[o1 + 3] = (float) (z[o1 + 3] + t3);
+        t4 = t2 - t6;
+        t6 = t2 + t6;
+        z[o3 + 2] = (float) (z[o1 + 2] - t4);
+        z[o1 + 2] = (float) (z[o1 + 2] + t4);
+        z[o2 + 3] = (float) (z[o0 + 3] - t6);
+        z[o0 + 3] = (float) (z[o0 + 3] + t6);
+
+        do {
+            o0 += 4;
+            o1 += 4;
+            o2 += 4;
+            o3 += 4;
+            wre += 2;
+            wim -= 2;
+            //TRANSFORM(z[0],z[o1],z[o2],z[o3],wre[0],wim[0]);
+            //  CMUL(t1, t2, a2.re, a2.im, wre, -wim);
+            t1 = z[o2 + 0] * cos[wre] + z[o2 + 1] * cos[wim];
+            t2 = -z[o2 + 0] * cos[wim] + z[o2 + 1] * cos[wre];
+            //  CMUL(t5, t6, a3.re, a3.im, wre,  wim);
+            t5 = z[o3 + 0] * cos[wre] - z[o3 + 1] * cos[wim];
+            t6 = z[o3 + 0] * cos[wim] + z[o3 + 1] * cos[wre];
+            //  BUTTERFLIES(a0,a1,a2,a3)
+            t3 = t5 - t1;
+            t5 = t5 + t1;
+            z[o2 + 0] = (float) (z[o0 + 0] - t5);
+            z[o0 + 0] = (float) (z[o0 + 0] + t5);
+            z[o3 + 1] = (float) (z[o1 + 1] - t3);
+            z[o1 + 1] = (float) (z[o1 + 1] + t3);
+            t4 = t2 - t6;
+            t6 = t2 + t6;
+            z[o3 + 0] = (float) (z[o1 + 0] - t4);
+            z[o1 + 0] = (float) (z[o1 + 0] + t4);
+            z[o2 + 1] = (float) (z[o0 + 1] - t6);
+            z[o0 + 1] = (float) (z[o0 + 1] + t6);
+            //TRANSFORM(z[1],z[o1+1],z[o2+1],z[o3+1],wre[1],wim[-1]);
+            //  CMUL(t1, t2, a2.re, a2.im, wre, -wim);
+            t1 = z[o2 + 2] * cos[wre + 1] + z[o2 + 3] * cos[wim - 1];
+            t2 = -z[o2 + 2] * cos[wim - 1] + z[o2 + 3] * cos[wre + 1];
+            //   CMUL(t5, t6, a3.re, a3.im, wre,  wim);
+            t5 = z[o3 + 2] * cos[wre + 1] - z[o3 + 3] * cos[wim - 1];
+            t6 = z[o3 + 2] * cos[wim - 1] + z[o3 + 3] * cos[wre + 1];
+            //   BUTTERFLIES(a0,a1,a2,a3)
+            t3 = t5 - t1;
+            t5 = t5 + t1;
+            z[o2 + 2] = (float) (z[o0 + 2] - t5);
+            z[o0 + 2] = (float) (z[o0 + 2] + t5);
+            z[o3 + 3] = (float) (z[o1 + 3] - t3);
+            z[o1 + 3] = (float) (z[o1 + 3] + t3);
+            t4 = t2 - t6;
+            t6 = t2 + t6;
+            z[o3 + 2] = (float) (z[o1 + 2] - t4);
+            z[o1 + 2] = (float) (z[o1 + 2] + t4);
+            z[o2 + 3] = (float) (z[o0 + 3] - t6);
+            z[o0 + 3] = (float) (z[o0 + 3] + t6);
+        } while (--n != 0);
+    }
+
+    private static void fft16(float[] z, int o) {
+        fft8(z, o);
+        fft4(z, o + 16);
+        fft4(z, o + 24);
+        pass(z, o, ff_cos_16, 2);
+    }
+
+    private static void fft32(float[] z, int o) {
+        fft16(z, o);
+        fft8(z, o + 32);
+        fft8(z, o + 48);
+        pass(z, o, ff_cos_32, 4);
+    }
+
+    private static void fft64(float[] z, int o) {
+        fft32(z, o);
+        fft16(z, o + 64);
+        fft16(z, o + 96);
+        pass(z, o, ff_cos_64, 8);
+    }
+
+    private static void fft128(float[] z, int o) {
+        fft64(z, o);
+        fft32(z, o + 128);
+        fft32(z, o + 192);
+        pass(z, o, ff_cos_128, 16);
+    }
+
+    private static void fft256(float[] z, int o) {
+        fft128(z, o);
+        fft64(z, o + 256);
+        fft64(z, o + 384);
+        pass(z, o, ff_cos_256, 32);
+    }
+
+    private static void fft512(float[] z, int o) {
+        fft256(z, o);
+        fft128(z, o + 512);
+        fft128(z, o + 768);
+        pass(z, o, ff_cos_512, 64);
+    }
+
+    /**
+     * in place transform of 2^nbits interleaved (re, im) values,
+     * the input is expected in {@link #revtab} order.
+     */
+    public void calc(float[] z, int o) {
+        switch (nbits) {
+            case 2 -> fft4(z, o);
+            case 3 -> fft8(z, o);
+            case 4 -> fft16(z, o);
+            case 5 -> fft32(z, o);
+            case 6 -> fft64(z, o);
+            case 7 -> fft128(z, o);
+            case 8 -> fft256(z, o);
+            case 9 -> fft512(z, o);
+            default -> throw new IllegalStateException("nbits: " + nbits);
+        }
+    }
+
+    /**
+     * {@link #calc} of lanes transforms at once, interleaved value by value (struct of arrays),
+     * value k (re, im, ...) of lane l is at o + k * lanes + l. the inner loops run across the lanes,
+     * every lane is computed the same as {@link #calc}.
+     */
+    public void calc(float[] z, int o, int lanes) {
+        calc(nbits, z, o, lanes);
+    }
+
+    private static void calc(int nbits, float[] z, int o, int lanes) {
+        switch (nbits) {
+            case 2 -> fft4(z, o, lanes);
+            case 3 -> fft8(z, o, lanes);
+            default -> {
+                int n = 1 << nbits;
+                calc(nbits - 1, z, o, lanes);
+                calc(nbits - 2, z, o + n * lanes, lanes);
+                calc(nbits - 2, z, o + n * 3 / 2 * lanes, lanes);
+                pass(z, o, ff_cos[nbits], n / 8, lanes);
+            }
+        }
+    }
+
+    private static void fft4(float[] z, int o, int lanes) {
+        int s = lanes;
+        for (int l = o, end = o + lanes; l < end; l++) {
+            double t3 = z[l] - z[l + 2 * s];
+            double t1 = z[l] + z[l + 2 * s];
+            double t8 = z[l + 6 * s] - z[l + 4 * s];
+            double t6 = z[l + 6 * s] + z[l + 4 * s];
+            z[l + 4 * s] = (float) (t1 - t6);
+            z[l] = (float) (t1 + t6);
+            double t4 = z[l + s] - z[l + 3 * s];
+            double t2 = z[l + s] + z[l + 3 * s];
+            double t7 = z[l + 5 * s] - z[l + 7 * s];
+            double t5 = z[l + 5 * s] + z[l + 7 * s];
+            z[l + 7 * s] = (float) (t4 - t8);
+            z[l + 3 * s] = (float) (t4 + t8);
+            z[l + 6 * s] = (float) (t3 - t7);
+            z[l + 2 * s] = (float) (t3 + t7);
+            z[l + 5 * s] = (float) (t2 - t5);
+            z[l + s] = (float) (t2 + t5);
+        }
+    }
+
+    private static void fft8(float[] z, int o, int lanes) {
+        fft4(z, o, lanes);
+
+        int s = lanes;
+        for (int l = o, end = o + lanes; l < end; l++) {
+            double t1 = z[l + 8 * s] + z[l + 10 * s];
+            z[l + 10 * s] = z[l + 8 * s] - z[l + 10 * s];
+            double t2 = z[l + 9 * s] + z[l + 11 * s];
+            z[l + 11 * s] = z[l + 9 * s] - z[l + 11 * s];
+            double t5 = z[l + 12 * s] + z[l + 14 * s];
+            z[l + 14 * s] = z[l + 12 * s] - z[l + 14 * s];
+            double t6 = z[l + 13 * s] + z[l + 15 * s];
+            z[l + 15 * s] = z[l + 13 * s] - z[l + 15 * s];
+
+            double t3 = t5 - t1;
+            t5 = t5 + t1;
+            z[l + 8 * s] = (float) (z[l] - t5);
+            z[l] = (float) (z[l] + t5);
+            z[l + 13 * s] = (float) (z[l + 5 * s] - t3);
+            z[l + 5 * s] = (float) (z[l + 5 * s] + t3);
+            double t4 = t2 - t6;
+            t6 = t2 + t6;
+            z[l + 12 * s] = (float) (z[l + 4 * s] - t4);
+            z[l + 4 * s] = (float) (z[l + 4 * s] + t4);
+            z[l + 9 * s] = (float) (z[l + s] - t6);
+            z[l + s] = (float) (z[l + s] + t6);
+        }
+
+        transform(z, o + 2 * s, o + 6 * s, o + 10 * s, o + 14 * s, sqrthalf, sqrthalf, lanes);
+    }
+
+    private static void pass(float[] z, int o, float[] cos, int n, int lanes) {
+        int s = lanes;
+        int o0 = o;
+        int o1 = o + 2 * n * 2 * s;
+        int o2 = o + 4 * n * 2 * s;
+        int o3 = o + 6 * n * 2 * s;
+        int wre = 0;
+        int wim = 2 * n;
+        n--;
+
+        //TRANSFORM_ZERO(z[0],z[o1],z[o2],z[o3]);
+        for (int l = 0; l < lanes; l++) {
+            double t1 = z[o2 + l];
+            double t2 = z[o2 + s + l];
+            double t5 = z[o3 + l];
+            double t6 = z[o3 + s + l];
+            double t3 = t5 - t1;
+            t5 = t5 + t1;
+            z[o2 + l] = (float) (z[o0 + l] - t5);
+            z[o0 + l] = (float) (z[o0 + l] + t5);
+            z[o3 + s + l] = (float) (z[o1 + s + l] - t3);
+            z[o1 + s + l] = (float) (z[o1 + s + l] + t3);
+            double t4 = t2 - t6;
+            t6 = t2 + t6;
+            z[o3 + l] = (float) (z[o1 + l] - t4);
+            z[o1 + l] = (float) (z[o1 + l] + t4);
+            z[o2 + s + l] = (float) (z[o0 + s + l] - t6);
+            z[o0 + s + l] = (float) (z[o0 + s + l] + t6);
+        }
+        transform(z, o0 + 2 * s, o1 + 2 * s, o2 + 2 * s, o3 + 2 * s, cos[wre + 1], cos[wim - 1], lanes);
+
+        do {
+            o0 += 4 * s;
+            o1 += 4 * s;
+            o2 += 4 * s;
+            o3 += 4 * s;
+            wre += 2;
+            wim -= 2;
+            transform(z, o0, o1, o2, o3, cos[wre], cos[wim], lanes);
+            transform(z, o0 + 2 * s, o1 + 2 * s, o2 + 2 * s, o3 + 2 * s, cos[wre + 1], cos[wim - 1], lanes);
+        } while (--n != 0);
+    }
+
+    /** TRANSFORM(a0, a1, a2, a3, wre, wim) of the lanes, the real parts at a, the imaginary ones at a + lanes */
+    private static void transform(float[] z, int a0, int a1, int a2, int a3, float wre, float wim, int lanes) {
+        int s = lanes;
+        for (int l = 0; l < lanes; l++) {
+            //  CMUL(t1, t2, a2.re, a2.im, wre, -wim);
+            double t1 = z[a2 + l] * wre + z[a2 + s + l] * wim;
+            double t2 = -z[a2 + l] * wim + z[a2 + s + l] * wre;
+            //  CMUL(t5, t6, a3.re, a3.im, wre,  wim);
+            double t5 = z[a3 + l] * wre - z[a3 + s + l] * wim;
+            double t6 = z[a3 + l] * wim + z[a3 + s + l] * wre;
+            //  BUTTERFLIES(a0,a1,a2,a3)
+            double t3 = t5 - t1;
+            t5 = t5 + t1;
+            z[a2 + l] = (float) (z[a0 + l] - t5);
+            z[a0 + l] = (float) (z[a0 + l] + t5);
+            z[a3 + s + l] = (float) (z[a1 + s + l] - t3);
+            z[a1 + s + l] = (float) (z[a1 + s + l] + t3);
+            double t4 = t2 - t6;
+            t6 = t2 + t6;
+            z[a3 + l] = (float) (z[a1 + l] - t4);
+            z[a1 + l] = (float) (z[a1 + l] + t4);
+            z[a2 + s + l] = (float) (z[a0 + s + l] - t6);
+            z[a0 + s + l] = (float) (z[a0 + s + l] + t6);
+        }
+    }
+}
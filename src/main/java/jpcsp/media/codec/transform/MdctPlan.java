@@ -0,0 +1,252 @@
+/*
+ * This file is part of jpcsp.
+ *
+ * Jpcsp is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jpcsp is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package jpcsp.media.codec.transform;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.cos;
+import static java.lang.Math.sin;
+import static java.lang.Math.sqrt;
+
+
+/**
+ * Immutable (I)MDCT plan of size N = 2^nbits on top of a {@link FftPlan}.
+ * <p>
+ * plans are cached per (nbits, inverse, scale) and shared by every decoder instance,
+ * the transforms keep no state and do not allocate, the overlap belongs to the caller.
+ * {@link #imdctHalf} also gives a scaled DCT-IV of N/2 values in reverse order,
+ * that is what the atrac3plus ipqf and the atrac9 single precision path use.
+ */
+public final class MdctPlan {
+
+    private record Key(int nbits, boolean inverse, double scale) {}
+
+    private static final ConcurrentHashMap<Key, MdctPlan> plans = new ConcurrentHashMap<>();
+
+    /** n = 2^nbits */
+    final int mdctBits;
+    /** size of MDCT (i.e. number of input data * 2) */
+    final int mdctSize;
+    final FftPlan fft;
+    // pre/post rotation tables
+    final float[] tcos;
+    final float[] tsin;
+
+    private MdctPlan(int nbits, FftPlan fft, double scale) {
+        int n = 1 << nbits;
+        mdctBits = nbits;
+        mdctSize = n;
+        this.fft = fft;
+        int n4 = n >> 2;
+
+        tcos = new float[n4];
+        tsin = new float[n4];
+
+        double theta = 1.0 / 8.0 + (scale < 0 ? n4 : 0);
+        scale = sqrt(abs(scale));
+        for (int i = 0; i < n4; i++) {
+            double alpha = 2 * Math.PI * (i + theta) / n;
+            tcos[i] = (float) (-cos(alpha) * scale);
+            tsin[i] = (float) (-sin(alpha) * scale);
+        }
+    }
+
+    /**
+     * @return the shared plan, null when the size is not implemented
+     */
+    public static MdctPlan get(int nbits, boolean inverse, double scale) {
+        FftPlan fft = FftPlan.get(nbits - 2, inverse);
+        if (fft == null) {
+            return null;
+        }
+        return plans.computeIfAbsent(new Key(nbits, inverse, scale), k -> new MdctPlan(nbits, fft, scale));
+    }
+
+    public int getBits() {
+        return mdctBits;
+    }
+
+    public int getSize() {
+        return mdctSize;
+    }
+
+    public FftPlan getFft() {
+        return fft;
+    }
+
+    /**
+     * Compute inverse MDCT of size N = 2^nbits
+     *
+     * @param output N samples
+     * @param input  N/2 samples
+     */
+    public void imdctCalc(float[] output, int outputOffset, float[] input, int inputOffset) {
+        int n = mdctSize;
+        int n2 = n >> 1;
+        int n4 = n >> 2;
+
+        imdctHalf(output, outputOffset + n4, input, inputOffset);
+
+        for (int k = 0; k < n4; k++) {
+            output[outputOffset + k] = -output[outputOffset + n2 - k - 1];
+            output[outputOffset + n - k - 1] = output[outputOffset + n2 + k];
+        }
+    }
+
+    /**
+     * Compute the middle half of the inverse MDCT of size N = 2^nbits,
+     * thus excluding the parts that can be derived by symmetry
+     *
+     * @param output N/2 samples
+     * @param input  N/2 samples
+     */
+    public void imdctHalf(float[] output, int outputOffset, float[] input, int inputOffset) {
+        int n = mdctSize;
+        int n2 = n >> 1;
+        int n4 = n >> 2;
+        int n8 = n >> 3;
+        int[] revtab = fft.revtab;
+
+        // pre rotation
+        int in1 = 0;
+        int in2 = n2 - 1;
+        for (int k = 0; k < n4; k++) {
+            int j = outputOffset + revtab[k] * 2;
+            float are = input[inputOffset + in2];
+            float aim = input[inputOffset + in1];
+            output[j] = are * tcos[k] - aim * tsin[k];
+            output[j + 1] = are * tsin[k] + aim * tcos[k];
+            in1 += 2;
+            in2 -= 2;
+        }
+        fft.calc(output, outputOffset);
+
+        // post rotation + reordering
+        for (int k = 0; k < n8; k++) {
+            int j0 = outputOffset + (n8 - k - 1) * 2;
+            int j1 = outputOffset + (n8 + k) * 2;
+            float are0 = output[j0 + 1], aim0 = output[j0];
+            float are1 = output[j1 + 1], aim1 = output[j1];
+            float bre0 = tsin[n8 - k - 1], bim0 = tcos[n8 - k - 1];
+            float bre1 = tsin[n8 + k], bim1 = tcos[n8 + k];
+            output[j0] = are0 * bre0 - aim0 * bim0;
+            output[j1 + 1] = are0 * bim0 + aim0 * bre0;
+            output[j1] = are1 * bre1 - aim1 * bim1;
+            output[j0 + 1] = are1 * bim1 + aim1 * bre1;
+        }
+    }
+
+    /**
+     * {@link #imdctHalf} of lanes inputs at once, interleaved value by value (struct of arrays),
+     * value i of lane l is at i * lanes + l. the inner loops run across the lanes,
+     * every lane is computed the same as {@link #imdctHalf}.
+     *
+     * @param output N/2 * lanes values, must not overlap the input
+     * @param input  N/2 * lanes values
+     */
+    public void imdctHalf(float[] output, int outputOffset, float[] input, int inputOffset, int lanes) {
+        int n = mdctSize;
+        int n2 = n >> 1;
+        int n4 = n >> 2;
+        int n8 = n >> 3;
+        int[] revtab = fft.revtab;
+
+        // pre rotation
+        int in1 = 0;
+        int in2 = n2 - 1;
+        for (int k = 0; k < n4; k++) {
+            int j = outputOffset + revtab[k] * 2 * lanes;
+            int a = inputOffset + in2 * lanes;
+            int b = inputOffset + in1 * lanes;
+            float c = tcos[k];
+            float s = tsin[k];
+            for (int l = 0; l < lanes; l++) {
+                float are = input[a + l];
+                float aim = input[b + l];
+                output[j + l] = are * c - aim * s;
+                output[j + lanes + l] = are * s + aim * c;
+            }
+            in1 += 2;
+            in2 -= 2;
+        }
+        fft.calc(output, outputOffset, lanes);
+
+        // post rotation + reordering
+        for (int k = 0; k < n8; k++) {
+            int j0 = outputOffset + (n8 - k - 1) * 2 * lanes;
+            int j1 = outputOffset + (n8 + k) * 2 * lanes;
+            float bre0 = tsin[n8 - k - 1], bim0 = tcos[n8 - k - 1];
+            float bre1 = tsin[n8 + k], bim1 = tcos[n8 + k];
+            for (int l = 0; l < lanes; l++) {
+                float are0 = output[j0 + lanes + l], aim0 = output[j0 + l];
+                float are1 = output[j1 + lanes + l], aim1 = output[j1 + l];
+                output[j0 + l] = are0 * bre0 - aim0 * bim0;
+                output[j1 + lanes + l] = are0 * bim0 + aim0 * bre0;
+                output[j1 + l] = are1 * bre1 - aim1 * bim1;
+                output[j0 + lanes + l] = are1 * bim1 + aim1 * bre1;
+            }
+        }
+    }
+
+    /**
+     * Compute MDCT of size N = 2^nbits
+     *
+     * @param input  N samples
+     * @param output N/2 samples
+     */
+    public void mdctCalc(float[] output, int outputOffset, float[] input, int inputOffset) {
+        int n = mdctSize;
+        int n2 = n >> 1;
+        int n4 = n >> 2;
+        int n8 = n >> 3;
+        int n3 = 3 * n4;
+        int[] revtab = fft.revtab;
+
+        // pre rotation
+        for (int i = 0; i < n8; i++) {
+            float re = -input[inputOffset + 2 * i + n3] - input[inputOffset + n3 - 1 - 2 * i];
+            float im = -input[inputOffset + n4 + 2 * i] + input[inputOffset + n4 - 1 - 2 * i];
+            int j = outputOffset + 2 * revtab[i];
+            output[j] = re * -tcos[i] - im * tsin[i];
+            output[j + 1] = re * tsin[i] + im * -tcos[i];
+
+            re = input[inputOffset + 2 * i] - input[inputOffset + n2 - 1 - 2 * i];
+            im = -input[inputOffset + n2 + 2 * i] - input[inputOffset + n - 1 - 2 * i];
+            j = outputOffset + 2 * revtab[n8 + i];
+            output[j] = re * -tcos[n8 + i] - im * tsin[n8 + i];
+            output[j + 1] = re * tsin[n8 + i] + im * -tcos[n8 + i];
+        }
+
+        fft.calc(output, outputOffset);
+
+        // post rotation
+        for (int i = 0; i < n8; i++) {
+            int j0 = outputOffset + (n8 - i - 1) * 2;
+            int j1 = outputOffset + (n8 + i) * 2;
+            float are0 = output[j0], aim0 = output[j0 + 1];
+            float are1 = output[j1], aim1 = output[j1 + 1];
+            float bre0 = -tsin[n8 - i - 1], bim0 = -tcos[n8 - i - 1];
+            float bre1 = -tsin[n8 + i], bim1 = -tcos[n8 + i];
+            output[j1 + 1] = are0 * bre0 - aim0 * bim0;
+            output[j0] = are0 * bim0 + aim0 * bre0;
+            output[j0 + 1] = are1 * bre1 - aim1 * bim1;
+            output[j1] = are1 * bim1 + aim1 * bre1;
+        }
+    }
+}
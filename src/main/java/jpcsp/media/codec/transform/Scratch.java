@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package jpcsp.media.codec.transform;
+
+
+/**
+ * Per thread work buffers of the transforms.
+ * <p>
+ * the contents do not survive a call, so decoders on the same thread share them
+ * and an instance keeps only the state that carries over between frames (the overlap).
+ * a buffer must not be held across a call to another transform.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+public final class Scratch {
+
+    private Scratch() {
+    }
+
+    private static final ThreadLocal<float[]> floats = ThreadLocal.withInitial(() -> new float[512]);
+
+    private static final ThreadLocal<double[]> doubles = ThreadLocal.withInitial(() -> new double[512]);
+
+    /** @return at least length values, contents undefined */
+    public static float[] floats(int length) {
+        float[] buffer = floats.get();
+        if (buffer.length < length) {
+            buffer = new float[length];
+            floats.set(buffer);
+        }
+        return buffer;
+    }
+
+    /** @return at least length values, contents undefined */
+    public static double[] doubles(int length) {
+        double[] buffer = doubles.get();
+        if (buffer.length < length) {
+            buffer = new double[length];
+            doubles.set(buffer);
+        }
+        return buffer;
+    }
+}
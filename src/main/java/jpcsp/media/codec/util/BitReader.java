@@ -14,32 +14,48 @@
  * You should have received a copy of the GNU General Public License
  * along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
  */
-
 package jpcsp.media.codec.util;
 
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 
+/**
+ * Reads bits MSB first from a ByteBuffer, forward or backward (see {@link #setDirection(int)}).
+ * <p>
+ * Up to 8 bytes are kept in a 64-bit cache, so {@link #read(int)}, {@link #peek(int)}
+ * and {@link #skip(int)} are shifts on the cache and only refill it when the requested
+ * bits are outside of it. Bytes outside of the buffer are read as 0.
+ */
 public class BitReader implements IBitReader {
 
+    /** far enough from any index that {@link #peek(int)} refills without overflowing */
+    private static final int EMPTY = Integer.MAX_VALUE / 2;
+
     private final ByteBuffer mem;
-    private int addr;
+    private final boolean bigEndian;
     private final int initialAddr;
     private final int initialSize;
-    private int size;
-    private int bits;
-    private int value;
+    /** address of the first byte of the current run, i.e. since the last seek or direction change */
+    private int base;
+    /** bits read since {@link #base}, may be moved backward by {@link #skip(int)} */
+    private int index;
     private int direction;
+    /** 8 bytes from byte {@link #cacheStart} / 8 of the current run, the first one in the MSB */
+    private long cache;
+    /** bit index of the cache in the current run, or {@link #EMPTY} */
+    private int cacheStart;
 
     public BitReader(ByteBuffer mem, int addr, int size) {
         this.mem = mem;
-        this.addr = addr;
-        this.size = size;
+        bigEndian = mem.order() == ByteOrder.BIG_ENDIAN;
         initialAddr = addr;
         initialSize = size;
-        bits = 0;
+        base = addr;
+        index = 0;
         direction = 1;
+        cacheStart = EMPTY;
     }
 
     @Override
@@ -47,133 +63,122 @@ public class BitReader implements IBitReader {
         return read1() != 0;
     }
 
-    protected int nextAddr() {
-        size--;
-        return addr + direction;
+    /** loads the 8 bytes starting at byte {@code byteIndex} of the current run */
+    private void refill(int byteIndex) {
+        int addr = base + direction * byteIndex;
+        long value;
+        if (direction > 0) {
+            if (addr >= 0 && addr + 8 <= mem.limit()) {
+                value = mem.getLong(addr);
+                if (!bigEndian) {
+                    value = Long.reverseBytes(value);
+                }
+            } else {
+                value = 0;
+                for (int i = 0; i < 8; i++, addr++) {
+                    value = (value << 8) | byteAt(addr);
+                }
+            }
+        } else {
+            if (addr - 7 >= 0 && addr < mem.limit()) {
+                value = mem.getLong(addr - 7);
+                if (bigEndian) {
+                    value = Long.reverseBytes(value);
+                }
+            } else {
+                value = 0;
+                for (int i = 0; i < 8; i++, addr--) {
+                    value = (value << 8) | byteAt(addr);
+                }
+            }
+        }
+        cache = value;
+        cacheStart = byteIndex << 3;
     }
 
-    protected int previousAddr() {
-        size++;
-        return addr - direction;
+    private int byteAt(int addr) {
+        return addr >= 0 && addr < mem.limit() ? mem.get(addr) & 0xff : 0;
     }
 
     @Override
     public int read1() {
-        if (bits <= 0) {
-            value = mem.get(addr) & 0xff;
-            addr = nextAddr();
-            bits = 8;
-        }
-        int bit = value >> 7;
-        bits--;
-        value = (value << 1) & 0xFF;
+        int bit = peek(1);
+        index++;
 
         return bit;
     }
 
     @Override
     public int read(int n) {
-        int read;
-        if (n <= bits) {
-            read = value >> (8 - n);
-            bits -= n;
-            value = (value << n) & 0xFF;
-        } else {
-            read = 0;
-            for (; n > 0; n--) {
-                read = (read << 1) + read1();
-            }
-        }
+        int read = peek(n);
+        index += n;
 
         return read;
     }
 
     public int readByte() {
-        if (bits == 8) {
-            bits = 0;
-            return value;
-        }
-        if (bits > 0) {
-            skip(bits);
-        }
-        int read = mem.get(addr) & 0xff;
-        addr = nextAddr();
-
-        return read;
+        byteAlign();
+        return read(8);
     }
 
     public int getBitsLeft() {
-        return (size << 3) + bits;
+        return (initialSize << 3) - getBitsRead();
     }
 
     public int getBytesRead() {
-        int bytesRead = addr - initialAddr;
-        if (bits == 8) {
-            bytesRead--;
-        }
-
-        return bytesRead;
+        return base - initialAddr + direction * ((index + 7) >> 3);
     }
 
     public int getBitsRead() {
-        return (addr - initialAddr) * 8 - bits;
+        return ((base - initialAddr) << 3) + direction * index;
     }
 
+    /**
+     * @param n 0 to 32
+     */
     @Override
     public int peek(int n) {
-        int read = read(n);
-        skip(-n);
-        return read;
+        int offset = index - cacheStart;
+        if (offset < 0 || offset + n > 64) {
+            refill(index >> 3);
+            offset = index & 7;
+        }
+        // two shifts so that n == 0 gives 0
+        return (int) ((cache << offset) >>> 1 >>> (63 - n));
     }
 
     @Override
     public void skip(int n) {
-        bits -= n;
-        if (n >= 0) {
-            while (bits < 0) {
-                addr = nextAddr();
-                bits += 8;
-            }
-        } else {
-            while (bits > 8) {
-                addr = previousAddr();
-                bits -= 8;
-            }
-        }
-
-        if (bits > 0) {
-            value = mem.get(addr - direction) & 0xff;
-            value = (value << (8 - bits)) & 0xFF;
-        }
+        index += n;
     }
 
     public void seek(int n) {
-        addr = initialAddr + n;
-        size = initialSize - n;
-        bits = 0;
+        base = initialAddr + n;
+        index = 0;
+        cacheStart = EMPTY;
     }
 
+    /**
+     * Drops the bits left in the current byte and continues from the next one in {@code direction}.
+     */
     public void setDirection(int direction) {
+        base = getReadAddr();
+        index = 0;
+        cacheStart = EMPTY;
         this.direction = direction;
-        bits = 0;
     }
 
     public void byteAlign() {
-        if (bits > 0 && bits < 8) {
-            skip(bits);
-        }
+        index = (index + 7) & ~7;
     }
 
     @Override
     public int getReadAddr() {
-        if (bits == 8) {
-            return addr - direction;
-        }
-        return addr;
+        return base + direction * ((index + 7) >> 3);
     }
 
     @Override
     public String toString() {
-        return String.format("BitReader addr=0x%08X, bits=%d, size=0x%X, bits read %d", addr, bits, size, getBitsRead());
+        return String.format("BitReader addr=0x%08X, bits=%d, size=0x%X, bits read %d", getReadAddr(), -index & 7, initialSize - getBytesRead(), getBitsRead());
     }
 }
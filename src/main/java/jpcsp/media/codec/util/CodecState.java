@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package jpcsp.media.codec.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+
+/**
+ * The byte form of the state of a decoder between frames.
+ * <p>
+ * a magic of the codec and a version byte, then the values in little endian
+ * in the order the decoder writes them. the form of a version never changes,
+ * a decoder reads its own version only. a decoder reads a state into new objects
+ * and takes them when the whole state is read, a truncated state throws
+ * {@link java.nio.BufferUnderflowException} which the decoder reports as {@link IllegalArgumentException}.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+public final class CodecState {
+
+    private CodecState() {
+    }
+
+    /** appends the values */
+    public static final class Writer {
+
+        private ByteBuffer buffer;
+
+        /** writes the header */
+        public Writer(int magic, int version) {
+            buffer = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+            writeInt(magic);
+            writeByte(version);
+        }
+
+        private ByteBuffer ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes)).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.flip();
+                grown.put(buffer);
+                buffer = grown;
+            }
+            return buffer;
+        }
+
+        public Writer writeByte(int value) {
+            ensure(1).put((byte) value);
+            return this;
+        }
+
+        public Writer writeBoolean(boolean value) {
+            return writeByte(value ? 1 : 0);
+        }
+
+        public Writer writeShort(int value) {
+            ensure(2).putShort((short) value);
+            return this;
+        }
+
+        public Writer writeInt(int value) {
+            ensure(4).putInt(value);
+            return this;
+        }
+
+        /** as a bit field, 8 a byte */
+        public Writer writeBooleans(boolean[] values) {
+            for (int i = 0; i < values.length; i += 8) {
+                int bits = 0;
+                for (int j = 0; j < 8 && i + j < values.length; j++) {
+                    bits |= values[i + j] ? 1 << j : 0;
+                }
+                writeByte(bits);
+            }
+            return this;
+        }
+
+        /** each value as a byte */
+        public Writer writeBytes(int[] values, int offset, int length) {
+            ensure(length);
+            for (int i = offset; i < offset + length; i++) {
+                buffer.put((byte) values[i]);
+            }
+            return this;
+        }
+
+        public Writer writeInts(int[] values) {
+            ensure(values.length * 4).asIntBuffer().put(values);
+            buffer.position(buffer.position() + values.length * 4);
+            return this;
+        }
+
+        public Writer writeFloats(float[] values, int offset, int length) {
+            ensure(length * 4).asFloatBuffer().put(values, offset, length);
+            buffer.position(buffer.position() + length * 4);
+            return this;
+        }
+
+        public Writer writeDoubles(double[] values, int offset, int length) {
+            ensure(length * 8).asDoubleBuffer().put(values, offset, length);
+            buffer.position(buffer.position() + length * 8);
+            return this;
+        }
+
+        public byte[] toByteArray() {
+            return Arrays.copyOf(buffer.array(), buffer.position());
+        }
+    }
+
+    /** reads the values in the order they are written */
+    public static final class Reader {
+
+        private final ByteBuffer buffer;
+
+        /**
+         * checks the header.
+         *
+         * @throws IllegalArgumentException not of the codec or the version
+         */
+        public Reader(byte[] state, int magic, int version) {
+            buffer = ByteBuffer.wrap(state).order(ByteOrder.LITTLE_ENDIAN);
+            if (state.length < 5 || buffer.getInt() != magic) {
+                throw new IllegalArgumentException("not a state of the codec");
+            }
+            int v = buffer.get() & 0xff;
+            if (v != version) {
+                throw new IllegalArgumentException("version: " + v);
+            }
+        }
+
+        public int readByte() {
+            return buffer.get() & 0xff;
+        }
+
+        public boolean readBoolean() {
+            return buffer.get() != 0;
+        }
+
+        public int readShort() {
+            return buffer.getShort();
+        }
+
+        public int readInt() {
+            return buffer.getInt();
+        }
+
+        public void readBooleans(boolean[] values) {
+            for (int i = 0; i < values.length; i += 8) {
+                int bits = readByte();
+                for (int j = 0; j < 8 && i + j < values.length; j++) {
+                    values[i + j] = (bits & 1 << j) != 0;
+                }
+            }
+        }
+
+        public void readBytes(int[] values, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                values[i] = buffer.get() & 0xff;
+            }
+        }
+
+        public void readInts(int[] values) {
+            buffer.asIntBuffer().get(values);
+            skip(values.length * 4);
+        }
+
+        public void readFloats(float[] values, int offset, int length) {
+            buffer.asFloatBuffer().get(values, offset, length);
+            skip(length * 4);
+        }
+
+        public void readDoubles(double[] values, int offset, int length) {
+            buffer.asDoubleBuffer().get(values, offset, length);
+            skip(length * 8);
+        }
+
+        private void skip(int bytes) {
+            buffer.position(buffer.position() + bytes);
+        }
+
+        /** @throws IllegalArgumentException bytes are left */
+        public void end() {
+            if (buffer.hasRemaining()) {
+                throw new IllegalArgumentException("extra bytes: " + buffer.remaining());
+            }
+        }
+    }
+}
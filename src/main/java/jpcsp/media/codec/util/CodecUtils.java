@@ -17,20 +17,15 @@
 
 package jpcsp.media.codec.util;
 
-import java.lang.System.Logger.Level;
 import java.nio.ByteBuffer;
 import java.nio.ShortBuffer;
-import java.lang.System.Logger;
 
 import static java.lang.Math.max;
 import static java.lang.Math.min;
-import static java.lang.System.getLogger;
 
 
 public class CodecUtils {
 
-    private static final Logger logger = getLogger(CodecUtils.class.getName());
-
     // FLT_EPSILON the minimum positive number such that 1.0 + FLT_EPSILON != 1.0
     public static final float FLT_EPSILON = 1.19209290E-07F;
     public static final float M_SQRT1_2 = 0.707106781186547524401f; // 1/sqrt(2)
@@ -48,15 +43,13 @@ public class CodecUtils {
             7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7
     };
 
-    private static short convertSampleFloatToInt16(float sample) {
+    public static short convertSampleFloatToInt16(float sample) {
         return (short) (min(max((int) (sample * 32768f + 0.5f), -32768), 32767) & 0xFFFF);
     }
 
     public static void writeOutput(float[][] samples, ByteBuffer outputMemory, int outputAddr, int numberOfSamples, int decodedChannels, int outputChannels) {
         ShortBuffer writer = outputMemory.asShortBuffer();
-        logger.log(Level.TRACE, "position: " + outputAddr);
         writer.position(outputAddr);
-        logger.log(Level.TRACE, "limit: " + (outputAddr + numberOfSamples * outputChannels));
         writer.limit(outputAddr + numberOfSamples * outputChannels);
         switch (outputChannels) {
             case 1:
@@ -20,7 +20,15 @@ package jpcsp.media.codec.util;
 
 public class FloatDSP {
 
+    /** null when the vector api is not available */
+    private static final SimdKernels simd = SimdKernels.getInstance();
+
     public static void vectorFmul(float[] dst, int dstOffset, float[] src0, int src0Offset, float[] src1, int src1Offset, int len) {
+        if (simd != null) {
+            simd.vectorFmul(dst, dstOffset, src0, src0Offset, src1, src1Offset, len);
+            return;
+        }
+
         for (int i = 0; i < len; i++) {
             dst[dstOffset + i] = src0[src0Offset + i] * src1[src1Offset + i];
         }
@@ -38,13 +46,34 @@ public class FloatDSP {
         }
     }
 
+    public static void int32ToFloatFmulScalar(float[] dst, int dstOffset, int[] src, int srcOffset, float mul, int len) {
+        if (simd != null) {
+            simd.int32ToFloatFmulScalar(dst, dstOffset, src, srcOffset, mul, len);
+            return;
+        }
+
+        for (int i = 0; i < len; i++) {
+            dst[dstOffset + i] = src[srcOffset + i] * mul;
+        }
+    }
+
     public static void vectorDmulScalar(double[] dst, int dstOffset, double[] src, int srcOffset, double mul, int len) {
+        if (simd != null) {
+            simd.vectorDmulScalar(dst, dstOffset, src, srcOffset, mul, len);
+            return;
+        }
+
         for (int i = 0; i < len; i++) {
             dst[dstOffset + i] = src[srcOffset + i] * mul;
         }
     }
 
     public static void vectorFmulWindow(float[] dst, int dstOffset, float[] src0, int src0Offset, float[] src1, int src1Offset, float[] win, int winOffset, int len) {
+        if (simd != null) {
+            simd.vectorFmulWindow(dst, dstOffset, src0, src0Offset, src1, src1Offset, win, winOffset, len);
+            return;
+        }
+
         dstOffset += len;
         winOffset += len;
         src0Offset += len;
@@ -59,18 +88,33 @@ public class FloatDSP {
     }
 
     public static void vectorFmulAdd(float[] dst, int dstOffset, float[] src0, int src0Offset, float[] src1, int src1Offset, float[] src2, int src2Offset, int len) {
+        if (simd != null) {
+            simd.vectorFmulAdd(dst, dstOffset, src0, src0Offset, src1, src1Offset, src2, src2Offset, len);
+            return;
+        }
+
         for (int i = 0; i < len; i++) {
             dst[dstOffset + i] = src0[src0Offset + i] * src1[src1Offset + i] + src2[src2Offset + i];
         }
     }
 
     public static void vectorFmulReverse(float[] dst, int dstOffset, float[] src0, int src0Offset, float[] src1, int src1Offset, int len) {
+        if (simd != null) {
+            simd.vectorFmulReverse(dst, dstOffset, src0, src0Offset, src1, src1Offset, len);
+            return;
+        }
+
         for (int i = 0; i < len; i++) {
             dst[dstOffset + i] = src0[src0Offset + i] * src1[src1Offset + len - 1 - i];
         }
     }
 
     public static void butterflies(float[] v1, int v1Offset, float[] v2, int v2Offset, int len) {
+        if (simd != null) {
+            simd.butterflies(v1, v1Offset, v2, v2Offset, len);
+            return;
+        }
+
         for (int i = 0; i < len; i++) {
             float t = v1[v1Offset + i] - v2[v2Offset + i];
             v1[v1Offset + i] += v2[v2Offset + i];
@@ -79,6 +123,10 @@ public class FloatDSP {
     }
 
     public static float scalarproduct(float[] v1, int v1Offset, float[] v2, int v2Offset, int len) {
+        if (simd != null) {
+            return simd.scalarproduct(v1, v1Offset, v2, v2Offset, len);
+        }
+
         float p = 0f;
 
         for (int i = 0; i < len; i++) {
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package jpcsp.media.codec.util;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+
+/**
+ * Estimates the heap retained by the decoders.
+ * <p>
+ * walks the instance fields from an object and sums the sizes of the objects reached,
+ * with a 64bit vm's layout with compressed oops (12 bytes headers, 16 bytes for arrays,
+ * 8 bytes alignment). the static fields (the tables) are not followed, the jdk's objects
+ * are counted but not walked into.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+public final class Footprint {
+
+    private Footprint() {
+    }
+
+    private static final Map<Class<?>, List<Field>> fields = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    /** @return estimated bytes of the objects reachable from root */
+    public static long of(Object root) {
+        return walk(root, Collections.emptySet(), null);
+    }
+
+    /**
+     * the objects shared between instances (plans, the trace, caches) are not counted.
+     *
+     * @param factory makes an instance in the state to be measured, e.g. after some frames are decoded
+     * @return estimated bytes retained by an instance only
+     */
+    public static long perInstance(Supplier<?> factory) {
+        Set<Object> shared = Collections.newSetFromMap(new IdentityHashMap<>());
+        walk(factory.get(), Collections.emptySet(), shared);
+        return walk(factory.get(), shared, null);
+    }
+
+    /**
+     * @param exclude not counted nor walked into
+     * @param reached collects the objects counted if not null
+     */
+    private static long walk(Object root, Set<Object> exclude, Set<Object> reached) {
+        Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Object> stack = new ArrayDeque<>();
+        if (root != null) {
+            stack.push(root);
+        }
+        long bytes = 0;
+        while (!stack.isEmpty()) {
+            Object o = stack.pop();
+            if (exclude.contains(o) || !visited.add(o)) {
+                continue;
+            }
+            if (reached != null) {
+                reached.add(o);
+            }
+            Class<?> c = o.getClass();
+            if (c.isArray()) {
+                int length = Array.getLength(o);
+                bytes += align(16 + (long) length * sizeOf(c.getComponentType()));
+                if (!c.getComponentType().isPrimitive()) {
+                    for (int i = 0; i < length; i++) {
+                        Object e = Array.get(o, i);
+                        if (e != null) {
+                            stack.push(e);
+                        }
+                    }
+                }
+                continue;
+            }
+            long size = 12;
+            for (Field field : fields(c)) {
+                size += sizeOf(field.getType());
+                if (!field.getType().isPrimitive() && field.canAccess(o)) {
+                    try {
+                        Object e = field.get(o);
+                        if (e != null && !(e instanceof Class)) {
+                            stack.push(e);
+                        }
+                    } catch (IllegalAccessException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+            bytes += align(size);
+        }
+        return bytes;
+    }
+
+    /** the instance fields of the class and its super classes, accessible if not of the jdk */
+    private static List<Field> fields(Class<?> c) {
+        return fields.computeIfAbsent(c, k -> {
+            List<Field> result = new ArrayList<>();
+            for (Class<?> t = k; t != null; t = t.getSuperclass()) {
+                boolean jdk = t.getName().startsWith("java.") || t.getName().startsWith("jdk.") || t.getName().startsWith("sun.");
+                for (Field field : t.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        if (!jdk) {
+                            field.trySetAccessible();
+                        }
+                        result.add(field);
+                    }
+                }
+            }
+            return result;
+        });
+    }
+
+    private static int sizeOf(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        } else if (type == int.class || type == float.class) {
+            return 4;
+        } else if (type == short.class || type == char.class) {
+            return 2;
+        } else if (type == byte.class || type == boolean.class) {
+            return 1;
+        } else {
+            return 4;
+        }
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package jpcsp.media.codec.util;
+
+
+/**
+ * SIMD versions of the DSP kernels.
+ * <p>
+ * the implementation uses the incubating vector api ({@code jdk.incubator.vector}),
+ * it is compiled separately (src/main/java-vector) and loaded only when the module
+ * is resolved, i.e. the vm is started with {@code --add-modules jdk.incubator.vector}.
+ * otherwise {@link #getInstance()} returns null and the callers use their scalar loops.
+ * set the system property {@code jpcsp.media.codec.simd} to {@code false} to disable it.
+ * <p>
+ * every kernel gives bit exact results of the scalar loop except {@link #scalarproduct}
+ * which sums in a different order.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public interface SimdKernels {
+
+    /** @return null when not available */
+    static SimdKernels getInstance() {
+        return SimdKernelsLoader.instance;
+    }
+
+    void vectorFmul(float[] dst, int dstOffset, float[] src0, int src0Offset, float[] src1, int src1Offset, int len);
+
+    void vectorFmulReverse(float[] dst, int dstOffset, float[] src0, int src0Offset, float[] src1, int src1Offset, int len);
+
+    void vectorFmulAdd(float[] dst, int dstOffset, float[] src0, int src0Offset, float[] src1, int src1Offset, float[] src2, int src2Offset, int len);
+
+    void vectorFmulWindow(float[] dst, int dstOffset, float[] src0, int src0Offset, float[] src1, int src1Offset, float[] win, int winOffset, int len);
+
+    void butterflies(float[] v1, int v1Offset, float[] v2, int v2Offset, int len);
+
+    float scalarproduct(float[] v1, int v1Offset, float[] v2, int v2Offset, int len);
+
+    /** dst = src * mul */
+    void int32ToFloatFmulScalar(float[] dst, int dstOffset, int[] src, int srcOffset, float mul, int len);
+
+    void vectorDmulScalar(double[] dst, int dstOffset, double[] src, int srcOffset, double mul, int len);
+
+    /** dst = (src0 * mul0 + src1 * mul1) * scale */
+    void int32ToDoubleDmulScalarAddScale(double[] dst, int dstOffset, int[] src0, double mul0, int[] src1, double mul1, int srcOffset, double scale, int len);
+
+    /**
+     * One butterfly stage block of a complex (interleaved re, im) DCT-IV.
+     * <pre>
+     * a = front - back, front += back,
+     * back.re = a.re * cos + a.im * sin, back.im = a.re * sin - a.im * cos
+     * </pre>
+     *
+     * @param rotCos interleaved (cos, -cos)
+     * @param rotSin interleaved (sin, sin)
+     * @param len    number of doubles (twice the complex count)
+     */
+    void complexButterflies(double[] data, int frontOffset, int backOffset, double[] rotCos, double[] rotSin, int len);
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package jpcsp.media.codec.util;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * Loads the {@link SimdKernels} implementation if the vector api is resolved.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+final class SimdKernelsLoader {
+
+    private static final Logger logger = getLogger(SimdKernelsLoader.class.getName());
+
+    /** null when not available */
+    static final SimdKernels instance = load();
+
+    private SimdKernelsLoader() {
+    }
+
+    private static SimdKernels load() {
+        if (!Boolean.parseBoolean(System.getProperty("jpcsp.media.codec.simd", "true"))) {
+            return null;
+        }
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            SimdKernels kernels = (SimdKernels) Class.forName(SimdKernelsLoader.class.getPackageName() + ".VectorKernels").getDeclaredConstructor().newInstance();
+            logger.log(Level.DEBUG, "simd: " + kernels);
+            return kernels;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            logger.log(Level.DEBUG, "simd not available: " + e);
+            return null;
+        }
+    }
+}
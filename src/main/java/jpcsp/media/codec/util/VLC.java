@@ -31,9 +31,27 @@ public class VLC {
     private static final Logger logger = getLogger(VLC.class.getName());
 
     public int bits;
-    public int[][] table;
+    /** {@code code << 8 | (bits & 0xff)}, bits is negative for a subtable whose index is the code */
+    public int[] table;
     public int tableSize;
     public int tableAllocated;
+    /**
+     * two symbols per {@link #bits} wide index, {@code sym2 << 21 | sym1 << 10 | bits1 + bits2},
+     * 0 when the index does not start with two short codes. null until {@link #initMultiSymbol()}.
+     */
+    public int[] multiTable;
+
+    private static int entry(int code, int bits) {
+        return code << 8 | (bits & 0xff);
+    }
+
+    private static int entryBits(int entry) {
+        return (byte) entry;
+    }
+
+    private static int entryCode(int entry) {
+        return entry >> 8;
+    }
 
     private static class VLCcode implements Comparable<VLCcode> {
 
@@ -101,7 +119,12 @@ public class VLC {
 
         nbCodes = j;
 
-        return buildTable(nbBits, nbCodes, buf, 0);
+        int ret = buildTable(nbBits, nbCodes, buf, 0);
+        if (table.length != tableSize) {
+            table = Arrays.copyOf(table, tableSize);
+        }
+        tableAllocated = tableSize;
+        return ret;
     }
 
     private int buildTable(int tableNbBits, int nbCodes, VLCcode[] codes, int codeOffset) {
@@ -126,13 +149,12 @@ public class VLC {
                 int nb = 1 << (tableNbBits - n);
                 int inc = 1;
                 for (int k = 0; k < nb; k++) {
-                    int bits = table[tableIndex + j][1];
+                    int bits = entryBits(table[tableIndex + j]);
                     if (bits != 0 && bits != n) {
                         logger.log(Level.ERROR, "incorrect codes");
                         return -1;
                     }
-                    table[tableIndex + j][1] = n; //bits
-                    table[tableIndex + j][0] = symbol;
+                    table[tableIndex + j] = entry(symbol, n);
                     j += inc;
                 }
             } else {
@@ -158,42 +180,73 @@ public class VLC {
                 }
                 subtableBits = min(subtableBits, tableNbBits);
                 int j = codePrefix;
-                table[tableIndex + j][1] = -subtableBits;
+                table[tableIndex + j] = entry(0, -subtableBits);
                 int index = buildTable(subtableBits, k - i, codes, codeOffset + i);
                 if (index < 0) {
                     return index;
                 }
-                table[tableIndex + j][0] = index; //code
+                // the subtable may have grown the table
+                table[tableIndex + j] = entry(index, -subtableBits);
                 i = k - 1;
             }
         }
 
         for (int i = 0; i < tableSize; i++) {
-            if (table[tableIndex + i][1] == 0) { //bits
-                table[tableIndex + i][0] = -1; //codes
+            if (entryBits(table[tableIndex + i]) == 0) {
+                table[tableIndex + i] = entry(-1, 0);
             }
         }
 
         return tableIndex;
     }
 
+    /** appends {@code size} entries, the capacity doubles and is trimmed by {@link #initVLCSparse} */
     private int allocTable(int size) {
         int index = tableSize;
 
         tableSize += size;
-        tableAllocated = tableSize;
-        int[][] newTable = new int[tableAllocated][2];
-        if (table != null) {
-            for (int i = 0; i < index; i++) {
-                newTable[i][0] = table[i][0];
-                newTable[i][1] = table[i][1];
-            }
+        if (table == null) {
+            table = new int[max(tableSize, 4 << bits)];
+        } else if (tableSize > table.length) {
+            table = Arrays.copyOf(table, max(tableSize, table.length * 2));
         }
-        table = newTable;
+        tableAllocated = table.length;
 
         return index;
     }
 
+    /**
+     * Builds {@link #multiTable}, so that {@link #getVLC2(IBitReader, int, int[], int, int)}
+     * reads two symbols at once when their codes fit in {@link #bits} together.
+     *
+     * @return false when the symbols do not fit in the table
+     */
+    public boolean initMultiSymbol() {
+        int size = 1 << bits;
+        int mask = size - 1;
+        int[] multi = new int[size];
+        for (int index = 0; index < size; index++) {
+            int entry1 = table[index];
+            int n1 = entryBits(entry1);
+            if (n1 <= 0 || n1 >= bits) {
+                continue;
+            }
+            int entry2 = table[(index << n1) & mask];
+            int n2 = entryBits(entry2);
+            if (n2 <= 0 || n1 + n2 > bits) {
+                continue;
+            }
+            int symbol1 = entryCode(entry1);
+            int symbol2 = entryCode(entry2);
+            if (symbol1 < 0 || symbol1 > 0x7ff || symbol2 < 0 || symbol2 > 0x7ff) {
+                return false;
+            }
+            multi[index] = symbol2 << 21 | symbol1 << 10 | (n1 + n2);
+        }
+        multiTable = multi;
+        return true;
+    }
+
     /**
      * Parse a vlc code.
      *
@@ -205,31 +258,52 @@ public class VLC {
      */
     public int getVLC2(IBitReader br, int maxDepth) {
         int nbBits;
-        int index = br.peek(bits);
-        int code = table[index][0];
-        int n = table[index][1];
+        int entry = table[br.peek(bits)];
+        int n = entryBits(entry);
 
         if (maxDepth > 1 && n < 0) {
             br.skip(bits);
 
             nbBits = -n;
 
-            index = br.peek(nbBits) + code;
-            code = table[index][0];
-            n = table[index][1];
+            entry = table[br.peek(nbBits) + entryCode(entry)];
+            n = entryBits(entry);
             if (maxDepth > 2 && n < 0) {
                 br.skip(nbBits);
 
                 nbBits = -n;
 
-                index = br.peek(nbBits) + code;
-                code = table[index][0];
-                n = table[index][1];
+                entry = table[br.peek(nbBits) + entryCode(entry)];
+                n = entryBits(entry);
             }
         }
         br.skip(n);
 
-        return code;
+        return entryCode(entry);
+    }
+
+    /**
+     * Parses {@code count} vlc codes into {@code out}, two at a time where {@link #multiTable} allows.
+     *
+     * @see #getVLC2(IBitReader, int)
+     */
+    public void getVLC2(IBitReader br, int maxDepth, int[] out, int offset, int count) {
+        int end = offset + count;
+        if (multiTable != null) {
+            while (offset < end - 1) {
+                int entry = multiTable[br.peek(bits)];
+                if (entry != 0) {
+                    br.skip(entry & 0x3ff);
+                    out[offset++] = (entry >>> 10) & 0x7ff;
+                    out[offset++] = entry >>> 21;
+                } else {
+                    out[offset++] = getVLC2(br, maxDepth);
+                }
+            }
+        }
+        for (; offset < end; offset++) {
+            out[offset] = getVLC2(br, maxDepth);
+        }
     }
 
     public int getVLC2(IBitReader br) {
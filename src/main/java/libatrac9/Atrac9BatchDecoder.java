@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package libatrac9;
+
+import java.util.Arrays;
+
+import jpcsp.media.codec.DecodeEvent;
+import jpcsp.media.codec.DecodeStageEvent;
+import jpcsp.media.codec.transform.Dct4Plan;
+import libatrac9.Block.BlockType;
+import libatrac9.util.BitReader;
+import libatrac9.util.Helpers;
+
+
+/**
+ * Decodes ATRAC9 streams of the same config in lockstep into 16-bit PCM.
+ * <p>
+ * the frames are unpacked for each stream, then the quantized values of a channel of all the streams
+ * are interleaved value by value (struct of arrays) with the step sizes and the scales of the units,
+ * and the dequantization, the imdct, the overlap and the pcm rounding run across the streams
+ * in the inner loops, which the jit vectorizes. the band extension, when a frame has it,
+ * runs on the lanes of the stream alone. the output of a stream is the same as
+ * {@link Atrac9Decoder} in double precision. for bulk jobs, the latency of a stream is
+ * the one of the batch.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+public class Atrac9BatchDecoder {
+
+    private final Atrac9Config config;
+
+    /** number of streams, the lanes */
+    private final int streams;
+
+    private final int channels;
+
+    private final Frame[] frames;
+    private final BitReader[] readers;
+    /** the channels of each stream in the order of the pcm */
+    private final Channel[][] streamChannels;
+
+    private final Dct4Plan plan;
+    private final double[] window;
+
+    /** quantization units of a frame */
+    private final int unitCount;
+    /** struct of arrays for each channel, value i of stream s at i * streams + s */
+    private final int[][] quantized;
+    private final int[][] quantizedFine;
+    /** struct of arrays for each channel, unit u of stream s at u * streams + s, 0 for the units not coded */
+    private final double[][] stepSizes;
+    private final double[][] fineStepSizes;
+    private final double[][] scales;
+    /** struct of arrays for each channel, value i of stream s at i * streams + s */
+    private final double[][] spectra;
+    private final double[] dct;
+    /** for each channel */
+    private final double[][] imdctPrevious;
+    private final int[] rounded;
+
+    /**
+     * @param configData see {@link Atrac9Decoder#initialize(byte[])}
+     * @param streams    number of streams decoded at once
+     */
+    public Atrac9BatchDecoder(byte[] configData, int streams) {
+        if (streams <= 0) {
+            throw new IllegalArgumentException("streams: " + streams);
+        }
+        config = new Atrac9Config(configData);
+        this.streams = streams;
+        channels = config.getChannelCount();
+
+        frames = new Frame[streams];
+        readers = new BitReader[streams];
+        streamChannels = new Channel[streams][];
+        for (int s = 0; s < streams; s++) {
+            frames[s] = new Frame(config);
+            readers[s] = new BitReader(null);
+            streamChannels[s] = Arrays.stream(frames[s].getBlocks()).flatMap(block -> Arrays.stream(block.getChannels())).toArray(Channel[]::new);
+        }
+
+        int bits = config.getFrameSamplesPower();
+        int size = config.getFrameSamples();
+        plan = Dct4Plan.get(bits);
+        window = Tables.ImdctWindow[bits - 6];
+        int units = 0;
+        while (Tables.QuantUnitToCoeffIndex[units] < size) {
+            units++;
+        }
+        unitCount = units;
+        quantized = new int[channels][size * streams];
+        quantizedFine = new int[channels][size * streams];
+        stepSizes = new double[channels][unitCount * streams];
+        fineStepSizes = new double[channels][unitCount * streams];
+        scales = new double[channels][unitCount * streams];
+        spectra = new double[channels][size * streams];
+        dct = new double[size * 2 * streams];
+        imdctPrevious = new double[channels][size * streams];
+        rounded = new int[size * streams];
+    }
+
+    public Atrac9Config getConfig() {
+        return config;
+    }
+
+    public int getStreams() {
+        return streams;
+    }
+
+    /**
+     * Decodes one superframe of each stream.
+     *
+     * @param atrac9Data superframes of the streams, each at least {@link Atrac9Config#getSuperframeBytes()} bytes long,
+     *                   null for a stream which has ended, its lanes are decoded from silence.
+     * @param pcmOut     [streams][{@link Atrac9Config#getChannelCount()}][{@link Atrac9Config#getSuperframeSamples()}] at least
+     */
+    public void decode(byte[][] atrac9Data, short[][][] pcmOut) {
+        if (atrac9Data.length < streams || pcmOut.length < streams) {
+            throw new IllegalArgumentException("fewer buffers than the streams");
+        }
+        DecodeEvent event = new DecodeEvent();
+        event.begin();
+
+        int bytes = 0;
+        for (int s = 0; s < streams; s++) {
+            if (atrac9Data[s] != null) {
+                if (atrac9Data[s].length < config.getSuperframeBytes()) {
+                    throw new IllegalArgumentException("ATRAC9 buffer is too small");
+                }
+                readers[s].setBuffer(atrac9Data[s]);
+                bytes += config.getSuperframeBytes();
+            }
+        }
+
+        for (int i = 0; i < config.getFramesPerSuperframe(); i++) {
+            for (int s = 0; s < streams; s++) {
+                if (atrac9Data[s] != null) {
+                    frames[s].setFrameIndex(i);
+                    frames[s].bind();
+                    DecodeStageEvent stage = new DecodeStageEvent();
+                    stage.begin();
+                    Unpack.unpackFrame(readers[s], frames[s]);
+                    stage.commit(DecodeEvent.ATRAC9, "Unpack.unpackFrame", -1);
+                    readers[s].alignPosition(8);
+                }
+                // the quantized values are in the work buffers until the next stream is unpacked
+                gather(atrac9Data, s);
+            }
+            DecodeStageEvent stage = new DecodeStageEvent();
+            stage.begin();
+            for (int c = 0; c < channels; c++) {
+                dequantize(c);
+            }
+            stage.commit(DecodeEvent.ATRAC9, "Atrac9BatchDecoder.dequantize", -1);
+            for (int s = 0; s < streams; s++) {
+                if (atrac9Data[s] != null) {
+                    extend(s);
+                }
+            }
+            for (int c = 0; c < channels; c++) {
+                imdct(spectra[c], imdctPrevious[c]);
+                scatter(pcmOut, c, i * config.getFrameSamples());
+            }
+        }
+
+        event.commit(DecodeEvent.ATRAC9, bytes, config.getSuperframeSamples() * streams);
+    }
+
+    /**
+     * interleaves the quantized values of the channels of the stream with the factors of their units,
+     * as {@link Quantization#reconstructSpectra} takes them, the units not coded are zero.
+     */
+    private void gather(byte[][] atrac9Data, int stream) {
+        for (int c = 0; c < channels; c++) {
+            int[] q = quantized[c];
+            int[] qFine = quantizedFine[c];
+            double[] stepSize = stepSizes[c];
+            double[] fineStepSize = fineStepSizes[c];
+            double[] scale = scales[c];
+            int units = 0;
+            if (atrac9Data[stream] != null) {
+                Channel channel = streamChannels[stream][c];
+                Block block = channel.getBlock();
+                int quantUnitCount = block.getQuantizationUnitCount();
+                units = channel.getCodedQuantUnits();
+                Channel source = channel;
+                if (block.getBlockType() == BlockType.Stereo && block.getStereoQuantizationUnit() < quantUnitCount && !channel.isPrimary()) {
+                    units = quantUnitCount;
+                    source = block.getPrimaryChannel();
+                }
+                units = Math.min(units, unitCount);
+                for (int u = 0; u < units; u++) {
+                    Channel from = u < channel.getCodedQuantUnits() ? channel : source;
+                    int scaleFactor = u < quantUnitCount ? channel.getScaleFactors()[u] : -1;
+                    boolean negate = from != channel && block.getJointStereoSigns()[u] > 0;
+                    double unitScale = scaleFactor < 0 ? 1.0 : Tables.SpectrumScale[scaleFactor];
+                    int d = u * streams + stream;
+                    stepSize[d] = Tables.QuantizerStepSize[from.getPrecisions()[u]];
+                    fineStepSize[d] = Tables.QuantizerFineStepSize[from.getPrecisionsFine()[u]];
+                    scale[d] = negate ? -unitScale : unitScale;
+                    int[] src = from.getQuantizedSpectra();
+                    int[] srcFine = from.getQuantizedSpectraFine();
+                    for (int k = Tables.QuantUnitToCoeffIndex[u]; k < Tables.QuantUnitToCoeffIndex[u + 1]; k++) {
+                        q[k * streams + stream] = src[k];
+                        qFine[k * streams + stream] = srcFine[k];
+                    }
+                }
+            }
+            for (int u = units; u < unitCount; u++) {
+                int d = u * streams + stream;
+                stepSize[d] = 0;
+                fineStepSize[d] = 0;
+                scale[d] = 0;
+                for (int k = Tables.QuantUnitToCoeffIndex[u]; k < Tables.QuantUnitToCoeffIndex[u + 1]; k++) {
+                    q[k * streams + stream] = 0;
+                    qFine[k * streams + stream] = 0;
+                }
+            }
+        }
+    }
+
+    /** spectra = (coarse * step + fine * fine step) * scale across the streams, the units not coded are zero */
+    private void dequantize(int channel) {
+        int[] q = quantized[channel];
+        int[] qFine = quantizedFine[channel];
+        double[] stepSize = stepSizes[channel];
+        double[] fineStepSize = fineStepSizes[channel];
+        double[] scale = scales[channel];
+        double[] dst = spectra[channel];
+        int lanes = streams;
+        for (int u = 0; u < unitCount; u++) {
+            int b = u * lanes;
+            for (int k = Tables.QuantUnitToCoeffIndex[u]; k < Tables.QuantUnitToCoeffIndex[u + 1]; k++) {
+                int p = k * lanes;
+                for (int l = 0; l < lanes; l++) {
+                    dst[p + l] = (q[p + l] * stepSize[b + l] + qFine[p + l] * fineStepSize[b + l]) * scale[b + l];
+                }
+            }
+        }
+    }
+
+    /** the band extension of the frame of the stream, if any, on its lanes through the work buffers */
+    private void extend(int stream) {
+        boolean extended = false;
+        for (Block block : frames[stream].getBlocks()) {
+            extended |= block.isBandExtensionEnabled() && block.hasExtensionData();
+        }
+        if (!extended) {
+            return;
+        }
+        int size = config.getFrameSamples();
+        for (int c = 0; c < channels; c++) {
+            double[] src = spectra[c];
+            double[] dst = streamChannels[stream][c].getSpectra();
+            for (int k = 0; k < size; k++) {
+                dst[k] = src[k * streams + stream];
+            }
+            Arrays.fill(dst, size, dst.length, 0.0);
+        }
+        DecodeStageEvent stage = new DecodeStageEvent();
+        stage.begin();
+        for (Block block : frames[stream].getBlocks()) {
+            BandExtension.applyBandExtension(block);
+        }
+        stage.commit(DecodeEvent.ATRAC9, "BandExtension.applyBandExtension", -1);
+        for (int c = 0; c < channels; c++) {
+            double[] src = streamChannels[stream][c].getSpectra();
+            double[] dst = spectra[c];
+            for (int k = 0; k < size; k++) {
+                dst[k * streams + stream] = src[k];
+            }
+        }
+    }
+
+    /** {@link libatrac9.util.Mdct#runImdct} across the streams, the pcm rounded into {@link #rounded} */
+    private void imdct(double[] spectra, double[] previous) {
+        int size = config.getFrameSamples();
+        int half = size / 2;
+        int lanes = streams;
+        // the dct works in the first half and writes to the second one
+        int o = size * lanes;
+        plan.transform(spectra, dct, o, dct, 1, lanes);
+
+        for (int i = 0; i < half; i++) {
+            double w0 = window[i];
+            double w1 = window[i + half];
+            double w2 = window[size - 1 - i];
+            double w3 = window[half - i - 1];
+            int p0 = i * lanes;
+            int p1 = (i + half) * lanes;
+            int d0 = o + (i + half) * lanes;
+            int d1 = o + (size - 1 - i) * lanes;
+            int d2 = o + (half - i - 1) * lanes;
+            int d3 = o + i * lanes;
+            for (int l = 0; l < lanes; l++) {
+                double out0 = w0 * dct[d0 + l] + previous[p0 + l];
+                double out1 = w1 * -dct[d1 + l] - previous[p1 + l];
+                previous[p0 + l] = w2 * -dct[d2 + l];
+                previous[p1 + l] = w3 * dct[d3 + l];
+                // Not using Math.Round because it's ~20x slower on 64-bit
+                rounded[p0 + l] = (int) Math.floor(out0 + 0.5);
+                rounded[p1 + l] = (int) Math.floor(out1 + 0.5);
+            }
+        }
+    }
+
+    /** de-interleaves the pcm of the channel into the streams' buffers */
+    private void scatter(short[][][] pcmOut, int channel, int start) {
+        int size = config.getFrameSamples();
+        for (int s = 0; s < streams; s++) {
+            short[] dest = pcmOut[s][channel];
+            for (int k = 0; k < size; k++) {
+                dest[start + k] = Helpers.clamp16(rounded[k * streams + s]);
+            }
+        }
+    }
+}
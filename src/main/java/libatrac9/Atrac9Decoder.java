@@ -24,6 +24,12 @@
 
 package libatrac9;
 
+import java.nio.BufferUnderflowException;
+import java.util.Arrays;
+
+import jpcsp.media.codec.DecodeEvent;
+import jpcsp.media.codec.DecodeStageEvent;
+import jpcsp.media.codec.util.CodecState;
 import libatrac9.util.BitReader;
 import libatrac9.util.Helpers;
 
@@ -65,6 +71,24 @@ public class Atrac9Decoder {
         this.reader = reader;
     }
 
+    /**
+     * Whether the spectra, the IMDCT and the pcm are computed in float instead of double.
+     * the double path is the reference, the float one stays within 1 LSB of it.
+     * the default is taken from the system property {@code libatrac9.singlePrecision}.
+     */
+    private boolean singlePrecision = Boolean.getBoolean("libatrac9.singlePrecision");
+
+    public boolean isSinglePrecision() {
+        return singlePrecision;
+    }
+
+    /**
+     * @param singlePrecision takes effect at the next {@link #initialize(byte[])}
+     */
+    public void setSinglePrecision(boolean singlePrecision) {
+        this.singlePrecision = singlePrecision;
+    }
+
     private boolean initialized;
 
     /**
@@ -74,7 +98,7 @@ public class Atrac9Decoder {
      */
     public void initialize(byte[] configData) {
         config = new Atrac9Config(configData);
-        frame = new Frame(config);
+        frame = new Frame(config, singlePrecision);
         reader = new BitReader(null);
         initialized = true;
     }
@@ -91,9 +115,14 @@ public class Atrac9Decoder {
     public void decode(byte[] atrac9Data, short[][] pcmOut) {
         if (!initialized) throw new IllegalStateException("Decoder must be initialized before decoding.");
 
+        DecodeEvent event = new DecodeEvent();
+        event.begin();
+
         validateDecodeBuffers(atrac9Data, pcmOut);
         reader.setBuffer(atrac9Data);
         decodeSuperFrame(pcmOut);
+
+        event.commit(DecodeEvent.ATRAC9, config.getSuperframeBytes(), config.getSuperframeSamples());
     }
 
     private void validateDecodeBuffers(byte[] atrac9Buffer, short[][] pcmBuffer) {
@@ -115,10 +144,22 @@ public class Atrac9Decoder {
         }
     }
 
+    /** whether the last superframe is digital silence */
+    private boolean silent;
+
+    /**
+     * @return true when the last superframe decoded is digital silence, detected from the spectra
+     * and the decayed overlap without running the imdct.
+     */
+    public boolean isSilent() {
+        return silent;
+    }
+
     private void decodeSuperFrame(short[][] pcmOut) {
+        silent = true;
         for (int i = 0; i < config.getFramesPerSuperframe(); i++) {
             frame.setFrameIndex(i);
-            decodeFrame(reader, frame);
+            silent &= decodeFrame(reader, frame);
             pcmFloatToShort(pcmOut, i * config.getFrameSamples());
             reader.alignPosition(8);
         }
@@ -130,35 +171,220 @@ public class Atrac9Decoder {
         int channelNum = 0;
         for (Block block : frame.getBlocks()) {
             for (Channel channel : block.getChannels()) {
-                double[] pcmSrc = channel.getPcm();
+                if (channel.isSinglePrecision()) {
+                    pcmFloatToShort(channel.getPcmFloat(), pcmOut[channelNum++], start, endSample);
+                    continue;
+                }
 //Debug.println("channelNum: " + channelNum + ", pcmDest: " + pcmOut[channelNum]);
-                short[] pcmDest = pcmOut[channelNum++];
-                for (int d = 0, s = start; s < endSample; d++, s++) {
-                    double sample = pcmSrc[d];
-                    // Not using Math.Round because it's ~20x slower on 64-bit
-                    int roundedSample = (int) Math.floor(sample + 0.5);
-                    pcmDest[s] = Helpers.clamp16(roundedSample);
+                pcmFloatToShort(channel.getPcm(), pcmOut[channelNum++], start, endSample);
+            }
+        }
+    }
+
+    static void pcmFloatToShort(double[] pcmSrc, short[] pcmDest, int start, int endSample) {
+        for (int d = 0, s = start; s < endSample; d++, s++) {
+            double sample = pcmSrc[d];
+            // Not using Math.Round because it's ~20x slower on 64-bit
+            int roundedSample = (int) Math.floor(sample + 0.5);
+            pcmDest[s] = Helpers.clamp16(roundedSample);
+        }
+    }
+
+    static void pcmFloatToShort(float[] pcmSrc, short[] pcmDest, int start, int endSample) {
+        for (int d = 0, s = start; s < endSample; d++, s++) {
+            int roundedSample = (int) Math.floor(pcmSrc[d] + 0.5f);
+            pcmDest[s] = Helpers.clamp16(roundedSample);
+        }
+    }
+
+    /** "AT9S" */
+    private static final int STATE_MAGIC = 0x53395441;
+    private static final int STATE_VERSION = 1;
+
+    /**
+     * Takes the state carried over to the next superframe, the band params are not
+     * since the first frame of a superframe doesn't reuse them.
+     *
+     * @return the scale factors and the overlap of the channels, the overlap is
+     * in the precision of the decoder and none when it is silent.
+     * @see #restore(byte[])
+     */
+    public byte[] snapshot() {
+        if (!initialized) throw new IllegalStateException("Decoder must be initialized before decoding.");
+
+        CodecState.Writer writer = new CodecState.Writer(STATE_MAGIC, STATE_VERSION);
+        for (byte b : config.getConfigData()) {
+            writer.writeByte(b);
+        }
+        writer.writeBoolean(singlePrecision);
+        for (Block block : frame.getBlocks()) {
+            writer.writeByte(block.getQuantizationUnitsPrev());
+            for (Channel channel : block.getChannels()) {
+                writer.writeBytes(channel.getScaleFactorsPrev(), 0, channel.getScaleFactorsPrev().length);
+                writer.writeBoolean(channel.getRng() != null);
+                if (channel.getRng() != null) {
+                    for (short s : channel.getRng().getState()) {
+                        writer.writeShort(s);
+                    }
+                }
+                writer.writeBoolean(channel.isImdctSilent());
+                if (!channel.isImdctSilent()) {
+                    if (channel.isSinglePrecision()) {
+                        float[] previous = channel.getFloatMdct().getImdctPrevious();
+                        writer.writeFloats(previous, 0, previous.length);
+                    } else {
+                        double[] previous = channel.getMdct().getImdctPrevious();
+                        writer.writeDoubles(previous, 0, previous.length);
+                    }
                 }
             }
         }
+        writer.writeBoolean(silent);
+        return writer.toByteArray();
     }
 
-    private static void decodeFrame(BitReader reader, Frame frame) {
+    /**
+     * Restores the state, the next {@link #decode(byte[], short[][])} outputs the same as after the snapshot.
+     *
+     * @param state from {@link #snapshot()} of a decoder of the same config and precision
+     * @throws IllegalArgumentException not a state of the config, the precision or the version,
+     * the decoder is left unchanged
+     */
+    public void restore(byte[] state) {
+        if (!initialized) throw new IllegalStateException("Decoder must be initialized before decoding.");
+
+        CodecState.Reader reader = new CodecState.Reader(state, STATE_MAGIC, STATE_VERSION);
+        Frame frame = new Frame(config, singlePrecision);
+        boolean silent;
+        try {
+            for (byte b : config.getConfigData()) {
+                if ((byte) reader.readByte() != b) {
+                    throw new IllegalArgumentException("config differs");
+                }
+            }
+            if (reader.readBoolean() != singlePrecision) {
+                throw new IllegalArgumentException("precision differs");
+            }
+            for (Block block : frame.getBlocks()) {
+                block.setQuantizationUnitsPrev(reader.readByte());
+                for (Channel channel : block.getChannels()) {
+                    reader.readBytes(channel.getScaleFactorsPrev(), 0, channel.getScaleFactorsPrev().length);
+                    if (reader.readBoolean()) {
+                        short[] rng = new short[4];
+                        for (int i = 0; i < rng.length; i++) {
+                            rng[i] = (short) reader.readShort();
+                        }
+                        channel.setRng(new Atrac9Rng(rng));
+                    }
+                    channel.setImdctSilent(reader.readBoolean());
+                    if (!channel.isImdctSilent()) {
+                        if (channel.isSinglePrecision()) {
+                            float[] previous = channel.getFloatMdct().getImdctPrevious();
+                            reader.readFloats(previous, 0, previous.length);
+                        } else {
+                            double[] previous = channel.getMdct().getImdctPrevious();
+                            reader.readDoubles(previous, 0, previous.length);
+                        }
+                    }
+                }
+            }
+            silent = reader.readBoolean();
+            reader.end();
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("truncated", e);
+        }
+        this.frame = frame;
+        this.silent = silent;
+    }
+
+    /** @return true when all the channels of the frame are silent */
+    private static boolean decodeFrame(BitReader reader, Frame frame) {
+        boolean silent = true;
+        reconstructFrame(reader, frame);
+
+        for (Block block : frame.getBlocks()) {
+            int blockIndex = block.getBlockIndex();
+
+            DecodeStageEvent stage = new DecodeStageEvent();
+            stage.begin();
+            silent &= imdctBlock(block);
+            stage.commit(DecodeEvent.ATRAC9, "imdctBlock", blockIndex);
+        }
+
+        return silent;
+    }
+
+    /** unpacks the frame and reconstructs the spectra of all the channels, into the work buffers of the thread */
+    static void reconstructFrame(BitReader reader, Frame frame) {
+        frame.bind();
+        DecodeStageEvent stage = new DecodeStageEvent();
+        stage.begin();
         Unpack.unpackFrame(reader, frame);
+        stage.commit(DecodeEvent.ATRAC9, "Unpack.unpackFrame", -1);
 
         for (Block block : frame.getBlocks()) {
-            Quantization.dequantizeSpectra(block);
-            Stereo.applyIntensityStereo(block);
-            Quantization.scaleSpectrum(block);
+            int blockIndex = block.getBlockIndex();
+
+            stage = new DecodeStageEvent();
+            stage.begin();
+            Quantization.reconstructSpectra(block);
+            stage.commit(DecodeEvent.ATRAC9, "Quantization.reconstructSpectra", blockIndex);
+
+            stage = new DecodeStageEvent();
+            stage.begin();
             BandExtension.applyBandExtension(block);
-            imdctBlock(block);
+            stage.commit(DecodeEvent.ATRAC9, "BandExtension.applyBandExtension", blockIndex);
         }
     }
 
-    private static void imdctBlock(Block block) {
+    /**
+     * a channel without spectrum nor overlap is output as zeros without the imdct.
+     *
+     * @return true when all the channels of the block are silent
+     */
+    private static boolean imdctBlock(Block block) {
+        boolean silent = true;
+        int size = block.getConfig().getFrameSamples();
         for (Channel channel : block.getChannels()) {
-            channel.getMdct().runImdct(channel.getSpectra(), channel.getPcm());
+            boolean zero;
+            if (channel.isSinglePrecision()) {
+                zero = isZero(channel.getSpectraFloat(), size);
+                if (zero && channel.isImdctSilent()) {
+                    Arrays.fill(channel.getPcmFloat(), 0, size, 0f);
+                    continue;
+                }
+                channel.getFloatMdct().runImdct(channel.getSpectraFloat(), channel.getPcmFloat());
+            } else {
+                zero = isZero(channel.getSpectra(), size);
+                if (zero && channel.isImdctSilent()) {
+                    Arrays.fill(channel.getPcm(), 0, size, 0.0);
+                    continue;
+                }
+                channel.getMdct().runImdct(channel.getSpectra(), channel.getPcm());
+            }
+            // a zero spectrum leaves a zero overlap
+            channel.setImdctSilent(zero);
+            silent = false;
+        }
+        return silent;
+    }
+
+    static boolean isZero(double[] spectra, int length) {
+        for (int i = 0; i < length; i++) {
+            if (spectra[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean isZero(float[] spectra, int length) {
+        for (int i = 0; i < length; i++) {
+            if (spectra[i] != 0) {
+                return false;
+            }
         }
+        return true;
     }
 }
 
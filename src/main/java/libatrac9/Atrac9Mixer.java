@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package libatrac9;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import jpcsp.media.codec.DecodeEvent;
+import libatrac9.util.BitReader;
+import libatrac9.util.FloatMdct;
+import libatrac9.util.Mdct;
+
+
+/**
+ * Mixes ATRAC9 voices in the MDCT domain into 16-bit PCM.
+ * <p>
+ * the imdct is linear and its window depends only on the frame size,
+ * so the spectra of the voices are scaled by their gains and summed,
+ * then one imdct runs for each output channel instead of one for each voice channel.
+ * the voices have to share the sample rate, the frame size and the frames per superframe,
+ * voice channel c feeds output channel c, the last voice channel feeds the rest
+ * (a mono voice is panned by its gains) and the voice channels left over are averaged
+ * into the last output channel (a stereo voice is downmixed into a mono output).
+ * a gain change is cross-faded by the window
+ * over a frame.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+public class Atrac9Mixer {
+
+    /** a voice to be mixed */
+    public class Voice {
+
+        private final Atrac9Config config;
+        private final Frame frame;
+        private final BitReader reader = new BitReader(null);
+        /** for each output channel */
+        private final double[] gains;
+        /** the voice channels in the order of the pcm */
+        private final Channel[] channels;
+        private byte[] data;
+
+        private Voice(byte[] configData) {
+            config = new Atrac9Config(configData);
+            if (config.getSampleRate() != Atrac9Mixer.this.config.getSampleRate()) {
+                throw new IllegalArgumentException("sample rate differs: " + config.getSampleRate());
+            }
+            if (config.getFrameSamples() != Atrac9Mixer.this.config.getFrameSamples() ||
+                    config.getFramesPerSuperframe() != Atrac9Mixer.this.config.getFramesPerSuperframe()) {
+                throw new IllegalArgumentException("frame size differs: " + config.getFrameSamples() + "x" + config.getFramesPerSuperframe());
+            }
+            frame = new Frame(config, singlePrecision);
+            channels = Arrays.stream(frame.getBlocks()).flatMap(block -> Arrays.stream(block.getChannels())).toArray(Channel[]::new);
+            gains = new double[outputChannels];
+            Arrays.fill(gains, 1.0);
+        }
+
+        public Atrac9Config getConfig() {
+            return config;
+        }
+
+        /** sets the gain of all the output channels */
+        public void setGain(double gain) {
+            Arrays.fill(gains, gain);
+        }
+
+        public void setGain(int channel, double gain) {
+            gains[channel] = gain;
+        }
+
+        public double getGain(int channel) {
+            return gains[channel];
+        }
+
+        /**
+         * @param atrac9Data the superframe to be mixed at the next {@link #decode(short[][])},
+         *                   null to pause the voice. the array must be at least
+         *                   {@link Atrac9Config#getSuperframeBytes()} bytes long.
+         */
+        public void setData(byte[] atrac9Data) {
+            if (atrac9Data != null && atrac9Data.length < config.getSuperframeBytes()) {
+                throw new IllegalArgumentException("ATRAC9 buffer is too small");
+            }
+            this.data = atrac9Data;
+        }
+    }
+
+    /** decides the frame size and the output channels */
+    private final Atrac9Config config;
+
+    private final boolean singlePrecision;
+
+    private final int outputChannels;
+
+    private final List<Voice> voices = new ArrayList<>();
+
+    /** for each output channel */
+    private final Mdct[] mdcts;
+    private final FloatMdct[] floatMdcts;
+    private final double[][] spectra;
+    private final float[][] spectraFloat;
+    private final double[][] pcm;
+    private final float[][] pcmFloat;
+    private final boolean[] imdctSilent;
+
+    /**
+     * @param configData the output channels and the frame size, see {@link Atrac9Decoder#initialize(byte[])}
+     */
+    public Atrac9Mixer(byte[] configData) {
+        this(configData, Boolean.getBoolean("libatrac9.singlePrecision"));
+    }
+
+    /**
+     * @param singlePrecision mixes in float instead of double, see {@link Atrac9Decoder#setSinglePrecision(boolean)}
+     */
+    public Atrac9Mixer(byte[] configData, boolean singlePrecision) {
+        this.config = new Atrac9Config(configData);
+        this.singlePrecision = singlePrecision;
+        outputChannels = config.getChannelCount();
+        int size = config.getFrameSamples();
+        int bits = config.getFrameSamplesPower();
+        imdctSilent = new boolean[outputChannels];
+        Arrays.fill(imdctSilent, true);
+        if (singlePrecision) {
+            mdcts = null;
+            spectra = null;
+            pcm = null;
+            floatMdcts = new FloatMdct[outputChannels];
+            spectraFloat = new float[outputChannels][size];
+            pcmFloat = new float[outputChannels][size];
+            for (int c = 0; c < outputChannels; c++) {
+                floatMdcts[c] = new FloatMdct(bits, Tables.ImdctWindowFloat[bits - 6], 1);
+            }
+        } else {
+            floatMdcts = null;
+            spectraFloat = null;
+            pcmFloat = null;
+            mdcts = new Mdct[outputChannels];
+            spectra = new double[outputChannels][size];
+            pcm = new double[outputChannels][size];
+            for (int c = 0; c < outputChannels; c++) {
+                mdcts[c] = new Mdct(bits, Tables.ImdctWindow[bits - 6], 1);
+            }
+        }
+    }
+
+    public Atrac9Config getConfig() {
+        return config;
+    }
+
+    public boolean isSinglePrecision() {
+        return singlePrecision;
+    }
+
+    /**
+     * Adds a voice, its tail stays in the overlap when it is removed.
+     *
+     * @param configData the config of the voice's stream
+     * @throws IllegalArgumentException the sample rate or the frame size differs from the mixer's
+     */
+    public Voice addVoice(byte[] configData) {
+        Voice voice = new Voice(configData);
+        voices.add(voice);
+        return voice;
+    }
+
+    public void removeVoice(Voice voice) {
+        voices.remove(voice);
+    }
+
+    public List<Voice> getVoices() {
+        return List.copyOf(voices);
+    }
+
+    /**
+     * Mixes one superframe of the voices with data, the data are consumed.
+     *
+     * @param pcmOut A buffer that the mixed PCM data will be placed in.
+     *               The array must have dimensions of at least [{@link #config}.{@link Atrac9Config#getChannelCount()}]
+     *               [{@link #config}.{@link Atrac9Config#getSuperframeSamples()}].
+     */
+    public void decode(short[][] pcmOut) {
+        if (pcmOut.length < outputChannels) {
+            throw new IllegalArgumentException("PCM buffer is too small");
+        }
+
+        DecodeEvent event = new DecodeEvent();
+        event.begin();
+
+        int bytes = 0;
+        for (Voice voice : voices) {
+            if (voice.data != null) {
+                voice.reader.setBuffer(voice.data);
+                bytes += voice.config.getSuperframeBytes();
+            }
+        }
+
+        int size = config.getFrameSamples();
+        for (int i = 0; i < config.getFramesPerSuperframe(); i++) {
+            clear();
+            for (Voice voice : voices) {
+                if (voice.data == null) {
+                    continue;
+                }
+                voice.frame.setFrameIndex(i);
+                Atrac9Decoder.reconstructFrame(voice.reader, voice.frame);
+                voice.reader.alignPosition(8);
+                accumulate(voice);
+            }
+            for (int c = 0; c < outputChannels; c++) {
+                if (singlePrecision) {
+                    boolean zero = Atrac9Decoder.isZero(spectraFloat[c], size);
+                    if (zero && imdctSilent[c]) {
+                        Arrays.fill(pcmFloat[c], 0f);
+                    } else {
+                        floatMdcts[c].runImdct(spectraFloat[c], pcmFloat[c]);
+                        imdctSilent[c] = zero;
+                    }
+                    Atrac9Decoder.pcmFloatToShort(pcmFloat[c], pcmOut[c], i * size, (i + 1) * size);
+                } else {
+                    boolean zero = Atrac9Decoder.isZero(spectra[c], size);
+                    if (zero && imdctSilent[c]) {
+                        Arrays.fill(pcm[c], 0.0);
+                    } else {
+                        mdcts[c].runImdct(spectra[c], pcm[c]);
+                        imdctSilent[c] = zero;
+                    }
+                    Atrac9Decoder.pcmFloatToShort(pcm[c], pcmOut[c], i * size, (i + 1) * size);
+                }
+            }
+        }
+
+        for (Voice voice : voices) {
+            voice.data = null;
+        }
+
+        event.commit(DecodeEvent.ATRAC9, bytes, config.getSuperframeSamples());
+    }
+
+    private void clear() {
+        for (int c = 0; c < outputChannels; c++) {
+            if (singlePrecision) {
+                Arrays.fill(spectraFloat[c], 0f);
+            } else {
+                Arrays.fill(spectra[c], 0.0);
+            }
+        }
+    }
+
+    /** adds the scaled spectra of the voice */
+    private void accumulate(Voice voice) {
+        int size = config.getFrameSamples();
+        for (int c = 0; c < outputChannels; c++) {
+            if (voice.gains[c] == 0) {
+                continue;
+            }
+            int first = Math.min(c, voice.channels.length - 1);
+            int last = c == outputChannels - 1 ? voice.channels.length - 1 : first;
+            double gain = voice.gains[c] / (last - first + 1);
+            for (int v = first; v <= last; v++) {
+                Channel channel = voice.channels[v];
+                if (singlePrecision) {
+                    float[] src = channel.getSpectraFloat();
+                    float[] dst = spectraFloat[c];
+                    float g = (float) gain;
+                    for (int k = 0; k < size; k++) {
+                        dst[k] += src[k] * g;
+                    }
+                } else {
+                    double[] src = channel.getSpectra();
+                    double[] dst = spectra[c];
+                    for (int k = 0; k < size; k++) {
+                        dst[k] += src[k] * gain;
+                    }
+                }
+            }
+        }
+    }
+}
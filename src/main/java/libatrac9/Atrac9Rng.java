@@ -44,6 +44,18 @@ class Atrac9Rng {
         stateD = (short) (0 - startValue);
     }
 
+    /** continues from the state of {@link #getState()} */
+    public Atrac9Rng(short[] state) {
+        stateA = state[0];
+        stateB = state[1];
+        stateC = state[2];
+        stateD = state[3];
+    }
+
+    public short[] getState() {
+        return new short[] {stateA, stateB, stateC, stateD};
+    }
+
     public short Next() {
         short t = (short) (stateD ^ (stateD << 5));
         stateD = stateC;
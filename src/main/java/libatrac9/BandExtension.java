@@ -39,6 +39,7 @@ class BandExtension {
         int groupAUnit = channel.getBlock().getQuantizationUnitCount();
         int[] scaleFactors = channel.getScaleFactors();
         double[] spectra = channel.getSpectra();
+        float[] spectraFloat = channel.getSpectraFloat();
         double[] scales = channel.getBexScales();
         int[] values = channel.getBexValues();
 
@@ -53,7 +54,11 @@ class BandExtension {
         int groupCBin = Tables.QuantUnitToCoeffIndex[groupCUnit[0]];
         int totalBins = Tables.QuantUnitToCoeffIndex[totalUnits];
 
-        fillHighFrequencies(spectra, groupABin, groupBBin, groupCBin, totalBins);
+        if (channel.isSinglePrecision()) {
+            fillHighFrequencies(spectraFloat, groupABin, groupBBin, groupCBin, totalBins);
+        } else {
+            fillHighFrequencies(spectra, groupABin, groupBBin, groupCBin, totalBins);
+        }
 
         switch (channel.getBexMode()) {
             case 0:
@@ -85,7 +90,7 @@ class BandExtension {
 
                 addNoiseToSpectrum(channel, Tables.QuantUnitToCoeffIndex[totalUnits - 1],
                         Tables.QuantUnitToCoeffCount[totalUnits - 1]);
-                scaleBexQuantUnits(spectra, scales, groupAUnit, totalUnits);
+                scaleBexQuantUnits(channel, scales, groupAUnit, totalUnits);
                 break;
             case 1:
                 for (int i = groupAUnit; i < totalUnits; i++) {
@@ -93,26 +98,25 @@ class BandExtension {
                 }
 
                 addNoiseToSpectrum(channel, groupABin, totalBins - groupABin);
-                scaleBexQuantUnits(spectra, scales, groupAUnit, totalUnits);
+                scaleBexQuantUnits(channel, scales, groupAUnit, totalUnits);
                 break;
             case 2:
                 double groupAScale2 = BexMode2Scale[values[0]];
                 double groupBScale2 = BexMode2Scale[values[1]];
 
-                for (int i = groupABin; i < groupBBin; i++) {
-                    spectra[i] *= groupAScale2;
-                }
-
-                for (int i = groupBBin; i < groupCBin; i++) {
-                    spectra[i] *= groupBScale2;
-                }
+                scaleBins(channel, groupABin, groupBBin, groupAScale2);
+                scaleBins(channel, groupBBin, groupCBin, groupBScale2);
                 break;
             case 3:
                 double rate = Math.pow(2, BexMode3Rate[values[1]]);
                 double scale = BexMode3Initial[values[0]];
                 for (int i = groupABin; i < totalBins; i++) {
                     scale *= rate;
-                    spectra[i] *= scale;
+                    if (channel.isSinglePrecision()) {
+                        spectraFloat[i] *= (float) scale;
+                    } else {
+                        spectra[i] *= scale;
+                    }
                 }
                 break;
             case 4:
@@ -121,25 +125,31 @@ class BandExtension {
                 double groupBScale4 = 0.5011902 * mult;
                 double groupCScale4 = 0.3548279 * mult;
 
-                for (int i = groupABin; i < groupBBin; i++) {
-                    spectra[i] *= groupAScale4;
-                }
-
-                for (int i = groupBBin; i < groupCBin; i++) {
-                    spectra[i] *= groupBScale4;
-                }
-
-                for (int i = groupCBin; i < totalBins; i++) {
-                    spectra[i] *= groupCScale4;
-                }
+                scaleBins(channel, groupABin, groupBBin, groupAScale4);
+                scaleBins(channel, groupBBin, groupCBin, groupBScale4);
+                scaleBins(channel, groupCBin, totalBins, groupCScale4);
                 break;
         }
     }
 
-    private static void scaleBexQuantUnits(double[] spectra, double[] scales, int startUnit, int totalUnits) {
+    private static void scaleBexQuantUnits(Channel channel, double[] scales, int startUnit, int totalUnits) {
         for (int i = startUnit; i < totalUnits; i++) {
-            for (int k = Tables.QuantUnitToCoeffIndex[i]; k < Tables.QuantUnitToCoeffIndex[i + 1]; k++) {
-                spectra[k] *= scales[i - startUnit];
+            scaleBins(channel, Tables.QuantUnitToCoeffIndex[i], Tables.QuantUnitToCoeffIndex[i + 1], scales[i - startUnit]);
+        }
+    }
+
+    /** multiplies the spectra in [start, end) by {@code scale} in the precision of the channel */
+    private static void scaleBins(Channel channel, int start, int end, double scale) {
+        if (channel.isSinglePrecision()) {
+            float[] spectra = channel.getSpectraFloat();
+            float scaleFloat = (float) scale;
+            for (int i = start; i < end; i++) {
+                spectra[i] *= scaleFloat;
+            }
+        } else {
+            double[] spectra = channel.getSpectra();
+            for (int i = start; i < end; i++) {
+                spectra[i] *= scale;
             }
         }
     }
@@ -158,12 +168,32 @@ class BandExtension {
         }
     }
 
+    private static void fillHighFrequencies(float[] spectra, int groupABin, int groupBBin, int groupCBin, int totalBins) {
+        for (int i = 0; i < groupBBin - groupABin; i++) {
+            spectra[groupABin + i] = spectra[groupABin - i - 1];
+        }
+
+        for (int i = 0; i < groupCBin - groupBBin; i++) {
+            spectra[groupBBin + i] = spectra[groupBBin - i - 1];
+        }
+
+        for (int i = 0; i < totalBins - groupCBin; i++) {
+            spectra[groupCBin + i] = spectra[groupCBin - i - 1];
+        }
+    }
+
     private static void addNoiseToSpectrum(Channel channel, int index, int count) {
         if (channel.getRng() == null) {
             int[] sf = channel.getScaleFactors();
             short seed = (short) (543 * (sf[8] + sf[12] + sf[15] + 1));
             channel.setRng(new Atrac9Rng(seed));
         }
+        if (channel.isSinglePrecision()) {
+            for (int i = 0; i < count; i++) {
+                channel.getSpectraFloat()[i + index] = (float) (channel.getRng().Next() / 65535.0 * 2.0 - 1.0);
+            }
+            return;
+        }
         for (int i = 0; i < count; i++) {
             channel.getSpectra()[i + index] = channel.getRng().Next() / 65535.0 * 2.0 - 1.0;
         }
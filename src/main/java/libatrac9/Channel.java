@@ -24,6 +24,7 @@
 
 package libatrac9;
 
+import libatrac9.util.FloatMdct;
 import libatrac9.util.Mdct;
 
 
@@ -38,6 +39,7 @@ class Channel {
 
     private final Block block;
     private final Mdct mdct;
+    private final FloatMdct floatMdct;
 
     public Atrac9Config getConfig() {
         return config;
@@ -51,12 +53,28 @@ class Channel {
         return block;
     }
 
+    /** null when {@link #isSinglePrecision()} */
     public Mdct getMdct() {
         return mdct;
     }
 
-    private final double[] pcm = new double[256];
-    private final double[] spectra = new double[256];
+    /** null when not {@link #isSinglePrecision()} */
+    public FloatMdct getFloatMdct() {
+        return floatMdct;
+    }
+
+    /** double arrays are the reference, float ones are used when {@link Frame#isSinglePrecision()} */
+    private final boolean singlePrecision;
+
+    // the work buffers of the thread decoding, see Frame#bind()
+    private double[] pcm;
+    private double[] spectra;
+    private float[] pcmFloat;
+    private float[] spectraFloat;
+
+    public boolean isSinglePrecision() {
+        return singlePrecision;
+    }
 
     public double[] getPcm() {
         return pcm;
@@ -66,6 +84,14 @@ class Channel {
         return spectra;
     }
 
+    public float[] getPcmFloat() {
+        return pcmFloat;
+    }
+
+    public float[] getSpectraFloat() {
+        return spectraFloat;
+    }
+
     private int codedQuantUnits;
     private int scaleFactorCodingMode;
 
@@ -92,11 +118,10 @@ class Channel {
     private final int[] precisionsFine = new int[30];
     private final int[] precisionMask = new int[30];
 
-    private final int[] spectraValuesBuffer = new int[16];
     private final int[] codebookSet = new int[30];
 
-    private final int[] quantizedSpectra = new int[256];
-    private final int[] quantizedSpectraFine = new int[256];
+    private int[] quantizedSpectra;
+    private int[] quantizedSpectraFine;
 
     public int[] getScaleFactors() {
         return scaleFactors;
@@ -118,10 +143,6 @@ class Channel {
         return precisionMask;
     }
 
-    public int[] getSpectraValuesBuffer() {
-        return spectraValuesBuffer;
-    }
-
     public int[] getCodebookSet() {
         return codebookSet;
     }
@@ -172,11 +193,42 @@ class Channel {
         this.rng = rng;
     }
 
+    /** the overlap of the imdct is all zero */
+    private boolean imdctSilent = true;
+
+    public boolean isImdctSilent() {
+        return imdctSilent;
+    }
+
+    public void setImdctSilent(boolean imdctSilent) {
+        this.imdctSilent = imdctSilent;
+    }
+
     public Channel(Block parentBlock, int channelIndex) {
         block = parentBlock;
         this.channelIndex = channelIndex;
         config = parentBlock.getConfig();
-        mdct = new Mdct(config.getFrameSamplesPower(), Tables.ImdctWindow[config.getFrameSamplesPower() - 6], 1);
+        singlePrecision = parentBlock.getFrame().isSinglePrecision();
+        if (singlePrecision) {
+            mdct = null;
+            floatMdct = new FloatMdct(config.getFrameSamplesPower(), Tables.ImdctWindowFloat[config.getFrameSamplesPower() - 6], 1);
+        } else {
+            mdct = new Mdct(config.getFrameSamplesPower(), Tables.ImdctWindow[config.getFrameSamplesPower() - 6], 1);
+            floatMdct = null;
+        }
+    }
+
+    /** takes the work buffers */
+    void bind(Workspace.Slot slot) {
+        quantizedSpectra = slot.quantizedSpectra;
+        quantizedSpectraFine = slot.quantizedSpectraFine;
+        if (singlePrecision) {
+            pcmFloat = slot.pcmFloat();
+            spectraFloat = slot.spectraFloat();
+        } else {
+            pcm = slot.pcm();
+            spectra = slot.spectra();
+        }
     }
 
     public void updateCodedUnits() {
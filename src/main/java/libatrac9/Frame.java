@@ -28,6 +28,7 @@ package libatrac9;
 class Frame {
 
     private final Atrac9Config config;
+    private final boolean singlePrecision;
     private int frameIndex;
     private final Block[] blocks;
 
@@ -35,6 +36,11 @@ class Frame {
         return config;
     }
 
+    /** true when the spectra and pcm are kept in float instead of double */
+    public boolean isSinglePrecision() {
+        return singlePrecision;
+    }
+
     public int getFrameIndex() {
         return frameIndex;
     }
@@ -48,12 +54,32 @@ class Frame {
     }
 
     public Frame(Atrac9Config config) {
+        this(config, false);
+    }
+
+    public Frame(Atrac9Config config, boolean singlePrecision) {
         this.config = config;
+        this.singlePrecision = singlePrecision;
         blocks = new Block[config.getChannelConfig().getBlockCount()];
 
         for (int i = 0; i < config.getChannelConfig().getBlockCount(); i++) {
             blocks[i] = new Block(this, i);
         }
+        bind();
+    }
+
+    /**
+     * Takes the work buffers of the current thread, the spectra and the pcm of the previous frame
+     * decoded on the thread are lost.
+     */
+    public void bind() {
+        Workspace work = Workspace.get();
+        int slot = 0;
+        for (Block block : blocks) {
+            for (Channel channel : block.getChannels()) {
+                channel.bind(work.slot(slot++));
+            }
+        }
     }
 }
 
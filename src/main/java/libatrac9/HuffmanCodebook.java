@@ -24,6 +24,7 @@
 
 package libatrac9;
 
+import libatrac9.util.Bit;
 import libatrac9.util.Helpers;
 
 
@@ -47,6 +48,7 @@ class HuffmanCodebook {
 
         maxBitSize = max;
         lookup = CreateLookupTable();
+        decodeTable = createDecodeTable();
     }
 
     private byte[] CreateLookupTable() {
@@ -70,9 +72,47 @@ class HuffmanCodebook {
         return dest;
     }
 
+    /**
+     * Entry layout of {@link #decodeTable}, indexed like {@link #lookup}.
+     * <pre>
+     * bits  0- 3 code length
+     * bits  4-11 symbol
+     * bits 12-31 the symbol unpacked into {@link #valueCount} signed values of
+     *            {@code VALUES_BITS / valueCount} bits each, the first one in the lowest bits,
+     *            so the last one is {@code entry >> (32 - VALUES_BITS / valueCount)}
+     * </pre>
+     */
+    public static final int LENGTH_MASK = 0xf;
+    public static final int SYMBOL_SHIFT = 4;
+    public static final int VALUES_SHIFT = 12;
+    public static final int VALUES_BITS = 32 - VALUES_SHIFT;
+
+    private int[] createDecodeTable() {
+        int fieldBits = VALUES_BITS >> valueCountPower;
+        if (maxBitSize > LENGTH_MASK || bits.length > 0x100 || valueBits > fieldBits) {
+            throw new IllegalStateException("codebook does not fit in the decode table");
+        }
+
+        var dest = new int[lookup.length];
+        for (int i = 0; i < lookup.length; i++) {
+            int symbol = lookup[i] & 0xff;
+            int entry = bits[symbol] | symbol << SYMBOL_SHIFT;
+            int value = symbol;
+            for (int j = 0; j < valueCount; j++) {
+                int signed = Bit.signExtend32(value & (valueMax - 1), valueBits);
+                entry |= (signed & ((1 << fieldBits) - 1)) << (VALUES_SHIFT + j * fieldBits);
+                value >>>= valueBits;
+            }
+            dest[i] = entry;
+        }
+        return dest;
+    }
+
     public final short[] codes;
     public final byte[] bits;
     public byte[] lookup;
+    /** symbol, length and unpacked values per {@link #lookup} index, see {@link #LENGTH_MASK} */
+    public int[] decodeTable;
     public int valueCount;
     public int valueCountPower;
     public int valueBits;
@@ -91,6 +131,10 @@ class HuffmanCodebook {
         return lookup;
     }
 
+    public int[] getDecodeTable() {
+        return decodeTable;
+    }
+
     public int getValueCount() {
         return valueCount;
     }
@@ -26,46 +26,85 @@ package libatrac9;
 
 import java.util.Arrays;
 
+import jpcsp.media.codec.util.SimdKernels;
+import libatrac9.Block.BlockType;
+
 
 class Quantization {
 
-    public static void dequantizeSpectra(Block block) {
+    /** null when the vector api is not available */
+    private static final SimdKernels simd = SimdKernels.getInstance();
+
+    /**
+     * Dequantizes the spectra of a block with their fine precision, fills the intensity stereo
+     * units of the secondary channel from the primary one and applies the scale factors,
+     * in one pass over the coded units. only the bins above them are cleared.
+     */
+    public static void reconstructSpectra(Block block) {
+        int quantUnitCount = block.getQuantizationUnitCount();
+        int stereoUnits = block.getStereoQuantizationUnit();
+        boolean intensityStereo = block.getBlockType() == BlockType.Stereo && stereoUnits < quantUnitCount;
+
         for (Channel channel : block.getChannels()) {
-            Arrays.fill(channel.getSpectra(), 0, channel.getSpectra().length, 0);
+            int units = channel.getCodedQuantUnits();
+            Channel source = channel;
+            if (intensityStereo && !channel.isPrimary()) {
+                units = quantUnitCount;
+                source = block.getPrimaryChannel();
+            }
 
-            for (int i = 0; i < channel.getCodedQuantUnits(); i++) {
-                dequantizeQuantUnit(channel, i);
+            for (int i = 0; i < units; i++) {
+                Channel from = i < channel.getCodedQuantUnits() ? channel : source;
+                // units past the quantization unit count (a stereo band above the band count) are not scaled
+                int scaleFactor = i < quantUnitCount ? channel.getScaleFactors()[i] : -1;
+                boolean negate = from != channel && block.getJointStereoSigns()[i] > 0;
+                if (channel.isSinglePrecision()) {
+                    float scale = scaleFactor < 0 ? 1f : Tables.SpectrumScaleFloat[scaleFactor];
+                    reconstructQuantUnitFloat(from, channel.getSpectraFloat(), i, negate ? -scale : scale);
+                } else {
+                    double scale = scaleFactor < 0 ? 1.0 : Tables.SpectrumScale[scaleFactor];
+                    reconstructQuantUnit(from, channel.getSpectra(), i, negate ? -scale : scale);
+                }
+            }
+
+            int end = Tables.QuantUnitToCoeffIndex[units];
+            if (channel.isSinglePrecision()) {
+                Arrays.fill(channel.getSpectraFloat(), end, channel.getSpectraFloat().length, 0f);
+            } else {
+                Arrays.fill(channel.getSpectra(), end, channel.getSpectra().length, 0.0);
             }
         }
     }
 
-    private static void dequantizeQuantUnit(Channel channel, int band) {
+    /** spectra = (coarse * step + fine * fine step) * scale, over the bins of a quant unit of channel */
+    private static void reconstructQuantUnit(Channel channel, double[] spectra, int band, double scale) {
         int subBandIndex = Tables.QuantUnitToCoeffIndex[band];
         int subBandCount = Tables.QuantUnitToCoeffCount[band];
         double stepSize = Tables.QuantizerStepSize[channel.getPrecisions()[band]];
         double stepSizeFine = Tables.QuantizerFineStepSize[channel.getPrecisionsFine()[band]];
+        int[] quantizedSpectra = channel.getQuantizedSpectra();
+        int[] quantizedSpectraFine = channel.getQuantizedSpectraFine();
 
-        for (int sb = 0; sb < subBandCount; sb++) {
-            double coarse = channel.getQuantizedSpectra()[subBandIndex + sb] * stepSize;
-            double fine = channel.getQuantizedSpectraFine()[subBandIndex + sb] * stepSizeFine;
-            channel.getSpectra()[subBandIndex + sb] = coarse + fine;
+        if (simd != null) {
+            simd.int32ToDoubleDmulScalarAddScale(spectra, subBandIndex, quantizedSpectra, stepSize, quantizedSpectraFine, stepSizeFine, subBandIndex, scale, subBandCount);
+            return;
         }
-    }
 
-    public static void scaleSpectrum(Block block) {
-        for (Channel channel : block.getChannels()) {
-            scaleSpectrum(channel);
+        for (int sb = subBandIndex; sb < subBandIndex + subBandCount; sb++) {
+            double coarse = quantizedSpectra[sb] * stepSize;
+            double fine = quantizedSpectraFine[sb] * stepSizeFine;
+            spectra[sb] = (coarse + fine) * scale;
         }
     }
 
-    private static void scaleSpectrum(Channel channel) {
-        int quantUnitCount = channel.getBlock().getQuantizationUnitCount();
-        double[] spectra = channel.getSpectra();
+    private static void reconstructQuantUnitFloat(Channel channel, float[] spectra, int band, float scale) {
+        float stepSize = Tables.QuantizerStepSizeFloat[channel.getPrecisions()[band]];
+        float stepSizeFine = Tables.QuantizerFineStepSizeFloat[channel.getPrecisionsFine()[band]];
+        int[] quantizedSpectra = channel.getQuantizedSpectra();
+        int[] quantizedSpectraFine = channel.getQuantizedSpectraFine();
 
-        for (int i = 0; i < quantUnitCount; i++) {
-            for (int sb = Tables.QuantUnitToCoeffIndex[i]; sb < Tables.QuantUnitToCoeffIndex[i + 1]; sb++) {
-                spectra[sb] *= Tables.SpectrumScale[channel.getScaleFactors()[i]];
-            }
+        for (int sb = Tables.QuantUnitToCoeffIndex[band]; sb < Tables.QuantUnitToCoeffIndex[band + 1]; sb++) {
+            spectra[sb] = (quantizedSpectra[sb] * stepSize + quantizedSpectraFine[sb] * stepSizeFine) * scale;
         }
     }
 }
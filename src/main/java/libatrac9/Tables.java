@@ -109,6 +109,14 @@ class Tables {
     public static final Double[] QuantizerStepSize = generate(16, Tables::quantizerStepSizeFunction, Double.class);
     public static final Double[] QuantizerFineStepSize = generate(16, Tables::quantizerFineStepSizeFunction, Double.class);
 
+    // single precision versions of the above, rounded from the double ones
+
+    public static final float[][] ImdctWindowFloat = {toFloat(ImdctWindow[0]), toFloat(ImdctWindow[1]), toFloat(ImdctWindow[2])};
+
+    public static final float[] SpectrumScaleFloat = toFloat(SpectrumScale);
+    public static final float[] QuantizerStepSizeFloat = toFloat(QuantizerStepSize);
+    public static final float[] QuantizerFineStepSizeFloat = toFloat(QuantizerFineStepSize);
+
     public static final byte[][] GradientCurves = BitAllocation.generateGradientCurves();
 
     private static double quantizerStepSizeFunction(int x) {
@@ -146,6 +154,22 @@ class Tables {
         return output;
     }
 
+    private static float[] toFloat(double[] table) {
+        float[] output = new float[table.length];
+        for (int i = 0; i < table.length; i++) {
+            output[i] = (float) table[i];
+        }
+        return output;
+    }
+
+    private static float[] toFloat(Double[] table) {
+        float[] output = new float[table.length];
+        for (int i = 0; i < table.length; i++) {
+            output[i] = table[i].floatValue();
+        }
+        return output;
+    }
+
     @SuppressWarnings("unchecked")
     private static <T> T[] generate(int count, Function<Integer, T> elementGenerator, Class<T> c) {
         T[] table = (T[]) Array.newInstance(c, count);
@@ -27,12 +27,24 @@ package libatrac9;
 import java.util.Arrays;
 
 import libatrac9.util.BitReader;
-import libatrac9.util.Bit;
 import libatrac9.Block.BlockType;
 
 
 class Unpack {
 
+    /**
+     * value j of n in a {@link HuffmanCodebook#decodeTable} entry is sign extended by
+     * {@code (entry << (RIGHT - VALUES_SHIFT - j * BITS)) >> RIGHT}, RIGHT = 32 - BITS, BITS = VALUES_BITS / n
+     */
+    private static final int PAIR_BITS = HuffmanCodebook.VALUES_BITS / 2;
+    private static final int PAIR_RIGHT = 32 - PAIR_BITS;
+    private static final int PAIR_LEFT_0 = PAIR_RIGHT - HuffmanCodebook.VALUES_SHIFT;
+    private static final int QUAD_BITS = HuffmanCodebook.VALUES_BITS / 4;
+    private static final int QUAD_RIGHT = 32 - QUAD_BITS;
+    private static final int QUAD_LEFT_0 = QUAD_RIGHT - HuffmanCodebook.VALUES_SHIFT;
+    private static final int QUAD_LEFT_1 = QUAD_LEFT_0 - QUAD_BITS;
+    private static final int QUAD_LEFT_2 = QUAD_LEFT_1 - QUAD_BITS;
+
     public static void unpackFrame(BitReader reader, Frame frame) {
         for (Block block : frame.getBlocks()) {
             unpackBlock(reader, block);
@@ -274,7 +286,6 @@ class Unpack {
     }
 
     private static void readSpectra(BitReader reader, Channel channel) {
-        int[] values = channel.getSpectraValuesBuffer();
         Arrays.fill(channel.getQuantizedSpectra(), 0, channel.getQuantizedSpectra().length, 0);
         int maxHuffPrecision = Tables.maxHuffPrecision(channel.getConfig().isHighSampleRate());
 
@@ -283,12 +294,7 @@ class Unpack {
             int precision = channel.getPrecisions()[i] + 1;
             if (precision <= maxHuffPrecision) {
                 HuffmanCodebook huff = Tables.HuffmanSpectrum[channel.getCodebookSet()[i]][precision][Tables.QuantUnitToCodebookIndex[i]];
-                int groupCount = subbandCount >>> huff.valueCountPower;
-                for (int j = 0; j < groupCount; j++) {
-                    values[j] = readHuffmanValue(huff, reader, false);
-                }
-
-                decodeHuffmanValues(channel.getQuantizedSpectra(), Tables.QuantUnitToCoeffIndex[i], subbandCount, huff, values);
+                decodeHuffmanValues(channel.getQuantizedSpectra(), Tables.QuantUnitToCoeffIndex[i], subbandCount, huff, reader);
             } else {
                 int subbandIndex = Tables.QuantUnitToCoeffIndex[i];
                 for (int j = subbandIndex; j < Tables.QuantUnitToCoeffIndex[i + 1]; j++) {
@@ -314,25 +320,49 @@ class Unpack {
         }
     }
 
-    private static void decodeHuffmanValues(int[] spectrum, int index, int bandCount, HuffmanCodebook huff, int[] values) {
-        int valueCount = bandCount >>> huff.valueCountPower;
-        int mask = (1 << huff.valueBits) - 1;
-
-        for (int i = 0; i < valueCount; i++) {
-            int value = values[i];
-            for (int j = 0; j < huff.valueCount; j++) {
-                spectrum[index++] = Bit.signExtend32(value & mask, huff.valueBits);
-                value >>>= huff.valueBits;
-            }
+    /**
+     * Reads {@code bandCount} coefficients, the 1, 2 or 4 values of a code come from one
+     * {@link HuffmanCodebook#decodeTable} entry.
+     */
+    private static void decodeHuffmanValues(int[] spectrum, int index, int bandCount, HuffmanCodebook huff, BitReader reader) {
+        int[] table = huff.decodeTable;
+        int maxBitSize = huff.maxBitSize;
+        int end = index + bandCount;
+
+        // the values are the VALUES_BITS / valueCount bit fields above VALUES_SHIFT
+        switch (huff.valueCount) {
+            case 1:
+                for (; index < end; index++) {
+                    int entry = table[reader.peekInt(maxBitSize)];
+                    reader.skip(entry & HuffmanCodebook.LENGTH_MASK);
+                    spectrum[index] = entry >> HuffmanCodebook.VALUES_SHIFT;
+                }
+                break;
+            case 2:
+                for (; index < end; index += 2) {
+                    int entry = table[reader.peekInt(maxBitSize)];
+                    reader.skip(entry & HuffmanCodebook.LENGTH_MASK);
+                    spectrum[index] = (entry << PAIR_LEFT_0) >> PAIR_RIGHT;
+                    spectrum[index + 1] = entry >> PAIR_RIGHT;
+                }
+                break;
+            case 4:
+                for (; index < end; index += 4) {
+                    int entry = table[reader.peekInt(maxBitSize)];
+                    reader.skip(entry & HuffmanCodebook.LENGTH_MASK);
+                    spectrum[index] = (entry << QUAD_LEFT_0) >> QUAD_RIGHT;
+                    spectrum[index + 1] = (entry << QUAD_LEFT_1) >> QUAD_RIGHT;
+                    spectrum[index + 2] = (entry << QUAD_LEFT_2) >> QUAD_RIGHT;
+                    spectrum[index + 3] = entry >> QUAD_RIGHT;
+                }
+                break;
         }
     }
 
     public static int readHuffmanValue(HuffmanCodebook huff, BitReader reader, boolean signed /* = false */) {
-        int code = reader.peekInt(huff.maxBitSize);
-        int value = huff.lookup[code] & 0xff;
-        int bits = huff.bits[value] & 0xff;
-        reader.setPosition(reader.getPosition() + bits);
-        return signed ? Bit.signExtend32(value, huff.valueBits) : value;
+        int entry = huff.decodeTable[reader.peekInt(huff.maxBitSize)];
+        reader.skip(entry & HuffmanCodebook.LENGTH_MASK);
+        return signed ? entry >> HuffmanCodebook.VALUES_SHIFT : (entry >>> HuffmanCodebook.SYMBOL_SHIFT) & 0xff;
     }
 
     private static void unpackLfeBlock(BitReader reader, Block block) {
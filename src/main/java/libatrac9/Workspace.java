@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package libatrac9;
+
+
+/**
+ * Per thread work buffers of the channels, the quantized spectra, the spectra and the pcm.
+ * <p>
+ * they are filled and consumed in a frame, so the frames decoded on a thread share them
+ * and a {@link Channel} keeps only the state carried over to the next frame.
+ * a {@link Frame} takes them by {@link Frame#bind()} before it is decoded.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+final class Workspace {
+
+    private static final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(Workspace::new);
+
+    /** @return the buffers of the current thread */
+    static Workspace get() {
+        return workspaces.get();
+    }
+
+    /** the buffers of a channel of a frame, the ones of the precision are made when used first */
+    static final class Slot {
+
+        final int[] quantizedSpectra = new int[256];
+        final int[] quantizedSpectraFine = new int[256];
+        private double[] spectra;
+        private double[] pcm;
+        private float[] spectraFloat;
+        private float[] pcmFloat;
+
+        double[] spectra() {
+            if (spectra == null) {
+                spectra = new double[256];
+            }
+            return spectra;
+        }
+
+        double[] pcm() {
+            if (pcm == null) {
+                pcm = new double[256];
+            }
+            return pcm;
+        }
+
+        float[] spectraFloat() {
+            if (spectraFloat == null) {
+                spectraFloat = new float[256];
+            }
+            return spectraFloat;
+        }
+
+        float[] pcmFloat() {
+            if (pcmFloat == null) {
+                pcmFloat = new float[256];
+            }
+            return pcmFloat;
+        }
+    }
+
+    private Slot[] slots = new Slot[0];
+
+    private Workspace() {
+    }
+
+    /** @param index of the channel in the frame */
+    Slot slot(int index) {
+        if (index >= slots.length) {
+            Slot[] grown = new Slot[index + 1];
+            System.arraycopy(slots, 0, grown, 0, slots.length);
+            slots = grown;
+        }
+        if (slots[index] == null) {
+            slots[index] = new Slot();
+        }
+        return slots[index];
+    }
+}
@@ -51,9 +51,11 @@ public class Utils {
     }
 
     public static byte[] shortToInterleavedByte(short[][] input, byte[] output) {
-        int inputCount = input.length;
-        int length = input[0].length;
+        return shortToInterleavedByte(input, input.length, input[0].length, output);
+    }
 
+    /** the first inputCount rows of input, length samples each */
+    public static byte[] shortToInterleavedByte(short[][] input, int inputCount, int length, byte[] output) {
         for (int i = 0; i < length; i++) {
             for (int j = 0; j < inputCount; j++) {
                 int offset = (i * inputCount + j) * 2;
@@ -24,17 +24,36 @@
 
 package libatrac9.util;
 
-import vavi.util.ByteUtil;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
 
 
+/**
+ * Reads bits MSB first from a byte array.
+ * <p>
+ * 8 bytes are kept in a 64-bit cache, so peeks and reads are shifts on the cache
+ * and the buffer is only touched again when the requested bits are outside of it.
+ */
 public class BitReader {
 
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    /** far enough from any position that {@link #peekInt(int)} refills */
+    private static final int EMPTY = Integer.MIN_VALUE / 2;
+
     private byte[] buffer;
 
     private int lengthBits;
 
     private int position;
 
+    /** 8 bytes from {@link #cacheStart}, bits after {@link #lengthBits} are 0 */
+    private long cache;
+
+    /** bit position of the cache, a multiple of 8 or {@link #EMPTY} */
+    private int cacheStart = EMPTY;
+
     public byte[] getBuffer() {
         return buffer;
     }
@@ -45,6 +64,7 @@ public class BitReader {
 
     public void setLengthBits(int lengthBits) {
         this.lengthBits = lengthBits;
+        cacheStart = EMPTY;
     }
 
     public int getPosition() {
@@ -67,6 +87,7 @@ public class BitReader {
         this.buffer = buffer;
         lengthBits = this.buffer != null ? this.buffer.length * 8 : 0;
         position = 0;
+        cacheStart = EMPTY;
     }
 
     public int readInt(int bitCount) {
@@ -85,6 +106,10 @@ public class BitReader {
         return readInt(1) == 1;
     }
 
+    public void skip(int bitCount) {
+        position += bitCount;
+    }
+
     public int readOffsetBinary(int bitCount, OffsetBias bias) {
         int offset = (1 << (bitCount - 1)) - bias.ordinal();
         int value = peekInt(bitCount) - offset;
@@ -99,62 +124,35 @@ public class BitReader {
     public int peekInt(int bitCount) {
         assert bitCount >= 0 && bitCount <= 32;
 
-        if (bitCount > remaining()) {
-            if (position >= lengthBits) return 0;
-
-            int extraBits = bitCount - remaining();
-            return peekIntFallback(remaining()) << extraBits;
-        }
-
-        int byteIndex = position / 8;
-        int bitIndex = position % 8;
-
-        if (bitCount <= 9 && remaining() >= 16) {
-//            int value = buffer[byteIndex] << 8 | buffer[byteIndex + 1];
-            int value = ByteUtil.readBeShort(buffer, byteIndex) & 0xffff;
-            value &= 0xFFFF >> bitIndex;
-            value >>>= 16 - bitCount - bitIndex;
-            return value;
+        int offset = position - cacheStart;
+        if (offset < 0 || offset + bitCount > 64) {
+            refill();
+            offset = position & 7;
         }
-
-        if (bitCount <= 17 && remaining() >= 24) {
-//            int value = buffer[byteIndex] << 16 | buffer[byteIndex + 1] << 8 | buffer[byteIndex + 2];
-            int value = ByteUtil.readBe24(buffer, byteIndex);
-            value &= 0xFFFF_FF >> bitIndex;
-            value >>>= 24 - bitCount - bitIndex;
-            return value;
-        }
-
-        if (bitCount <= 25 && remaining() >= 32) {
-//            int value = buffer[byteIndex] << 24 | buffer[byteIndex + 1] << 16 | buffer[byteIndex + 2] << 8 | buffer[byteIndex + 3];
-            int value = ByteUtil.readBeInt(buffer, byteIndex);
-            value &= 0xFFFF_FFFF >> bitIndex;
-            value >>>= 32 - bitCount - bitIndex;
-            return value;
-        }
-        return peekIntFallback(bitCount);
-    }
-
-    private int peekIntFallback(int bitCount) {
-        int value = 0;
-        int byteIndex = position / 8;
-        int bitIndex = position % 8;
-
-        while (bitCount > 0) {
-            if (bitIndex >= 8) {
-                bitIndex = 0;
-                byteIndex++;
+        // two shifts so that bitCount == 0 gives 0
+        return (int) ((cache << offset) >>> 1 >>> (63 - bitCount));
+    }
+
+    /** loads the 8 bytes from the byte at {@link #position} */
+    private void refill() {
+        int byteIndex = position >> 3;
+        long value;
+        if (byteIndex + 8 <= buffer.length) {
+            value = (long) LONG.get(buffer, byteIndex);
+        } else {
+            value = 0;
+            for (int i = byteIndex; i < byteIndex + 8; i++) {
+                value = (value << 8) | (i < buffer.length ? buffer[i] & 0xff : 0);
             }
-
-            int bitsToRead = Math.min(bitCount, 8 - bitIndex);
-            int mask = 0xFF >> bitIndex;
-            int currentByte = (mask & buffer[byteIndex]) >> (8 - bitIndex - bitsToRead);
-
-            value = (value << bitsToRead) | currentByte;
-            bitIndex += bitsToRead;
-            bitCount -= bitsToRead;
         }
-        return value;
+        cacheStart = byteIndex << 3;
+        int validBits = lengthBits - cacheStart;
+        if (validBits <= 0) {
+            value = 0;
+        } else if (validBits < 64) {
+            value &= -1L << (64 - validBits);
+        }
+        cache = value;
     }
 
     /**
@@ -0,0 +1,115 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Alex Barney
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package libatrac9.util;
+
+import jpcsp.media.codec.transform.MdctPlan;
+import jpcsp.media.codec.transform.Scratch;
+
+
+/**
+ * Single precision version of {@link Mdct}.
+ * <p>
+ * the DCT-IV is the split-radix {@link MdctPlan} of the atrac3 decoders,
+ * an imdct half of twice the size gives it in reverse order.
+ * the result differs from {@link Mdct} by the precision and the order of the arithmetic.
+ */
+public class FloatMdct {
+
+    private final int mdctBits;
+
+    private final int mdctSize;
+
+    private final float scale;
+
+    public int getMdctBits() {
+        return mdctBits;
+    }
+
+    public int getMdctSize() {
+        return mdctSize;
+    }
+
+    public float getScale() {
+        return scale;
+    }
+
+    private final MdctPlan plan;
+
+    private final float[] imdctPrevious;
+    private final float[] imdctWindow;
+
+    /**
+     * @param scale must be positive
+     */
+    public FloatMdct(int mdctBits, float[] window, float scale /* = 1 */) {
+        if (!(scale > 0)) {
+            throw new IllegalArgumentException("scale: " + scale);
+        }
+        plan = MdctPlan.get(mdctBits + 1, true, scale);
+        if (plan == null) {
+            throw new IllegalArgumentException("mdctBits: " + mdctBits);
+        }
+
+        this.mdctBits = mdctBits;
+        mdctSize = 1 << mdctBits;
+        this.scale = scale;
+
+        if (window.length < mdctSize) {
+            throw new IllegalArgumentException("Window must be as long as the MDCT size.: window");
+        }
+
+        imdctPrevious = new float[mdctSize];
+        imdctWindow = window;
+    }
+
+    /** the overlap for the next frame */
+    public float[] getImdctPrevious() {
+        return imdctPrevious;
+    }
+
+    public void runImdct(float[] input, float[] output) {
+        if (input.length < mdctSize) {
+            throw new IllegalArgumentException("Input must be as long as the MDCT size.: input");
+        }
+
+        if (output.length < mdctSize) {
+            throw new IllegalArgumentException("Output must be as long as the MDCT size.: output");
+        }
+
+        int size = mdctSize;
+        int half = size / 2;
+        // the dct-iv reversed, dct[i] is reversed[size - 1 - i]
+        float[] reversed = Scratch.floats(size);
+
+        plan.imdctHalf(reversed, 0, input, 0);
+
+        for (int i = 0; i < half; i++) {
+            output[i] = imdctWindow[i] * reversed[half - 1 - i] + imdctPrevious[i];
+            output[i + half] = imdctWindow[i + half] * -reversed[i] - imdctPrevious[i + half];
+            imdctPrevious[i] = imdctWindow[size - 1 - i] * -reversed[half + i];
+            imdctPrevious[i + half] = imdctWindow[half - i - 1] * reversed[size - 1 - i];
+        }
+    }
+}
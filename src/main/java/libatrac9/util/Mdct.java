@@ -24,10 +24,15 @@
 
 package libatrac9.util;
 
-import java.util.ArrayList;
-import java.util.List;
+import jpcsp.media.codec.transform.Dct4Plan;
+import jpcsp.media.codec.transform.Scratch;
 
 
+/**
+ * IMDCT with the overlap of one channel.
+ * <p>
+ * the DCT-IV is the shared {@link Dct4Plan}, work buffers are {@link Scratch}.
+ */
 public class Mdct {
 
     private final int mdctBits;
@@ -48,20 +53,13 @@ public class Mdct {
         return scale;
     }
 
-    private static final Object tableLock = new Object();
-    private static int _tableBits = -1;
-    private static final List<double[]> sinTables = new ArrayList<>();
-    private static final List<double[]> cosTables = new ArrayList<>();
-    private static final List<int[]> shuffleTables = new ArrayList<>();
+    private final Dct4Plan plan;
 
     private final double[] imdctPrevious;
     private final double[] imdctWindow;
 
-    private final double[] scratchMdct;
-    private final double[] scratchDct;
-
     public Mdct(int mdctBits, double[] window, double scale /* = 1 */) {
-        setTables(mdctBits);
+        plan = Dct4Plan.get(mdctBits);
 
         this.mdctBits = mdctBits;
         mdctSize = 1 << mdctBits;
@@ -72,27 +70,12 @@ public class Mdct {
         }
 
         imdctPrevious = new double[mdctSize];
-        scratchMdct = new double[mdctSize];
-        scratchDct = new double[mdctSize];
         imdctWindow = window;
     }
 
-    private static void setTables(int maxBits) {
-        synchronized (tableLock) {
-            if (maxBits > _tableBits) {
-                for (int i = _tableBits + 1; i <= maxBits; i++) {
-                    double[][] sin = new double[1][];
-                    double[][] cos = new double[1][];
-                    generateTrigTables(i, /* out */ sin, /* out */ cos);
-                    sinTables.add(sin[0]);
-                    cosTables.add(cos[0]);
-                    shuffleTables.add(generateShuffleTable(i));
-                }
-                _tableBits = maxBits;
-            }
-//Debug.println("sinTables: " + sinTables.size() + ", " + sinTables);
-//Debug.println("cosTables: " + cosTables.size() + ", " + cosTables);
-        }
+    /** the overlap for the next frame */
+    public double[] getImdctPrevious() {
+        return imdctPrevious;
     }
 
     public void runImdct(double[] input, double[] output) {
@@ -106,96 +89,17 @@ public class Mdct {
 
         int size = mdctSize;
         int half = size / 2;
-        double[] dctOut = scratchMdct;
+        // the dct works in the first half and writes to the second one
+        double[] dctOut = Scratch.doubles(size * 2);
+        int o = size;
 
-        dct4(input, dctOut);
+        plan.transform(input, dctOut, o, dctOut, scale);
 
         for (int i = 0; i < half; i++) {
-            output[i] = imdctWindow[i] * dctOut[i + half] + imdctPrevious[i];
-            output[i + half] = imdctWindow[i + half] * -dctOut[size - 1 - i] - imdctPrevious[i + half];
-            imdctPrevious[i] = imdctWindow[size - 1 - i] * -dctOut[half - i - 1];
-            imdctPrevious[i + half] = imdctWindow[half - i - 1] * dctOut[i];
-        }
-    }
-
-    /**
-     * Does a Type-4 DCT.
-     *
-     * @param input  The input array containing the time or frequency-domain samples
-     * @param output The output array that will contain the transformed time or frequency-domain samples
-     */
-    private void dct4(double[] input, double[] output) {
-        int[] shuffleTable = shuffleTables.get(mdctBits);
-        double[] sinTable = sinTables.get(mdctBits);
-        double[] cosTable = cosTables.get(mdctBits);
-        double[] dctTemp = scratchDct;
-//Debug.println("mdctBits: " + mdctBits);
-
-        int size = mdctSize;
-        int lastIndex = size - 1;
-        int halfSize = size / 2;
-
-        for (int i = 0; i < halfSize; i++) {
-            int i2 = i * 2;
-            double a = input[i2];
-            double b = input[lastIndex - i2];
-            double sin = sinTable[i];
-            double cos = cosTable[i];
-            dctTemp[i2] = a * cos + b * sin;
-            dctTemp[i2 + 1] = a * sin - b * cos;
-        }
-        int stageCount = mdctBits - 1;
-
-        for (int stage = 0; stage < stageCount; stage++) {
-            int blockCount = 1 << stage;
-            int blockSizeBits = stageCount - stage;
-            int blockHalfSizeBits = blockSizeBits - 1;
-            int blockSize = 1 << blockSizeBits;
-            int blockHalfSize = 1 << blockHalfSizeBits;
-            sinTable = sinTables.get(blockHalfSizeBits);
-            cosTable = cosTables.get(blockHalfSizeBits);
-
-            for (int block = 0; block < blockCount; block++) {
-                for (int i = 0; i < blockHalfSize; i++) {
-                    int frontPos = (block * blockSize + i) * 2;
-                    int backPos = frontPos + blockSize;
-                    double a = dctTemp[frontPos] - dctTemp[backPos];
-                    double b = dctTemp[frontPos + 1] - dctTemp[backPos + 1];
-                    double sin = sinTable[i];
-                    double cos = cosTable[i];
-                    dctTemp[frontPos] += dctTemp[backPos];
-                    dctTemp[frontPos + 1] += dctTemp[backPos + 1];
-                    dctTemp[backPos] = a * cos + b * sin;
-                    dctTemp[backPos + 1] = a * sin - b * cos;
-                }
-            }
-        }
-
-        for (int i = 0; i < mdctSize; i++) {
-            output[i] = dctTemp[shuffleTable[i]] * scale;
-        }
-    }
-
-    private static void generateTrigTables(int sizeBits, /* out */ double[][] sin, /* out */ double[][] cos) {
-        int size = 1 << sizeBits;
-        sin[0] = new double[size];
-        cos[0] = new double[size];
-
-        for (int i = 0; i < size; i++) {
-            double value = Math.PI * (4 * i + 1) / (4 * size);
-            sin[0][i] = Math.sin(value);
-            cos[0][i] = Math.cos(value);
+            output[i] = imdctWindow[i] * dctOut[o + i + half] + imdctPrevious[i];
+            output[i + half] = imdctWindow[i + half] * -dctOut[o + size - 1 - i] - imdctPrevious[i + half];
+            imdctPrevious[i] = imdctWindow[size - 1 - i] * -dctOut[o + half - i - 1];
+            imdctPrevious[i + half] = imdctWindow[half - i - 1] * dctOut[o + i];
         }
     }
-
-    private static int[] generateShuffleTable(int sizeBits) {
-        int size = 1 << sizeBits;
-        var table = new int[size];
-
-        for (int i = 0; i < size; i++) {
-            table[i] = Bit.bitReverse32(i ^ (i / 2), sizeBits);
-        }
-
-        return table;
-    }
 }
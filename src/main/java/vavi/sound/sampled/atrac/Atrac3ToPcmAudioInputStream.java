@@ -15,6 +15,7 @@ import java.util.logging.Level;
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 
+import jpcsp.media.codec.DecodeTrace;
 import jpcsp.media.codec.ICodec;
 import jpcsp.media.codec.atrac3.Atrac3Decoder;
 import jpcsp.media.codec.atrac3plus.Atrac3plusDecoder;
@@ -30,7 +31,10 @@ import vavi.util.Debug;
  * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
  * @version 0.00 231008 nsano initial version <br>
  */
-class Atrac3ToPcmAudioInputStream extends AudioInputStream {
+class Atrac3ToPcmAudioInputStream extends AudioInputStream implements SilenceIndex.Provider {
+
+    /**  */
+    private final SilenceIndex silenceIndex;
 
     /**
      * Constructor.
@@ -40,7 +44,17 @@ class Atrac3ToPcmAudioInputStream extends AudioInputStream {
      * @param length the length in sample frames of the data in this stream.
      */
     public Atrac3ToPcmAudioInputStream(AudioInputStream in, AudioFormat format, long length) throws IOException {
-        super(new OutputEngineInputStream(new Atrac3OutputEngine(in)), format, length);
+        this(new Atrac3OutputEngine(in), format, length);
+    }
+
+    private Atrac3ToPcmAudioInputStream(Atrac3OutputEngine engine, AudioFormat format, long length) throws IOException {
+        super(new OutputEngineInputStream(engine), format, length);
+        this.silenceIndex = engine.silenceIndex;
+    }
+
+    @Override
+    public SilenceIndex getSilenceIndex() {
+        return silenceIndex;
     }
 
     /**  */
@@ -72,6 +86,12 @@ class Atrac3ToPcmAudioInputStream extends AudioInputStream {
         /**  */
         private int bytesPerFrame = 0;
 
+        /**  */
+        private final StreamMetrics metrics;
+
+        /**  */
+        private final SilenceIndex silenceIndex = new SilenceIndex();
+
         /**  */
         public Atrac3OutputEngine(AudioInputStream in) throws IOException {
             byte[] inBuf = in.readAllBytes();
@@ -127,6 +147,8 @@ class Atrac3ToPcmAudioInputStream extends AudioInputStream {
             this.inputAddr += dataOffset;
             Debug.println(Level.FINER, "inputAddr: " + inputAddr);
             this.length -= dataOffset;
+
+            this.metrics = AtracMetrics.getInstance().open(in.getFormat().getEncoding().toString(), in.getFormat().getSampleRate(), channels);
         }
 
         @Override
@@ -147,13 +169,20 @@ class Atrac3ToPcmAudioInputStream extends AudioInputStream {
                 throw new IOException("Not yet initialized");
             } else {
                 ByteBuffer outBuf = ByteBuffer.allocate(decoder.getNumberOfSamples() * 2 * channels).order(ByteOrder.LITTLE_ENDIAN);
+                long start = System.nanoTime();
                 int result = decoder.decode(in, inputAddr, length, outBuf, 0);
+                long elapsed = System.nanoTime() - start;
                 if (result < 0) {
+                    metrics.decodeError();
                     Debug.printf(Level.WARNING, "Frame #%d, result 0x%X", frameNbr, result);
+                    if (DecodeTrace.getInstance().isEnabled() && decoder.getTraceSource() != 0) {
+                        Debug.println(Level.WARNING, DecodeTrace.getInstance().dump(decoder.getTraceSource()));
+                    }
                     throw new IllegalStateException(String.format("Frame #%d, result 0x%08X", frameNbr, result));
                 }
                 if (result == 0) {
                     Debug.printf(Level.FINER, "Frame #%d, EOF", frameNbr);
+                    metrics.close();
                     out.close();
                     return;
                 }
@@ -171,12 +200,16 @@ class Atrac3ToPcmAudioInputStream extends AudioInputStream {
 
                 out.write(outBuf.array(), 0, decoder.getNumberOfSamples() * 2 * channels);
 
+                metrics.frameDecoded(consumedBytes, decoder.getNumberOfSamples() * 2 * channels, decoder.getNumberOfSamples(), elapsed);
+                silenceIndex.frame(decoder.getNumberOfSamples(), decoder.isSilent());
+
                 frameNbr++;
             }
         }
 
         @Override
         public void finish() throws IOException {
+            metrics.close();
         }
     }
 }
@@ -42,7 +42,10 @@ import static libatrac9.decoder.Utils.shortToInterleavedByte;
  * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
  * @version 0.00 240330 nsano initial version <br>
  */
-class Atrac9ToPcmAudioInputStream extends AudioInputStream {
+class Atrac9ToPcmAudioInputStream extends AudioInputStream implements SilenceIndex.Provider {
+
+    /**  */
+    private final SilenceIndex silenceIndex;
 
     /**
      * Constructor.
@@ -52,7 +55,17 @@ class Atrac9ToPcmAudioInputStream extends AudioInputStream {
      * @param length the length in sample frames of the data in this stream.
      */
     public Atrac9ToPcmAudioInputStream(AudioInputStream in, AudioFormat format, long length) throws IOException {
-        super(new OutputEngineInputStream(new Atrac9OutputEngine(in)), format, length);
+        this(new Atrac9OutputEngine(in), format, length);
+    }
+
+    private Atrac9ToPcmAudioInputStream(Atrac9OutputEngine engine, AudioFormat format, long length) throws IOException {
+        super(new OutputEngineInputStream(engine), format, length);
+        this.silenceIndex = engine.silenceIndex;
+    }
+
+    @Override
+    public SilenceIndex getSilenceIndex() {
+        return silenceIndex;
     }
 
     /** decoding input stream */
@@ -70,6 +83,12 @@ class Atrac9ToPcmAudioInputStream extends AudioInputStream {
         /**  */
         final LittleEndianDataInputStream in;
 
+        /**  */
+        final StreamMetrics metrics;
+
+        /**  */
+        final SilenceIndex silenceIndex = new SilenceIndex();
+
         /**  */
         Atrac9OutputEngine(AudioInputStream in) throws IOException {
             this.in = new LittleEndianDataInputStream(in);
@@ -127,6 +146,8 @@ class Atrac9ToPcmAudioInputStream extends AudioInputStream {
 
             pcmBuffer = createJaggedArray(short[][].class, config.getChannelCount(), config.getSuperframeSamples());
             Debug.println(Level.FINER, "array: pcmBuffer, " + pcmBuffer.length + " x " + pcmBuffer[0].length);
+
+            metrics = AtracMetrics.getInstance().open(in.getFormat().getEncoding().toString(), in.getFormat().getSampleRate(), config.getChannelCount());
         }
 
         @Override
@@ -171,15 +192,26 @@ class Atrac9ToPcmAudioInputStream extends AudioInputStream {
                                 in.skipBytes(currentInputInterleaveSize - bytesToCopy);
                             }
 
-                            decoder.decode(l < bytesToCopy ? Arrays.copyOfRange(output, 0, l) : output, pcmBuffer);
+                            long start = System.nanoTime();
+                            try {
+                                decoder.decode(l < bytesToCopy ? Arrays.copyOfRange(output, 0, l) : output, pcmBuffer);
+                            } catch (RuntimeException e) {
+                                metrics.decodeError();
+                                throw e;
+                            }
+                            long elapsed = System.nanoTime() - start;
 
                             // TODO structure.encoderDelay, see Atract9FormatBuilder.Atrac9Format#copyBuffer()
                             if (pcm == null) pcm = new byte[pcmBuffer.length * pcmBuffer[0].length * 2];
                             byte[] audioData = shortToInterleavedByte(pcmBuffer, pcm);
                             out.write(audioData, 0, pcmBuffer.length * pcmBuffer[0].length * 2);
+
+                            metrics.frameDecoded(l, pcmBuffer.length * pcmBuffer[0].length * 2, pcmBuffer[0].length, elapsed);
+                            silenceIndex.frame(pcmBuffer[0].length, decoder.isSilent());
                         }
                     }
                 } else {
+                    metrics.close();
                     out.close();
                 }
             }
@@ -187,6 +219,7 @@ class Atrac9ToPcmAudioInputStream extends AudioInputStream {
 
         @Override
         public void finish() throws IOException {
+            metrics.close();
         }
     }
 }
@@ -10,8 +10,10 @@ import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Level;
@@ -146,13 +148,27 @@ public class AtracAudioFileReader extends AudioFileReader {
     @Override
     public AudioInputStream getAudioInputStream(File file) throws UnsupportedAudioFileException, IOException {
         InputStream inputStream = Files.newInputStream(file.toPath());
-        return getAudioInputStream(new BufferedInputStream(inputStream), (int) file.length());
+        return getAudioInputStream(new BufferedInputStream(inputStream), (int) file.length(), file.toPath());
     }
 
     @Override
     public AudioInputStream getAudioInputStream(URL url) throws UnsupportedAudioFileException, IOException {
         InputStream inputStream = url.openStream();
-        return getAudioInputStream(inputStream instanceof BufferedInputStream ? inputStream : new BufferedInputStream(inputStream));
+        return getAudioInputStream(inputStream instanceof BufferedInputStream ? inputStream : new BufferedInputStream(inputStream),
+                AudioSystem.NOT_SPECIFIED, toPath(url));
+    }
+
+    /** @return the file of a file url, null for others */
+    private static Path toPath(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return Path.of(url.toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            Debug.println(Level.FINE, e);
+            return null;
+        }
     }
 
     @Override
@@ -174,7 +190,17 @@ public class AtracAudioFileReader extends AudioFileReader {
      * @throws IOException                   if an I/O exception occurs.
      */
     protected AudioInputStream getAudioInputStream(InputStream inputStream, int mediaLength) throws UnsupportedAudioFileException, IOException {
+        return getAudioInputStream(inputStream, mediaLength, null);
+    }
+
+    /**
+     * @param path the file of the stream, the stream is marked for the {@link AtracPcmCache} when it is enabled. nullable
+     */
+    private AudioInputStream getAudioInputStream(InputStream inputStream, int mediaLength, Path path) throws UnsupportedAudioFileException, IOException {
         AudioFileFormat audioFileFormat = getAudioFileFormat(inputStream, mediaLength);
+        if (path != null && AtracPcmCache.getInstance().isEnabled()) {
+            return new AtracPcmCache.Source(inputStream, audioFileFormat.getFormat(), audioFileFormat.getFrameLength(), AtracPcmCache.FileKey.of(path));
+        }
         return new AudioInputStream(inputStream, audioFileFormat.getFormat(), audioFileFormat.getFrameLength());
     }
 }
@@ -0,0 +1,363 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.sound.sampled.atrac;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import vavi.util.Debug;
+
+
+/**
+ * Decodes an ATRAC file once for many subscribers.
+ * <p>
+ * the decoded pcm frames are immutable and kept in a bounded ring,
+ * each subscriber reads them through its own cursor. there is no decoding thread,
+ * the subscriber reaching the newest frame decodes the next one while the others
+ * keep reading, so the decoding cost doesn't depend on the number of subscribers.
+ * the ring is not overwritten while a subscriber still has to read it,
+ * the slowest subscriber holds the decoding back (backpressure), close a subscription
+ * which is not read anymore. a late subscriber joins at the frame to be decoded next
+ * or at a frame still in the ring.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+public final class AtracBroadcast implements Closeable {
+
+    /** a decoded pcm frame, 16bit little endian interleaved */
+    public static final class Frame {
+
+        private final long index;
+        private final long position;
+        private final ByteBuffer pcm;
+
+        private Frame(long index, long position, ByteBuffer pcm) {
+            this.index = index;
+            this.position = position;
+            this.pcm = pcm.asReadOnlyBuffer();
+        }
+
+        /** @return sequence number from 0 */
+        public long getIndex() {
+            return index;
+        }
+
+        /** @return the first sample frame, without the encoder delay */
+        public long getPosition() {
+            return position;
+        }
+
+        /** @return a new read only view */
+        public ByteBuffer getPcm() {
+            return pcm.duplicate();
+        }
+
+        /** @return sample frames */
+        public int getLength(AudioFormat format) {
+            return pcm.remaining() / format.getFrameSize();
+        }
+    }
+
+    /** a cursor over the frames, not thread safe */
+    public final class Subscription implements Closeable {
+
+        /** the index of the frame to be read next */
+        private long cursor;
+
+        private boolean closed;
+
+        private Subscription(long cursor) {
+            this.cursor = cursor;
+        }
+
+        /**
+         * Reads the next frame, waits for it to be decoded.
+         *
+         * @return null at the end of the stream or closed
+         * @throws InterruptedException interrupted while waiting
+         * @throws IllegalStateException decoding error
+         */
+        public Frame next() throws InterruptedException {
+            while (true) {
+                int frame;
+                long index;
+                synchronized (AtracBroadcast.this) {
+                    while (true) {
+                        if (closed || AtracBroadcast.this.closed) {
+                            return null;
+                        }
+                        if (cursor < head) {
+                            Frame result = ring[(int) (cursor % ring.length)];
+                            cursor++;
+                            AtracBroadcast.this.notifyAll();
+                            return result;
+                        }
+                        if (error != null) {
+                            throw new IllegalStateException(error);
+                        }
+                        if (ended) {
+                            return null;
+                        }
+                        if (decoding || head - oldest() >= ring.length) {
+                            AtracBroadcast.this.wait();
+                        } else {
+                            decoding = true;
+                            frame = AtracBroadcast.this.frame;
+                            index = head;
+                            break;
+                        }
+                    }
+                }
+                // out of the lock, the others keep reading
+                Frame decoded = null;
+                RuntimeException error = null;
+                try {
+                    decoded = decode(frame, index);
+                } catch (RuntimeException e) {
+                    error = e;
+                }
+                publish(decoded, error);
+            }
+        }
+
+        /** @return frames decoded but not read yet */
+        public long available() {
+            synchronized (AtracBroadcast.this) {
+                return head - cursor;
+            }
+        }
+
+        /** @return the frames as a stream, closing it closes this subscription */
+        public AudioInputStream getAudioInputStream() {
+            return new AudioInputStream(new InputStream() {
+                private ByteBuffer pcm = ByteBuffer.allocate(0);
+
+                /** @return false at the end */
+                private boolean fill() throws IOException {
+                    while (!pcm.hasRemaining()) {
+                        try {
+                            Frame frame = next();
+                            if (frame == null) {
+                                return false;
+                            }
+                            pcm = frame.getPcm();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new InterruptedIOException(e.getMessage());
+                        }
+                    }
+                    return true;
+                }
+
+                @Override
+                public int read() throws IOException {
+                    return fill() ? pcm.get() & 0xff : -1;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    if (len == 0) {
+                        return 0;
+                    }
+                    if (!fill()) {
+                        return -1;
+                    }
+                    int l = Math.min(len, pcm.remaining());
+                    pcm.get(b, off, l);
+                    return l;
+                }
+
+                @Override
+                public int available() {
+                    return pcm.remaining();
+                }
+
+                @Override
+                public void close() {
+                    Subscription.this.close();
+                }
+            }, frames.getFormat(), AudioSystem.NOT_SPECIFIED);
+        }
+
+        /** releases the frames for the decoding */
+        @Override
+        public void close() {
+            synchronized (AtracBroadcast.this) {
+                if (!closed) {
+                    closed = true;
+                    subscriptions.remove(this);
+                    AtracBroadcast.this.notifyAll();
+                }
+            }
+        }
+    }
+
+    private final AtracFrames frames;
+    private final AtracFrames.Decoder decoder;
+
+    private final Frame[] ring;
+
+    private final List<Subscription> subscriptions = new ArrayList<>();
+
+    /** number of frames decoded, the index of the next one */
+    private long head;
+
+    /** the compressed frame to be decoded next */
+    private int frame;
+
+    /** a subscriber is decoding out of the lock */
+    private boolean decoding;
+
+    private boolean ended;
+
+    private boolean closed;
+
+    /** the decoding error, for all the subscribers */
+    private RuntimeException error;
+
+    /** the buffer to be decoded into, the published ones are not reused */
+    private byte[] pcm;
+
+    /**
+     * @param storage  the whole ATRAC file, a reference is taken over
+     * @param capacity frames kept in the ring
+     * @throws IllegalArgumentException not a supported ATRAC file
+     */
+    public AtracBroadcast(Storage storage, int capacity) {
+        if (capacity <= 0) {
+            storage.close();
+            throw new IllegalArgumentException("capacity: " + capacity);
+        }
+        try {
+            frames = new AtracFrames(storage);
+        } catch (RuntimeException e) {
+            storage.close();
+            throw e;
+        }
+        decoder = frames.newDecoder();
+        ring = new Frame[capacity];
+        ended = frames.getFrameLength() == 0;
+    }
+
+    /** @return pcm 16bit little endian */
+    public AudioFormat getFormat() {
+        return frames.getFormat();
+    }
+
+    /** @return frames kept in the ring */
+    public int getCapacity() {
+        return ring.length;
+    }
+
+    /** @return number of frames decoded */
+    public synchronized long getDecodedFrames() {
+        return head;
+    }
+
+    public synchronized int getSubscriptions() {
+        return subscriptions.size();
+    }
+
+    /** joins at the frame to be decoded next */
+    public Subscription subscribe() {
+        return subscribe(0);
+    }
+
+    /**
+     * @param backlog frames before the frame to be decoded next to be read first,
+     *                capacity - 1 at most
+     * @throws IllegalStateException closed
+     */
+    public synchronized Subscription subscribe(int backlog) {
+        if (closed) {
+            throw new IllegalStateException("closed");
+        }
+        // the oldest frame may be being overwritten
+        Subscription subscription = new Subscription(Math.max(0, head - Math.min(Math.max(backlog, 0), ring.length - 1)));
+        subscriptions.add(subscription);
+        Debug.println(Level.FINER, "subscribe: " + subscription.cursor + "/" + head + ", " + subscriptions.size());
+        return subscription;
+    }
+
+    /** @return the cursor of the slowest subscriber */
+    private long oldest() {
+        long oldest = head;
+        for (Subscription subscription : subscriptions) {
+            oldest = Math.min(oldest, subscription.cursor);
+        }
+        return oldest;
+    }
+
+    /**
+     * Decodes the compressed frames up to a pcm frame, only one subscriber at a time.
+     *
+     * @param frame the compressed frame to be decoded next
+     * @param index  the index of the pcm frame
+     * @return null at the end
+     */
+    private Frame decode(int frame, long index) {
+        int frameSize = frames.getFormat().getFrameSize();
+        long start = (long) frame * frames.getFrameSamples() - frames.getEncoderDelay();
+        for (; frame < frames.getFrameCount() && start < frames.getFrameLength(); frame++, start += frames.getFrameSamples()) {
+            if (pcm == null) {
+                pcm = new byte[frames.getFrameSamples() * frameSize];
+            }
+            decoder.decode(frame, pcm);
+            long from = Math.max(start, 0);
+            long to = Math.min(start + frames.getFrameSamples(), frames.getFrameLength());
+            if (from < to) {
+                ByteBuffer buffer = ByteBuffer.wrap(pcm, (int) (from - start) * frameSize, (int) (to - from) * frameSize);
+                pcm = null;
+                this.frame = frame + 1;
+                return new Frame(index, from, buffer.slice());
+            }
+        }
+        this.frame = frame;
+        return null;
+    }
+
+    /** puts the decoded frame into the ring */
+    private synchronized void publish(Frame decoded, RuntimeException error) {
+        decoding = false;
+        if (error != null) {
+            Debug.println(Level.WARNING, error);
+            this.error = error;
+        } else if (decoded == null) {
+            ended = true;
+        } else {
+            ring[(int) (head % ring.length)] = decoded;
+            head++;
+        }
+        if (closed) {
+            frames.getStorage().close();
+        }
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            subscriptions.clear();
+            // released by the decoding subscriber
+            if (!decoding) {
+                frames.getStorage().close();
+            }
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,555 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.sound.sampled.atrac;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.Clip;
+import javax.sound.sampled.Control;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.LineEvent;
+import javax.sound.sampled.LineListener;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.Mixer;
+import javax.sound.sampled.SourceDataLine;
+
+import vavi.util.Debug;
+
+
+/**
+ * A clip which keeps the compressed ATRAC frames and decodes them while playing.
+ * <p>
+ * open it with the ATRAC stream of {@link AtracAudioFileReader} instead of the decoded pcm,
+ * the frames are kept in a {@link Storage} (off the heap by default) and decoded
+ * by the playback thread into a {@link SourceDataLine}. positions are exact to a sample frame,
+ * a seek decodes some frames before the target for the overlap and is bit exact, a loop back
+ * restores the decoder state taken at the loop start instead. the loop points
+ * are set from the {@code smpl} chunk if any, otherwise the whole clip.
+ * the frame position is the one being heard, taken from the position of the line
+ * from the last start, seek or loop back. a decode error while playing closes the clip.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+public class AtracClip implements Clip {
+
+    /** bytes written to the line at once */
+    private static final int CHUNK_FRAMES = 1024;
+
+    /** the line to be played on, null for the default one */
+    private final Mixer.Info mixerInfo;
+
+    private final Storage.Type storageType;
+
+    private final List<LineListener> listeners = new CopyOnWriteArrayList<>();
+
+    /** guarded by this */
+    private AtracFrames frames;
+    private AtracFrames.Decoder decoder;
+    private SourceDataLine line;
+    private Thread thread;
+
+    /** the pcm of the frame decoded last */
+    private byte[] pcm;
+    private int pcmFrame = -1;
+    private int frameSize;
+
+    /** the position of the next frame to be rendered */
+    private long position;
+    /** the line frame position of the next frame to be rendered */
+    private long written;
+    /** {line frame position, position} where the rendered frames are not in sequence, oldest first */
+    private final Deque<long[]> marks = new ArrayDeque<>();
+    private long loopStart;
+    /** inclusive */
+    private long loopEnd;
+    /** loops remaining, {@link #LOOP_CONTINUOUSLY} for ever */
+    private int loops;
+    /** the decoder state before the frame of the loop start, taken when the frame is decoded first */
+    private byte[] loopState;
+
+    private volatile boolean running;
+
+    /** plays on the default line, keeps the frames off the heap */
+    public AtracClip() {
+        this(null, Storage.Type.DIRECT);
+    }
+
+    /**
+     * @param mixerInfo   the mixer to be played on, null for the default
+     * @param storageType where the compressed frames are kept
+     */
+    public AtracClip(Mixer.Info mixerInfo, Storage.Type storageType) {
+        this.mixerInfo = mixerInfo;
+        this.storageType = storageType;
+    }
+
+    /**
+     * @param stream an ATRAC stream from {@link AtracAudioFileReader}, the whole file is read
+     * @throws IllegalArgumentException not an ATRAC stream
+     */
+    @Override
+    public void open(AudioInputStream stream) throws LineUnavailableException, IOException {
+        if (!(stream.getFormat().getEncoding() instanceof AtracEncoding)) {
+            throw new IllegalArgumentException("not atrac: " + stream.getFormat());
+        }
+        Storage storage = Storage.allocate(storageType, stream);
+        try {
+            open(storage);
+        } finally {
+            storage.close();
+        }
+    }
+
+    /**
+     * @param format ATRAC encoding
+     * @param data   the whole ATRAC file
+     * @throws IllegalArgumentException not an ATRAC file
+     */
+    @Override
+    public void open(AudioFormat format, byte[] data, int offset, int bufferSize) throws LineUnavailableException {
+        if (!(format.getEncoding() instanceof AtracEncoding)) {
+            throw new IllegalArgumentException("not atrac: " + format);
+        }
+        try (Storage storage = Storage.allocate(storageType, new ByteArrayInputStream(data, offset, bufferSize))) {
+            open(storage);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Opens the ATRAC file already stored, several clips can share it.
+     *
+     * @param storage the whole ATRAC file, a reference is held while opened
+     * @throws IllegalArgumentException not an ATRAC file
+     */
+    public void open(Storage storage) throws LineUnavailableException {
+        synchronized (this) {
+            if (isOpen()) {
+                throw new IllegalStateException("already opened");
+            }
+            load(storage.retain());
+            try {
+                SourceDataLine line = mixerInfo != null
+                        ? (SourceDataLine) AudioSystem.getMixer(mixerInfo).getLine(new DataLine.Info(SourceDataLine.class, frames.getFormat()))
+                        : AudioSystem.getSourceDataLine(frames.getFormat());
+                line.open(frames.getFormat());
+                this.line = line;
+            } catch (LineUnavailableException | RuntimeException e) {
+                unload();
+                throw e;
+            }
+            thread = new Thread(this::play, "AtracClip");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        fire(LineEvent.Type.OPEN);
+    }
+
+    /** prepares the frames to be rendered */
+    synchronized void load(Storage storage) {
+        try {
+            frames = new AtracFrames(storage);
+        } catch (RuntimeException e) {
+            storage.close();
+            throw e;
+        }
+        decoder = frames.newDecoder();
+        frameSize = frames.getFormat().getFrameSize();
+        pcm = new byte[frames.getFrameSamples() * frameSize];
+        pcmFrame = -1;
+        position = 0;
+        written = 0;
+        marks.clear();
+        marks.add(new long[] {0, 0});
+        loops = 0;
+        loopState = null;
+        if (frames.getLoopStart() >= 0) {
+            loopStart = frames.getLoopStart();
+            loopEnd = frames.getLoopEnd();
+        } else {
+            loopStart = 0;
+            loopEnd = frames.getFrameLength() - 1;
+        }
+    }
+
+    private synchronized void unload() {
+        if (frames != null) {
+            frames.getStorage().close();
+            frames = null;
+            decoder = null;
+            pcm = null;
+        }
+    }
+
+    /**
+     * Renders the pcm from the position, following the loop.
+     *
+     * @return bytes rendered, 0 at the end
+     */
+    synchronized int render(byte[] b, int off, int len) {
+        int rendered = 0;
+        while (len - rendered >= frameSize) {
+            boolean looping = loops != 0 && position <= loopEnd + 1;
+            long limit = looping ? loopEnd + 1 : frames.getFrameLength();
+            if (position >= limit) {
+                if (!looping) {
+                    break;
+                }
+                position = loopStart;
+                marks.add(new long[] {written + rendered / frameSize, position});
+                if (loops != LOOP_CONTINUOUSLY) {
+                    loops--;
+                }
+                continue;
+            }
+            long decoded = position + frames.getEncoderDelay();
+            int frame = (int) (decoded / frames.getFrameSamples());
+            int offset = (int) (decoded % frames.getFrameSamples());
+            decodeFrame(frame);
+            int n = (int) Math.min(Math.min(frames.getFrameSamples() - offset, limit - position), (len - rendered) / frameSize);
+            System.arraycopy(pcm, offset * frameSize, b, off + rendered, n * frameSize);
+            rendered += n * frameSize;
+            position += n;
+        }
+        written += rendered / frameSize;
+        return rendered;
+    }
+
+    /** decodes the frame into {@link #pcm}, from some frames before it when not in sequence */
+    private void decodeFrame(int frame) {
+        if (frame == pcmFrame) {
+            return;
+        }
+        int loopFrame = (int) ((loopStart + frames.getEncoderDelay()) / frames.getFrameSamples());
+        if (frame != decoder.next()) {
+            if (frame == loopFrame && loopState != null) {
+                decoder.restore(loopState, frame);
+            } else {
+                decoder.reset();
+                for (int f = Math.max(0, frame - frames.getPrimingFrames()); f < frame; f++) {
+                    decoder.decode(f, pcm);
+                }
+            }
+        }
+        if (frame == loopFrame && loopState == null) {
+            loopState = decoder.snapshot();
+        }
+        decoder.decode(frame, pcm);
+        pcmFrame = frame;
+    }
+
+    /** the playback thread */
+    private void play() {
+        byte[] buffer = new byte[CHUNK_FRAMES * frameSize];
+        while (true) {
+            SourceDataLine line;
+            int n;
+            synchronized (this) {
+                try {
+                    while (!running && this.line != null) {
+                        wait();
+                    }
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (this.line == null) {
+                    break;
+                }
+                line = this.line;
+                try {
+                    n = render(buffer, 0, buffer.length);
+                } catch (RuntimeException e) {
+                    Debug.println(Level.WARNING, "decode: " + e);
+                    Debug.printStackTrace(Level.FINE, e);
+                    n = -1;
+                }
+            }
+            if (n < 0) {
+                close();
+                break;
+            }
+            if (n == 0) {
+                line.drain();
+                stopped();
+                continue;
+            }
+            line.write(buffer, 0, n);
+        }
+    }
+
+    /** stops at the end */
+    private void stopped() {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            line.stop();
+            notifyAll();
+        }
+        fire(LineEvent.Type.STOP);
+    }
+
+    private void fire(LineEvent.Type type) {
+        LineEvent event = new LineEvent(this, type, getLongFramePosition());
+        for (LineListener listener : listeners) {
+            listener.update(event);
+        }
+    }
+
+    @Override
+    public void open() throws LineUnavailableException {
+        throw new IllegalArgumentException("no audio data");
+    }
+
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            if (!isOpen()) {
+                unload();
+                return;
+            }
+            running = false;
+            line.close();
+            line = null;
+            thread = this.thread;
+            this.thread = null;
+            notifyAll();
+        }
+        if (thread != Thread.currentThread()) {
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        unload();
+        fire(LineEvent.Type.CLOSE);
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return line != null;
+    }
+
+    @Override
+    public void start() {
+        synchronized (this) {
+            if (!isOpen() || running) {
+                return;
+            }
+            line.start();
+            running = true;
+            notifyAll();
+        }
+        fire(LineEvent.Type.START);
+    }
+
+    @Override
+    public void stop() {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            line.stop();
+            notifyAll();
+        }
+        fire(LineEvent.Type.STOP);
+    }
+
+    @Override
+    public void loop(int count) {
+        if (count < 0 && count != LOOP_CONTINUOUSLY) {
+            throw new IllegalArgumentException("count: " + count);
+        }
+        synchronized (this) {
+            loops = count;
+        }
+        start();
+    }
+
+    @Override
+    public void setLoopPoints(int start, int end) {
+        synchronized (this) {
+            long length = frames.getFrameLength();
+            long last = end == -1 ? length - 1 : end;
+            if (start < 0 || start >= length || last < start || last >= length) {
+                throw new IllegalArgumentException("start: " + start + ", end: " + end + ", length: " + length);
+            }
+            loopStart = start;
+            loopEnd = last;
+            loopState = null;
+        }
+    }
+
+    @Override
+    public void setFramePosition(int frames) {
+        synchronized (this) {
+            position = Math.max(0, Math.min(frames, this.frames.getFrameLength()));
+            if (line != null) {
+                line.flush();
+            }
+            rebase();
+        }
+    }
+
+    /** the line is flushed, the next frame rendered is heard next */
+    private void rebase() {
+        written = line != null ? line.getLongFramePosition() : 0;
+        marks.clear();
+        marks.add(new long[] {written, position});
+    }
+
+    @Override
+    public void setMicrosecondPosition(long microseconds) {
+        setFramePosition((int) (microseconds * getFormat().getFrameRate() / 1_000_000));
+    }
+
+    @Override
+    public synchronized int getFrameLength() {
+        return frames == null ? AudioSystem.NOT_SPECIFIED : (int) Math.min(frames.getFrameLength(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public long getMicrosecondLength() {
+        AudioFormat format = getFormat();
+        return format == null ? AudioSystem.NOT_SPECIFIED : (long) (getFrameLength() * 1_000_000d / format.getFrameRate());
+    }
+
+    @Override
+    public int getFramePosition() {
+        return (int) getLongFramePosition();
+    }
+
+    /** @return the position being heard, the one of the next frame to be rendered when not opened */
+    @Override
+    public synchronized long getLongFramePosition() {
+        return line == null ? position : positionAt(Math.min(line.getLongFramePosition(), written));
+    }
+
+    /**
+     * @param heard a line frame position, not less than the one given last
+     * @return the position rendered at the line frame position
+     */
+    synchronized long positionAt(long heard) {
+        while (marks.size() > 1) {
+            long[] mark = marks.removeFirst();
+            if (marks.getFirst()[0] > heard) {
+                marks.addFirst(mark);
+                break;
+            }
+        }
+        long[] mark = marks.getFirst();
+        return mark[1] + Math.max(0, heard - mark[0]);
+    }
+
+    @Override
+    public long getMicrosecondPosition() {
+        AudioFormat format = getFormat();
+        return format == null ? 0 : (long) (getLongFramePosition() * 1_000_000d / format.getFrameRate());
+    }
+
+    @Override
+    public void drain() {
+        synchronized (this) {
+            try {
+                while (running) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** discards the frames not heard yet, they are rendered again */
+    @Override
+    public synchronized void flush() {
+        if (line != null) {
+            position = getLongFramePosition();
+            line.flush();
+            rebase();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public synchronized boolean isActive() {
+        return running && line != null && line.isActive();
+    }
+
+    /** @return pcm 16bit little endian, null before opened */
+    @Override
+    public synchronized AudioFormat getFormat() {
+        return frames == null ? null : frames.getFormat();
+    }
+
+    @Override
+    public synchronized int getBufferSize() {
+        return line == null ? AudioSystem.NOT_SPECIFIED : line.getBufferSize();
+    }
+
+    @Override
+    public synchronized int available() {
+        return line == null ? 0 : line.available();
+    }
+
+    @Override
+    public float getLevel() {
+        return AudioSystem.NOT_SPECIFIED;
+    }
+
+    @Override
+    public synchronized DataLine.Info getLineInfo() {
+        return new DataLine.Info(Clip.class, getFormat());
+    }
+
+    /** @return the controls of the line played on */
+    @Override
+    public synchronized Control[] getControls() {
+        return line == null ? new Control[0] : line.getControls();
+    }
+
+    @Override
+    public synchronized boolean isControlSupported(Control.Type control) {
+        return line != null && line.isControlSupported(control);
+    }
+
+    @Override
+    public synchronized Control getControl(Control.Type control) {
+        if (line == null) {
+            throw new IllegalArgumentException("not opened");
+        }
+        return line.getControl(control);
+    }
+
+    @Override
+    public void addLineListener(LineListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeLineListener(LineListener listener) {
+        listeners.remove(listener);
+    }
+}
@@ -10,11 +10,15 @@ import java.io.IOException;
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
 import javax.sound.sampled.spi.FormatConversionProvider;
 
 
 /**
  * AtracFormatConversionProvider.
+ * <p>
+ * a stream of a file read by {@link AtracAudioFileReader} is decoded through
+ * the vm wide {@link AtracPcmCache} when it is enabled.
  *
  * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
  * @version 0.00 231008 nsano initial version <br>
@@ -93,15 +97,7 @@ public class AtracFormatConversionProvider extends FormatConversionProvider {
                     return sourceStream;
                 } else if (sourceFormat.getEncoding() instanceof AtracEncoding &&
                         targetFormat.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED)) {
-                    try {
-                        if (sourceFormat.getEncoding().equals(AtracEncoding.ATRAC_ADVANCED_LOSSLESS)) {
-                            return new Atrac9ToPcmAudioInputStream(sourceStream, targetFormat, AudioSystem.NOT_SPECIFIED);
-                        } else {
-                            return new Atrac3ToPcmAudioInputStream(sourceStream, targetFormat, AudioSystem.NOT_SPECIFIED);
-                        }
-                    } catch (IOException e) {
-                        throw new IllegalArgumentException(e);
-                    }
+                    return convert(sourceStream, targetFormat);
                 } else if (sourceFormat.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED) &&
                         targetFormat.getEncoding() instanceof AtracEncoding) {
                     throw new IllegalArgumentException("unable to convert " + sourceFormat + " to " + targetFormat);
@@ -126,15 +122,7 @@ public class AtracFormatConversionProvider extends FormatConversionProvider {
                     return sourceStream;
                 } else if (sourceFormat.getEncoding() instanceof AtracEncoding &&
                         targetFormat.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED)) {
-                    try {
-                        if (sourceFormat.getEncoding().equals(AtracEncoding.ATRAC_ADVANCED_LOSSLESS)) {
-                            return new Atrac9ToPcmAudioInputStream(sourceStream, targetFormat, AudioSystem.NOT_SPECIFIED);
-                        } else {
-                            return new Atrac3ToPcmAudioInputStream(sourceStream, targetFormat, AudioSystem.NOT_SPECIFIED);
-                        }
-                    } catch (IOException e) {
-                        throw new IllegalArgumentException(e);
-                    }
+                    return convert(sourceStream, targetFormat);
                 } else if (sourceFormat.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED) &&
                         targetFormat.getEncoding() instanceof AtracEncoding) {
                     throw new IllegalArgumentException("unable to convert " + sourceFormat + " to " + targetFormat);
@@ -148,4 +136,25 @@ public class AtracFormatConversionProvider extends FormatConversionProvider {
             throw new IllegalArgumentException("conversion not supported");
         }
     }
+
+    /** atrac to pcm, through the cache for a file */
+    private static AudioInputStream convert(AudioInputStream sourceStream, AudioFormat targetFormat) {
+        try {
+            if (sourceStream instanceof AtracPcmCache.Source source && AtracPcmCache.getInstance().isEnabled()) {
+                return AtracPcmCache.getInstance().getAudioInputStream(source, targetFormat);
+            }
+            return decode(sourceStream, targetFormat);
+        } catch (IOException | UnsupportedAudioFileException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /** @return the streaming decode */
+    static AudioInputStream decode(AudioInputStream sourceStream, AudioFormat targetFormat) throws IOException {
+        if (sourceStream.getFormat().getEncoding().equals(AtracEncoding.ATRAC_ADVANCED_LOSSLESS)) {
+            return new Atrac9ToPcmAudioInputStream(sourceStream, targetFormat, AudioSystem.NOT_SPECIFIED);
+        } else {
+            return new Atrac3ToPcmAudioInputStream(sourceStream, targetFormat, AudioSystem.NOT_SPECIFIED);
+        }
+    }
 }
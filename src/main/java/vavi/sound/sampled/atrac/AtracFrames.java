@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.sound.sampled.atrac;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.StringJoiner;
+import java.util.UUID;
+import java.util.logging.Level;
+import javax.sound.sampled.AudioFormat;
+
+import jpcsp.media.codec.ICodec;
+import jpcsp.media.codec.atrac3.Atrac3Decoder;
+import jpcsp.media.codec.atrac3plus.Atrac3plusDecoder;
+import libatrac9.Atrac9Config;
+import libatrac9.Atrac9Decoder;
+import vavi.util.Debug;
+
+import static libatrac9.decoder.Utils.shortToInterleavedByte;
+
+
+/**
+ * Compressed frames of an ATRAC file, decodable one by one in any order.
+ * <p>
+ * positions are in sample frames of the pcm without the encoder delay,
+ * the delay is the second value of the {@code fact} chunk (the third one for ATRAC9)
+ * and the loop points of the {@code smpl} chunk include it.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+public final class AtracFrames {
+
+    private static final int RIFF_MAGIC = 0x46464952; // "RIFF"
+    private static final int FMT_CHUNK_MAGIC = 0x20746D66; // "fmt "
+    private static final int FACT_CHUNK_MAGIC = 0x74636166; // "fact"
+    private static final int SMPL_CHUNK_MAGIC = 0x6c706d73; // "smpl"
+    private static final int DATA_CHUNK_MAGIC = 0x61746164; // "data"
+
+    /** the whole file */
+    private final Storage storage;
+
+    private final AtracEncoding encoding;
+    private final AudioFormat format;
+
+    private final int channels;
+    private final int frameBytes;
+    private final int frameSamples;
+    private final int frameCount;
+    private final int dataOffset;
+    private final int codingMode;
+    private final byte[] configData;
+
+    private final int encoderDelay;
+    private final long frameLength;
+    private final long loopStart;
+    private final long loopEnd;
+
+    /**
+     * Parses the file.
+     *
+     * @param storage the whole ATRAC file, a reference is taken over
+     * @throws IllegalArgumentException not a supported ATRAC file
+     */
+    public AtracFrames(Storage storage) {
+        ByteBuffer b = storage.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+        if (b.limit() < 12 || b.getInt(0) != RIFF_MAGIC) {
+            throw new IllegalArgumentException("not in RIFF format");
+        }
+        int fmt = -1, fact = -1, factLength = 0, smpl = -1, data = -1, dataLength = 0;
+        for (int p = 12; p + 8 <= b.limit(); ) {
+            int magic = b.getInt(p);
+            int length = b.getInt(p + 4);
+            switch (magic) {
+                case FMT_CHUNK_MAGIC -> fmt = p + 8;
+                case FACT_CHUNK_MAGIC -> { fact = p + 8; factLength = length; }
+                case SMPL_CHUNK_MAGIC -> smpl = p + 8;
+                case DATA_CHUNK_MAGIC -> { data = p + 8; dataLength = Math.min(length, b.limit() - data); }
+            }
+            if (data >= 0 || length < 0) {
+                break;
+            }
+            p += 8 + length + (length & 1);
+        }
+        if (fmt < 0 || data < 0) {
+            throw new IllegalArgumentException("no fmt or data chunk");
+        }
+
+        int formatCode = b.getShort(fmt) & 0xffff;
+        channels = b.getShort(fmt + 2);
+        float sampleRate = b.getInt(fmt + 4);
+        frameBytes = b.getShort(fmt + 12) & 0xffff;
+        int codingMode = 0;
+        byte[] configData = null;
+        encoding = switch (formatCode) {
+            case AtracEncoding.AT3_MAGIC -> {
+                if ((b.getShort(fmt + 16) & 0xffff) == 14) {
+                    codingMode = b.getShort(fmt + 18 + 6);
+                }
+                yield AtracEncoding.ATRAC3;
+            }
+            case AtracEncoding.WAVE_FORMAT_EXTENSIBLE -> {
+                UUID subFormat = guid(b, fmt + 24);
+                if (subFormat.equals(AtracEncoding.ATRAC3PLUS.guid)) {
+                    yield AtracEncoding.ATRAC3PLUS;
+                } else if (subFormat.equals(AtracEncoding.ATRAC_ADVANCED_LOSSLESS.guid)) {
+                    configData = new byte[4];
+                    b.get(fmt + 44, configData);
+                    yield AtracEncoding.ATRAC_ADVANCED_LOSSLESS;
+                } else {
+                    throw new IllegalArgumentException("guid: " + subFormat);
+                }
+            }
+            default -> throw new IllegalArgumentException("formatCode: " + formatCode);
+        };
+        this.codingMode = codingMode;
+        this.configData = configData;
+
+        if (encoding == AtracEncoding.ATRAC_ADVANCED_LOSSLESS) {
+            Atrac9Config config = new Atrac9Config(configData);
+            frameSamples = config.getSuperframeSamples();
+            int superframeBytes = config.getSuperframeBytes();
+            frameCount = dataLength / superframeBytes;
+        } else {
+            frameSamples = newCodec().getNumberOfSamples();
+            frameCount = frameBytes > 0 ? dataLength / frameBytes : 0;
+        }
+        dataOffset = data;
+
+        encoderDelay = fact < 0 || factLength < 8 ? 0 : b.getInt(fact + (factLength >= 12 ? 8 : 4));
+        long decodable = Math.max(0, (long) frameCount * frameSamples - encoderDelay);
+        frameLength = fact < 0 ? decodable : Math.min(b.getInt(fact) & 0xffffffffL, decodable);
+
+        long loopStart = -1, loopEnd = -1;
+        if (smpl >= 0 && b.getInt(smpl + 28) > 0) {
+            loopStart = Math.max(0, (b.getInt(smpl + 36 + 8) & 0xffffffffL) - encoderDelay);
+            loopEnd = Math.min(frameLength - 1, (b.getInt(smpl + 36 + 12) & 0xffffffffL) - encoderDelay);
+            if (loopEnd < loopStart) {
+                loopStart = loopEnd = -1;
+            }
+        }
+        this.loopStart = loopStart;
+        this.loopEnd = loopEnd;
+
+        format = new AudioFormat(sampleRate, 16, channels, true, false);
+        this.storage = storage;
+        Debug.println(Level.FINER, this);
+    }
+
+    /** a GUID in the little endian fields */
+    private static UUID guid(ByteBuffer b, int offset) {
+        long msb = (b.getInt(offset) & 0xffffffffL) << 32 | (b.getShort(offset + 4) & 0xffffL) << 16 | b.getShort(offset + 6) & 0xffffL;
+        long lsb = b.duplicate().order(ByteOrder.BIG_ENDIAN).getLong(offset + 8);
+        return new UUID(msb, lsb);
+    }
+
+    private ICodec newCodec() {
+        ICodec codec = encoding == AtracEncoding.ATRAC3 ? new Atrac3Decoder() : new Atrac3plusDecoder();
+        codec.init(frameBytes, channels, channels, codingMode);
+        return codec;
+    }
+
+    /** the whole file */
+    public Storage getStorage() {
+        return storage;
+    }
+
+    public AtracEncoding getEncoding() {
+        return encoding;
+    }
+
+    /** @return pcm 16bit little endian */
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    /** @return sample frames of a compressed frame */
+    public int getFrameSamples() {
+        return frameSamples;
+    }
+
+    /** @return number of compressed frames */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /** @return sample frames at the beginning of the decoded pcm to be dropped */
+    public int getEncoderDelay() {
+        return encoderDelay;
+    }
+
+    /** @return sample frames without the encoder delay */
+    public long getFrameLength() {
+        return frameLength;
+    }
+
+    /** @return the first sample frame of the {@code smpl} loop, -1 for none */
+    public long getLoopStart() {
+        return loopStart;
+    }
+
+    /** @return the last sample frame of the {@code smpl} loop, -1 for none */
+    public long getLoopEnd() {
+        return loopEnd;
+    }
+
+    /**
+     * @return frames to be decoded before a frame decoded out of sequence to be bit exact,
+     *         the overlap and the filter delay of ATRAC3plus reach the third previous frame
+     */
+    int getPrimingFrames() {
+        return encoding == AtracEncoding.ATRAC_ADVANCED_LOSSLESS ? 1 : 3;
+    }
+
+    /** @return a new decoder, not thread safe */
+    Decoder newDecoder() {
+        return new Decoder();
+    }
+
+    /** the pcm of an ATRAC9 superframe, per thread, grown to the largest one */
+    private static final ThreadLocal<short[][]> pcmBuffers = ThreadLocal.withInitial(() -> new short[0][]);
+
+    /** @return at least channels x samples */
+    private static short[][] pcmBuffer(int channels, int samples) {
+        short[][] pcmBuffer = pcmBuffers.get();
+        if (pcmBuffer.length < channels || pcmBuffer[0].length < samples) {
+            int length = pcmBuffer.length == 0 ? 0 : pcmBuffer[0].length;
+            pcmBuffer = new short[Math.max(channels, pcmBuffer.length)][Math.max(samples, length)];
+            pcmBuffers.set(pcmBuffer);
+        }
+        return pcmBuffer;
+    }
+
+    /** decodes frames into interleaved pcm 16bit little endian */
+    final class Decoder {
+
+        private final ByteBuffer in = storage.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+
+        private ICodec codec;
+        private ByteBuffer out;
+
+        private Atrac9Decoder atrac9;
+        private byte[] superframe;
+
+        /** the frame to be decoded next without a reset */
+        private int next;
+
+        private Decoder() {
+            reset();
+        }
+
+        /** forgets the previous frames */
+        void reset() {
+            if (encoding == AtracEncoding.ATRAC_ADVANCED_LOSSLESS) {
+                if (atrac9 == null) {
+                    atrac9 = new Atrac9Decoder();
+                }
+                atrac9.initialize(configData);
+                superframe = new byte[atrac9.getConfig().getSuperframeBytes()];
+            } else {
+                codec = newCodec();
+            }
+            next = 0;
+        }
+
+        /** @return the frame to be decoded next without a reset */
+        int next() {
+            return next;
+        }
+
+        /** @return the state of the decoder to decode {@link #next()} */
+        byte[] snapshot() {
+            return encoding == AtracEncoding.ATRAC_ADVANCED_LOSSLESS ? atrac9.snapshot() : codec.snapshot();
+        }
+
+        /**
+         * Continues from a snapshot instead of decoding the previous frames.
+         *
+         * @param state from {@link #snapshot()} of a decoder of this file
+         * @param next  {@link #next()} when the snapshot was taken
+         */
+        void restore(byte[] state, int next) {
+            if (encoding == AtracEncoding.ATRAC_ADVANCED_LOSSLESS) {
+                atrac9.restore(state);
+            } else {
+                codec.restore(state);
+            }
+            this.next = next;
+        }
+
+        /**
+         * Decodes a frame, its previous frames should be decoded before for the overlap.
+         *
+         * @param frame 0 ~ frameCount - 1
+         * @param pcm   frameSamples * channels * 2 bytes
+         * @throws IllegalStateException decoding error
+         */
+        void decode(int frame, byte[] pcm) {
+            if (encoding == AtracEncoding.ATRAC_ADVANCED_LOSSLESS) {
+                in.get(dataOffset + frame * superframe.length, superframe);
+                short[][] pcmBuffer = pcmBuffer(channels, frameSamples);
+                atrac9.decode(superframe, pcmBuffer);
+                shortToInterleavedByte(pcmBuffer, channels, frameSamples, pcm);
+            } else {
+                if (out == null || out.array() != pcm) {
+                    out = ByteBuffer.wrap(pcm).order(ByteOrder.LITTLE_ENDIAN);
+                }
+                int result = codec.decode(in, dataOffset + frame * frameBytes, frameBytes, out, 0);
+                if (result <= 0) {
+                    throw new IllegalStateException(String.format("Frame #%d, result 0x%08X", frame, result));
+                }
+            }
+            next = frame + 1;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", AtracFrames.class.getSimpleName() + "[", "]")
+                .add("encoding=" + encoding)
+                .add("format=" + format)
+                .add("frameSamples=" + frameSamples)
+                .add("frameCount=" + frameCount)
+                .add("encoderDelay=" + encoderDelay)
+                .add("frameLength=" + frameLength)
+                .add("loop=" + loopStart + "-" + loopEnd)
+                .add("configData=" + Arrays.toString(configData))
+                .toString();
+    }
+}
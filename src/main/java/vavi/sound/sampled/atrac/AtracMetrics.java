@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.sound.sampled.atrac;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import vavi.util.Debug;
+
+
+/**
+ * Decoder metrics of the streams created by {@link AtracFormatConversionProvider}.
+ * <p>
+ * the aggregate is registered as {@code vavi.sound.sampled.atrac:type=Metrics}
+ * in the platform mbean server. set the system property
+ * {@code vavi.sound.sampled.atrac.jmx} to {@code false} not to register it,
+ * the values are still available through {@link #getInstance()}.
+ * <p>
+ * a stream keeps only counters by default. with {@code vavi.sound.sampled.atrac.jmx.streams}
+ * set to {@code true}, every active stream is also registered as
+ * {@code vavi.sound.sampled.atrac:type=Stream,id=n} and keeps its own latency histogram,
+ * that costs a registration round trip and a few kilobytes per stream.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public final class AtracMetrics implements AtracMetricsMBean {
+
+    /** jmx domain */
+    public static final String DOMAIN = "vavi.sound.sampled.atrac";
+
+    private static final boolean jmx = Boolean.parseBoolean(System.getProperty("vavi.sound.sampled.atrac.jmx", "true"));
+
+    /** per stream mbeans and histograms */
+    private static final boolean streamDetails = Boolean.parseBoolean(System.getProperty("vavi.sound.sampled.atrac.jmx.streams", "false"));
+
+    private static final AtracMetrics instance = new AtracMetrics();
+
+    /** @return the vm wide metrics */
+    public static AtracMetrics getInstance() {
+        return instance;
+    }
+
+    private final Map<Long, StreamMetrics> streams = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder decodeNanos = new LongAdder();
+    private final LongAdder audioNanos = new LongAdder();
+    private final RateMeter frameRate = new RateMeter();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private volatile boolean registered;
+
+    private AtracMetrics() {
+    }
+
+    /**
+     * Starts metrics for a new stream.
+     *
+     * @param codec      codec name
+     * @param sampleRate sample rate of the decoded pcm
+     * @param channels   channels of the decoded pcm
+     */
+    StreamMetrics open(String codec, float sampleRate, int channels) {
+        StreamMetrics stream = new StreamMetrics(this, ids.incrementAndGet(), codec, sampleRate, channels, streamDetails);
+        streams.put(stream.getId(), stream);
+        if (jmx) {
+            register();
+        }
+        if (jmx && streamDetails) {
+            try {
+                ObjectName name = new ObjectName(DOMAIN + ":type=Stream,id=" + stream.getId());
+                ManagementFactory.getPlatformMBeanServer().registerMBean(stream, name);
+                stream.objectName = name;
+            } catch (JMException e) {
+                Debug.println(Level.WARNING, "stream mbean: " + e);
+            }
+        }
+        return stream;
+    }
+
+    /** registers the aggregate at the first stream */
+    private void register() {
+        if (!registered) {
+            synchronized (this) {
+                if (!registered) {
+                    try {
+                        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                        ObjectName name = new ObjectName(DOMAIN + ":type=Metrics");
+                        if (!server.isRegistered(name)) {
+                            server.registerMBean(this, name);
+                        }
+                    } catch (JMException e) {
+                        Debug.println(Level.WARNING, "metrics mbean: " + e);
+                    }
+                    registered = true;
+                }
+            }
+        }
+    }
+
+    void closed(StreamMetrics stream) {
+        streams.remove(stream.getId());
+        if (stream.objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(stream.objectName);
+            } catch (JMException e) {
+                Debug.println(Level.FINE, "stream mbean: " + e);
+            }
+            stream.objectName = null;
+        }
+    }
+
+    void frameDecoded(int bytesIn, int bytesOut, long audioNanos, long nanos) {
+        frames.increment();
+        this.bytesIn.add(bytesIn);
+        this.bytesOut.add(bytesOut);
+        decodeNanos.add(nanos);
+        this.audioNanos.add(audioNanos);
+        frameRate.add(1);
+        latency.record(nanos);
+    }
+
+    void decodeError() {
+        errors.increment();
+    }
+
+    /** @return snapshot of the active streams */
+    public List<StreamMetrics> getStreams() {
+        return new ArrayList<>(streams.values());
+    }
+
+    @Override
+    public int getActiveStreams() {
+        return streams.size();
+    }
+
+    @Override
+    public long getTotalStreams() {
+        return ids.get();
+    }
+
+    @Override
+    public long getFramesDecoded() {
+        return frames.sum();
+    }
+
+    @Override
+    public double getFramesPerSecond() {
+        return frameRate.getRate();
+    }
+
+    @Override
+    public double getRealtimeFactor() {
+        return StreamMetrics.realtimeFactor(audioNanos.sum(), decodeNanos.sum());
+    }
+
+    @Override
+    public long getDecodeErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    @Override
+    public double getLatencyMean() {
+        return latency.getMean();
+    }
+
+    @Override
+    public long getLatency50thPercentile() {
+        return latency.getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getLatency99thPercentile() {
+        return latency.getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getLatency999thPercentile() {
+        return latency.getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public long getLatencyMax() {
+        return latency.getMax();
+    }
+
+    /**
+     * @param percentile 0 ~ 100
+     * @return frame decode latency in nano seconds at the percentile
+     */
+    public long getLatencyAtPercentile(double percentile) {
+        return latency.getValueAtPercentile(percentile);
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.sound.sampled.atrac;
+
+
+/**
+ * Aggregated metrics of all decoding streams.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public interface AtracMetricsMBean {
+
+    int getActiveStreams();
+
+    long getTotalStreams();
+
+    long getFramesDecoded();
+
+    /** @return frames per second averaged over the last few seconds */
+    double getFramesPerSecond();
+
+    /** @return decoded audio duration / decoding time, larger than 1 means faster than realtime */
+    double getRealtimeFactor();
+
+    long getDecodeErrors();
+
+    long getBytesIn();
+
+    long getBytesOut();
+
+    /** @return mean frame decode latency in nano seconds */
+    double getLatencyMean();
+
+    /** @return median frame decode latency in nano seconds */
+    long getLatency50thPercentile();
+
+    /** @return 99th percentile frame decode latency in nano seconds */
+    long getLatency99thPercentile();
+
+    /** @return 99.9th percentile frame decode latency in nano seconds */
+    long getLatency999thPercentile();
+
+    /** @return max frame decode latency in nano seconds */
+    long getLatencyMax();
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.sound.sampled.atrac;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import vavi.util.Debug;
+
+
+/**
+ * LRU cache of decoded pcm for short sounds played over and over.
+ * <p>
+ * a sound is identified by its file (path, last modified time and size) or
+ * by the hash of its content, and the target format. a hit returns a stream
+ * over the shared pcm without reading the file or decoding.
+ * the cache is bounded by the pcm bytes, the least recently used sounds are
+ * evicted first, and a sound larger than the bound is decoded but not cached.
+ * <p>
+ * opt-in, the vm wide instance caches nothing unless the system property
+ * {@code vavi.sound.sampled.atrac.cache} is set to the bytes to be cached.
+ * when it is set, the files and the file urls opened through {@link javax.sound.sampled.AudioSystem}
+ * are cached, {@link AtracAudioFileReader} marks the stream by its file and
+ * {@link AtracFormatConversionProvider} looks the pcm up here instead of decoding.
+ * the pcm is stored off the heap by default, {@code vavi.sound.sampled.atrac.cache.storage}
+ * selects the {@link Storage.Type} by name. the vm wide instance is registered as
+ * {@code vavi.sound.sampled.atrac:type=Cache} in the platform mbean server same as {@link AtracMetrics}.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+public final class AtracPcmCache implements AtracPcmCacheMBean {
+
+    private static final boolean jmx = Boolean.parseBoolean(System.getProperty("vavi.sound.sampled.atrac.jmx", "true"));
+
+    private static final AtracPcmCache instance = new AtracPcmCache(Long.getLong("vavi.sound.sampled.atrac.cache", 0),
+            Storage.Type.of(System.getProperty("vavi.sound.sampled.atrac.cache.storage", "direct")));
+
+    static {
+        if (jmx && instance.maxBytes > 0) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName(AtracMetrics.DOMAIN + ":type=Cache");
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(instance, name);
+                }
+            } catch (JMException e) {
+                Debug.println(Level.WARNING, "cache mbean: " + e);
+            }
+        }
+    }
+
+    /** @return the vm wide cache */
+    public static AtracPcmCache getInstance() {
+        return instance;
+    }
+
+    /** @return whether sounds are cached */
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /** identity of a cached sound */
+    record Key(Object source, Format format) {
+    }
+
+    /** an atrac stream read from a file by {@link AtracAudioFileReader}, the pcm is cached by the file */
+    static final class Source extends AudioInputStream {
+
+        final FileKey file;
+
+        Source(InputStream in, AudioFormat format, long length, FileKey file) {
+            super(in, format, length);
+            this.file = file;
+        }
+    }
+
+    /** {@link AudioFormat} has no equals */
+    record Format(String encoding, float sampleRate, int sampleSizeInBits, int channels, int frameSize, float frameRate, boolean bigEndian) {
+
+        Format(AudioFormat format) {
+            this(format.getEncoding().toString(), format.getSampleRate(), format.getSampleSizeInBits(), format.getChannels(),
+                    format.getFrameSize(), format.getFrameRate(), format.isBigEndian());
+        }
+    }
+
+    /** decoded sound, the pcm is held by the loader and then by the cache */
+    record Entry(AudioFormat format, Storage pcm) {
+
+        /** @return a new stream over the shared pcm, holding it until closed */
+        AudioInputStream stream() {
+            return new AudioInputStream(pcm.newInputStream(), format, pcm.size() / format.getFrameSize());
+        }
+    }
+
+    /** decodes a sound on a miss */
+    interface Loader {
+        Entry load() throws IOException, UnsupportedAudioFileException;
+    }
+
+    /** access ordered, the eldest is the least recently used */
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final long maxBytes;
+
+    private final Storage.Type storageType;
+
+    /** guarded by this */
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxBytes pcm bytes to be cached at most, 0 for no caching
+     */
+    public AtracPcmCache(long maxBytes) {
+        this(maxBytes, Storage.Type.DIRECT);
+    }
+
+    /**
+     * @param maxBytes    pcm bytes to be cached at most, 0 for no caching
+     * @param storageType where the pcm is stored
+     */
+    public AtracPcmCache(long maxBytes, Storage.Type storageType) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        this.storageType = storageType;
+    }
+
+    /**
+     * Obtains the decoded pcm of the file.
+     *
+     * @param path         an atrac file
+     * @param targetFormat pcm format supported by {@link AtracFormatConversionProvider}
+     * @return a stream over the cached pcm
+     * @throws UnsupportedAudioFileException the file is not an atrac file
+     * @throws IllegalArgumentException the conversion to the target format is not supported
+     */
+    public AudioInputStream getAudioInputStream(Path path, AudioFormat targetFormat) throws UnsupportedAudioFileException, IOException {
+        if (!isEnabled()) {
+            return stream(new BufferedInputStream(Files.newInputStream(path)), targetFormat);
+        }
+        Key key = new Key(FileKey.of(path), new Format(targetFormat));
+        return get(key, () -> {
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+                return decode(in, targetFormat);
+            }
+        });
+    }
+
+    /**
+     * Obtains the decoded pcm of the atrac file content, identified by its hash.
+     *
+     * @param data         whole atrac file
+     * @param targetFormat pcm format supported by {@link AtracFormatConversionProvider}
+     * @return a stream over the cached pcm
+     * @throws UnsupportedAudioFileException the data is not an atrac file
+     * @throws IllegalArgumentException the conversion to the target format is not supported
+     */
+    public AudioInputStream getAudioInputStream(byte[] data, AudioFormat targetFormat) throws UnsupportedAudioFileException, IOException {
+        if (!isEnabled()) {
+            return stream(new ByteArrayInputStream(data), targetFormat);
+        }
+        Key key = new Key(hash(data), new Format(targetFormat));
+        return get(key, () -> decode(new ByteArrayInputStream(data), targetFormat));
+    }
+
+    /**
+     * Obtains the decoded pcm of the file of the stream, the stream is read only on a miss.
+     *
+     * @param source closed
+     */
+    AudioInputStream getAudioInputStream(Source source, AudioFormat targetFormat) throws UnsupportedAudioFileException, IOException {
+        Key key = new Key(source.file, new Format(targetFormat));
+        try (source) {
+            return get(key, () -> {
+                try (AudioInputStream pcm = AtracFormatConversionProvider.decode(source, targetFormat)) {
+                    return new Entry(pcm.getFormat(), Storage.allocate(storageType, pcm));
+                }
+            });
+        }
+    }
+
+    /** file identity */
+    record FileKey(Path path, long lastModified, long size) {
+
+        static FileKey of(Path path) throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return new FileKey(path.toAbsolutePath().normalize(), attributes.lastModifiedTime().toMillis(), attributes.size());
+        }
+    }
+
+    /** @return sha-256 of the data in hex */
+    private static String hash(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** @return the streaming decode of the atrac file */
+    private static AudioInputStream stream(InputStream in, AudioFormat targetFormat) throws UnsupportedAudioFileException, IOException {
+        AudioInputStream source = new AtracAudioFileReader().getAudioInputStream(in);
+        return new AtracFormatConversionProvider().getAudioInputStream(targetFormat, source);
+    }
+
+    /** reads and decodes the whole sound */
+    private Entry decode(InputStream in, AudioFormat targetFormat) throws UnsupportedAudioFileException, IOException {
+        try (AudioInputStream pcm = stream(in, targetFormat)) {
+            return new Entry(pcm.getFormat(), Storage.allocate(storageType, pcm));
+        }
+    }
+
+    /**
+     * Looks up the sound, loads and caches it on a miss.
+     * concurrent misses of a sound load it each, the last one is cached.
+     */
+    AudioInputStream get(Key key, Loader loader) throws UnsupportedAudioFileException, IOException {
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hits.increment();
+                return entry.stream();
+            }
+        }
+        misses.increment();
+        Entry entry = loader.load();
+        AudioInputStream stream = entry.stream();
+        put(key, entry);
+        return stream;
+    }
+
+    /** takes over the reference of the loader */
+    private synchronized void put(Key key, Entry entry) {
+        long size = entry.pcm().size();
+        if (size > maxBytes) {
+            entry.pcm().close();
+            return;
+        }
+        Entry old = entries.put(key, entry);
+        if (old != null) {
+            bytes -= old.pcm().size();
+            old.pcm().close();
+        }
+        bytes += size;
+        for (Iterator<Entry> i = entries.values().iterator(); bytes > maxBytes; ) {
+            Entry eldest = i.next();
+            bytes -= eldest.pcm().size();
+            eldest.pcm().close();
+            i.remove();
+            evictions.increment();
+        }
+        Debug.println(Level.FINER, "cached: " + key + ", " + this);
+    }
+
+    /** @return whether the sound is cached, does not count as a use */
+    synchronized boolean contains(Key key) {
+        return entries.containsKey(key);
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public double getHitRatio() {
+        long hits = this.hits.sum();
+        long requests = hits + misses.sum();
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public synchronized int getEntries() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    @Override
+    public String getStorageType() {
+        return storageType.name();
+    }
+
+    @Override
+    public synchronized void clear() {
+        entries.values().forEach(entry -> entry.pcm().close());
+        entries.clear();
+        bytes = 0;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", AtracPcmCache.class.getSimpleName() + "[", "]")
+                .add("entries=" + getEntries())
+                .add("bytes=" + getBytes())
+                .add("maxBytes=" + maxBytes)
+                .add("storageType=" + storageType)
+                .add("hits=" + getHits())
+                .add("misses=" + getMisses())
+                .add("evictions=" + getEvictions())
+                .toString();
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.sound.sampled.atrac;
+
+
+/**
+ * Statistics of the decoded pcm cache.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+public interface AtracPcmCacheMBean {
+
+    long getHits();
+
+    long getMisses();
+
+    /** @return hits / (hits + misses), 0 when no request yet */
+    double getHitRatio();
+
+    long getEvictions();
+
+    /** @return number of cached sounds */
+    int getEntries();
+
+    /** @return pcm bytes cached */
+    long getBytes();
+
+    /** @return pcm bytes to be cached at most, 0 means disabled */
+    long getMaxBytes();
+
+    /** @return where the pcm is stored, one of {@link Storage.Type} */
+    String getStorageType();
+
+    /** drops all the cached sounds, the statistics are kept */
+    void clear();
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.sound.sampled.atrac;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * HDR style log-linear histogram for non-negative long values (nano seconds).
+ * <p>
+ * every power of two range is split into {@link #SUB_BUCKETS} / 2 linear buckets,
+ * so the relative error of a recorded value is below 1 / 16.
+ * the buckets cover up to {@link #OVERFLOW} (about a second), the values from it
+ * fall into the last bucket which reports the max, that keeps it at 433 counters.
+ * recording is lock free, reading is not an atomic snapshot.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+
+    /** the values from this are not told apart, a frame decode taking this long is a stall anyway */
+    static final long OVERFLOW = 1L << 30;
+    /** the last bucket */
+    private static final int OVERFLOW_INDEX = rawIndexOf(OVERFLOW);
+
+    private final AtomicLongArray counts = new AtomicLongArray(OVERFLOW_INDEX + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /** @return bucket index for the value */
+    static int indexOf(long value) {
+        return value >= OVERFLOW ? OVERFLOW_INDEX : rawIndexOf(value);
+    }
+
+    private static int rawIndexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * HALF_SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /** @return the highest value which falls into the bucket */
+    static long highestValueOf(int index) {
+        if (index >= OVERFLOW_INDEX) {
+            return Long.MAX_VALUE;
+        }
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / HALF_SUB_BUCKETS - 1;
+        long top = index - (long) shift * HALF_SUB_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+
+    /** @param value negative values are recorded as 0 */
+    void record(long value) {
+        value = Math.max(0, value);
+        counts.incrementAndGet(indexOf(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    long getCount() {
+        return count.sum();
+    }
+
+    long getMax() {
+        return max.get();
+    }
+
+    double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * @param percentile 0 ~ 100
+     * @return the value at the percentile, 0 when nothing is recorded
+     */
+    long getValueAtPercentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+        long accumulated = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            accumulated += counts.get(i);
+            if (accumulated >= target) {
+                return Math.min(highestValueOf(i), getMax());
+            }
+        }
+        return getMax();
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.sound.sampled.atrac;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * Events per second over the last few complete seconds.
+ * <p>
+ * one slot per second in a small ring, a slot is recycled by the first writer
+ * in a new second. an event racing with the recycle may be lost, that is fine
+ * for a monitoring value.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+final class RateMeter {
+
+    /** seconds to average */
+    static final int WINDOW = 5;
+
+    private static final int SLOTS = WINDOW + 2;
+
+    private final AtomicLongArray counts = new AtomicLongArray(SLOTS);
+    private final AtomicLongArray seconds = new AtomicLongArray(SLOTS);
+
+    private static long currentSecond() {
+        return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+    }
+
+    void add(long n) {
+        long now = currentSecond();
+        int i = (int) Math.floorMod(now, SLOTS);
+        long second = seconds.get(i);
+        if (second != now && seconds.compareAndSet(i, second, now)) {
+            counts.set(i, 0);
+        }
+        counts.addAndGet(i, n);
+    }
+
+    /** @return average per second over the last {@link #WINDOW} complete seconds */
+    double getRate() {
+        long now = currentSecond();
+        long total = 0;
+        for (int i = 0; i < SLOTS; i++) {
+            long second = seconds.get(i);
+            if (second < now && second >= now - WINDOW) {
+                total += counts.get(i);
+            }
+        }
+        return (double) total / WINDOW;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.sound.sampled.atrac;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+
+/**
+ * Silent ranges of a decoded stream.
+ * <p>
+ * the decoders report the frames they output as digital silence without the synthesis,
+ * adjacent frames are merged into one range. positions are in sample frames of the pcm stream.
+ * updated by the decoding thread and readable from any thread.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+public final class SilenceIndex {
+
+    /** a pcm stream which reports its silent ranges */
+    public interface Provider {
+
+        /** @return the silent ranges decoded so far */
+        SilenceIndex getSilenceIndex();
+    }
+
+    /**
+     * a silent range.
+     *
+     * @param start first sample frame
+     * @param end   sample frame after the last one
+     */
+    public record Range(long start, long end) {
+
+        /** @return number of sample frames */
+        public long length() {
+            return end - start;
+        }
+    }
+
+    private final List<Range> ranges = new ArrayList<>();
+
+    /** the range being extended, its end is the position of the next frame */
+    private long start = -1;
+    private long end = -1;
+
+    /** total sample frames reported */
+    private long position;
+
+    /**
+     * Reports a decoded frame.
+     *
+     * @param length number of sample frames
+     * @param silent whether the frame is digital silence
+     */
+    synchronized void frame(int length, boolean silent) {
+        if (silent) {
+            if (end != position) {
+                flush();
+                start = position;
+            }
+            end = position + length;
+        }
+        position += length;
+    }
+
+    private void flush() {
+        if (start >= 0) {
+            ranges.add(new Range(start, end));
+            start = -1;
+            end = -1;
+        }
+    }
+
+    /** @return the silent ranges so far in order, the last one may still grow */
+    public synchronized List<Range> getRanges() {
+        List<Range> result = new ArrayList<>(ranges);
+        if (start >= 0) {
+            result.add(new Range(start, end));
+        }
+        return result;
+    }
+
+    /** @return total silent sample frames so far */
+    public synchronized long getSilentFrames() {
+        long frames = start >= 0 ? end - start : 0;
+        for (Range range : ranges) {
+            frames += range.length();
+        }
+        return frames;
+    }
+
+    /** @return sample frames reported so far */
+    public synchronized long getPosition() {
+        return position;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return new StringJoiner(", ", SilenceIndex.class.getSimpleName() + "[", "]")
+                .add("position=" + position)
+                .add("ranges=" + getRanges())
+                .toString();
+    }
+}
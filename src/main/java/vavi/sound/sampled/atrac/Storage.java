@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.sound.sampled.atrac;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import vavi.util.Debug;
+
+
+/**
+ * Read-only bytes of decoded pcm or compressed frames, on the heap, off the heap or in a mapped temporary file.
+ * <p>
+ * a storage is reference counted, it is created with one reference held by the creator,
+ * every {@link #newInputStream() stream} holds another one until it is closed,
+ * and the memory is given back when the last one is released.
+ * off heap memory of a direct buffer is freed by the gc after that,
+ * the temporary file of a mapped one is deleted.
+ * the bytes reserved (the capacity of the buffer) are accounted for each {@link Type}.
+ * a storage holds less than 2GB, larger working sets are made of many storages.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+public final class Storage implements Closeable {
+
+    /** where the bytes are */
+    public enum Type {
+        /** a byte array */
+        HEAP,
+        /** {@link ByteBuffer#allocateDirect(int)} */
+        DIRECT,
+        /** a temporary file mapped read-only */
+        MAPPED;
+
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder count = new LongAdder();
+
+        /** @return bytes reserved by the live storages of this type */
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        /** @return number of the live storages of this type */
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * @param name case-insensitive
+         * @throws IllegalArgumentException no such type
+         */
+        public static Type of(String name) {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final Type type;
+
+    /** read-only, null after freed */
+    private volatile ByteBuffer buffer;
+
+    /** the temporary file of a mapped storage */
+    private final Path file;
+
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    private Storage(Type type, ByteBuffer buffer, Path file) {
+        this.type = type;
+        this.buffer = buffer.asReadOnlyBuffer();
+        this.file = file;
+        type.bytes.add(buffer.capacity());
+        type.count.increment();
+    }
+
+    /**
+     * Stores the rest of the stream, the stream is not closed.
+     *
+     * @param type where to store
+     * @param in   the bytes to be stored
+     * @return a new storage with one reference
+     * @throws IOException the bytes are 2GB or more
+     */
+    public static Storage allocate(Type type, InputStream in) throws IOException {
+        return switch (type) {
+            case HEAP -> new Storage(type, ByteBuffer.wrap(in.readAllBytes()), null);
+            case DIRECT -> new Storage(type, readDirect(in), null);
+            case MAPPED -> {
+                Path file = Files.createTempFile("vavi-atrac", ".bin");
+                try {
+                    Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                        if (channel.size() > Integer.MAX_VALUE) {
+                            throw new IOException("too large: " + channel.size());
+                        }
+                        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                        yield new Storage(type, buffer, file);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    Files.deleteIfExists(file);
+                    throw e;
+                }
+            }
+        };
+    }
+
+    /** the unit of reading a stream of unknown length */
+    private static final int CHUNK = 0x10000;
+
+    /**
+     * reads into one direct buffer, of the length of an audio stream when it is known,
+     * otherwise of the exact size after the bytes are read in chunks on the heap.
+     * no direct buffer is left for the gc.
+     */
+    private static ByteBuffer readDirect(InputStream in) throws IOException {
+        long length = in instanceof AudioInputStream stream ? lengthOf(stream) : -1;
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("too large: " + length);
+        }
+        if (length >= 0) {
+            // an audio input stream does not read over its frame length
+            ReadableByteChannel channel = Channels.newChannel(in);
+            ByteBuffer buffer = ByteBuffer.allocateDirect((int) length);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            }
+            return buffer.flip();
+        }
+
+        List<byte[]> chunks = new ArrayList<>();
+        long size = 0;
+        byte[] chunk;
+        do {
+            chunk = in.readNBytes(CHUNK);
+            size += chunk.length;
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("too large");
+            }
+            chunks.add(chunk);
+        } while (chunk.length == CHUNK);
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) size);
+        for (byte[] c : chunks) {
+            buffer.put(c);
+        }
+        return buffer.flip();
+    }
+
+    /** @return bytes of the stream, -1 when not known */
+    private static long lengthOf(AudioInputStream stream) {
+        long frames = stream.getFrameLength();
+        int frameSize = stream.getFormat().getFrameSize();
+        return frames == AudioSystem.NOT_SPECIFIED || frameSize <= 0 ? -1 : frames * frameSize;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /** @return number of bytes */
+    public int size() {
+        return buffer().limit();
+    }
+
+    private ByteBuffer buffer() {
+        ByteBuffer buffer = this.buffer;
+        if (buffer == null) {
+            throw new IllegalStateException("freed");
+        }
+        return buffer;
+    }
+
+    /**
+     * @return a new read-only view of the whole bytes, valid while a reference is held
+     * @throws IllegalStateException freed already
+     */
+    public ByteBuffer asReadOnlyBuffer() {
+        return buffer().duplicate();
+    }
+
+    /**
+     * Adds a reference.
+     *
+     * @return this
+     * @throws IllegalStateException freed already
+     */
+    public Storage retain() {
+        int n;
+        do {
+            n = references.get();
+            if (n == 0) {
+                throw new IllegalStateException("freed");
+            }
+        } while (!references.compareAndSet(n, n + 1));
+        return this;
+    }
+
+    /** releases a reference, frees at the last one */
+    @Override
+    public void close() {
+        int n = references.decrementAndGet();
+        if (n == 0) {
+            free();
+        } else if (n < 0) {
+            throw new IllegalStateException("released too many times");
+        }
+    }
+
+    private void free() {
+        ByteBuffer buffer = this.buffer;
+        this.buffer = null;
+        type.bytes.add(-buffer.capacity());
+        type.count.decrement();
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // still mapped on some platforms
+                Debug.println(Level.FINE, "delete: " + file + ", " + e);
+                file.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    /** @return whether the last reference is released */
+    public boolean isFreed() {
+        return buffer == null;
+    }
+
+    /**
+     * @return a stream over the whole bytes holding a reference until closed,
+     *         mark is supported
+     * @throws IllegalStateException freed already
+     */
+    public InputStream newInputStream() {
+        retain();
+        return new StorageInputStream(this);
+    }
+
+    /** a stream over a view of a storage */
+    private static final class StorageInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        /** null after closed */
+        private Storage storage;
+
+        private int mark;
+
+        StorageInputStream(Storage storage) {
+            this.storage = storage;
+            this.buffer = storage.asReadOnlyBuffer();
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            len = Math.min(len, buffer.remaining());
+            buffer.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public void mark(int readlimit) {
+            mark = buffer.position();
+        }
+
+        @Override
+        public void reset() {
+            buffer.position(mark);
+        }
+
+        @Override
+        public synchronized void close() {
+            if (storage != null) {
+                storage.close();
+                storage = null;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        ByteBuffer buffer = this.buffer;
+        return new StringJoiner(", ", Storage.class.getSimpleName() + "[", "]")
+                .add("type=" + type)
+                .add("size=" + (buffer != null ? buffer.limit() : "freed"))
+                .add("references=" + references.get())
+                .toString();
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.sound.sampled.atrac;
+
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ObjectName;
+
+
+/**
+ * Metrics of one decoding stream.
+ * <p>
+ * created by {@link AtracMetrics#open(String, float, int)}, updated by the decoding thread
+ * and readable from any thread. the latency percentiles and the max are kept only
+ * when the per stream details are enabled (see {@link AtracMetrics}), 0 otherwise.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+public final class StreamMetrics implements StreamMetricsMBean {
+
+    private final AtracMetrics parent;
+
+    private final long id;
+    private final String codec;
+    private final float sampleRate;
+    private final int channels;
+
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder decodeNanos = new LongAdder();
+    private final LongAdder audioNanos = new LongAdder();
+    private final RateMeter frameRate = new RateMeter();
+    /** null when the details are disabled */
+    private final LatencyHistogram latency;
+
+    private volatile boolean active = true;
+
+    /** registered name, null when not registered */
+    ObjectName objectName;
+
+    StreamMetrics(AtracMetrics parent, long id, String codec, float sampleRate, int channels, boolean details) {
+        this.parent = parent;
+        this.id = id;
+        this.codec = codec;
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.latency = details ? new LatencyHistogram() : null;
+    }
+
+    /**
+     * Records one successfully decoded frame.
+     *
+     * @param bytesIn  encoded bytes consumed
+     * @param bytesOut pcm bytes produced
+     * @param samples  samples per channel produced
+     * @param nanos    time spent in the decoder
+     */
+    void frameDecoded(int bytesIn, int bytesOut, int samples, long nanos) {
+        long audio = sampleRate > 0 ? (long) (samples * (double) TimeUnit.SECONDS.toNanos(1) / sampleRate) : 0;
+
+        frames.increment();
+        this.bytesIn.add(bytesIn);
+        this.bytesOut.add(bytesOut);
+        decodeNanos.add(nanos);
+        audioNanos.add(audio);
+        frameRate.add(1);
+        if (latency != null) {
+            latency.record(nanos);
+        }
+
+        parent.frameDecoded(bytesIn, bytesOut, audio, nanos);
+    }
+
+    /** Records a decode failure. */
+    void decodeError() {
+        errors.increment();
+        parent.decodeError();
+    }
+
+    /** Marks this stream as finished, can be called more than once. */
+    void close() {
+        if (active) {
+            active = false;
+            parent.closed(this);
+        }
+    }
+
+    @Override
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public String getCodec() {
+        return codec;
+    }
+
+    @Override
+    public float getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public int getChannels() {
+        return channels;
+    }
+
+    @Override
+    public boolean isActive() {
+        return active;
+    }
+
+    @Override
+    public long getFramesDecoded() {
+        return frames.sum();
+    }
+
+    @Override
+    public double getFramesPerSecond() {
+        return frameRate.getRate();
+    }
+
+    @Override
+    public double getRealtimeFactor() {
+        return realtimeFactor(audioNanos.sum(), decodeNanos.sum());
+    }
+
+    @Override
+    public long getDecodeErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    @Override
+    public double getLatencyMean() {
+        long n = frames.sum();
+        return n == 0 ? 0 : (double) decodeNanos.sum() / n;
+    }
+
+    @Override
+    public long getLatency50thPercentile() {
+        return getLatencyAtPercentile(50);
+    }
+
+    @Override
+    public long getLatency99thPercentile() {
+        return getLatencyAtPercentile(99);
+    }
+
+    @Override
+    public long getLatencyMax() {
+        return latency == null ? 0 : latency.getMax();
+    }
+
+    /**
+     * @param percentile 0 ~ 100
+     * @return frame decode latency in nano seconds at the percentile, 0 when the details are disabled
+     */
+    public long getLatencyAtPercentile(double percentile) {
+        return latency == null ? 0 : latency.getValueAtPercentile(percentile);
+    }
+
+    /** @return 0 when nothing is decoded yet */
+    static double realtimeFactor(long audioNanos, long decodeNanos) {
+        return decodeNanos == 0 ? 0 : (double) audioNanos / decodeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", StreamMetrics.class.getSimpleName() + "[", "]")
+                .add("id=" + id)
+                .add("codec=" + codec)
+                .add("active=" + active)
+                .add("frames=" + frames.sum())
+                .add("errors=" + errors.sum())
+                .add("realtimeFactor=" + getRealtimeFactor())
+                .toString();
+    }
+}
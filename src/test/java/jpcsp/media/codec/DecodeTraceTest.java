@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package jpcsp.media.codec;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * DecodeTraceTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+class DecodeTraceTest {
+
+    @Test
+    void testWrap() {
+        DecodeTrace trace = new DecodeTrace(6); // rounded up to 8
+        int source = trace.newSource();
+        for (int i = 0; i < 20; i++) {
+            trace.record(source, DecodeTrace.CODEC_ATRAC3PLUS, DecodeTrace.FRAME, i * 0x100, i * 8, 1, -i);
+        }
+        long[] records = new long[4 * 16];
+        int n = trace.snapshot(records);
+        assertEquals(8, n);
+        for (int i = 0; i < n; i++) {
+            int expected = 12 + i;
+            assertEquals(expected, records[i * 4]);
+            assertEquals(source, (int) (records[i * 4 + 1] >>> 32));
+            assertEquals(expected * 0x100, (int) (records[i * 4 + 2] >>> 32));
+            assertEquals(expected * 8, (int) records[i * 4 + 2]);
+            assertEquals(-expected, (int) records[i * 4 + 3]);
+        }
+        String dump = trace.dump();
+        assertTrue(dump.contains("#19 ATRAC3plus"), dump);
+        assertFalse(dump.contains("#11 "), dump);
+    }
+
+    @Test
+    void testSources() {
+        DecodeTrace trace = new DecodeTrace(8, 2);
+        int[] sources = {trace.newSource(), trace.newSource(), trace.newSource()};
+        for (int i = 0; i < 6; i++) {
+            int source = sources[i % 3];
+            trace.record(source, DecodeTrace.CODEC_ATRAC3, DecodeTrace.FRAME, source * 0x1000 + i, 0, 0, 0);
+        }
+        long[] records = new long[4 * 16];
+        assertEquals(6, trace.snapshot(records));
+        // the first and the third share a ring
+        int n = trace.snapshot(sources[2], records);
+        assertEquals(2, n);
+        for (int i = 0; i < n; i++) {
+            assertEquals(sources[2], (int) (records[i * 4 + 1] >>> 32));
+        }
+        String dump = trace.dump(sources[1]);
+        assertTrue(dump.contains("ATRAC3[" + sources[1] + "]"), dump);
+        assertFalse(dump.contains("ATRAC3[" + sources[0] + "]"), dump);
+        assertFalse(dump.contains("ATRAC3[" + sources[2] + "]"), dump);
+    }
+
+    @Test
+    void testDisabled() {
+        DecodeTrace trace = new DecodeTrace(0);
+        trace.record(trace.newSource(), DecodeTrace.CODEC_ATRAC3, DecodeTrace.ERROR, 0, 0, -1, 0);
+        assertFalse(trace.isEnabled());
+        assertEquals(0, trace.snapshot(new long[4]));
+    }
+}
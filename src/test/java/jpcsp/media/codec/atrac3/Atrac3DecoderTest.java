@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package jpcsp.media.codec.atrac3;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import jpcsp.media.codec.util.Footprint;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Atrac3DecoderTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+class Atrac3DecoderTest {
+
+    static final int BLOCK_ALIGN = 384;
+
+    /** random stereo frames the decoder accepts */
+    static List<byte[]> frames(long seed, int count) {
+        Random random = new Random(seed);
+        List<byte[]> frames = new ArrayList<>();
+        while (frames.size() < count) {
+            byte[] frame = new byte[BLOCK_ALIGN];
+            random.nextBytes(frame);
+            for (int ch = 0; ch < 2; ch++) {
+                // sound unit id 0x28
+                frame[ch * BLOCK_ALIGN / 2] = (byte) (0xa0 | frame[ch * BLOCK_ALIGN / 2] & 3);
+            }
+            Atrac3Decoder decoder = new Atrac3Decoder();
+            decoder.init(BLOCK_ALIGN, 2, 2, 0);
+            if (decode(decoder, frame) != null) {
+                frames.add(frame);
+            }
+        }
+        return frames;
+    }
+
+    /** @return null for an error */
+    static byte[] decode(Atrac3Decoder decoder, byte[] frame) {
+        ByteBuffer out = ByteBuffer.allocate(Atrac3Decoder.SAMPLES_PER_FRAME * 2 * 2).order(ByteOrder.LITTLE_ENDIAN);
+        int result = decoder.decode(ByteBuffer.wrap(frame), 0, frame.length, out, 0);
+        return result > 0 ? out.array() : null;
+    }
+
+    /** a decoder restored from a snapshot decodes the same as the one the snapshot is taken from */
+    @Test
+    void testSnapshot() {
+        List<byte[]> frames = frames(1, 40);
+        // silence at the end for the flags
+        for (int i = 0; i < 5; i++) {
+            byte[] silence = new byte[BLOCK_ALIGN];
+            silence[0] = silence[BLOCK_ALIGN / 2] = (byte) 0xa0;
+            frames.add(silence);
+        }
+        int count = frames.size();
+        int[] at = {0, 10, 25, 41};
+
+        Atrac3Decoder decoder = new Atrac3Decoder();
+        decoder.init(BLOCK_ALIGN, 2, 2, 0);
+        byte[][] expected = new byte[count][];
+        byte[][] states = new byte[at.length][];
+        for (int f = 0, i = 0; f < count; f++) {
+            if (i < at.length && f == at[i]) {
+                states[i++] = decoder.snapshot();
+            }
+            expected[f] = decode(decoder, frames.get(f));
+        }
+        assertTrue(decoder.isSilent());
+
+        Atrac3Decoder restored = new Atrac3Decoder();
+        restored.init(BLOCK_ALIGN, 2, 2, 0);
+        for (int i = at.length - 1; i >= 0; i--) {
+            decode(restored, frames.get(33 - i));
+            restored.restore(states[i]);
+            assertArrayEquals(states[i], restored.snapshot());
+            for (int f = at[i]; f < count; f++) {
+                assertArrayEquals(expected[f], decode(restored, frames.get(f)), "frame " + f + " from " + at[i]);
+            }
+        }
+
+        byte[] state = states[1];
+        assertThrows(IllegalArgumentException.class, () -> restored.restore(Arrays.copyOf(state, state.length - 1)));
+        Atrac3Decoder joint = new Atrac3Decoder();
+        joint.init(BLOCK_ALIGN, 2, 2, 1);
+        assertThrows(IllegalArgumentException.class, () -> joint.restore(state));
+    }
+
+    /** the decoders on a thread share the work buffers, a decoder keeps its state only */
+    @Test
+    void testInterleaved() {
+        List<byte[]> framesA = frames(2, 20);
+        List<byte[]> framesB = frames(3, 20);
+        Atrac3Decoder alone = new Atrac3Decoder();
+        alone.init(BLOCK_ALIGN, 2, 2, 0);
+        byte[][] expectedA = framesA.stream().map(frame -> decode(alone, frame)).toArray(byte[][]::new);
+        alone.init(BLOCK_ALIGN, 2, 2, 0);
+        byte[][] expectedB = framesB.stream().map(frame -> decode(alone, frame)).toArray(byte[][]::new);
+
+        Atrac3Decoder a = new Atrac3Decoder();
+        a.init(BLOCK_ALIGN, 2, 2, 0);
+        Atrac3Decoder b = new Atrac3Decoder();
+        b.init(BLOCK_ALIGN, 2, 2, 0);
+        for (int f = 0; f < 20; f++) {
+            assertArrayEquals(expectedA[f], decode(a, framesA.get(f)), "a " + f);
+            assertArrayEquals(expectedB[f], decode(b, framesB.get(f)), "b " + f);
+        }
+
+        long bytes = Footprint.perInstance(() -> {
+            Atrac3Decoder decoder = new Atrac3Decoder();
+            decoder.init(BLOCK_ALIGN, 2, 2, 0);
+            framesA.forEach(frame -> decode(decoder, frame));
+            return decoder;
+        });
+        assertTrue(bytes < 16 * 1024, bytes + " bytes");
+    }
+}
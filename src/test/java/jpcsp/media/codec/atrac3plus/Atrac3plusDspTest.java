@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package jpcsp.media.codec.atrac3plus;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import jpcsp.media.codec.atrac3plus.ChannelUnitContext.IPQFChannelContext;
+import jpcsp.media.codec.transform.MdctPlan;
+import org.junit.jupiter.api.Test;
+
+import static jpcsp.media.codec.atrac3plus.Atrac3plusDecoder.ATRAC3P_FRAME_SAMPLES;
+import static jpcsp.media.codec.atrac3plus.Atrac3plusDecoder.ATRAC3P_PQF_FIR_LEN;
+import static jpcsp.media.codec.atrac3plus.Atrac3plusDecoder.ATRAC3P_SUBBANDS;
+import static jpcsp.media.codec.atrac3plus.Atrac3plusDecoder.ATRAC3P_SUBBAND_SAMPLES;
+import static jpcsp.media.codec.util.FloatDSP.vectorFmul;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+
+/**
+ * Atrac3plusDspTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+class Atrac3plusDspTest {
+
+    /** the filter as written in ffmpeg, one IDCT-IV per sample and a wrapping ring */
+    static class Reference {
+
+        final float[][] buf1 = new float[ATRAC3P_PQF_FIR_LEN * 2][8];
+        final float[][] buf2 = new float[ATRAC3P_PQF_FIR_LEN * 2][8];
+        int pos;
+
+        void ipqf(MdctPlan dctCtx, float[] in, float[] out) {
+            float[] idctIn = new float[ATRAC3P_SUBBANDS];
+            float[] idctOut = new float[ATRAC3P_SUBBANDS];
+            int n = ATRAC3P_PQF_FIR_LEN * 2;
+
+            Arrays.fill(out, 0, ATRAC3P_FRAME_SAMPLES, 0f);
+
+            for (int s = 0; s < ATRAC3P_SUBBAND_SAMPLES; s++) {
+                for (int sb = 0; sb < ATRAC3P_SUBBANDS; sb++) {
+                    idctIn[sb] = in[sb * ATRAC3P_SUBBAND_SAMPLES + s];
+                }
+                dctCtx.imdctHalf(idctOut, 0, idctIn, 0);
+                for (int i = 0; i < 8; i++) {
+                    buf1[pos][i] = idctOut[i + 8];
+                    buf2[pos][i] = idctOut[7 - i];
+                }
+                for (int t = 0; t < ATRAC3P_PQF_FIR_LEN; t++) {
+                    int posNow = (pos + t * 2) % n;
+                    int posNext = (pos + t * 2 + 1) % n;
+                    for (int i = 0; i < 8; i++) {
+                        out[s * 16 + i + 0] += buf1[posNow][i] * Atrac3plusDsp.ipqf_coeffs1[t][i] + buf2[posNext][i] * Atrac3plusDsp.ipqf_coeffs2[t][i];
+                        out[s * 16 + i + 8] += buf1[posNow][7 - i] * Atrac3plusDsp.ipqf_coeffs1[t][i + 8] + buf2[posNext][7 - i] * Atrac3plusDsp.ipqf_coeffs2[t][i + 8];
+                    }
+                }
+                pos = (pos + n - 1) % n;
+            }
+        }
+    }
+
+    @Test
+    void testIpqf() {
+        MdctPlan dctCtx = MdctPlan.get(5, true, 31.0 / 32768.9);
+        Atrac3plusDsp dsp = new Atrac3plusDsp();
+        IPQFChannelContext hist = new IPQFChannelContext();
+        Reference reference = new Reference();
+        Random random = new Random(1);
+        float[] in = new float[ATRAC3P_FRAME_SAMPLES];
+        float[] expected = new float[ATRAC3P_FRAME_SAMPLES];
+        float[] actual = new float[ATRAC3P_FRAME_SAMPLES];
+        // several frames, so the history wraps at every slot
+        for (int frame = 0; frame < 5; frame++) {
+            for (int i = 0; i < in.length; i++) {
+                in[i] = (float) random.nextGaussian() * 1000;
+            }
+            reference.ipqf(dctCtx, in, expected);
+            dsp.ipqf(dctCtx, hist, in, actual);
+            assertArrayEquals(expected, actual, "frame: " + frame);
+        }
+    }
+
+    static final float[] sine_table = new float[2048];
+    static final float[] hann_window = new float[256];
+    static final float[] amp_sf_tab = new float[64];
+
+    static {
+        Atrac3plusDsp.initWaveSynth();
+        for (int i = 0; i < 2048; i++) {
+            sine_table[i] = (float) Math.sin(2 * Math.PI * i / 2048);
+        }
+        for (int i = 0; i < 256; i++) {
+            hann_window[i] = (float) ((1.0 - Math.cos(2 * Math.PI * i / 256)) * 0.5);
+        }
+        for (int i = 0; i < 64; i++) {
+            amp_sf_tab[i] = (float) Math.pow(2.0, ((double) (i - 3)) / 4.0);
+        }
+    }
+
+    /** the synthesis as written in ffmpeg */
+    static void wavesSynth(WaveSynthParams synthParams, WavesData wavesInfo, WaveEnvelope envelope, boolean phaseShift, int regOffset, float[] out) {
+        int waveParam = wavesInfo.startIndex;
+        for (int wn = 0; wn < wavesInfo.numWavs; wn++, waveParam++) {
+            double amp = amp_sf_tab[synthParams.waves[waveParam].ampSf] * (synthParams.amplitudeMode == 0 ? (synthParams.waves[waveParam].ampIndex + 1) / 15.13f : 1.0f);
+            int inc = synthParams.waves[waveParam].freqIndex;
+            int pos = ((synthParams.waves[waveParam].phaseIndex & 0x1F) << 6) - (regOffset ^ 128) * inc & 2047;
+            for (int i = 0; i < 128; i++) {
+                out[i] += (float) (sine_table[pos] * amp);
+                pos = (pos + inc) & 2047;
+            }
+        }
+        if (phaseShift) {
+            for (int i = 0; i < 128; i++) {
+                out[i] = -out[i];
+            }
+        }
+        if (envelope.hasStartPoint) {
+            int pos = (envelope.startPos << 2) - regOffset;
+            if (pos > 0 && pos <= 128) {
+                Arrays.fill(out, 0, pos, 0f);
+                if (!envelope.hasStopPoint || envelope.startPos != envelope.stopPos) {
+                    out[pos + 0] *= hann_window[0];
+                    out[pos + 1] *= hann_window[32];
+                    out[pos + 2] *= hann_window[64];
+                    out[pos + 3] *= hann_window[96];
+                }
+            }
+        }
+        if (envelope.hasStopPoint) {
+            int pos = (envelope.stopPos + 1 << 2) - regOffset;
+            if (pos > 0 && pos <= 128) {
+                out[pos - 4] *= hann_window[96];
+                out[pos - 3] *= hann_window[64];
+                out[pos - 2] *= hann_window[32];
+                out[pos - 1] *= hann_window[0];
+                Arrays.fill(out, pos, 128, 0f);
+            }
+        }
+    }
+
+    /** the tones as written in ffmpeg */
+    static void generateTones(ChannelUnitContext ctx, int chNum, int sb, float[] out, int outOffset) {
+        float[] wavreg1 = new float[128];
+        float[] wavreg2 = new float[128];
+        WavesData tonesNow = ctx.channels[chNum].tonesInfoPrev[sb];
+        WavesData tonesNext = ctx.channels[chNum].tonesInfo[sb];
+
+        if (tonesNext.pendEnv.hasStartPoint && tonesNext.pendEnv.startPos < tonesNext.pendEnv.stopPos) {
+            tonesNext.currEnv.hasStartPoint = true;
+            tonesNext.currEnv.startPos = tonesNext.pendEnv.startPos + 32;
+        } else if (tonesNow.pendEnv.hasStartPoint) {
+            tonesNext.currEnv.hasStartPoint = true;
+            tonesNext.currEnv.startPos = tonesNow.pendEnv.startPos;
+        } else {
+            tonesNext.currEnv.hasStartPoint = false;
+            tonesNext.currEnv.startPos = 0;
+        }
+        if (tonesNow.pendEnv.hasStopPoint && tonesNow.pendEnv.stopPos >= tonesNext.currEnv.startPos) {
+            tonesNext.currEnv.hasStopPoint = true;
+            tonesNext.currEnv.stopPos = tonesNow.pendEnv.stopPos;
+        } else if (tonesNext.pendEnv.hasStopPoint) {
+            tonesNext.currEnv.hasStopPoint = true;
+            tonesNext.currEnv.stopPos = tonesNext.pendEnv.stopPos + 32;
+        } else {
+            tonesNext.currEnv.hasStopPoint = false;
+            tonesNext.currEnv.stopPos = 64;
+        }
+
+        boolean reg1EnvNonzero = tonesNow.currEnv.stopPos >= 32;
+        boolean reg2EnvNonzero = tonesNext.currEnv.startPos < 32;
+        if (tonesNow.numWavs > 0 && reg1EnvNonzero) {
+            wavesSynth(ctx.wavesInfoPrev, tonesNow, tonesNow.currEnv, ctx.wavesInfoPrev.phaseShift[sb] && (chNum > 0), 128, wavreg1);
+        }
+        if (tonesNext.numWavs > 0 && reg2EnvNonzero) {
+            wavesSynth(ctx.wavesInfo, tonesNext, tonesNext.currEnv, ctx.wavesInfo.phaseShift[sb] && (chNum > 0), 0, wavreg2);
+        }
+        if (tonesNow.numWavs > 0 && tonesNext.numWavs > 0 && reg1EnvNonzero && reg2EnvNonzero) {
+            vectorFmul(wavreg1, 0, wavreg1, 0, hann_window, 128, 128);
+            vectorFmul(wavreg2, 0, wavreg2, 0, hann_window, 0, 128);
+        } else {
+            if (tonesNow.numWavs > 0 && !tonesNow.currEnv.hasStopPoint) {
+                vectorFmul(wavreg1, 0, wavreg1, 0, hann_window, 128, 128);
+            }
+            if (tonesNext.numWavs > 0 && !tonesNext.currEnv.hasStartPoint) {
+                vectorFmul(wavreg2, 0, wavreg2, 0, hann_window, 0, 128);
+            }
+        }
+        for (int i = 0; i < 128; i++) {
+            out[outOffset + i] += wavreg1[i] + wavreg2[i];
+        }
+    }
+
+    static void envelope(WaveEnvelope envelope, Random random, int range) {
+        envelope.hasStartPoint = random.nextBoolean();
+        envelope.hasStopPoint = random.nextBoolean();
+        envelope.startPos = random.nextInt(range);
+        envelope.stopPos = random.nextInt(range);
+    }
+
+    static ChannelUnitContext tones(long seed) {
+        Random random = new Random(seed);
+        ChannelUnitContext ctx = new ChannelUnitContext();
+        for (WaveSynthParams params : ctx.waveSynthHist) {
+            params.amplitudeMode = random.nextInt(2);
+            for (int sb = 0; sb < ATRAC3P_SUBBANDS; sb++) {
+                params.phaseShift[sb] = random.nextBoolean();
+            }
+            for (WaveParam wave : params.waves) {
+                wave.freqIndex = random.nextInt(1024);
+                wave.ampSf = random.nextInt(64);
+                wave.ampIndex = random.nextInt(16);
+                wave.phaseIndex = random.nextInt(32);
+            }
+        }
+        for (Channel channel : ctx.channels) {
+            for (WavesData[] tonesInfo : channel.tonesInfoHist) {
+                for (WavesData waves : tonesInfo) {
+                    waves.numWavs = random.nextInt(4);
+                    waves.startIndex = random.nextInt(44);
+                    envelope(waves.pendEnv, random, 32);
+                    envelope(waves.currEnv, random, 64);
+                }
+            }
+        }
+        return ctx;
+    }
+
+    @Test
+    void testGenerateTones() {
+        Atrac3plusDsp dsp = new Atrac3plusDsp();
+        float[] expected = new float[ATRAC3P_FRAME_SAMPLES];
+        float[] actual = new float[ATRAC3P_FRAME_SAMPLES];
+        for (int seed = 0; seed < 50; seed++) {
+            ChannelUnitContext reference = tones(seed);
+            ChannelUnitContext ctx = tones(seed);
+            for (int ch = 0; ch < 2; ch++) {
+                Random random = new Random(seed);
+                for (int i = 0; i < ATRAC3P_FRAME_SAMPLES; i++) {
+                    expected[i] = actual[i] = (float) random.nextGaussian();
+                }
+                for (int sb = 0; sb < ATRAC3P_SUBBANDS; sb++) {
+                    generateTones(reference, ch, sb, expected, sb * 128);
+                    dsp.generateTones(ctx, ch, sb, actual, sb * 128);
+                }
+                assertArrayEquals(expected, actual, "seed: " + seed + ", ch: " + ch);
+            }
+        }
+    }
+}
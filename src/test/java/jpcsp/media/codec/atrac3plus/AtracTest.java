@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package jpcsp.media.codec.atrac3plus;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import jpcsp.media.codec.atrac3plus.Atrac.IqmfDelay;
+import jpcsp.media.codec.util.CodecState;
+import org.junit.jupiter.api.Test;
+
+import static jpcsp.media.codec.util.CodecUtils.convertSampleFloatToInt16;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+/**
+ * AtracTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+class AtracTest {
+
+    static final float[] qmf_window = new float[48];
+
+    static {
+        Atrac.generateTables();
+        float[] half = {
+                -0.00001461907f, -0.00009205479f, -0.000056157569f, 0.00030117269f,
+                0.0002422519f, -0.00085293897f, -0.0005205574f, 0.0020340169f,
+                0.00078333891f, -0.0042153862f, -0.00075614988f, 0.0078402944f,
+                -0.000061169922f, -0.01344162f, 0.0024626821f, 0.021736089f,
+                -0.007801671f, -0.034090221f, 0.01880949f, 0.054326009f,
+                -0.043596379f, -0.099384367f, 0.13207909f, 0.46424159f
+        };
+        for (int i = 0; i < 24; i++) {
+            qmf_window[i] = qmf_window[47 - i] = half[i] * 2.0f;
+        }
+    }
+
+    /** the 2 band filter as written in ffmpeg */
+    static void iqmf(float[] inlo, int inloOffset, float[] inhi, int inhiOffset, int nIn, float[] out, int outOffset, float[] delayBuf, float[] temp) {
+        System.arraycopy(delayBuf, 0, temp, 0, 46);
+        for (int i = 0; i < nIn; i++) {
+            temp[46 + 2 * i + 0] = inlo[inloOffset + i] + inhi[inhiOffset + i];
+            temp[46 + 2 * i + 1] = inlo[inloOffset + i] - inhi[inhiOffset + i];
+        }
+        for (int j = 0, p1 = 0; j < nIn; j++, p1 += 2, outOffset += 2) {
+            float s1 = 0f;
+            float s2 = 0f;
+            for (int i = 0; i < 48; i += 2) {
+                s1 += temp[p1 + i] * qmf_window[i];
+                s2 += temp[p1 + i + 1] * qmf_window[i + 1];
+            }
+            out[outOffset + 0] = s2;
+            out[outOffset + 1] = s1;
+        }
+        System.arraycopy(temp, nIn * 2, delayBuf, 0, 46);
+    }
+
+    /** the gain compensation as written in ffmpeg */
+    static void gainCompensation(float[] gainTab1, float[] gainTab2, int id2expOffset, int locScale, float[] in, float[] prev, AtracGainInfo gcNow, AtracGainInfo gcNext, int numSamples, float[] out) {
+        int locSize = 1 << locScale;
+        float gcScale = (gcNext.numPoints != 0 ? gainTab1[gcNext.levCode[0]] : 1f);
+
+        int pos = 0;
+        for (int i = 0; i < gcNow.numPoints; i++) {
+            int lastpos = gcNow.locCode[i] << locScale;
+
+            float lev = gainTab1[gcNow.levCode[i]];
+            float gainInc = gainTab2[(i + 1 < gcNow.numPoints ? gcNow.levCode[i + 1] : id2expOffset) - gcNow.levCode[i] + 15];
+
+            for (; pos < lastpos; pos++) {
+                out[pos] = (in[pos] * gcScale + prev[pos]) * lev;
+            }
+            for (; pos < lastpos + locSize; pos++) {
+                out[pos] = (in[pos] * gcScale + prev[pos]) * lev;
+                lev *= gainInc;
+            }
+        }
+        for (; pos < numSamples; pos++) {
+            out[pos] = in[pos] * gcScale + prev[pos];
+        }
+
+        System.arraycopy(in, numSamples, prev, 0, numSamples);
+    }
+
+    static void randomGainInfo(Random random, AtracGainInfo info) {
+        info.clear();
+        info.numPoints = random.nextInt(3) == 0 ? 0 : random.nextInt(8);
+        int loc = -1;
+        for (int i = 0; i < info.numPoints; i++) {
+            loc += 1 + random.nextInt(4);
+            if (loc > 31) {
+                info.numPoints = i;
+                break;
+            }
+            info.levCode[i] = random.nextInt(16);
+            info.locCode[i] = loc;
+        }
+    }
+
+    @Test
+    void testGainCompensation() {
+        Random random = new Random(1);
+        for (int[] config : new int[][] {{4, 3, 256}, {6, 2, 128}}) {
+            Atrac atrac = new Atrac();
+            atrac.initGainCompensation(config[0], config[1]);
+            float[] gainTab1 = new float[16];
+            float[] gainTab2 = new float[31];
+            for (int i = 0; i < 16; i++) {
+                gainTab1[i] = (float) Math.pow(2, config[0] - i);
+            }
+            for (int i = -15; i < 16; i++) {
+                gainTab2[i + 15] = (float) Math.pow(2, -1.0 / (1 << config[1]) * i);
+            }
+
+            int n = config[2];
+            float[] window = new float[n * 2];
+            for (int i = 0; i < n * 2; i++) {
+                window[i] = (float) Math.sin((i + 0.5) * Math.PI / (n * 2));
+            }
+            AtracGainInfo gcNow = new AtracGainInfo();
+            AtracGainInfo gcNext = new AtracGainInfo();
+            float[] in = new float[n * 2];
+            float[] windowed = new float[n * 2];
+            float[] expectedPrev = new float[n];
+            float[] actualPrev = new float[n];
+            float[] windowedPrev = new float[n];
+            float[] expected = new float[n];
+            float[] actual = new float[n];
+            float[] actualWindowed = new float[n + 1];
+            for (int frame = 0; frame < 200; frame++) {
+                for (int i = 0; i < n * 2; i++) {
+                    in[i] = (float) random.nextGaussian();
+                    windowed[i] = in[i] * window[i];
+                }
+                gcNow.copy(gcNext);
+                randomGainInfo(random, gcNext);
+
+                // the windowed overlap is checked against the same filter on the windowed input
+                float[] windowedExpectedPrev = windowedPrev.clone();
+                float[] windowedExpected = new float[n];
+                gainCompensation(gainTab1, gainTab2, config[0], config[1], windowed, windowedExpectedPrev, gcNow, gcNext, n, windowedExpected);
+                gainCompensation(gainTab1, gainTab2, config[0], config[1], in, expectedPrev, gcNow, gcNext, n, expected);
+
+                atrac.gainCompensation(in, 0, actualPrev, 0, gcNow, gcNext, n, actual, 0);
+                atrac.gainCompensation(in, 0, window, 0, windowedPrev, 0, gcNow, gcNext, n, actualWindowed, 1);
+
+                assertArrayEquals(expected, actual, "frame: " + frame);
+                assertArrayEquals(expectedPrev, actualPrev, "frame: " + frame);
+                assertArrayEquals(windowedExpected, Arrays.copyOfRange(actualWindowed, 1, n + 1), "frame: " + frame);
+                assertArrayEquals(windowedExpectedPrev, windowedPrev, "frame: " + frame);
+            }
+        }
+    }
+
+    @Test
+    void testGainInfoState() {
+        Random random = new Random(3);
+        AtracGainInfo info = new AtracGainInfo();
+        AtracGainInfo read = new AtracGainInfo();
+        for (int n = 0; n < 100; n++) {
+            randomGainInfo(random, info);
+            CodecState.Writer writer = new CodecState.Writer(0, 0);
+            info.write(writer);
+            read.read(new CodecState.Reader(writer.toByteArray(), 0, 0));
+            assertEquals(info.numPoints, read.numPoints);
+            assertArrayEquals(info.levCode, read.levCode);
+            assertArrayEquals(info.locCode, read.locCode);
+        }
+
+        info.clear();
+        info.numPoints = 1;
+        info.levCode[0] = 16;
+        CodecState.Writer level = new CodecState.Writer(0, 0);
+        info.write(level);
+        assertThrows(IllegalArgumentException.class, () -> read.read(new CodecState.Reader(level.toByteArray(), 0, 0)));
+        info.levCode[0] = 0;
+        info.locCode[0] = 32;
+        CodecState.Writer location = new CodecState.Writer(0, 0);
+        info.write(location);
+        assertThrows(IllegalArgumentException.class, () -> read.read(new CodecState.Reader(location.toByteArray(), 0, 0)));
+
+        WaveParam wave = new WaveParam();
+        wave.ampSf = 63;
+        CodecState.Writer waveWriter = new CodecState.Writer(0, 0);
+        wave.write(waveWriter);
+        new WaveParam().read(new CodecState.Reader(waveWriter.toByteArray(), 0, 0));
+        wave.ampSf = 64;
+        CodecState.Writer scale = new CodecState.Writer(0, 0);
+        wave.write(scale);
+        assertThrows(IllegalArgumentException.class, () -> new WaveParam().read(new CodecState.Reader(scale.toByteArray(), 0, 0)));
+
+        WaveEnvelope envelope = new WaveEnvelope();
+        envelope.startPos = 31;
+        envelope.stopPos = 32;
+        CodecState.Writer positions = new CodecState.Writer(0, 0);
+        envelope.write(positions);
+        assertThrows(IllegalArgumentException.class, () -> new WaveEnvelope().read(new CodecState.Reader(positions.toByteArray(), 0, 0), WaveEnvelope.POSITIONS));
+        // the current envelope spans two regions
+        new WaveEnvelope().read(new CodecState.Reader(positions.toByteArray(), 0, 0), WaveEnvelope.CURRENT_POSITIONS);
+        envelope.stopPos = 65;
+        CodecState.Writer current = new CodecState.Writer(0, 0);
+        envelope.write(current);
+        assertThrows(IllegalArgumentException.class, () -> new WaveEnvelope().read(new CodecState.Reader(current.toByteArray(), 0, 0), WaveEnvelope.CURRENT_POSITIONS));
+    }
+
+    @Test
+    void testGainCompensationSilent() {
+        Random random = new Random(2);
+        for (int[] config : new int[][] {{4, 3, 256}, {6, 2, 128}}) {
+            Atrac atrac = new Atrac();
+            atrac.initGainCompensation(config[0], config[1]);
+            int n = config[2];
+            AtracGainInfo gcNow = new AtracGainInfo();
+            AtracGainInfo gcNext = new AtracGainInfo();
+            float[] zero = new float[n * 2];
+            float[] expectedPrev = new float[n];
+            float[] actualPrev = new float[n];
+            float[] expected = new float[n];
+            float[] actual = new float[n];
+            for (int frame = 0; frame < 200; frame++) {
+                for (int i = 0; i < n; i++) {
+                    expectedPrev[i] = actualPrev[i] = (float) random.nextGaussian();
+                }
+                randomGainInfo(random, gcNow);
+                randomGainInfo(random, gcNext);
+
+                atrac.gainCompensation(zero, 0, expectedPrev, 0, gcNow, gcNext, n, expected, 0);
+                atrac.gainCompensationSilent(actualPrev, 0, gcNow, n, actual, 0);
+
+                assertArrayEquals(expected, actual, "frame: " + frame);
+                assertArrayEquals(expectedPrev, actualPrev, "frame: " + frame);
+            }
+        }
+    }
+
+    @Test
+    void testIqmf() {
+        float[][] delayBufs = new float[3][46];
+        float[] temp = new float[1070];
+        IqmfDelay delay1 = new IqmfDelay();
+        IqmfDelay delay2 = new IqmfDelay();
+        IqmfDelay delay3 = new IqmfDelay();
+        Random random = new Random(1);
+        float[] samples = new float[1024];
+        short[] expected = new short[2048];
+        short[] actual = new short[2048];
+        for (int frame = 0; frame < 4; frame++) {
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = (float) random.nextGaussian() * 0.3f;
+            }
+            Atrac.iqmf(samples, 0, 256, delay1, delay2, delay3, actual, 1, 2);
+
+            iqmf(samples, 0, samples, 256, 256, samples, 0, delayBufs[0], temp);
+            iqmf(samples, 768, samples, 512, 256, samples, 512, delayBufs[1], temp);
+            iqmf(samples, 0, samples, 512, 512, samples, 0, delayBufs[2], temp);
+            for (int i = 0; i < 1024; i++) {
+                expected[i * 2 + 1] = convertSampleFloatToInt16(samples[i]);
+            }
+            assertArrayEquals(expected, actual, "frame: " + frame);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package jpcsp.media.codec.transform;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+
+/**
+ * MdctPlanTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+class MdctPlanTest {
+
+    static double[] dct4(float[] x) {
+        int n = x.length;
+        double[] y = new double[n];
+        for (int k = 0; k < n; k++) {
+            for (int i = 0; i < n; i++) {
+                y[k] += x[i] * Math.cos(Math.PI / n * (i + 0.5) * (k + 0.5));
+            }
+        }
+        return y;
+    }
+
+    static float[] random(int n, long seed) {
+        Random random = new Random(seed);
+        float[] x = new float[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = (float) random.nextGaussian();
+        }
+        return x;
+    }
+
+    @Test
+    void testShared() {
+        assertSame(MdctPlan.get(8, true, -1.0), MdctPlan.get(8, true, -1.0));
+        assertSame(MdctPlan.get(8, true, -1.0).getFft(), MdctPlan.get(8, true, 0.5).getFft());
+        assertSame(Dct4Plan.get(7), Dct4Plan.get(7));
+        assertNull(MdctPlan.get(FftPlan.MAX_BITS + 3, true, 1.0));
+    }
+
+    @Test
+    void testImdctHalf() {
+        for (int bits = 4; bits <= FftPlan.MAX_BITS + 1; bits++) {
+            int n = 1 << (bits - 1);
+            float[] x = random(n, bits);
+            double[] expected = dct4(x);
+            float[] actual = new float[n + 3];
+            MdctPlan.get(bits, true, 0.25).imdctHalf(actual, 3, x, 0);
+            for (int i = 0; i < n; i++) {
+                assertEquals(expected[n - 1 - i] * 0.25, actual[3 + i], 1e-4 * n, "bits: " + bits + ", " + i);
+            }
+        }
+    }
+
+    @Test
+    void testImdctHalfLanes() {
+        int lanes = 3;
+        for (int bits = 4; bits <= FftPlan.MAX_BITS + 1; bits++) {
+            int n = 1 << (bits - 1);
+            MdctPlan plan = MdctPlan.get(bits, true, 0.25);
+            float[] input = new float[n * lanes];
+            float[][] expected = new float[lanes][n];
+            for (int l = 0; l < lanes; l++) {
+                float[] x = random(n, bits * lanes + l);
+                for (int i = 0; i < n; i++) {
+                    input[i * lanes + l] = x[i];
+                }
+                plan.imdctHalf(expected[l], 0, x, 0);
+            }
+            float[] actual = new float[n * lanes + 5];
+            plan.imdctHalf(actual, 5, input, 0, lanes);
+            for (int l = 0; l < lanes; l++) {
+                for (int i = 0; i < n; i++) {
+                    assertEquals(expected[l][i], actual[5 + i * lanes + l], "bits: " + bits + ", " + l + ", " + i);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testDct4() {
+        for (int bits = 1; bits <= 9; bits++) {
+            int n = 1 << bits;
+            float[] x = random(n, bits);
+            double[] expected = dct4(x);
+            double[] input = new double[n];
+            for (int i = 0; i < n; i++) {
+                input[i] = x[i];
+            }
+            double[] actual = new double[n * 2];
+            Dct4Plan.get(bits).transform(input, actual, n, actual, 2);
+            for (int i = 0; i < n; i++) {
+                assertEquals(expected[i] * 2, actual[n + i], 1e-9 * n, "bits: " + bits + ", " + i);
+            }
+        }
+    }
+
+    @Test
+    void testDct4Lanes() {
+        int lanes = 3;
+        for (int bits = 1; bits <= 9; bits++) {
+            int n = 1 << bits;
+            double[] input = new double[n * lanes];
+            double[][] expected = new double[lanes][n * 2];
+            for (int l = 0; l < lanes; l++) {
+                float[] x = random(n, bits * lanes + l);
+                double[] lane = new double[n];
+                for (int i = 0; i < n; i++) {
+                    lane[i] = x[i];
+                    input[i * lanes + l] = x[i];
+                }
+                Dct4Plan.get(bits).transform(lane, expected[l], n, expected[l], 2);
+            }
+            double[] actual = new double[n * lanes * 2];
+            Dct4Plan.get(bits).transform(input, actual, n * lanes, actual, 2, lanes);
+            for (int l = 0; l < lanes; l++) {
+                for (int i = 0; i < n; i++) {
+                    assertEquals(expected[l][n + i], actual[n * lanes + i * lanes + l], "bits: " + bits + ", " + l + ", " + i);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package jpcsp.media.codec.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+/**
+ * BitReaderTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+class BitReaderTest {
+
+    static final byte[] data = {
+            (byte) 0xa5, (byte) 0x3c, (byte) 0xff, (byte) 0x00, (byte) 0x81, (byte) 0x7e, (byte) 0x12, (byte) 0x34,
+            (byte) 0x56, (byte) 0x78, (byte) 0x9a, (byte) 0xbc, (byte) 0xde, (byte) 0xf0, (byte) 0x0f, (byte) 0xf8
+    };
+
+    @Test
+    void testForward() {
+        for (ByteOrder order : new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            BitReader br = new BitReader(ByteBuffer.wrap(data).order(order), 0, data.length);
+            assertEquals(0xa, br.read(4));
+            assertEquals(0x53c, br.peek(12));
+            assertEquals(0x53cff00, br.read(28));
+            assertEquals(1, br.read1());
+            assertEquals(0, br.read(0));
+            br.skip(-9);
+            assertEquals(1, br.peek(9));
+            br.skip(9);
+            assertEquals(0x7e, br.readByte()); // drops the rest of 0x81
+            assertEquals(6, br.getBytesRead());
+            assertEquals(48, br.getBitsRead());
+            assertEquals(80, br.getBitsLeft());
+            assertEquals(0x12345678, br.read(32));
+            br.skip(5);
+            assertEquals(2, br.read(3));
+            assertEquals(0xbcdef00f, br.read(32));
+            assertEquals(0xf800, br.read(16)); // past the end
+        }
+    }
+
+    @Test
+    void testReverse() {
+        BitReader br = new BitReader(ByteBuffer.wrap(data), 0, data.length);
+        br.seek(data.length - 1);
+        br.setDirection(-1);
+        assertEquals(0xf8, br.peek(8));
+        assertEquals(0xf8, br.read(8));
+        assertEquals(0x0ff0de, br.read(24));
+        assertEquals(0xbc9, br.read(12));
+        assertEquals(data.length - 7, br.getReadAddr());
+        br.setDirection(1); // drops the rest of 0x9a
+        assertEquals(0x78, br.read(8));
+        br.seek(data.length);
+        assertEquals(data.length, br.getBytesRead());
+    }
+}
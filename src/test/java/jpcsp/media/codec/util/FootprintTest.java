@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package jpcsp.media.codec.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+/**
+ * FootprintTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+class FootprintTest {
+
+    static class Node {
+        Node next;
+        int value;
+        final float[] values = new float[4];
+    }
+
+    @Test
+    void testArrays() {
+        assertEquals(16, Footprint.of(new float[0]));
+        assertEquals(56, Footprint.of(new int[10]));
+        assertEquals(24 + 2 * 32, Footprint.of(new long[2][2]));
+        assertEquals(0, Footprint.of(null));
+    }
+
+    @Test
+    void testObjects() {
+        // header, a reference, an int, then the array
+        Node node = new Node();
+        assertEquals(24 + 32, Footprint.of(node));
+        // a cycle is counted once
+        node.next = new Node();
+        node.next.next = node;
+        assertEquals(2 * (24 + 32), Footprint.of(node));
+    }
+
+    @Test
+    void testPerInstance() {
+        double[] shared = new double[256];
+        // the shared table is not counted
+        assertEquals(24 + 120, Footprint.perInstance(() -> new Object[] {shared, new byte[100]}));
+    }
+}
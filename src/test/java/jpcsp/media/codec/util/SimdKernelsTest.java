@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package jpcsp.media.codec.util;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+
+/**
+ * SimdKernelsTest. compares the simd kernels with the scalar loops.
+ * <p>
+ * runs only with {@code --add-modules jdk.incubator.vector}.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+class SimdKernelsTest {
+
+    static final int[] lengths = {1, 3, 7, 8, 16, 31, 64, 100, 128, 256, 1024};
+
+    SimdKernels simd;
+    Random random = new Random(1234);
+
+    @BeforeEach
+    void setup() {
+        simd = SimdKernels.getInstance();
+        assumeTrue(simd != null, "vector api is not available");
+    }
+
+    float[] floats(int len) {
+        float[] a = new float[len];
+        for (int i = 0; i < len; i++) {
+            a[i] = random.nextFloat() * 2 - 1;
+        }
+        return a;
+    }
+
+    int[] ints(int len, int range) {
+        int[] a = new int[len];
+        for (int i = 0; i < len; i++) {
+            a[i] = random.nextInt(range * 2 + 1) - range;
+        }
+        return a;
+    }
+
+    @Test
+    void testFloat() {
+        for (int len : lengths) {
+            float[] src0 = floats(len + 5);
+            float[] src1 = floats(len + 5);
+            float[] src2 = floats(len + 5);
+
+            float[] expected = new float[len + 5];
+            float[] actual = new float[len + 5];
+            for (int i = 0; i < len; i++) {
+                expected[2 + i] = src0[1 + i] * src1[3 + i];
+            }
+            simd.vectorFmul(actual, 2, src0, 1, src1, 3, len);
+            assertArrayEquals(expected, actual, "vectorFmul " + len);
+
+            for (int i = 0; i < len; i++) {
+                expected[2 + i] = src0[1 + i] * src1[3 + len - 1 - i];
+            }
+            simd.vectorFmulReverse(actual, 2, src0, 1, src1, 3, len);
+            assertArrayEquals(expected, actual, "vectorFmulReverse " + len);
+
+            for (int i = 0; i < len; i++) {
+                expected[i] = src0[i] * src1[i] + src2[i];
+            }
+            simd.vectorFmulAdd(actual, 0, src0, 0, src1, 0, src2, 0, len);
+            assertArrayEquals(expected, actual, "vectorFmulAdd " + len);
+
+            float[] e1 = src0.clone(), e2 = src1.clone(), a1 = src0.clone(), a2 = src1.clone();
+            for (int i = 0; i < len; i++) {
+                float t = e1[i] - e2[i + 1];
+                e1[i] += e2[i + 1];
+                e2[i + 1] = t;
+            }
+            simd.butterflies(a1, 0, a2, 1, len);
+            assertArrayEquals(e1, a1, "butterflies " + len);
+            assertArrayEquals(e2, a2, "butterflies " + len);
+
+            float p = 0;
+            for (int i = 0; i < len; i++) {
+                p += src0[i] * src1[i];
+            }
+            assertEquals(p, simd.scalarproduct(src0, 0, src1, 0, len), 1e-4f * len, "scalarproduct " + len);
+
+            int[] mantissas = ints(len, 1 << 15);
+            for (int i = 0; i < len; i++) {
+                expected[1 + i] = mantissas[i] * 0.123f;
+            }
+            simd.int32ToFloatFmulScalar(actual, 1, mantissas, 0, 0.123f, len);
+            assertArrayEquals(expected, actual, "int32ToFloatFmulScalar " + len);
+        }
+    }
+
+    @Test
+    void testWindow() {
+        for (int len : lengths) {
+            float[] src0 = floats(len + 3);
+            float[] src1 = floats(len + 3);
+            float[] win = floats(len * 2 + 3);
+            float[] expected = new float[len * 2 + 3];
+            float[] actual = new float[len * 2 + 3];
+            for (int i = -len, j = len - 1; i < 0; i++, j--) {
+                float s0 = src0[1 + len + i];
+                float s1 = src1[2 + j];
+                float wi = win[3 + len + i];
+                float wj = win[3 + len + j];
+                expected[len + i] = s0 * wj - s1 * wi;
+                expected[len + j] = s0 * wi + s1 * wj;
+            }
+            simd.vectorFmulWindow(actual, 0, src0, 1, src1, 2, win, 3, len);
+            assertArrayEquals(expected, actual, "vectorFmulWindow " + len);
+        }
+    }
+
+    @Test
+    void testDouble() {
+        for (int len : lengths) {
+            int[] coarse = ints(len + 2, 1000);
+            int[] fine = ints(len + 2, 1000);
+            double[] expected = new double[len + 2];
+            double[] actual = new double[len + 2];
+            for (int i = 0; i < len; i++) {
+                expected[2 + i] = coarse[2 + i] * 0.0123 + fine[2 + i] * 0.000321;
+            }
+            simd.int32ToDoubleDmulScalarAddScale(actual, 2, coarse, 0.0123, fine, 0.000321, 2, 1.0, len);
+            assertArrayEquals(expected, actual, "int32ToDoubleDmulScalarAddScale " + len);
+
+            double[] scaled = new double[len + 2];
+            for (int i = 0; i < len; i++) {
+                scaled[2 + i] = (coarse[2 + i] * 0.0123 + fine[2 + i] * 0.000321) * -0.37;
+            }
+            simd.int32ToDoubleDmulScalarAddScale(actual, 2, coarse, 0.0123, fine, 0.000321, 2, -0.37, len);
+            assertArrayEquals(scaled, actual, "int32ToDoubleDmulScalarAddScale scaled " + len);
+            simd.int32ToDoubleDmulScalarAddScale(actual, 2, coarse, 0.0123, fine, 0.000321, 2, 1.0, len);
+
+            for (int i = 0; i < len; i++) {
+                expected[i] = expected[i] * 1.7;
+            }
+            simd.vectorDmulScalar(actual, 0, actual, 0, 1.7, len);
+            assertArrayEquals(expected, actual, "vectorDmulScalar " + len);
+        }
+    }
+
+    @Test
+    void testComplexButterflies() {
+        for (int half : new int[] {1, 2, 4, 8, 64}) {
+            int len = half * 2;
+            double[] data = new double[len * 2];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = random.nextDouble() - 0.5;
+            }
+            double[] rotCos = new double[len];
+            double[] rotSin = new double[len];
+            double[] cos = new double[half];
+            double[] sin = new double[half];
+            for (int i = 0; i < half; i++) {
+                double value = Math.PI * (4 * i + 1) / (4 * half);
+                cos[i] = Math.cos(value);
+                sin[i] = Math.sin(value);
+                rotCos[i * 2] = cos[i];
+                rotCos[i * 2 + 1] = -cos[i];
+                rotSin[i * 2] = sin[i];
+                rotSin[i * 2 + 1] = sin[i];
+            }
+            double[] expected = data.clone();
+            for (int i = 0; i < half; i++) {
+                int front = i * 2;
+                int back = front + len;
+                double a = expected[front] - expected[back];
+                double b = expected[front + 1] - expected[back + 1];
+                expected[front] += expected[back];
+                expected[front + 1] += expected[back + 1];
+                expected[back] = a * cos[i] + b * sin[i];
+                expected[back + 1] = a * sin[i] - b * cos[i];
+            }
+            simd.complexButterflies(data, 0, len, rotCos, rotSin, len);
+            assertArrayEquals(expected, data, "complexButterflies " + half);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package jpcsp.media.codec.util;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * VLCTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+class VLCTest {
+
+    // canonical code, lengths 1 to 12, so 4 bit tables need up to 3 levels
+    static final int[] bits = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 12};
+    static final int[] codes = new int[bits.length];
+
+    static {
+        int code = 0;
+        for (int i = 0; i < bits.length; i++) {
+            if (i > 0) {
+                code = (code + 1) << (bits[i] - bits[i - 1]);
+            }
+            codes[i] = code;
+        }
+    }
+
+    static int[] symbols(int n, long seed) {
+        Random random = new Random(seed);
+        int[] symbols = new int[n];
+        for (int i = 0; i < n; i++) {
+            // mostly short codes
+            symbols[i] = Math.min(Integer.numberOfTrailingZeros(random.nextInt() | 0x1000), bits.length - 1);
+        }
+        return symbols;
+    }
+
+    static ByteBuffer encode(int[] symbols) {
+        byte[] buffer = new byte[symbols.length * 2 + 8];
+        int position = 0;
+        for (int symbol : symbols) {
+            for (int b = bits[symbol] - 1; b >= 0; b--, position++) {
+                if ((codes[symbol] >> b & 1) != 0) {
+                    buffer[position >> 3] |= (byte) (0x80 >> (position & 7));
+                }
+            }
+        }
+        return ByteBuffer.wrap(buffer);
+    }
+
+    @Test
+    void testGetVLC2() {
+        VLC vlc = new VLC();
+        assertEquals(0, vlc.initVLCSparse(4, bits.length, bits, codes, null));
+        assertEquals(vlc.tableSize, vlc.table.length);
+
+        int[] symbols = symbols(1000, 1);
+        BitReader br = new BitReader(encode(symbols), 0, symbols.length * 2);
+        for (int symbol : symbols) {
+            assertEquals(symbol, vlc.getVLC2(br, 3));
+        }
+    }
+
+    @Test
+    void testMultiSymbol() {
+        VLC vlc = new VLC();
+        vlc.initVLCSparse(9, bits.length, bits, codes, null);
+        assertTrue(vlc.initMultiSymbol());
+
+        int[] symbols = symbols(1001, 2);
+        ByteBuffer encoded = encode(symbols);
+        BitReader br = new BitReader(encoded, 0, encoded.capacity());
+        int[] decoded = new int[symbols.length];
+        vlc.getVLC2(br, 2, decoded, 0, symbols.length);
+        assertArrayEquals(symbols, decoded);
+
+        BitReader single = new BitReader(encoded, 0, encoded.capacity());
+        for (int symbol : symbols) {
+            assertEquals(symbol, vlc.getVLC2(single, 2));
+        }
+        assertEquals(single.getBitsRead(), br.getBitsRead());
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package libatrac9;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+
+/**
+ * Atrac9BatchDecoderTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+class Atrac9BatchDecoderTest {
+
+    /** every stream is the same as decoded alone */
+    @Test
+    void testLockstep() throws Exception {
+        Atrac9.At9Structure at9 = Atrac9MixerTest.load();
+        byte[] configData = at9.config.getConfigData();
+        byte[][] superframes = at9.audioData;
+
+        int streams = 3;
+        int[] offsets = {0, 100, 250};
+        Atrac9BatchDecoder batch = new Atrac9BatchDecoder(configData, streams);
+        Atrac9Decoder[] decoders = new Atrac9Decoder[streams];
+        for (int s = 0; s < streams; s++) {
+            decoders[s] = new Atrac9Decoder();
+            decoders[s].initialize(configData);
+        }
+        Atrac9Config config = batch.getConfig();
+        short[][][] expected = new short[streams][config.getChannelCount()][config.getSuperframeSamples()];
+        short[][][] actual = new short[streams][config.getChannelCount()][config.getSuperframeSamples()];
+
+        byte[][] data = new byte[streams][];
+        for (int i = 0; i < superframes.length; i++) {
+            for (int s = 0; s < streams; s++) {
+                data[s] = i + offsets[s] < superframes.length ? superframes[i + offsets[s]] : null;
+                if (data[s] != null) {
+                    decoders[s].decode(data[s], expected[s]);
+                }
+            }
+            batch.decode(data, actual);
+            for (int s = 0; s < streams; s++) {
+                if (data[s] != null) {
+                    for (int c = 0; c < config.getChannelCount(); c++) {
+                        assertArrayEquals(expected[s][c], actual[s][c], i + ", " + s + ", " + c);
+                    }
+                }
+            }
+        }
+    }
+}
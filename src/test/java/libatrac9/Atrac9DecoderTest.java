@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package libatrac9;
+
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Atrac9DecoderTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+class Atrac9DecoderTest {
+
+    static final String at9 = "src/test/resources/snd0.at9";
+
+    @Test
+    void testSinglePrecision() throws Exception {
+        Atrac9.At9Structure structure = Atrac9.load_At9(at9);
+        byte[] configData = structure.config.getConfigData();
+
+        Atrac9Decoder reference = new Atrac9Decoder();
+        reference.initialize(configData);
+        Atrac9Decoder decoder = new Atrac9Decoder();
+        decoder.setSinglePrecision(true);
+        decoder.initialize(configData);
+        Atrac9Config config = decoder.getConfig();
+
+        short[][] expected = new short[config.getChannelCount()][config.getSuperframeSamples()];
+        short[][] actual = new short[config.getChannelCount()][config.getSuperframeSamples()];
+        int maxDiff = 0;
+        long samples = 0;
+        for (byte[] superframe : structure.audioData) {
+            reference.decode(superframe, expected);
+            decoder.decode(superframe, actual);
+            for (int ch = 0; ch < expected.length; ch++) {
+                for (int i = 0; i < expected[ch].length; i++) {
+                    maxDiff = Math.max(maxDiff, Math.abs(expected[ch][i] - actual[ch][i]));
+                }
+            }
+            samples += config.getSuperframeSamples();
+        }
+        assertTrue(samples > 0);
+        assertTrue(maxDiff <= 1, "max difference: " + maxDiff);
+    }
+
+    @Test
+    void testSilence() {
+        byte[] configData = {(byte) 0xfe, 0x70, 0x0f, (byte) 0xe0}; // mono, 1 frame of 128 bytes
+        byte[] silence = Arrays.copyOf(HexFormat.of().parseHex("0008880080408004"), 128); // no coded spectrum
+        short[] zero = new short[256];
+
+        for (boolean singlePrecision : new boolean[] {false, true}) {
+            Atrac9Decoder decoder = new Atrac9Decoder();
+            decoder.setSinglePrecision(singlePrecision);
+            decoder.initialize(configData);
+            short[][] pcm = new short[1][256];
+
+            decoder.decode(silence, pcm);
+            assertTrue(decoder.isSilent());
+            assertArrayEquals(zero, pcm[0]);
+
+            // a sound frame, then its overlap tail
+            Random random = new Random(1);
+            boolean sound = false;
+            while (!sound) {
+                byte[] frame = new byte[128];
+                random.nextBytes(frame);
+                frame[0] &= 0x3f;
+                try {
+                    decoder.decode(frame, pcm);
+                } catch (RuntimeException e) {
+                    decoder.initialize(configData);
+                    continue;
+                }
+                sound = !Arrays.equals(zero, pcm[0]);
+            }
+            assertFalse(decoder.isSilent());
+            decoder.decode(silence, pcm);
+            assertFalse(decoder.isSilent());
+
+            decoder.decode(silence, pcm);
+            assertTrue(decoder.isSilent());
+            assertArrayEquals(zero, pcm[0]);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package libatrac9;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Atrac9MixerTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+class Atrac9MixerTest {
+
+    /** the first superframes of {@link Atrac9DecoderTest#at9} */
+    static Atrac9.At9Structure load() throws Exception {
+        Atrac9.At9Structure at9 = Atrac9.load_At9(Atrac9DecoderTest.at9);
+        at9.audioData = Arrays.copyOf(at9.audioData, Math.min(at9.audioData.length, 400));
+        return at9;
+    }
+
+    /** one voice at unity, or a voice twice at the half, is the decoder's output */
+    @Test
+    void testUnity() throws Exception {
+        Atrac9.At9Structure at9 = load();
+        byte[] configData = at9.config.getConfigData();
+        byte[][] superframes = at9.audioData;
+        for (boolean singlePrecision : new boolean[] {false, true}) {
+            Atrac9Decoder decoder = new Atrac9Decoder();
+            decoder.setSinglePrecision(singlePrecision);
+            decoder.initialize(configData);
+            Atrac9Mixer mixer = new Atrac9Mixer(configData, singlePrecision);
+            Atrac9Mixer.Voice voice = mixer.addVoice(configData);
+            Atrac9Mixer halves = new Atrac9Mixer(configData, singlePrecision);
+            Atrac9Mixer.Voice half1 = halves.addVoice(configData);
+            Atrac9Mixer.Voice half2 = halves.addVoice(configData);
+            half1.setGain(0.5);
+            half2.setGain(0.5);
+
+            Atrac9Config config = decoder.getConfig();
+            short[][] expected = new short[config.getChannelCount()][config.getSuperframeSamples()];
+            short[][] actual = new short[config.getChannelCount()][config.getSuperframeSamples()];
+            short[][] actualHalves = new short[config.getChannelCount()][config.getSuperframeSamples()];
+            for (byte[] superframe : superframes) {
+                decoder.decode(superframe, expected);
+                voice.setData(superframe);
+                mixer.decode(actual);
+                half1.setData(superframe);
+                half2.setData(superframe);
+                halves.decode(actualHalves);
+                for (int c = 0; c < expected.length; c++) {
+                    assertArrayEquals(expected[c], actual[c]);
+                    assertArrayEquals(expected[c], actualHalves[c]);
+                }
+            }
+        }
+    }
+
+    /** two streams at the half are the average of the decoded ones within the rounding */
+    @Test
+    void testMix() throws Exception {
+        Atrac9.At9Structure at9 = load();
+        byte[] configData = at9.config.getConfigData();
+        byte[][] superframes = at9.audioData;
+        Atrac9Decoder decoder1 = new Atrac9Decoder();
+        decoder1.initialize(configData);
+        Atrac9Decoder decoder2 = new Atrac9Decoder();
+        decoder2.initialize(configData);
+        Atrac9Mixer mixer = new Atrac9Mixer(configData);
+        Atrac9Mixer.Voice voice1 = mixer.addVoice(configData);
+        Atrac9Mixer.Voice voice2 = mixer.addVoice(configData);
+        voice1.setGain(0.5);
+        voice2.setGain(0.5);
+
+        Atrac9Config config = mixer.getConfig();
+        short[][] pcm1 = new short[config.getChannelCount()][config.getSuperframeSamples()];
+        short[][] pcm2 = new short[config.getChannelCount()][config.getSuperframeSamples()];
+        short[][] mixed = new short[config.getChannelCount()][config.getSuperframeSamples()];
+        int offset = superframes.length / 2;
+        double maxDiff = 0;
+        for (int i = 0; i + offset < superframes.length; i++) {
+            decoder1.decode(superframes[i], pcm1);
+            decoder2.decode(superframes[i + offset], pcm2);
+            voice1.setData(superframes[i]);
+            voice2.setData(superframes[i + offset]);
+            mixer.decode(mixed);
+            for (int c = 0; c < mixed.length; c++) {
+                for (int k = 0; k < mixed[c].length; k++) {
+                    maxDiff = Math.max(maxDiff, Math.abs(mixed[c][k] - (pcm1[c][k] + pcm2[c][k]) / 2.0));
+                }
+            }
+        }
+        assertTrue(maxDiff <= 1, "max difference: " + maxDiff);
+
+        // removed, the voice is not mixed
+        mixer.removeVoice(voice2);
+        assertEquals(1, mixer.getVoices().size());
+        assertThrows(IllegalArgumentException.class, () -> mixer.addVoice(new byte[] {(byte) 0xfe, 0x70, 0x0f, (byte) 0xe0}));
+
+        // 44100 and 48000 Hz have the same frame size
+        byte[] otherRate = configData.clone();
+        int rateIndex = (otherRate[1] >> 4) & 0xf;
+        otherRate[1] = (byte) ((otherRate[1] & 0x0f) | (rateIndex == 7 ? 6 : 7) << 4);
+        assertEquals(config.getFrameSamples(), new Atrac9Config(otherRate).getFrameSamples());
+        assertEquals(config.getFramesPerSuperframe(), new Atrac9Config(otherRate).getFramesPerSuperframe());
+        assertThrows(IllegalArgumentException.class, () -> mixer.addVoice(otherRate));
+    }
+
+    /** a stereo voice into a mono output is the average of its channels within the rounding */
+    @Test
+    void testDownmix() throws Exception {
+        Atrac9.At9Structure at9 = load();
+        byte[] configData = at9.config.getConfigData();
+        byte[][] superframes = at9.audioData;
+        byte[] monoConfigData = configData.clone();
+        monoConfigData[1] &= (byte) 0xf1; // channel config 0, mono
+        Atrac9Decoder decoder = new Atrac9Decoder();
+        decoder.initialize(configData);
+        Atrac9Mixer mixer = new Atrac9Mixer(monoConfigData);
+        assertEquals(1, mixer.getConfig().getChannelCount());
+        Atrac9Mixer.Voice voice = mixer.addVoice(configData);
+
+        Atrac9Config config = decoder.getConfig();
+        assertEquals(2, config.getChannelCount());
+        short[][] stereo = new short[2][config.getSuperframeSamples()];
+        short[][] mono = new short[1][config.getSuperframeSamples()];
+        double maxDiff = 0;
+        double level = 0;
+        for (byte[] superframe : superframes) {
+            decoder.decode(superframe, stereo);
+            voice.setData(superframe);
+            mixer.decode(mono);
+            for (int k = 0; k < mono[0].length; k++) {
+                maxDiff = Math.max(maxDiff, Math.abs(mono[0][k] - (stereo[0][k] + stereo[1][k]) / 2.0));
+                level = Math.max(level, Math.abs(stereo[1][k]));
+            }
+        }
+        assertTrue(level > 0);
+        assertTrue(maxDiff <= 1, "max difference: " + maxDiff);
+    }
+}
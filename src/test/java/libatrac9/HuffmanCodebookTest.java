@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package libatrac9;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import libatrac9.util.Bit;
+import libatrac9.util.BitReader;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+
+/**
+ * HuffmanCodebookTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+class HuffmanCodebookTest {
+
+    static List<HuffmanCodebook> codebooks() {
+        List<HuffmanCodebook> codebooks = new ArrayList<>();
+        for (HuffmanCodebook[][] set : Tables.HuffmanSpectrum) {
+            for (HuffmanCodebook[] precision : set) {
+                if (precision != null) {
+                    codebooks.addAll(Arrays.asList(precision));
+                }
+            }
+        }
+        codebooks.addAll(Arrays.asList(Tables.HuffmanScaleFactorsUnsigned));
+        codebooks.addAll(Arrays.asList(Tables.HuffmanScaleFactorsSigned));
+        codebooks.removeIf(huff -> huff == null || huff.codes == null);
+        return codebooks;
+    }
+
+    @Test
+    void testDecodeTable() {
+        List<HuffmanCodebook> codebooks = codebooks();
+        assertFalse(codebooks.isEmpty());
+        for (HuffmanCodebook huff : codebooks) {
+            int fieldBits = HuffmanCodebook.VALUES_BITS / huff.valueCount;
+            for (int code = 0; code < huff.lookup.length; code++) {
+                int symbol = huff.lookup[code] & 0xff;
+                int entry = huff.decodeTable[code];
+                assertEquals(huff.bits[symbol], entry & HuffmanCodebook.LENGTH_MASK);
+                assertEquals(symbol, (entry >>> HuffmanCodebook.SYMBOL_SHIFT) & 0xff);
+                for (int j = 0; j < huff.valueCount; j++) {
+                    int expected = Bit.signExtend32((symbol >>> (j * huff.valueBits)) & (huff.valueMax - 1), huff.valueBits);
+                    int actual = (entry << (32 - HuffmanCodebook.VALUES_SHIFT - (j + 1) * fieldBits)) >> (32 - fieldBits);
+                    assertEquals(expected, actual);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testReadHuffmanValue() {
+        // every code of a codebook back to back, then read with the decode table
+        for (HuffmanCodebook huff : codebooks()) {
+            byte[] buffer = new byte[huff.codes.length * 2 + 8];
+            int position = 0;
+            for (int i = 0; i < huff.codes.length; i++) {
+                for (int b = huff.bits[i] - 1; b >= 0; b--, position++) {
+                    if ((huff.codes[i] >> b & 1) != 0) {
+                        buffer[position >> 3] |= (byte) (0x80 >> (position & 7));
+                    }
+                }
+            }
+            BitReader reader = new BitReader(buffer);
+            reader.setLengthBits(position);
+            for (int i = 0; i < huff.codes.length; i++) {
+                if (huff.bits[i] == 0) continue;
+                assertEquals(i, Unpack.readHuffmanValue(huff, reader, false));
+            }
+            assertEquals(position, reader.getPosition());
+            assertEquals(0, reader.peekInt(32)); // past the length
+        }
+    }
+}
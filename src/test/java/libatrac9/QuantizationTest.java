@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package libatrac9;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import libatrac9.Block.BlockType;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+
+/**
+ * QuantizationTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+class QuantizationTest {
+
+    /** stereo, mono, lfe, stereo at 48kHz */
+    static final byte[] configData = {(byte) 0xfe, 0x76, 0x0f, (byte) 0xf0};
+
+    /** the dequantization, intensity stereo and scaling passes as written in libatrac9 */
+    static void reference(Block block, double[][] spectra) {
+        Channel[] channels = block.getChannels();
+        for (int c = 0; c < channels.length; c++) {
+            Channel channel = channels[c];
+            Arrays.fill(spectra[c], 0);
+            for (int i = 0; i < channel.getCodedQuantUnits(); i++) {
+                double stepSize = Tables.QuantizerStepSize[channel.getPrecisions()[i]];
+                double stepSizeFine = Tables.QuantizerFineStepSize[channel.getPrecisionsFine()[i]];
+                for (int sb = Tables.QuantUnitToCoeffIndex[i]; sb < Tables.QuantUnitToCoeffIndex[i + 1]; sb++) {
+                    spectra[c][sb] = channel.getQuantizedSpectra()[sb] * stepSize + channel.getQuantizedSpectraFine()[sb] * stepSizeFine;
+                }
+            }
+        }
+
+        if (block.getBlockType() == BlockType.Stereo) {
+            double[] source = spectra[block.getPrimaryChannelIndex() == 0 ? 0 : 1];
+            double[] dest = spectra[block.getPrimaryChannelIndex() == 0 ? 1 : 0];
+            for (int i = block.getStereoQuantizationUnit(); i < block.getQuantizationUnitCount(); i++) {
+                int sign = block.getJointStereoSigns()[i];
+                for (int sb = Tables.QuantUnitToCoeffIndex[i]; sb < Tables.QuantUnitToCoeffIndex[i + 1]; sb++) {
+                    dest[sb] = sign > 0 ? -source[sb] : source[sb];
+                }
+            }
+        }
+
+        for (int c = 0; c < channels.length; c++) {
+            for (int i = 0; i < block.getQuantizationUnitCount(); i++) {
+                for (int sb = Tables.QuantUnitToCoeffIndex[i]; sb < Tables.QuantUnitToCoeffIndex[i + 1]; sb++) {
+                    spectra[c][sb] *= Tables.SpectrumScale[channels[c].getScaleFactors()[i]];
+                }
+            }
+        }
+    }
+
+    /** the single precision version */
+    static void referenceFloat(Block block, float[][] spectra) {
+        Channel[] channels = block.getChannels();
+        for (int c = 0; c < channels.length; c++) {
+            Channel channel = channels[c];
+            Arrays.fill(spectra[c], 0);
+            for (int i = 0; i < channel.getCodedQuantUnits(); i++) {
+                float stepSize = Tables.QuantizerStepSizeFloat[channel.getPrecisions()[i]];
+                float stepSizeFine = Tables.QuantizerFineStepSizeFloat[channel.getPrecisionsFine()[i]];
+                for (int sb = Tables.QuantUnitToCoeffIndex[i]; sb < Tables.QuantUnitToCoeffIndex[i + 1]; sb++) {
+                    spectra[c][sb] = channel.getQuantizedSpectra()[sb] * stepSize + channel.getQuantizedSpectraFine()[sb] * stepSizeFine;
+                }
+            }
+        }
+
+        if (block.getBlockType() == BlockType.Stereo) {
+            float[] source = spectra[block.getPrimaryChannelIndex() == 0 ? 0 : 1];
+            float[] dest = spectra[block.getPrimaryChannelIndex() == 0 ? 1 : 0];
+            for (int i = block.getStereoQuantizationUnit(); i < block.getQuantizationUnitCount(); i++) {
+                int sign = block.getJointStereoSigns()[i];
+                for (int sb = Tables.QuantUnitToCoeffIndex[i]; sb < Tables.QuantUnitToCoeffIndex[i + 1]; sb++) {
+                    dest[sb] = sign > 0 ? -source[sb] : source[sb];
+                }
+            }
+        }
+
+        for (int c = 0; c < channels.length; c++) {
+            for (int i = 0; i < block.getQuantizationUnitCount(); i++) {
+                for (int sb = Tables.QuantUnitToCoeffIndex[i]; sb < Tables.QuantUnitToCoeffIndex[i + 1]; sb++) {
+                    spectra[c][sb] *= Tables.SpectrumScaleFloat[channels[c].getScaleFactors()[i]];
+                }
+            }
+        }
+    }
+
+    static void randomize(Random random, Block block) {
+        block.setQuantizationUnitCount(2 + random.nextInt(29));
+        block.setStereoQuantizationUnit(random.nextInt(31));
+        block.setPrimaryChannelIndex(random.nextInt(2));
+        if (block.getBlockType() != BlockType.Stereo) {
+            block.setPrimaryChannelIndex(0);
+        }
+        for (int i = 0; i < 30; i++) {
+            block.getJointStereoSigns()[i] = random.nextInt(2);
+        }
+        for (Channel channel : block.getChannels()) {
+            channel.updateCodedUnits();
+            for (int i = 0; i < 30; i++) {
+                channel.getPrecisions()[i] = random.nextInt(16);
+                channel.getPrecisionsFine()[i] = random.nextInt(16);
+                channel.getScaleFactors()[i] = random.nextInt(32);
+            }
+            for (int i = 0; i < 256; i++) {
+                channel.getQuantizedSpectra()[i] = random.nextInt(31) - 15;
+                channel.getQuantizedSpectraFine()[i] = random.nextInt(7) - 3;
+            }
+            // stale values from a previous frame
+            if (channel.isSinglePrecision()) {
+                Arrays.fill(channel.getSpectraFloat(), 1f);
+            } else {
+                Arrays.fill(channel.getSpectra(), 1.0);
+            }
+        }
+    }
+
+    @Test
+    void testReconstructSpectra() {
+        Random random = new Random(1);
+        Atrac9Config config = new Atrac9Config(configData);
+        Frame frame = new Frame(config);
+        Frame frameFloat = new Frame(config, true);
+        for (int n = 0; n < 500; n++) {
+            for (int b = 0; b < frame.getBlocks().length; b++) {
+                Block block = frame.getBlocks()[b];
+                Block blockFloat = frameFloat.getBlocks()[b];
+                long seed = random.nextLong();
+                randomize(new Random(seed), block);
+                randomize(new Random(seed), blockFloat);
+
+                double[][] expected = new double[block.getChannels().length][256];
+                reference(block, expected);
+                float[][] expectedFloat = new float[block.getChannels().length][256];
+                referenceFloat(blockFloat, expectedFloat);
+
+                Quantization.reconstructSpectra(block);
+                Quantization.reconstructSpectra(blockFloat);
+
+                for (int c = 0; c < expected.length; c++) {
+                    assertArrayEquals(expected[c], block.getChannels()[c].getSpectra(), n + ", " + b + ", " + c);
+                    assertArrayEquals(expectedFloat[c], blockFloat.getChannels()[c].getSpectraFloat(), n + ", " + b + ", " + c);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.sound.sampled.atrac;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.sound.sampled.AudioInputStream;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * AtracBroadcastTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+class AtracBroadcastTest {
+
+    static Storage load(String file) throws Exception {
+        try (InputStream in = Files.newInputStream(Path.of(file))) {
+            return Storage.allocate(Storage.Type.HEAP, in);
+        }
+    }
+
+    static byte[] readAll(AtracBroadcast.Subscription subscription) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AtracBroadcast.Frame frame;
+        while ((frame = subscription.next()) != null) {
+            ByteBuffer pcm = frame.getPcm();
+            byte[] b = new byte[pcm.remaining()];
+            pcm.get(b);
+            out.write(b);
+        }
+        return out.toByteArray();
+    }
+
+    /** all the subscribers get the same as decoded alone, each frame decoded once */
+    @Test
+    void testSubscribers() throws Exception {
+        Storage storage = load("src/test/resources/snd0.at3");
+        AtracFrames frames = new AtracFrames(storage.retain());
+        byte[] expected = AtracClipTest.decodeAll(frames);
+        int frameSize = frames.getFormat().getFrameSize();
+
+        try (AtracBroadcast broadcast = new AtracBroadcast(storage, 8)) {
+            List<AtracBroadcast.Subscription> subscriptions = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                subscriptions.add(broadcast.subscribe());
+            }
+            ExecutorService executor = Executors.newFixedThreadPool(subscriptions.size());
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < subscriptions.size() - 1; i++) {
+                AtracBroadcast.Subscription subscription = subscriptions.get(i);
+                results.add(executor.submit(() -> readAll(subscription)));
+            }
+            AudioInputStream ais = subscriptions.get(subscriptions.size() - 1).getAudioInputStream();
+            results.add(executor.submit(() -> ais.readAllBytes()));
+            for (Future<byte[]> result : results) {
+                assertArrayEquals(expected, result.get());
+            }
+            executor.shutdown();
+            long first = frames.getEncoderDelay() / frames.getFrameSamples();
+            long last = (frames.getEncoderDelay() + expected.length / frameSize - 1) / frames.getFrameSamples();
+            assertEquals(last - first + 1, broadcast.getDecodedFrames(), "decoded once");
+        }
+        frames.getStorage().close();
+        assertTrue(storage.isFreed());
+    }
+
+    /** the slowest subscriber holds the decoding, a late one reads the backlog */
+    @Test
+    void testBackpressure() throws Exception {
+        Storage storage = load("src/test/resources/snd0.at9");
+        AtracFrames frames = new AtracFrames(storage.retain());
+        byte[] expected = AtracClipTest.decodeAll(frames);
+        int frameSize = frames.getFormat().getFrameSize();
+        frames.getStorage().close();
+
+        try (AtracBroadcast broadcast = new AtracBroadcast(storage, 4)) {
+            AtracBroadcast.Subscription fast = broadcast.subscribe();
+            AtracBroadcast.Subscription slow = broadcast.subscribe();
+            for (int i = 0; i < 4; i++) {
+                fast.next();
+            }
+            assertEquals(4, broadcast.getDecodedFrames());
+            assertEquals(4, slow.available());
+            assertEquals(0, fast.available());
+            slow.next();
+            fast.next();
+            assertEquals(5, broadcast.getDecodedFrames());
+
+            AtracBroadcast.Subscription late = broadcast.subscribe(10);
+            assertEquals(3, late.available());
+            AtracBroadcast.Frame frame = late.next();
+            assertEquals(2, frame.getIndex());
+            slow.close();
+
+            // the rest of the late subscriber
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            while (frame != null) {
+                ByteBuffer pcm = frame.getPcm();
+                byte[] b = new byte[pcm.remaining()];
+                pcm.get(b);
+                int from = (int) frame.getPosition() * frameSize;
+                assertArrayEquals(Arrays.copyOfRange(expected, from, from + b.length), b, "at " + frame.getIndex());
+                out.write(b);
+                frame = late.next();
+                fast.next();
+            }
+            int from = (int) (expected.length - out.size());
+            assertArrayEquals(Arrays.copyOfRange(expected, from, expected.length), out.toByteArray());
+            assertNull(fast.next());
+            late.close();
+            fast.close();
+            assertEquals(0, broadcast.getSubscriptions());
+        }
+        assertTrue(storage.isFreed());
+    }
+}
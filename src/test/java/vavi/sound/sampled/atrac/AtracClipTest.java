@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.sound.sampled.atrac;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * AtracClipTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+class AtracClipTest {
+
+    /** all the frames decoded in sequence without the encoder delay */
+    static byte[] decodeAll(AtracFrames frames) {
+        AtracFrames.Decoder decoder = frames.newDecoder();
+        int frameSize = frames.getFormat().getFrameSize();
+        byte[] pcm = new byte[frames.getFrameSamples() * frameSize];
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int f = 0; f < frames.getFrameCount(); f++) {
+            decoder.decode(f, pcm);
+            out.write(pcm, 0, pcm.length);
+        }
+        int from = frames.getEncoderDelay() * frameSize;
+        return Arrays.copyOfRange(out.toByteArray(), from, from + (int) frames.getFrameLength() * frameSize);
+    }
+
+    static byte[] renderAll(AtracClip clip) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[5000];
+        int n;
+        while ((n = clip.render(buffer, 0, buffer.length)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    void testAtrac3plus() throws Exception {
+        testRender("src/test/resources/snd0.at3");
+    }
+
+    @Test
+    void testAtrac9() throws Exception {
+        testRender("src/test/resources/snd0.at9");
+    }
+
+    static void testRender(String file) throws Exception {
+        Storage storage;
+        try (InputStream in = Files.newInputStream(Path.of(file))) {
+            storage = Storage.allocate(Storage.Type.DIRECT, in);
+        }
+        AtracFrames frames = new AtracFrames(storage.retain());
+        assertTrue(frames.getLoopStart() >= 0);
+        byte[] expected = decodeAll(frames);
+        int frameSize = frames.getFormat().getFrameSize();
+
+        AtracClip clip = new AtracClip();
+        clip.load(storage);
+        assertEquals(frames.getFrameLength(), clip.getFrameLength());
+        assertArrayEquals(expected, renderAll(clip));
+
+        // seek, bit exact
+        Random random = new Random(1);
+        byte[] buffer = new byte[3000 * frameSize];
+        for (int i = 0; i < 10; i++) {
+            int position = random.nextInt(clip.getFrameLength() - 3000);
+            clip.setFramePosition(position);
+            assertEquals(buffer.length, clip.render(buffer, 0, buffer.length));
+            assertArrayEquals(Arrays.copyOfRange(expected, position * frameSize, (position + 3000) * frameSize), buffer, "at " + position);
+            assertEquals(position + 3000, clip.getFramePosition());
+        }
+
+        // position, loop once, then to the end
+        clip.setLoopPoints(1000, 2999);
+        clip.setFramePosition(500);
+        clip.loop(1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(expected, 500 * frameSize, 2500 * frameSize);
+        out.write(expected, 1000 * frameSize, expected.length - 1000 * frameSize);
+        assertArrayEquals(out.toByteArray(), renderAll(clip));
+        assertEquals(clip.getFrameLength(), clip.getFramePosition());
+        // the position heard, by the line frames written from the seek
+        assertEquals(500, clip.positionAt(0));
+        assertEquals(2999, clip.positionAt(2499));
+        assertEquals(1000, clip.positionAt(2500));
+        assertEquals(clip.getFrameLength(), clip.positionAt(2500 + clip.getFrameLength() - 1000));
+
+        assertThrows(IllegalArgumentException.class, () -> clip.setLoopPoints(3000, 2999));
+        assertThrows(IllegalArgumentException.class, () -> clip.setLoopPoints(0, clip.getFrameLength()));
+
+        clip.close();
+        assertFalse(storage.isFreed());
+        frames.getStorage().close();
+        assertTrue(storage.isFreed());
+    }
+}
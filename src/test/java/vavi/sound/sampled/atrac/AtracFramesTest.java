@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.sound.sampled.atrac;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import jpcsp.media.codec.util.Footprint;
+import org.junit.jupiter.api.Test;
+import vavi.util.Debug;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * AtracFramesTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+class AtracFramesTest {
+
+    @Test
+    void testSnapshotAtrac3plus() throws Exception {
+        testSnapshot("src/test/resources/snd0.at3");
+    }
+
+    @Test
+    void testSnapshotAtrac9() throws Exception {
+        testSnapshot("src/test/resources/snd0.at9");
+    }
+
+    @Test
+    void testSnapshotAtrac9Float() throws Exception {
+        String singlePrecision = System.getProperty("libatrac9.singlePrecision");
+        System.setProperty("libatrac9.singlePrecision", "true");
+        try {
+            byte[] state = testSnapshot("src/test/resources/snd0.at9");
+            System.setProperty("libatrac9.singlePrecision", "false");
+            AtracFrames frames = load("src/test/resources/snd0.at9");
+            AtracFrames.Decoder decoder = frames.newDecoder();
+            assertThrows(IllegalArgumentException.class, () -> decoder.restore(state, 0));
+            frames.getStorage().close();
+        } finally {
+            if (singlePrecision == null) {
+                System.clearProperty("libatrac9.singlePrecision");
+            } else {
+                System.setProperty("libatrac9.singlePrecision", singlePrecision);
+            }
+        }
+    }
+
+    @Test
+    void testFootprintAtrac3plus() throws Exception {
+        testFootprint("src/test/resources/snd0.at3", 48 * 1024);
+    }
+
+    @Test
+    void testFootprintAtrac9() throws Exception {
+        testFootprint("src/test/resources/snd0.at9", 10 * 1024);
+    }
+
+    /**
+     * the decoders on a thread share the work buffers, a stream keeps its state only
+     *
+     * @param budget bytes of a stereo stream
+     */
+    static void testFootprint(String file, long budget) throws Exception {
+        AtracFrames frames = load(file);
+        try {
+            int frameBytes = frames.getFrameSamples() * frames.getFormat().getFrameSize();
+            int n = 40;
+            int offset = frames.getFrameCount() / 2;
+            byte[][] expectedA = new byte[n][frameBytes];
+            byte[][] expectedB = new byte[n][frameBytes];
+            AtracFrames.Decoder alone = frames.newDecoder();
+            for (int f = 0; f < n; f++) {
+                alone.decode(f, expectedA[f]);
+            }
+            alone = frames.newDecoder();
+            for (int f = 0; f < n; f++) {
+                alone.decode(offset + f, expectedB[f]);
+            }
+
+            AtracFrames.Decoder a = frames.newDecoder();
+            AtracFrames.Decoder b = frames.newDecoder();
+            byte[] pcm = new byte[frameBytes];
+            for (int f = 0; f < n; f++) {
+                a.decode(f, pcm);
+                assertArrayEquals(expectedA[f], pcm, "a " + f);
+                b.decode(offset + f, pcm);
+                assertArrayEquals(expectedB[f], pcm, "b " + f);
+            }
+
+            long bytes = Footprint.perInstance(() -> {
+                AtracFrames.Decoder decoder = frames.newDecoder();
+                for (int f = 0; f < n; f++) {
+                    decoder.decode(f, pcm);
+                }
+                return decoder;
+            });
+Debug.println(frames.getEncoding() + ": " + bytes + " bytes a stream");
+            assertTrue(bytes < budget, bytes + " bytes");
+        } finally {
+            frames.getStorage().close();
+        }
+    }
+
+    static AtracFrames load(String file) throws Exception {
+        try (InputStream in = Files.newInputStream(Path.of(file))) {
+            return new AtracFrames(Storage.allocate(Storage.Type.HEAP, in));
+        }
+    }
+
+    /**
+     * a decoder restored from a snapshot decodes the same as the one the snapshot is taken from
+     *
+     * @return a snapshot
+     */
+    static byte[] testSnapshot(String file) throws Exception {
+        AtracFrames frames = load(file);
+        try {
+            int frameBytes = frames.getFrameSamples() * frames.getFormat().getFrameSize();
+            int count = frames.getFrameCount();
+            int[] at = {1, count / 3, count / 2, count - 1};
+
+            AtracFrames.Decoder decoder = frames.newDecoder();
+            byte[][] expected = new byte[count][frameBytes];
+            byte[][] states = new byte[at.length][];
+            for (int f = 0, i = 0; f < count; f++) {
+                if (i < at.length && f == at[i]) {
+                    states[i++] = decoder.snapshot();
+                }
+                decoder.decode(f, expected[f]);
+            }
+
+            AtracFrames.Decoder restored = frames.newDecoder();
+            byte[] pcm = new byte[frameBytes];
+            for (int i = at.length - 1; i >= 0; i--) {
+                // some other frames before
+                restored.decode(count / 4 + i, pcm);
+                restored.restore(states[i], at[i]);
+                assertArrayEquals(states[i], restored.snapshot(), "snapshot of the restored one at " + at[i]);
+                for (int f = at[i]; f < Math.min(count, at[i] + 20); f++) {
+                    restored.decode(f, pcm);
+                    assertArrayEquals(expected[f], pcm, "frame " + f + " from " + at[i]);
+                }
+            }
+
+            // a broken state leaves the decoder unchanged
+            byte[] state = states[2];
+            restored.restore(state, at[2]);
+            assertThrows(IllegalArgumentException.class, () -> restored.restore(Arrays.copyOf(state, state.length - 1), 0));
+            assertThrows(IllegalArgumentException.class, () -> restored.restore(Arrays.copyOf(state, state.length + 1), 0));
+            byte[] version = state.clone();
+            version[4]++;
+            assertThrows(IllegalArgumentException.class, () -> restored.restore(version, 0));
+            assertEquals(at[2], restored.next());
+            restored.decode(at[2], pcm);
+            assertArrayEquals(expected[at[2]], pcm);
+
+            return states[2];
+        } finally {
+            frames.getStorage().close();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.sound.sampled.atrac;
+
+import java.io.BufferedInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import javax.management.ObjectName;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import org.junit.jupiter.api.Test;
+import vavi.util.Debug;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * AtracMetricsTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-18 nsano initial version <br>
+ */
+class AtracMetricsTest {
+
+    @Test
+    void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 100_000; i++) {
+            histogram.record(i * 1000);
+        }
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(100_000_000, histogram.getMax());
+        assertEquals(50_000_500, histogram.getMean(), 1);
+        long p50 = histogram.getValueAtPercentile(50);
+        assertTrue(Math.abs(p50 - 50_000_000) < 50_000_000 / 16, "p50: " + p50);
+        long p99 = histogram.getValueAtPercentile(99);
+        assertTrue(Math.abs(p99 - 99_000_000) < 99_000_000 / 16, "p99: " + p99);
+        assertEquals(100_000_000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    void testBuckets() {
+        for (long v = 0; v < 10_000_000; v += 13) {
+            int i = LatencyHistogram.indexOf(v);
+            assertTrue(LatencyHistogram.highestValueOf(i) >= v);
+            assertTrue(i == 0 || LatencyHistogram.highestValueOf(i - 1) < v);
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValueOf(LatencyHistogram.indexOf(Long.MAX_VALUE)));
+        assertEquals(LatencyHistogram.indexOf(LatencyHistogram.OVERFLOW), LatencyHistogram.indexOf(Long.MAX_VALUE));
+        assertEquals(LatencyHistogram.OVERFLOW - 1, LatencyHistogram.highestValueOf(LatencyHistogram.indexOf(LatencyHistogram.OVERFLOW - 1)));
+    }
+
+    @Test
+    void testOverflow() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        histogram.record(5_000_000_000L);
+        assertTrue(histogram.getValueAtPercentile(50) < 1000 + 1000 / 16);
+        assertEquals(5_000_000_000L, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    void testStream() throws Exception {
+        AtracMetrics metrics = AtracMetrics.getInstance();
+        long frames = metrics.getFramesDecoded();
+        long bytesOut = metrics.getBytesOut();
+
+        AudioInputStream sourceAis = AudioSystem.getAudioInputStream(new BufferedInputStream(Files.newInputStream(Paths.get("src/test/resources/sample.at3"))));
+        AudioFormat inAudioFormat = sourceAis.getFormat();
+        AudioFormat outAudioFormat = new AudioFormat(inAudioFormat.getSampleRate(), 16, inAudioFormat.getChannels(), true, false);
+        AudioInputStream pcmAis = AudioSystem.getAudioInputStream(outAudioFormat, sourceAis);
+
+        assertTrue(metrics.getActiveStreams() >= 1);
+        StreamMetrics stream = metrics.getStreams().stream().max(Comparator.comparingLong(StreamMetrics::getId)).orElseThrow();
+        // per stream mbeans are opt-in
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(AtracMetrics.DOMAIN + ":type=Stream,id=" + stream.getId())));
+
+        long read = 0;
+        byte[] buf = new byte[8192];
+        int r;
+        while ((r = pcmAis.read(buf)) > 0) {
+            read += r;
+        }
+        pcmAis.close();
+Debug.println(stream);
+
+        assertTrue(stream.getFramesDecoded() > 0);
+        assertEquals(0, stream.getDecodeErrors());
+        assertEquals(read, stream.getBytesOut());
+        assertTrue(stream.getRealtimeFactor() > 0);
+        assertTrue(stream.getLatencyMean() > 0);
+        assertFalse(stream.isActive());
+        assertTrue(metrics.getFramesDecoded() - frames >= stream.getFramesDecoded());
+        assertTrue(metrics.getBytesOut() - bytesOut >= read);
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(AtracMetrics.DOMAIN + ":type=Metrics")));
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.sound.sampled.atrac;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * AtracPcmCacheTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+class AtracPcmCacheTest {
+
+    static final AudioFormat format = new AudioFormat(44100, 16, 2, true, false);
+
+    static AtracPcmCache.Key key(String name) {
+        return new AtracPcmCache.Key(name, new AtracPcmCache.Format(format));
+    }
+
+    static byte[] pcm(int bytes) {
+        byte[] pcm = new byte[bytes];
+        for (int i = 0; i < bytes; i++) {
+            pcm[i] = (byte) i;
+        }
+        return pcm;
+    }
+
+    static AtracPcmCache.Entry entry(int bytes) throws IOException {
+        return new AtracPcmCache.Entry(format, Storage.allocate(Storage.Type.HEAP, new ByteArrayInputStream(pcm(bytes))));
+    }
+
+    @Test
+    void testLru() throws Exception {
+        AtracPcmCache cache = new AtracPcmCache(1000);
+        int[] loads = new int[1];
+
+        AudioInputStream stream = cache.get(key("a"), () -> { loads[0]++; return entry(400); });
+        assertEquals(100, stream.getFrameLength());
+        assertArrayEquals(pcm(400), stream.readAllBytes());
+        AtracPcmCache.Entry b = entry(400);
+        cache.get(key("b"), () -> { loads[0]++; return b; }).close();
+
+        // a hit shares the pcm and does not load
+        stream = cache.get(key("a"), () -> { throw new AssertionError(); });
+        assertArrayEquals(pcm(400), stream.readAllBytes());
+        assertEquals(2, loads[0]);
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(800, cache.getBytes());
+
+        // b is the least recently used
+        cache.get(key("c"), () -> entry(400));
+        assertTrue(cache.contains(key("a")));
+        assertFalse(cache.contains(key("b")));
+        assertTrue(b.pcm().isFreed());
+        assertTrue(cache.contains(key("c")));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(800, cache.getBytes());
+
+        // too large to be cached, freed when the stream is closed
+        AtracPcmCache.Entry d = entry(2000);
+        stream = cache.get(key("d"), () -> d);
+        assertEquals(500, stream.getFrameLength());
+        assertFalse(cache.contains(key("d")));
+        assertFalse(d.pcm().isFreed());
+        stream.close();
+        assertTrue(d.pcm().isFreed());
+        assertEquals(2, cache.getEntries());
+
+        assertEquals(1 / 5d, cache.getHitRatio());
+        cache.clear();
+        assertEquals(0, cache.getEntries());
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    void testDisabled() throws Exception {
+        AtracPcmCache cache = new AtracPcmCache(0);
+        cache.get(key("a"), () -> entry(4));
+        cache.get(key("a"), () -> entry(4));
+        assertEquals(0, cache.getEntries());
+        assertEquals(2, cache.getMisses());
+    }
+
+    /** a stream as {@link AtracAudioFileReader} makes for a file when the cache is enabled */
+    static AtracPcmCache.Source source(Path path) throws Exception {
+        AudioInputStream ais = new AtracAudioFileReader().getAudioInputStream(new BufferedInputStream(Files.newInputStream(path)));
+        return new AtracPcmCache.Source(ais, ais.getFormat(), ais.getFrameLength(), AtracPcmCache.FileKey.of(path));
+    }
+
+    @Test
+    void testSource() throws Exception {
+        Path path = Path.of("src/test/resources/snd0.at3");
+
+        // disabled, the normal streaming decode
+        AudioInputStream stream = new AtracPcmCache(0).getAudioInputStream(path, format);
+        assertTrue(stream instanceof Atrac3ToPcmAudioInputStream);
+        byte[] expected = stream.readAllBytes();
+        stream.close();
+
+        AtracPcmCache cache = new AtracPcmCache(64 * 1024 * 1024, Storage.Type.HEAP);
+        for (int i = 0; i < 2; i++) {
+            try (AudioInputStream pcm = cache.getAudioInputStream(source(path), format)) {
+                assertArrayEquals(expected, pcm.readAllBytes());
+            }
+        }
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(expected.length, cache.getBytes());
+        cache.clear();
+    }
+}
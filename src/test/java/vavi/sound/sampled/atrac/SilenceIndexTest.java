@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.sound.sampled.atrac;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+/**
+ * SilenceIndexTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+class SilenceIndexTest {
+
+    @Test
+    void testRanges() {
+        SilenceIndex index = new SilenceIndex();
+        index.frame(1024, true);
+        index.frame(1024, true);
+        index.frame(1024, false);
+        index.frame(1024, true);
+        assertEquals(List.of(new SilenceIndex.Range(0, 2048), new SilenceIndex.Range(3072, 4096)), index.getRanges());
+
+        // the last range grows
+        index.frame(512, true);
+        index.frame(1024, false);
+        assertEquals(List.of(new SilenceIndex.Range(0, 2048), new SilenceIndex.Range(3072, 4608)), index.getRanges());
+        assertEquals(3584, index.getSilentFrames());
+        assertEquals(5632, index.getPosition());
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.sound.sampled.atrac;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * StorageTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
+ * @version 0.00 2026-10-19 nsano initial version <br>
+ */
+class StorageTest {
+
+    @Test
+    void testTypes() throws Exception {
+        byte[] data = new byte[300_000]; // some chunks
+        new Random(1).nextBytes(data);
+        for (Storage.Type type : Storage.Type.values()) {
+            long bytes = type.getBytes();
+            long count = type.getCount();
+
+            Storage storage = Storage.allocate(type, new ByteArrayInputStream(data));
+            assertEquals(data.length, storage.size());
+            assertEquals(bytes + data.length, type.getBytes(), type.name());
+            assertEquals(count + 1, type.getCount(), type.name());
+            ByteBuffer buffer = storage.asReadOnlyBuffer();
+            assertTrue(buffer.isReadOnly());
+            assertEquals(type == Storage.Type.DIRECT || type == Storage.Type.MAPPED, buffer.isDirect(), type.name());
+
+            InputStream in = storage.newInputStream();
+            storage.close();
+            assertFalse(storage.isFreed());
+            assertEquals(100, in.skip(100));
+            in.mark(0);
+            assertEquals(data[100] & 0xff, in.read());
+            in.reset();
+            byte[] read = in.readAllBytes();
+            assertEquals(data.length - 100, read.length);
+            assertEquals(-1, in.read());
+
+            in.close();
+            in.close();
+            assertTrue(storage.isFreed());
+            assertEquals(bytes, type.getBytes(), type.name());
+            assertEquals(count, type.getCount(), type.name());
+            assertThrows(IllegalStateException.class, storage::retain);
+            assertThrows(IllegalStateException.class, storage::newInputStream);
+
+            byte[] expected = new byte[read.length];
+            System.arraycopy(data, 100, expected, 0, expected.length);
+            assertArrayEquals(expected, read, type.name());
+        }
+    }
+
+    @Test
+    void testAudioInputStream() throws Exception {
+        AudioFormat format = new AudioFormat(44100, 16, 2, true, false);
+        byte[] data = new byte[4000];
+        new Random(2).nextBytes(data);
+        Storage.Type type = Storage.Type.DIRECT;
+        long bytes = type.getBytes();
+
+        // pre-sized by the frame length
+        try (Storage storage = Storage.allocate(type, new AudioInputStream(new ByteArrayInputStream(data), format, 1000))) {
+            try (InputStream in = storage.newInputStream()) {
+                assertArrayEquals(data, in.readAllBytes());
+            }
+            assertEquals(bytes + data.length, type.getBytes());
+        }
+        assertEquals(bytes, type.getBytes());
+
+        // shorter than told, the capacity reserved is accounted
+        try (Storage storage = Storage.allocate(type, new AudioInputStream(new ByteArrayInputStream(data), format, 2000))) {
+            assertEquals(data.length, storage.size());
+            assertEquals(bytes + 8000, type.getBytes());
+        }
+        assertEquals(bytes, type.getBytes());
+    }
+}